@@ -50,6 +50,10 @@ PREREQUISITE_DEPS = []
 COMPILE_TIME = 0
 RUNTIME = 1
 
+# Output group prefixes for the text and binary ide info files.
+INFO_OUTPUT_GROUP_PREFIX = "intellij-info-"
+BINARY_INFO_OUTPUT_GROUP_PREFIX = "intellij-info-binary-"
+
 ##### Helpers
 
 def source_directory_tuple(resource_file):
@@ -767,8 +771,11 @@ def intellij_info_aspect_impl(target, ctx, semantics):
     if aspect_ids:
         aspect_hash = hash(".".join(aspect_ids))
         file_name = file_name + "-" + str(aspect_hash)
-    file_name = file_name + ".intellij-info.txt"
-    ide_info_file = ctx.new_file(file_name)
+    ide_info_file = ctx.new_file(file_name + ".intellij-info.txt")
+
+    # A length-delimited binary copy of the ide info, so the IDE doesn't need to text-parse every
+    # target. Only built if the IDE requests the binary info output groups.
+    ide_info_binary_file = ctx.new_file(file_name + ".intellij-info.pb")
 
     target_key = make_target_key(target.label, aspect_ids)
     ide_info = dict(
@@ -783,28 +790,40 @@ def intellij_info_aspect_impl(target, ctx, semantics):
     # Collect test info
     ide_info["test_info"] = build_test_info(ctx)
 
+    # The language-specific handlers fill in this target's own output groups, which are then
+    # merged with those of its prerequisites.
+    own_output_groups = dict()
     handled = False
-    handled = collect_py_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_cpp_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_c_toolchain_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_go_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_java_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_java_toolchain_info(target, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_android_info(target, ctx, semantics, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_android_sdk_info(ctx, ide_info, ide_info_file, output_groups) or handled
-    handled = collect_aar_import_info(ctx, ide_info, ide_info_file, output_groups) or handled
+    handled = collect_py_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_cpp_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_c_toolchain_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_go_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_java_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_java_toolchain_info(target, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_android_info(target, ctx, semantics, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_android_sdk_info(ctx, ide_info, ide_info_file, own_output_groups) or handled
+    handled = collect_aar_import_info(ctx, ide_info, ide_info_file, own_output_groups) or handled
 
     # Any extra ide info
     if hasattr(semantics, "extra_ide_info"):
-        handled = semantics.extra_ide_info(target, ctx, ide_info, ide_info_file, output_groups) or handled
+        handled = semantics.extra_ide_info(target, ctx, ide_info, ide_info_file, own_output_groups) or handled
 
     # Add to generic output group if it's not handled by a language-specific handler
     if not handled:
-        update_set_in_dict(output_groups, "intellij-info-generic", depset([ide_info_file]))
+        update_set_in_dict(own_output_groups, "intellij-info-generic", depset([ide_info_file]))
+
+    # Mirror each info output group with a binary one, containing the binary ide info instead.
+    for k, v in own_output_groups.items():
+        update_set_in_dict(output_groups, k, v)
+        if k.startswith(INFO_OUTPUT_GROUP_PREFIX):
+            binary_files = [ide_info_binary_file if f == ide_info_file else f for f in v.to_list()]
+            binary_group = BINARY_INFO_OUTPUT_GROUP_PREFIX + k[len(INFO_OUTPUT_GROUP_PREFIX):]
+            update_set_in_dict(output_groups, binary_group, depset(binary_files))
 
     # Output the ide information file.
     info = struct_omit_none(**ide_info)
     ctx.file_action(ide_info_file, info.to_proto())
+    build_ide_info_binary_file(ctx, target, ide_info_file, ide_info_binary_file)
 
     # Return providers.
     return struct_omit_none(
@@ -817,6 +836,28 @@ def intellij_info_aspect_impl(target, ctx, semantics):
         ),
     )
 
+def build_ide_info_binary_file(ctx, target, ide_info_file, ide_info_binary_file):
+    """Converts the text ide info file to binary, in a persistent worker where supported."""
+
+    # Workers require the arguments to be passed in a params file.
+    argfile = ctx.new_file(
+        ctx.configuration.bin_dir,
+        ide_info_binary_file.basename + ".params",
+    )
+    ctx.file_action(
+        output = argfile,
+        content = "\n".join(["--input", ide_info_file.path, "--output", ide_info_binary_file.path]),
+    )
+    ctx.action(
+        inputs = [ide_info_file, argfile],
+        outputs = [ide_info_binary_file],
+        executable = ctx.executable._intellij_info_converter,
+        arguments = ["@" + argfile.path],
+        execution_requirements = {"supports-workers": "1"},
+        mnemonic = "IntellijInfoConverter",
+        progress_message = "Converting ide info for " + str(target.label),
+    )
+
 def semantics_extra_deps(base, semantics, name):
     if not hasattr(semantics, name):
         return base
@@ -834,6 +875,12 @@ def make_intellij_info_aspect(aspect_impl, semantics):
 
     return aspect(
         attrs = {
+            "_intellij_info_converter": attr.label(
+                default = tool_label("IntellijInfoConverter"),
+                cfg = "host",
+                executable = True,
+                allow_files = True,
+            ),
             "_package_parser": attr.label(
                 default = tool_label("PackageParser"),
                 cfg = "host",
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.aspect;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.TargetIdeInfo;
+import com.google.protobuf.repackaged.TextFormat;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Converts the text-format ide info written by the aspect into a length-delimited binary {@link
+ * TargetIdeInfo} record, so the IDE doesn't have to text-parse every target during sync.
+ */
+public final class IntellijInfoConverter {
+
+  /** The options for a {@link IntellijInfoConverter} action. */
+  @VisibleForTesting
+  static final class IntellijInfoConverterOptions {
+    Path input;
+    Path output;
+  }
+
+  @VisibleForTesting
+  static IntellijInfoConverterOptions parseArgs(String[] args) {
+    IntellijInfoConverterOptions options = new IntellijInfoConverterOptions();
+    options.input =
+        OptionParser.parseSingleOption(
+            args, "input", string -> FileSystems.getDefault().getPath(string));
+    options.output =
+        OptionParser.parseSingleOption(
+            args, "output", string -> FileSystems.getDefault().getPath(string));
+    return options;
+  }
+
+  /**
+   * The aspect runs this tool once per target, so it supports running as a persistent worker to
+   * avoid starting a JVM for each one.
+   */
+  public static void main(String[] args) throws Exception {
+    if (Arrays.asList(args).contains(WorkerProtocol.PERSISTENT_WORKER_FLAG)) {
+      WorkerProtocol.runPersistentWorker(System.in, System.out, IntellijInfoConverter::convert);
+      System.exit(0);
+    }
+    List<String> expandedArgs = expandParamsFiles(Arrays.asList(args));
+    int exitCode;
+    try (PrintWriter output = new PrintWriter(new OutputStreamWriter(System.err, UTF_8))) {
+      exitCode = convert(expandedArgs, output);
+    }
+    System.exit(exitCode);
+  }
+
+  /** Converts a single ide info file, returning the exit code. */
+  @VisibleForTesting
+  static int convert(List<String> args, PrintWriter output) {
+    IntellijInfoConverterOptions options = parseArgs(args.toArray(new String[0]));
+    try {
+      Preconditions.checkNotNull(options.input);
+      Preconditions.checkNotNull(options.output);
+      TargetIdeInfo info = readTextFormat(options.input);
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(options.output))) {
+        info.writeDelimitedTo(out);
+      }
+      return 0;
+    } catch (Throwable e) {
+      output.println("Error converting ide info " + options.input);
+      e.printStackTrace(output);
+      return 1;
+    }
+  }
+
+  /** Replaces '@file' arguments with the lines of that file, as Bazel's params files. */
+  private static List<String> expandParamsFiles(List<String> args) throws IOException {
+    List<String> expanded = new ArrayList<>();
+    for (String arg : args) {
+      if (arg.startsWith("@")) {
+        expanded.addAll(Files.readAllLines(Paths.get(arg.substring(1)), UTF_8));
+      } else {
+        expanded.add(arg);
+      }
+    }
+    return expanded;
+  }
+
+  @VisibleForTesting
+  static TargetIdeInfo readTextFormat(Path input) throws IOException {
+    try (Reader reader = Files.newBufferedReader(input, UTF_8)) {
+      TargetIdeInfo.Builder builder = TargetIdeInfo.newBuilder();
+      TextFormat.Parser parser = TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
+      parser.merge(reader, builder);
+      return builder.build();
+    }
+  }
+
+  private IntellijInfoConverter() {}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.aspect;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.repackaged.CodedInputStream;
+import com.google.protobuf.repackaged.CodedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A minimal implementation of Bazel's persistent worker protocol, letting a tool which runs once
+ * per target reuse a single JVM for all of them.
+ *
+ * <p>Requests and responses are length-delimited WorkRequest and WorkResponse protos (see Bazel's
+ * worker_protocol.proto). Only the fields used here are read and written, so they're encoded by
+ * hand rather than depending on the generated classes.
+ */
+final class WorkerProtocol {
+
+  /** The flag Bazel passes to a tool to start it as a persistent worker. */
+  static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+
+  // WorkRequest: repeated string arguments = 1; int32 request_id = 3;
+  private static final int REQUEST_ARGUMENTS_TAG = 1 << 3 | 2;
+  private static final int REQUEST_ID_TAG = 3 << 3;
+
+  // WorkResponse: int32 exit_code = 1; string output = 2; int32 request_id = 3;
+  private static final int RESPONSE_EXIT_CODE_FIELD = 1;
+  private static final int RESPONSE_OUTPUT_FIELD = 2;
+  private static final int RESPONSE_REQUEST_ID_FIELD = 3;
+
+  /** Handles a single work request. */
+  interface RequestHandler {
+    /** Runs the tool with the given arguments, returning its exit code. */
+    int handle(List<String> args, PrintWriter output);
+  }
+
+  /** A single unit of work sent by Bazel. */
+  static final class WorkRequest {
+    final ImmutableList<String> arguments;
+    final int requestId;
+
+    WorkRequest(ImmutableList<String> arguments, int requestId) {
+      this.arguments = arguments;
+      this.requestId = requestId;
+    }
+  }
+
+  /** Handles work requests from the input stream until it's closed. */
+  static void runPersistentWorker(InputStream in, OutputStream out, RequestHandler handler)
+      throws IOException {
+    WorkRequest request;
+    while ((request = readRequest(in)) != null) {
+      StringWriter output = new StringWriter();
+      int exitCode;
+      try (PrintWriter writer = new PrintWriter(output)) {
+        exitCode = handler.handle(request.arguments, writer);
+      }
+      writeResponse(out, exitCode, output.toString(), request.requestId);
+    }
+  }
+
+  /** Reads the next request, or returns null if the input stream has been closed. */
+  @Nullable
+  static WorkRequest readRequest(InputStream in) throws IOException {
+    int firstByte = in.read();
+    if (firstByte == -1) {
+      return null;
+    }
+    byte[] bytes = new byte[CodedInputStream.readRawVarint32(firstByte, in)];
+    ByteStreams.readFully(in, bytes);
+    CodedInputStream input = CodedInputStream.newInstance(bytes);
+    ImmutableList.Builder<String> arguments = ImmutableList.builder();
+    int requestId = 0;
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      if (tag == REQUEST_ARGUMENTS_TAG) {
+        arguments.add(input.readString());
+      } else if (tag == REQUEST_ID_TAG) {
+        requestId = input.readInt32();
+      } else {
+        input.skipField(tag);
+      }
+    }
+    return new WorkRequest(arguments.build(), requestId);
+  }
+
+  static void writeResponse(OutputStream out, int exitCode, String output, int requestId)
+      throws IOException {
+    int size =
+        CodedOutputStream.computeInt32Size(RESPONSE_EXIT_CODE_FIELD, exitCode)
+            + CodedOutputStream.computeStringSize(RESPONSE_OUTPUT_FIELD, output)
+            + CodedOutputStream.computeInt32Size(RESPONSE_REQUEST_ID_FIELD, requestId);
+    CodedOutputStream coded = CodedOutputStream.newInstance(out);
+    coded.writeUInt32NoTag(size);
+    coded.writeInt32(RESPONSE_EXIT_CODE_FIELD, exitCode);
+    coded.writeString(RESPONSE_OUTPUT_FIELD, output);
+    coded.writeInt32(RESPONSE_REQUEST_ID_FIELD, requestId);
+    coded.flush();
+    out.flush();
+  }
+
+  private WorkerProtocol() {}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.aspect;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.TargetIdeInfo;
+import com.google.protobuf.repackaged.CodedInputStream;
+import com.google.protobuf.repackaged.CodedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link IntellijInfoConverter}. */
+@RunWith(JUnit4.class)
+public class IntellijInfoConverterTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParseArgs() {
+    IntellijInfoConverter.IntellijInfoConverterOptions options =
+        IntellijInfoConverter.parseArgs(
+            new String[] {"--input", "foo.intellij-info.txt", "--output", "foo.intellij-info.pb"});
+    assertThat(options.input.toString()).isEqualTo("foo.intellij-info.txt");
+    assertThat(options.output.toString()).isEqualTo("foo.intellij-info.pb");
+  }
+
+  @Test
+  public void testReadTextFormat_ignoresUnknownFields() throws Exception {
+    Path input = folder.newFile("foo.intellij-info.txt").toPath();
+    Files.write(
+        input,
+        ("kind_string: \"java_library\"\n"
+                + "key { label: \"//foo:foo\" }\n"
+                + "tags: \"manual\"\n"
+                + "some_future_field: \"ignored\"\n")
+            .getBytes(UTF_8));
+
+    TargetIdeInfo info = IntellijInfoConverter.readTextFormat(input);
+    assertThat(info.getKindString()).isEqualTo("java_library");
+    assertThat(info.getKey().getLabel()).isEqualTo("//foo:foo");
+    assertThat(info.getTagsList()).containsExactly("manual");
+  }
+
+  @Test
+  public void testPersistentWorker_convertsEachRequest() throws Exception {
+    Path fooInput = writeInfo("foo.intellij-info.txt", "//foo:foo");
+    Path barInput = writeInfo("bar.intellij-info.txt", "//bar:bar");
+    Path fooOutput = folder.getRoot().toPath().resolve("foo.intellij-info.pb");
+    Path barOutput = folder.getRoot().toPath().resolve("bar.intellij-info.pb");
+
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 1, "--input", fooInput.toString(), "--output", fooOutput.toString());
+    writeRequest(requests, 2, "--input", barInput.toString(), "--output", barOutput.toString());
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    WorkerProtocol.runPersistentWorker(
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses,
+        IntellijInfoConverter::convert);
+
+    assertThat(readLabel(fooOutput)).isEqualTo("//foo:foo");
+    assertThat(readLabel(barOutput)).isEqualTo("//bar:bar");
+    CodedInputStream input = CodedInputStream.newInstance(responses.toByteArray());
+    assertThat(readResponse(input)).containsExactly(1, 0, 3, 1).inOrder();
+    assertThat(readResponse(input)).containsExactly(1, 0, 3, 2).inOrder();
+    assertThat(input.isAtEnd()).isTrue();
+  }
+
+  @Test
+  public void testPersistentWorker_failedRequestReturnsError() throws Exception {
+    ByteArrayOutputStream requests = new ByteArrayOutputStream();
+    writeRequest(requests, 7, "--input", "/does/not/exist", "--output", "/does/not/exist.pb");
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    WorkerProtocol.runPersistentWorker(
+        new ByteArrayInputStream(requests.toByteArray()),
+        responses,
+        IntellijInfoConverter::convert);
+
+    CodedInputStream input = CodedInputStream.newInstance(responses.toByteArray());
+    assertThat(readResponse(input)).containsExactly(1, 1, 3, 7).inOrder();
+  }
+
+  private Path writeInfo(String fileName, String label) throws Exception {
+    Path path = folder.newFile(fileName).toPath();
+    String info = "kind_string: \"java_library\"\nkey { label: \"" + label + "\" }\n";
+    Files.write(path, info.getBytes(UTF_8));
+    return path;
+  }
+
+  private static String readLabel(Path binaryInfo) throws Exception {
+    try (InputStream in = Files.newInputStream(binaryInfo)) {
+      return TargetIdeInfo.parseDelimitedFrom(in).getKey().getLabel();
+    }
+  }
+
+  /** Writes a length-delimited WorkRequest. */
+  private static void writeRequest(OutputStream out, int requestId, String... args)
+      throws Exception {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    CodedOutputStream coded = CodedOutputStream.newInstance(message);
+    for (String arg : args) {
+      coded.writeString(1, arg);
+    }
+    coded.writeInt32(3, requestId);
+    coded.flush();
+    CodedOutputStream delimited = CodedOutputStream.newInstance(out);
+    delimited.writeUInt32NoTag(message.size());
+    delimited.writeRawBytes(message.toByteArray());
+    delimited.flush();
+  }
+
+  /** Reads the int32 fields of a length-delimited WorkResponse, as field number/value pairs. */
+  private static List<Integer> readResponse(CodedInputStream input) throws Exception {
+    int oldLimit = input.pushLimit(input.readRawVarint32());
+    List<Integer> fields = new ArrayList<>();
+    int tag;
+    while ((tag = input.readTag()) != 0) {
+      int field = tag >>> 3;
+      if (field == 2) {
+        input.readString();
+        continue;
+      }
+      fields.add(field);
+      fields.add(input.readInt32());
+    }
+    input.popLimit(oldLimit);
+    return fields;
+  }
+}
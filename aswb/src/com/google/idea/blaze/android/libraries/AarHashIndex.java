@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import static com.google.common.io.Files.asByteSource;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persisted index of AAR content hashes, keyed by (path, size, modified time).
+ *
+ * <p>Hashing every AAR on every sync is expensive, and most AARs don't change between syncs. An AAR
+ * is only re-hashed if its size or timestamp differs from the previously indexed values.
+ */
+final class AarHashIndex {
+  private static final Logger logger = Logger.getInstance(AarHashIndex.class);
+
+  private static final int VERSION = 1;
+
+  private static final class Entry {
+    final long size;
+    final long modifiedTime;
+    final long hash;
+
+    Entry(long size, long modifiedTime, long hash) {
+      this.size = size;
+      this.modifiedTime = modifiedTime;
+      this.hash = hash;
+    }
+  }
+
+  private final ImmutableMap<String, Entry> previousEntries;
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private AarHashIndex(ImmutableMap<String, Entry> previousEntries) {
+    this.previousEntries = previousEntries;
+  }
+
+  static AarHashIndex empty() {
+    return new AarHashIndex(ImmutableMap.of());
+  }
+
+  /** Reads the index from disk, returning an empty index if it's missing or unreadable. */
+  static AarHashIndex load(File indexFile) {
+    if (!FileOperationProvider.getInstance().exists(indexFile)) {
+      return empty();
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != VERSION) {
+        return empty();
+      }
+      int size = in.readInt();
+      ImmutableMap.Builder<String, Entry> builder = ImmutableMap.builder();
+      for (int i = 0; i < size; i++) {
+        builder.put(in.readUTF(), new Entry(in.readLong(), in.readLong(), in.readLong()));
+      }
+      return new AarHashIndex(builder.build());
+    } catch (IOException | IllegalArgumentException e) {
+      logger.warn("Failed to read AAR hash index " + indexFile, e);
+      return empty();
+    }
+  }
+
+  /**
+   * Returns the content hash of the given AAR, reusing the indexed hash if the file's size and
+   * timestamp are unchanged. Safe to call concurrently.
+   */
+  long getHash(File aar) throws IOException {
+    FileOperationProvider fileOpProvider = FileOperationProvider.getInstance();
+    long size = fileOpProvider.getFileSize(aar);
+    long modifiedTime = fileOpProvider.getFileModifiedTime(aar);
+    String path = aar.getPath();
+    Entry entry = entries.get(path);
+    if (entry == null) {
+      entry = previousEntries.get(path);
+    }
+    if (entry == null || entry.size != size || entry.modifiedTime != modifiedTime) {
+      long hash = asByteSource(aar).hash(Hashing.farmHashFingerprint64()).asLong();
+      entry = new Entry(size, modifiedTime, hash);
+    }
+    entries.put(path, entry);
+    return entry.hash;
+  }
+
+  /**
+   * Writes all AARs hashed via {@link #getHash} since this index was loaded. Entries for AARs which
+   * weren't requested are dropped.
+   */
+  void save(File indexFile) {
+    File tempFile = new File(indexFile.getPath() + ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        Map<String, Entry> snapshot = ImmutableMap.copyOf(entries);
+        out.writeInt(VERSION);
+        out.writeInt(snapshot.size());
+        for (Map.Entry<String, Entry> mapEntry : snapshot.entrySet()) {
+          Entry entry = mapEntry.getValue();
+          out.writeUTF(mapEntry.getKey());
+          out.writeLong(entry.size);
+          out.writeLong(entry.modifiedTime);
+          out.writeLong(entry.hash);
+        }
+      }
+      Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.warn("Failed to write AAR hash index " + indexFile, e);
+    }
+  }
+}
@@ -15,23 +15,23 @@
  */
 package com.google.idea.blaze.android.libraries;
 
-import static com.google.common.io.Files.asByteSource;
-
 import com.android.SdkConstants;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.idea.blaze.android.sync.model.AarLibrary;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.filecache.FileCache;
 import com.google.idea.blaze.base.filecache.FileCacheSynchronizer;
 import com.google.idea.blaze.base.filecache.FileCacheSynchronizerTraits;
 import com.google.idea.blaze.base.io.FileOperationProvider;
 import com.google.idea.blaze.base.model.BlazeLibrary;
 import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.prefetch.FetchExecutor;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.PrintOutput;
@@ -56,6 +56,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -82,6 +83,7 @@ public class UnpackedAars {
   private static final Logger logger = Logger.getInstance(UnpackedAars.class);
 
   private final File cacheDir;
+  private final File hashIndexFile;
   private final boolean enabled;
 
   @Nullable private AarTraits aarTraits;
@@ -95,6 +97,7 @@ public class UnpackedAars {
     BlazeImportSettings importSettings =
         BlazeImportSettingsManager.getInstance(project).getImportSettings();
     this.cacheDir = getCacheDir(importSettings);
+    this.hashIndexFile = getHashIndexFile(importSettings);
     // We want this to be enabled in normal operation, so there's no user setting.
     this.enabled = !ApplicationManager.getApplication().isUnitTestMode();
   }
@@ -122,12 +125,21 @@ public class UnpackedAars {
             .collect(Collectors.toList());
 
     ArtifactLocationDecoder artifactLocationDecoder = projectData.getArtifactLocationDecoder();
+    List<File> aarFiles =
+        aarLibraries.stream()
+            .map(library -> artifactLocationDecoder.decode(library.aarArtifact))
+            .collect(Collectors.toList());
+    List<String> cacheKeys = cacheKeysForAars(aarFiles);
+    if (cacheKeys == null) {
+      return;
+    }
+
     BiMap<File, String> sourceAarFileToCacheKey = HashBiMap.create(aarLibraries.size());
     BiMap<File, String> sourceJarFileToCacheKey = HashBiMap.create(aarLibraries.size());
-    for (AarLibrary library : aarLibraries) {
-      File aarFile = artifactLocationDecoder.decode(library.aarArtifact);
-      String cacheKey = cacheKeyForAar(aarFile);
-      sourceAarFileToCacheKey.put(aarFile, cacheKey);
+    for (int i = 0; i < aarLibraries.size(); i++) {
+      AarLibrary library = aarLibraries.get(i);
+      String cacheKey = cacheKeys.get(i);
+      sourceAarFileToCacheKey.put(aarFiles.get(i), cacheKey);
       File jarFile =
           artifactLocationDecoder.decode(library.libraryArtifact.jarForIntellijLibrary());
       // Use the aar key for the jar as well.
@@ -158,14 +170,26 @@ public class UnpackedAars {
       }
     }
 
+    // Unpacking an AAR leaves the jars/ directory alone, so the AAR and jar synchronizers are
+    // independent and can run concurrently.
     FileCacheSynchronizer aarSynchronizer = new FileCacheSynchronizer(aarTraits);
-    if (!aarSynchronizer.synchronize(context, removeMissingFiles)) {
-      logger.warn("Unpacked AAR synchronization didn't complete");
-    }
+    ListenableFuture<Boolean> aarSyncFuture =
+        BlazeExecutor.getInstance()
+            .submit(() -> aarSynchronizer.synchronize(context, removeMissingFiles));
     FileCacheSynchronizer aarJarSynchronizer = new FileCacheSynchronizer(jarTraits);
     if (!aarJarSynchronizer.synchronize(context, removeMissingFiles)) {
       logger.warn("Unpacked AAR jar synchronization didn't complete");
     }
+    try {
+      if (!aarSyncFuture.get()) {
+        logger.warn("Unpacked AAR synchronization didn't complete");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      logger.warn("Unpacked AAR synchronization was interrupted");
+    } catch (ExecutionException e) {
+      logger.error(e);
+    }
   }
 
   /** Returns the merged jar derived from an AAR, in the unpacked AAR directory. */
@@ -213,14 +237,39 @@ public class UnpackedAars {
     jarTraits = null;
   }
 
-  private static String cacheKeyForAar(File aar) {
-    return cacheKeyInternal(aar) + SdkConstants.DOT_AAR;
+  /**
+   * Computes the cache keys for the given AARs in parallel, in the same order. Unchanged AARs reuse
+   * the content hash from the persisted hash index. Returns null if interrupted.
+   */
+  @Nullable
+  private List<String> cacheKeysForAars(List<File> aarFiles) {
+    AarHashIndex hashIndex = AarHashIndex.load(hashIndexFile);
+    List<ListenableFuture<String>> futures =
+        aarFiles.stream()
+            .map(aar -> FetchExecutor.EXECUTOR.submit(() -> cacheKeyForAar(hashIndex, aar)))
+            .collect(Collectors.toList());
+    List<String> cacheKeys;
+    try {
+      cacheKeys = Futures.allAsList(futures).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      logger.error(e);
+      return null;
+    }
+    hashIndex.save(hashIndexFile);
+    return cacheKeys;
+  }
+
+  private static String cacheKeyForAar(AarHashIndex hashIndex, File aar) {
+    return cacheKeyInternal(hashIndex, aar) + SdkConstants.DOT_AAR;
   }
 
-  private static String cacheKeyInternal(File aar) {
+  private static String cacheKeyInternal(AarHashIndex hashIndex, File aar) {
     long hash = aar.getParent().hashCode();
     try {
-      hash = asByteSource(aar).hash(Hashing.farmHashFingerprint64()).asLong();
+      hash = hashIndex.getHash(aar);
     } catch (IOException e) {
       logger.warn("Fail to calculate checksum of file " + aar, e);
     }
@@ -231,6 +280,10 @@ public class UnpackedAars {
     return new File(BlazeDataStorage.getProjectDataDir(importSettings), "aar_libraries");
   }
 
+  private static File getHashIndexFile(BlazeImportSettings importSettings) {
+    return new File(BlazeDataStorage.getProjectDataDir(importSettings), "aar_hashes.dat");
+  }
+
   static class FileCacheAdapter implements FileCache {
     @Override
     public String getName() {
@@ -331,9 +384,16 @@ public class UnpackedAars {
       File cacheDirectory = cacheDirectoryForCacheFile(cacheFile);
       try {
         if (fileOperationProvider.exists(cacheDirectory)) {
-          // NOTE: this forces AAR synchronizer to run before the Jar synchronizer (which puts
-          // files within the cacheDirectory).
-          fileOperationProvider.deleteRecursively(cacheDirectory);
+          // Leave the jars/ directory alone: it's owned by the concurrently running jar
+          // synchronizer, and the AAR's own jars are never extracted.
+          File[] children = fileOperationProvider.listFiles(cacheDirectory);
+          if (children != null) {
+            for (File child : children) {
+              if (!child.getName().equals(SdkConstants.FD_JARS)) {
+                fileOperationProvider.deleteRecursively(child);
+              }
+            }
+          }
         }
         ZipUtil.extract(
             sourceFile,
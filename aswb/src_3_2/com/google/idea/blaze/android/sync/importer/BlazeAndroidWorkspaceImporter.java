@@ -164,7 +164,7 @@ public final class BlazeAndroidWorkspaceImporter {
 
       TransitiveResourceMap.TransitiveResourceInfo transitiveResourceInfo =
           transitiveResourceMap.get(target.getKey());
-      for (ArtifactLocation artifactLocation : transitiveResourceInfo.transitiveResources) {
+      for (ArtifactLocation artifactLocation : transitiveResourceInfo.getTransitiveResources()) {
         if (artifactLocation.isSource()) {
           builder.addTransitiveResource(artifactLocation);
         } else {
@@ -174,7 +174,7 @@ public final class BlazeAndroidWorkspaceImporter {
           }
         }
       }
-      for (TargetKey resourceDependency : transitiveResourceInfo.transitiveResourceTargets) {
+      for (TargetKey resourceDependency : transitiveResourceInfo.getTransitiveResourceTargets()) {
         if (!resourceDependency.equals(target.getKey())) {
           builder.addTransitiveResourceDependency(resourceDependency);
         }
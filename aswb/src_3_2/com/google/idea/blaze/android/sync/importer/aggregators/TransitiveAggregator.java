@@ -15,60 +15,125 @@
  */
 package com.google.idea.blaze.android.sync.importer.aggregators;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
-import java.util.HashSet;
-import java.util.List;
+import com.intellij.openapi.diagnostic.Logger;
+import java.util.Arrays;
 import java.util.Map;
-import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.stream.IntStream;
 
 /** Performs a transitive reduction on the targets */
 public abstract class TransitiveAggregator<T> {
+  private static final Logger logger = Logger.getInstance(TransitiveAggregator.class);
+  private static final int MAX_REPORTED_CYCLIC_TARGETS = 10;
+
   private Map<TargetKey, T> targetKeyToResult;
 
   protected TransitiveAggregator(TargetMap targetMap) {
     this.targetKeyToResult = Maps.newHashMap();
-    Set<TargetIdeInfo> unaggregated = new HashSet<>(targetMap.targets());
-    while (!unaggregated.isEmpty()) {
-      List<TargetIdeInfo> toAggregate =
-          unaggregated.stream()
-              .filter(
-                  t ->
-                      // All dependencies are either
-                      StreamSupport.stream(getDependencies(t).spliterator(), false)
-                          // missing from targetMap, or
-                          .filter(targetMap::contains)
-                          // already aggregated.
-                          .allMatch(targetKeyToResult::containsKey))
-              .collect(Collectors.toList());
-      if (toAggregate.isEmpty()) {
-        // Shouldn't happen unless there is a cyclic dependency.
-        break;
+
+    // Give each target a dense int id, and record its dependencies within the target map. Missing
+    // dependencies are ignored.
+    ImmutableList<TargetIdeInfo> targets = ImmutableList.copyOf(targetMap.targets());
+    int targetCount = targets.size();
+    Map<TargetKey, Integer> ids = Maps.newHashMapWithExpectedSize(targetCount);
+    for (int i = 0; i < targetCount; i++) {
+      ids.put(targets.get(i).getKey(), i);
+    }
+    int[][] dependencies = new int[targetCount][];
+    int[] dependentCounts = new int[targetCount];
+    for (int i = 0; i < targetCount; i++) {
+      dependencies[i] = dependencyIds(targets.get(i), ids);
+      for (int dep : dependencies[i]) {
+        dependentCounts[dep]++;
+      }
+    }
+    int[][] dependents = new int[targetCount][];
+    for (int i = 0; i < targetCount; i++) {
+      dependents[i] = new int[dependentCounts[i]];
+      dependentCounts[i] = 0;
+    }
+    for (int i = 0; i < targetCount; i++) {
+      for (int dep : dependencies[i]) {
+        dependents[dep][dependentCounts[dep]++] = i;
+      }
+    }
+
+    // Kahn's algorithm: aggregate each target once all its dependencies have been aggregated.
+    int[] remainingDependencies = new int[targetCount];
+    int[] queue = new int[targetCount];
+    int queueEnd = 0;
+    for (int i = 0; i < targetCount; i++) {
+      remainingDependencies[i] = dependencies[i].length;
+      if (remainingDependencies[i] == 0) {
+        queue[queueEnd++] = i;
+      }
+    }
+    @SuppressWarnings("unchecked")
+    T[] results = (T[]) new Object[targetCount];
+    for (int queueStart = 0; queueStart < queueEnd; queueStart++) {
+      int id = queue[queueStart];
+      results[id] = aggregate(targets.get(id), dependencies[id], results);
+      for (int dependent : dependents[id]) {
+        if (--remainingDependencies[dependent] == 0) {
+          queue[queueEnd++] = dependent;
+        }
       }
-      toAggregate.forEach(this::aggregate);
-      unaggregated.removeAll(toAggregate);
+    }
+    if (queueEnd < targetCount) {
+      reportCycles(targets, remainingDependencies, targetCount - queueEnd);
     }
   }
 
+  private int[] dependencyIds(TargetIdeInfo target, Map<TargetKey, Integer> ids) {
+    int[] result = new int[8];
+    int count = 0;
+    for (TargetKey dep : getDependencies(target)) {
+      Integer id = ids.get(dep);
+      if (id == null) {
+        continue;
+      }
+      if (count == result.length) {
+        result = Arrays.copyOf(result, count * 2);
+      }
+      result[count++] = id;
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static void reportCycles(
+      ImmutableList<TargetIdeInfo> targets, int[] remainingDependencies, int unaggregatedCount) {
+    String examples =
+        IntStream.range(0, targets.size())
+            .filter(i -> remainingDependencies[i] > 0)
+            .limit(MAX_REPORTED_CYCLIC_TARGETS)
+            .mapToObj(i -> targets.get(i).getKey().toString())
+            .collect(Collectors.joining(", "));
+    logger.warn(
+        String.format(
+            "%d targets are part of, or depend on, a dependency cycle and weren't aggregated: %s%s",
+            unaggregatedCount,
+            examples,
+            unaggregatedCount > MAX_REPORTED_CYCLIC_TARGETS ? ", ..." : ""));
+  }
+
   protected T getOrDefault(TargetKey targetKey, T defaultValue) {
     T result = targetKeyToResult.get(targetKey);
     return result != null ? result : defaultValue;
   }
 
-  private void aggregate(TargetIdeInfo target) {
+  private T aggregate(TargetIdeInfo target, int[] dependencies, T[] results) {
     T result = createForTarget(target);
-    for (TargetKey dep : getDependencies(target)) {
-      // Since we aggregate dependencies first, this should already be in the map.
-      T depResult = targetKeyToResult.get(dep);
-      if (depResult != null) {
-        result = reduce(result, depResult);
-      }
+    for (int dep : dependencies) {
+      // Since we aggregate dependencies first, this is already populated.
+      result = reduce(result, results[dep]);
     }
     targetKeyToResult.put(target.getKey(), result);
+    return result;
   }
 
   protected abstract Iterable<TargetKey> getDependencies(TargetIdeInfo target);
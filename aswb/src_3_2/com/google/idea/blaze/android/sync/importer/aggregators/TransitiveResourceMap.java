@@ -16,13 +16,15 @@
 package com.google.idea.blaze.android.sync.importer.aggregators;
 
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
 import com.google.idea.blaze.android.sync.importer.aggregators.TransitiveResourceMap.TransitiveResourceInfo;
 import com.google.idea.blaze.base.ideinfo.AndroidIdeInfo;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -32,8 +34,58 @@ public class TransitiveResourceMap
   /** The transitive info computed per-rule */
   public static class TransitiveResourceInfo {
     public static final TransitiveResourceInfo NO_RESOURCES = new TransitiveResourceInfo();
-    public final Set<ArtifactLocation> transitiveResources = Sets.newHashSet();
-    public final Set<TargetKey> transitiveResourceTargets = Sets.newHashSet();
+    private final SharedSet<ArtifactLocation> transitiveResources = new SharedSet<>();
+    private final SharedSet<TargetKey> transitiveResourceTargets = new SharedSet<>();
+
+    public Set<ArtifactLocation> getTransitiveResources() {
+      return transitiveResources.get();
+    }
+
+    public Set<TargetKey> getTransitiveResourceTargets() {
+      return transitiveResourceTargets.get();
+    }
+  }
+
+  /**
+   * A set which may be shared with the results of other targets. It's only copied when elements
+   * not already present are added, so chains of targets with no resources of their own share a
+   * single set rather than each copying their dependencies' sets.
+   */
+  private static final class SharedSet<E> {
+    private Set<E> elements = ImmutableSet.of();
+    private boolean owned;
+
+    Set<E> get() {
+      return Collections.unmodifiableSet(elements);
+    }
+
+    void add(E element) {
+      ensureOwned();
+      elements.add(element);
+    }
+
+    void addAll(SharedSet<E> other) {
+      Set<E> otherElements = other.elements;
+      if (otherElements == elements || otherElements.isEmpty()) {
+        return;
+      }
+      if (elements.isEmpty()
+          || (otherElements.size() >= elements.size() && otherElements.containsAll(elements))) {
+        // dependency results are never modified once aggregated, so this is safe to share
+        elements = otherElements;
+        owned = false;
+        return;
+      }
+      ensureOwned();
+      elements.addAll(otherElements);
+    }
+
+    private void ensureOwned() {
+      if (!owned) {
+        elements = new HashSet<>(elements);
+        owned = true;
+      }
+    }
   }
 
   public TransitiveResourceMap(TargetMap targetMap) {
@@ -65,7 +117,7 @@ public class TransitiveResourceMap
     if (androidIdeInfo.getLegacyResources() != null) {
       return result;
     }
-    result.transitiveResources.addAll(androidIdeInfo.getResources());
+    androidIdeInfo.getResources().forEach(result.transitiveResources::add);
     result.transitiveResourceTargets.add(target.getKey());
     return result;
   }
@@ -145,7 +145,7 @@ public final class BlazeAndroidWorkspaceImporter {
 
       TransitiveResourceMap.TransitiveResourceInfo transitiveResourceInfo =
           transitiveResourceMap.get(target.getKey());
-      for (AndroidResFolder androidResFolder : transitiveResourceInfo.transitiveResources) {
+      for (AndroidResFolder androidResFolder : transitiveResourceInfo.getTransitiveResources()) {
         ArtifactLocation artifactLocation = androidResFolder.getRoot();
         if (shouldCreateFakeAar.test(artifactLocation)) {
           // All out of project view directory resources will be treated as resources of some aar
@@ -171,7 +171,7 @@ public final class BlazeAndroidWorkspaceImporter {
           }
         }
       }
-      for (TargetKey resourceDependency : transitiveResourceInfo.transitiveResourceTargets) {
+      for (TargetKey resourceDependency : transitiveResourceInfo.getTransitiveResourceTargets()) {
         if (!resourceDependency.equals(target.getKey())) {
           builder.addTransitiveResourceDependency(resourceDependency);
           TargetIdeInfo dependencyTarget = input.targetMap.get(resourceDependency);
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.android.libraries;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AarHashIndex}. */
+@RunWith(JUnit4.class)
+public class AarHashIndexTest extends BlazeTestCase {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(FileOperationProvider.class, new FileOperationProvider());
+  }
+
+  @Test
+  public void testUnchangedAar_notRehashedAfterReload() throws IOException {
+    File aar = writeAar("lib.aar", "contents1", 1000L);
+    File indexFile = new File(tmpFolder.getRoot(), "aar_hashes.dat");
+
+    AarHashIndex index = AarHashIndex.load(indexFile);
+    long originalHash = index.getHash(aar);
+    index.save(indexFile);
+
+    // Same size and timestamp: the indexed hash is reused, even though the contents differ.
+    writeAar("lib.aar", "contents2", 1000L);
+    assertThat(AarHashIndex.load(indexFile).getHash(aar)).isEqualTo(originalHash);
+  }
+
+  @Test
+  public void testModifiedAar_rehashed() throws IOException {
+    File aar = writeAar("lib.aar", "contents1", 1000L);
+    File indexFile = new File(tmpFolder.getRoot(), "aar_hashes.dat");
+
+    AarHashIndex index = AarHashIndex.load(indexFile);
+    long originalHash = index.getHash(aar);
+    index.save(indexFile);
+
+    writeAar("lib.aar", "contents2", 2000L);
+    AarHashIndex reloaded = AarHashIndex.load(indexFile);
+    assertThat(reloaded.getHash(aar)).isNotEqualTo(originalHash);
+    assertThat(reloaded.getHash(aar)).isEqualTo(AarHashIndex.empty().getHash(aar));
+  }
+
+  @Test
+  public void testCorruptIndex_ignored() throws IOException {
+    File aar = writeAar("lib.aar", "contents", 1000L);
+    File indexFile = tmpFolder.newFile("aar_hashes.dat");
+    Files.write(indexFile.toPath(), new byte[] {0, 0, 0, 1, 0, 0, 0, 5, 1});
+
+    assertThat(AarHashIndex.load(indexFile).getHash(aar))
+        .isEqualTo(AarHashIndex.empty().getHash(aar));
+  }
+
+  private File writeAar(String name, String contents, long modifiedTime) throws IOException {
+    File aar = new File(tmpFolder.getRoot(), name);
+    Files.write(aar.toPath(), contents.getBytes(UTF_8));
+    assertThat(aar.setLastModified(modifiedTime)).isTrue();
+    return aar;
+  }
+}
@@ -127,6 +127,29 @@ public class TransitiveAggregatorTest extends BlazeTestCase {
             .build());
   }
 
+  @Test
+  public void testAggregateCyclicDependencySkipsOnlyAffectedTargets() {
+    TargetKeyAggregator aggregator =
+        new TargetKeyAggregator(
+            TargetMapBuilder.builder()
+                .addTarget(
+                    mockTargetIdeInfoBuilder()
+                        .setLabel("//:foo")
+                        .addDependency("//:bar")
+                        .addDependency("//:qux")
+                        .build())
+                .addTarget(
+                    mockTargetIdeInfoBuilder().setLabel("//:bar").addDependency("//:foo").build())
+                .addTarget(
+                    mockTargetIdeInfoBuilder().setLabel("//:baz").addDependency("//:foo").build())
+                .addTarget(mockTargetIdeInfoBuilder().setLabel("//:qux").build())
+                .build());
+    assertThat(aggregator.get("//:foo")).isNull();
+    assertThat(aggregator.get("//:bar")).isNull();
+    assertThat(aggregator.get("//:baz")).isNull();
+    assertThat(aggregator.get("//:qux")).containsExactly("//:qux");
+  }
+
   @Test
   public void testAggregateMissingDependency() {
     createCount = 0;
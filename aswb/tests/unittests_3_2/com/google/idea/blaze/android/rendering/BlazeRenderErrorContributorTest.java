@@ -47,6 +47,7 @@ import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
 import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.sync.SyncCache;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
 import com.google.idea.blaze.base.targetmaps.SourceToTargetMap;
@@ -105,6 +106,7 @@ public class BlazeRenderErrorContributorTest extends BlazeTestCase {
 
     projectServices.register(ProjectFileIndex.class, mock(ProjectFileIndex.class));
     projectServices.register(BuildReferenceManager.class, new MockBuildReferenceManager(project));
+    projectServices.register(SyncCache.class, new SyncCache(project));
     projectServices.register(TransitiveDependencyMap.class, new TransitiveDependencyMap(project));
     projectServices.register(ProjectScopeBuilder.class, new ProjectScopeBuilderImpl(project));
     projectServices.register(
@@ -18,8 +18,10 @@ package com.google.idea.blaze.base.command.buildresult;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Queues;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.NamedSetOfFilesId;
@@ -39,11 +41,13 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
@@ -59,7 +63,25 @@ public final class BuildEventProtocolOutputReader {
    * @throws IOException if the BEP {@link InputStream} is incorrectly formatted
    */
   public static BlazeTestResults parseTestResults(InputStream inputStream) throws IOException {
+    return parseTestResults(inputStream, targetResults -> {});
+  }
+
+  /**
+   * Reads all test results from a BEP-formatted {@link InputStream}, passing each target's results
+   * to the consumer as soon as blaze reports the target's test summary (i.e. once all of its runs
+   * and shards are complete). Targets without a test summary are only included in the returned
+   * results.
+   *
+   * <p>Used to process test results while blaze is still running, when reading from a {@link
+   * TailingInputStream}.
+   *
+   * @throws IOException if the BEP {@link InputStream} is incorrectly formatted
+   */
+  public static BlazeTestResults parseTestResults(
+      InputStream inputStream, Consumer<BlazeTestResults> targetResultsConsumer)
+      throws IOException {
     Map<String, Kind> labelToTargetKind = new HashMap<>();
+    ListMultimap<String, BlazeTestResult> pendingResults = ArrayListMultimap.create();
     ImmutableList.Builder<BlazeTestResult> results = ImmutableList.builder();
     BuildEventStreamProtos.BuildEvent event;
     while ((event = BuildEventStreamProtos.BuildEvent.parseDelimitedFrom(inputStream)) != null) {
@@ -80,7 +102,17 @@ public final class BuildEventProtocolOutputReader {
           continue;
         case TEST_RESULT:
           label = event.getId().getTestResult().getLabel();
-          results.add(parseTestResult(label, labelToTargetKind.get(label), event.getTestResult()));
+          BlazeTestResult result =
+              parseTestResult(label, labelToTargetKind.get(label), event.getTestResult());
+          results.add(result);
+          pendingResults.put(label, result);
+          continue;
+        case TEST_SUMMARY:
+          List<BlazeTestResult> targetResults =
+              pendingResults.removeAll(event.getId().getTestSummary().getLabel());
+          if (!targetResults.isEmpty()) {
+            targetResultsConsumer.accept(BlazeTestResults.fromFlatList(targetResults));
+          }
           continue;
         default: // continue
       }
@@ -124,12 +156,31 @@ public final class BuildEventProtocolOutputReader {
    */
   public static ImmutableList<File> parseAllOutputFilenames(
       InputStream inputStream, Predicate<String> fileFilter) throws IOException {
-    ImmutableSet.Builder<File> files = ImmutableSet.builder();
+    return parseAllOutputFilenames(inputStream, fileFilter, file -> {});
+  }
+
+  /**
+   * Reads all output files listed in the BEP output that satisfy the specified predicate, passing
+   * each distinct file to the consumer as soon as it's read.
+   *
+   * <p>Used to process output files while the build is still running, when reading from a {@link
+   * TailingInputStream}.
+   *
+   * @throws IOException if the BEP output file is incorrectly formatted
+   */
+  public static ImmutableList<File> parseAllOutputFilenames(
+      InputStream inputStream, Predicate<String> fileFilter, Consumer<File> newFileConsumer)
+      throws IOException {
+    Set<File> files = new LinkedHashSet<>();
     BuildEventStreamProtos.BuildEvent event;
     while ((event = BuildEventStreamProtos.BuildEvent.parseDelimitedFrom(inputStream)) != null) {
-      files.addAll(parseFilenames(event, fileFilter));
+      for (File file : parseFilenames(event, fileFilter)) {
+        if (files.add(file)) {
+          newFileConsumer.accept(file);
+        }
+      }
     }
-    return files.build().asList();
+    return ImmutableList.copyOf(files);
   }
 
   /**
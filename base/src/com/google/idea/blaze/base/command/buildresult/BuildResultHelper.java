@@ -20,6 +20,8 @@ import com.google.idea.blaze.base.model.primitives.Label;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 
 /** Assists in getting build artifacts from a build operation. */
 public interface BuildResultHelper extends AutoCloseable {
@@ -47,6 +49,19 @@ public interface BuildResultHelper extends AutoCloseable {
    */
   ImmutableList<File> getBuildArtifactsForTarget(Label target) throws GetArtifactsException;
 
+  /**
+   * Starts reading build artifacts while the build is still running, passing each artifact to the
+   * consumer (on a background thread) as soon as the build announces it. Must be called before the
+   * build starts.
+   *
+   * <p>Returns null if streaming isn't supported, in which case callers should fall back to {@link
+   * #getBuildArtifacts} once the build is complete.
+   */
+  @Nullable
+  default StreamedBuildArtifacts streamBuildArtifacts(Consumer<File> consumer) {
+    return null;
+  }
+
   /** Returns all build artifacts belonging to the given output groups. */
   ImmutableList<File> getArtifactsForOutputGroups(Collection<String> outputGroups)
       throws GetArtifactsException;
@@ -54,6 +69,15 @@ public interface BuildResultHelper extends AutoCloseable {
   @Override
   void close();
 
+  /** Build artifacts read while the build is running. */
+  interface StreamedBuildArtifacts {
+    /**
+     * Returns all build artifacts, blocking until the remaining build output has been read. May
+     * only be called once the build is complete.
+     */
+    ImmutableList<File> getAll() throws GetArtifactsException;
+  }
+
   /** Indicates a failure to get artifact information */
   class GetArtifactsException extends Exception {
     public GetArtifactsException(String message) {
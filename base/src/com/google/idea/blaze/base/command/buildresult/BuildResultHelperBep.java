@@ -16,6 +16,8 @@
 package com.google.idea.blaze.base.command.buildresult;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.command.info.BlazeInfo;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.intellij.openapi.diagnostic.Logger;
@@ -28,7 +30,10 @@ import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import javax.annotation.Nullable;
 
 /**
  * Build event protocol implementation to get build results.
@@ -41,6 +46,7 @@ class BuildResultHelperBep implements BuildResultHelper {
   private static final Logger logger = Logger.getInstance(BuildResultHelperBep.class);
   private final File outputFile;
   private final Predicate<String> fileFilter;
+  @Nullable private TailingInputStream streamingInput;
 
   BuildResultHelperBep(Predicate<String> fileFilter) {
     this.fileFilter = fileFilter;
@@ -73,6 +79,33 @@ class BuildResultHelperBep implements BuildResultHelper {
                 input, outputGroups, fileFilter));
   }
 
+  @Override
+  public StreamedBuildArtifacts streamBuildArtifacts(Consumer<File> consumer) {
+    TailingInputStream tailingStream = new TailingInputStream(outputFile);
+    streamingInput = tailingStream;
+    ListenableFuture<ImmutableList<File>> future =
+        BlazeExecutor.getInstance()
+            .submit(
+                () -> {
+                  try (InputStream inputStream = new BufferedInputStream(tailingStream)) {
+                    return BuildEventProtocolOutputReader.parseAllOutputFilenames(
+                        inputStream, fileFilter, consumer);
+                  }
+                });
+    return () -> {
+      tailingStream.finish();
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GetArtifactsException("Interrupted while reading BEP output");
+      } catch (ExecutionException e) {
+        logger.warn(e);
+        throw new GetArtifactsException(e.getCause().getMessage());
+      }
+    };
+  }
+
   private <V> V readResult(BepReader<V> readAction) throws GetArtifactsException {
     try (InputStream inputStream = new BufferedInputStream(new FileInputStream(outputFile))) {
       return readAction.read(inputStream);
@@ -84,6 +117,13 @@ class BuildResultHelperBep implements BuildResultHelper {
 
   @Override
   public void close() {
+    if (streamingInput != null) {
+      try {
+        streamingInput.close();
+      } catch (IOException e) {
+        logger.warn(e);
+      }
+    }
     if (!outputFile.delete()) {
       logger.warn("Could not delete BEP output file: " + outputFile);
     }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.command.buildresult;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link InputStream} reading a file which is still being written by another process (for
+ * example, the BEP output file of a running blaze invocation).
+ *
+ * <p>Reads block until more data is available. The end of the stream is only reported once {@link
+ * #finish} has been called, and all remaining data has been read. The file needn't exist when the
+ * stream is created.
+ */
+public final class TailingInputStream extends InputStream {
+
+  private static final long POLL_INTERVAL_MILLIS = 100;
+
+  private final File file;
+  private volatile boolean finished = false;
+  private volatile boolean closed = false;
+  @Nullable private volatile InputStream input;
+
+  public TailingInputStream(File file) {
+    this.file = file;
+  }
+
+  /** Indicates the file is complete; no more data will be written to it. */
+  public void finish() {
+    finished = true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] buffer = new byte[1];
+    int read = read(buffer, 0, 1);
+    return read == -1 ? -1 : buffer[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    while (!closed) {
+      // read the flag before the data, so nothing written before finishing is missed
+      boolean wasFinished = finished;
+      if (input == null && file.exists()) {
+        input = new FileInputStream(file);
+      }
+      if (input != null) {
+        int read = input.read(buffer, offset, length);
+        if (read > 0) {
+          return read;
+        }
+      }
+      if (wasFinished) {
+        return -1;
+      }
+      try {
+        Thread.sleep(POLL_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for " + file);
+      }
+    }
+    closeInput();
+    return -1;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    closeInput();
+  }
+
+  private void closeInput() throws IOException {
+    InputStream input = this.input;
+    if (input != null) {
+      input.close();
+    }
+  }
+}
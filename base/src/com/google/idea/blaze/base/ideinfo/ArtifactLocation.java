@@ -81,7 +81,7 @@ public final class ArtifactLocation
         .build();
   }
 
-  private String getRootExecutionPathFragment() {
+  String getRootExecutionPathFragment() {
     return rootExecutionPathFragment;
   }
 
@@ -28,7 +28,9 @@ public final class CIdeInfo implements ProtoWrapper<IntellijIdeInfo.CIdeInfo> {
 
   private final ImmutableList<String> localCopts;
   // From the cpp compilation context provider.
-  // These should all be for the entire transitive closure.
+  // These should all be for the entire transitive closure. They're often identical across many
+  // targets, so are interned to share a single copy in memory (serialized project data still
+  // stores each target's copy).
   private final ImmutableList<ExecutionRootPath> transitiveIncludeDirectories;
   private final ImmutableList<ExecutionRootPath> transitiveQuoteIncludeDirectories;
   private final ImmutableList<String> transitiveDefines;
@@ -47,10 +49,13 @@ public final class CIdeInfo implements ProtoWrapper<IntellijIdeInfo.CIdeInfo> {
     this.headers = headers;
     this.textualHeaders = textualHeaders;
     this.localCopts = localCopts;
-    this.transitiveIncludeDirectories = transitiveIncludeDirectories;
-    this.transitiveQuoteIncludeDirectories = transitiveQuoteIncludeDirectories;
-    this.transitiveDefines = transitiveDefines;
-    this.transitiveSystemIncludeDirectories = transitiveSystemIncludeDirectories;
+    this.transitiveIncludeDirectories =
+        ProjectDataInterner.internList(transitiveIncludeDirectories);
+    this.transitiveQuoteIncludeDirectories =
+        ProjectDataInterner.internList(transitiveQuoteIncludeDirectories);
+    this.transitiveDefines = ProjectDataInterner.internList(transitiveDefines);
+    this.transitiveSystemIncludeDirectories =
+        ProjectDataInterner.internList(transitiveSystemIncludeDirectories);
   }
 
   static CIdeInfo fromProto(IntellijIdeInfo.CIdeInfo proto) {
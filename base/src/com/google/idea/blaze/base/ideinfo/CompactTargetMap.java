@@ -0,0 +1,523 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ideinfo;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.Dependency.DependencyType;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.protobuf.repackaged.InvalidProtocolBufferException;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A compact, column-oriented representation of a collection of {@link TargetIdeInfo}.
+ *
+ * <p>Rather than one object graph per target, all strings are dictionary-encoded into a single
+ * UTF-8 buffer, artifact locations and target keys are stored as rows of int indices into that
+ * dictionary, and each target's dependencies, tags and sources are packed into shared int arrays.
+ * The remaining, language-specific ide info is kept in its serialized proto form.
+ *
+ * <p>The common accessors ({@link #getKind}, {@link #getDependencies}, etc.) decode only the
+ * requested column. {@link #get} and {@link #views} return {@link TargetIdeInfo} views onto a row,
+ * which decode the same way; the language-specific ide info is parsed only when a view first needs
+ * it, and a bounded number of recently parsed targets are softly cached.
+ */
+public final class CompactTargetMap {
+  private static final Logger logger = Logger.getInstance(CompactTargetMap.class);
+
+  private static final int NONE = -1;
+  private static final byte IS_SOURCE = 1;
+  private static final byte IS_EXTERNAL = 2;
+
+  private static final DependencyType[] DEPENDENCY_TYPES = DependencyType.values();
+
+  private static final int MAX_CACHED_TARGETS = 10_000;
+
+  private final StringTable strings;
+
+  // Artifact locations. The relative path is split into a directory and a file name, as the
+  // directories are heavily shared.
+  private final int[] artifactRoots;
+  private final int[] artifactDirectories;
+  private final int[] artifactNames;
+  private final byte[] artifactFlags;
+
+  // Target keys. The label is split into a package and a target name. The first 'targetCount'
+  // keys are the targets in this map, sorted by label; the remainder are keys only referenced as
+  // dependencies.
+  private final int[] keyPackages;
+  private final int[] keyNames;
+  private final int[] aspectIdOffsets;
+  private final int[] aspectIds;
+
+  // Per-target columns, indexed by target row.
+  private final int targetCount;
+  private final Kind[] kindTable;
+  private final int[] kinds;
+  private final int[] buildFiles;
+  private final int[] dependencyOffsets;
+  private final int[] dependencies;
+  private final byte[] dependencyTypes;
+  private final int[] tagOffsets;
+  private final int[] tags;
+  private final int[] sourceOffsets;
+  private final int[] sources;
+  private final byte[][] languageInfos;
+
+  /** Decoded targets, keyed by target row. */
+  private final Cache<Integer, TargetIdeInfo> decodedTargets =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_TARGETS).softValues().build();
+
+  private CompactTargetMap(Builder builder) {
+    this.strings = builder.strings.build();
+    this.artifactRoots = builder.artifactRoots.toArray();
+    this.artifactDirectories = builder.artifactDirectories.toArray();
+    this.artifactNames = builder.artifactNames.toArray();
+    this.artifactFlags = builder.artifactFlags.toByteArray();
+    this.keyPackages = builder.keyPackages.toArray();
+    this.keyNames = builder.keyNames.toArray();
+    this.aspectIdOffsets = builder.aspectIdOffsets.toArray();
+    this.aspectIds = builder.aspectIds.toArray();
+    this.targetCount = builder.targetCount;
+    this.kindTable = builder.kindTable.toArray(new Kind[0]);
+    this.kinds = builder.kinds.toArray();
+    this.buildFiles = builder.buildFiles.toArray();
+    this.dependencyOffsets = builder.dependencyOffsets.toArray();
+    this.dependencies = builder.dependencies.toArray();
+    this.dependencyTypes = builder.dependencyTypes.toByteArray();
+    this.tagOffsets = builder.tagOffsets.toArray();
+    this.tags = builder.tags.toArray();
+    this.sourceOffsets = builder.sourceOffsets.toArray();
+    this.sources = builder.sources.toArray();
+    this.languageInfos = builder.languageInfos.toArray(new byte[0][]);
+  }
+
+  /** Encodes the given targets. Later targets replace earlier targets with the same key. */
+  public static CompactTargetMap create(Collection<TargetIdeInfo> targets) {
+    Map<TargetKey, TargetIdeInfo> byKey = new HashMap<>();
+    for (TargetIdeInfo target : targets) {
+      byKey.put(target.getKey(), target);
+    }
+    List<TargetIdeInfo> sorted = new ArrayList<>(byKey.values());
+    sorted.sort(Comparator.comparing(t -> keyString(t.getKey())));
+    return new Builder(sorted).build();
+  }
+
+  public int size() {
+    return targetCount;
+  }
+
+  public boolean contains(TargetKey key) {
+    return findRow(key) != NONE;
+  }
+
+  /** Returns the keys of all targets in this map. */
+  public ImmutableSet<TargetKey> keys() {
+    ImmutableSet.Builder<TargetKey> builder = ImmutableSet.builder();
+    for (int row = 0; row < targetCount; row++) {
+      builder.add(decodeKey(row));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns a view of the target with the given key, or null if it isn't in this map. See {@link
+   * #views}.
+   */
+  @Nullable
+  public TargetIdeInfo get(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? view(row) : null;
+  }
+
+  /**
+   * Returns lightweight views of all targets in this map, keyed by target key. Each view holds only
+   * its key and kind; other fields are decoded from this map on request, and the language-specific
+   * ide info of a bounded number of recently used targets is softly cached.
+   */
+  public ImmutableMap<TargetKey, TargetIdeInfo> views() {
+    ImmutableMap.Builder<TargetKey, TargetIdeInfo> builder = ImmutableMap.builder();
+    for (int row = 0; row < targetCount; row++) {
+      TargetIdeInfo view = view(row);
+      builder.put(view.getKey(), view);
+    }
+    return builder.build();
+  }
+
+  /** Returns views of all targets in this map. See {@link #views}. */
+  public ImmutableList<TargetIdeInfo> targets() {
+    return views().values().asList();
+  }
+
+  @Nullable
+  public Kind getKind(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? kindTable[kinds[row]] : null;
+  }
+
+  @Nullable
+  public ArtifactLocation getBuildFile(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? buildFile(row) : null;
+  }
+
+  public ImmutableList<Dependency> getDependencies(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? dependencies(row) : ImmutableList.of();
+  }
+
+  public ImmutableList<String> getTags(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? tags(row) : ImmutableList.of();
+  }
+
+  public ImmutableSet<ArtifactLocation> getSources(TargetKey key) {
+    int row = findRow(key);
+    return row != NONE ? sources(row) : ImmutableSet.of();
+  }
+
+  private TargetIdeInfo view(int row) {
+    return TargetIdeInfo.compactView(decodeKey(row), kindTable[kinds[row]], this, row);
+  }
+
+  @Nullable
+  ArtifactLocation buildFile(int row) {
+    return buildFiles[row] != NONE ? decodeArtifact(buildFiles[row]) : null;
+  }
+
+  ImmutableList<Dependency> dependencies(int row) {
+    return decodeDependencies(row);
+  }
+
+  ImmutableList<String> tags(int row) {
+    return decodeStrings(tags, tagOffsets[row], tagOffsets[row + 1]);
+  }
+
+  ImmutableSet<ArtifactLocation> sources(int row) {
+    ImmutableSet.Builder<ArtifactLocation> builder = ImmutableSet.builder();
+    for (int i = sourceOffsets[row]; i < sourceOffsets[row + 1]; i++) {
+      builder.add(decodeArtifact(sources[i]));
+    }
+    return builder.build();
+  }
+
+  /** Returns the complete target in the given row, decoding it if it isn't already cached. */
+  TargetIdeInfo decode(int row) {
+    TargetIdeInfo target = decodedTargets.getIfPresent(row);
+    if (target == null) {
+      target = decodeTarget(row);
+      decodedTargets.put(row, target);
+    }
+    return target;
+  }
+
+  /** Binary searches the sorted target rows, without decoding any targets. */
+  private int findRow(TargetKey key) {
+    String keyString = keyString(key);
+    int low = 0;
+    int high = targetCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = encodedKeyString(mid).compareTo(keyString);
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return NONE;
+  }
+
+  private TargetIdeInfo decodeTarget(int row) {
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    if (languageInfos[row] != null) {
+      try {
+        builder.mergeFrom(languageInfos[row]);
+      } catch (InvalidProtocolBufferException e) {
+        // keep the columns we have, rather than dropping the target entirely
+        logger.warn("Couldn't decode ide info for target " + encodedKeyString(row), e);
+        builder.clear();
+      }
+    }
+    builder.setKey(decodeKey(row).toProto()).setKindString(kindTable[kinds[row]].getKindString());
+    if (buildFiles[row] != NONE) {
+      builder.setBuildFileArtifactLocation(decodeArtifact(buildFiles[row]).toProto());
+    }
+    builder.addAllDeps(ProtoWrapper.mapToProtos(decodeDependencies(row)));
+    builder.addAllTags(decodeStrings(tags, tagOffsets[row], tagOffsets[row + 1]));
+    return TargetIdeInfo.fromProto(builder.build());
+  }
+
+  private TargetKey decodeKey(int key) {
+    String label = decodeLabel(key);
+    List<String> aspects =
+        decodeStrings(aspectIds, aspectIdOffsets[key], aspectIdOffsets[key + 1]);
+    return TargetKey.forGeneralTarget(Label.fromProto(label), aspects);
+  }
+
+  private String decodeLabel(int key) {
+    String pkg = strings.get(keyPackages[key]);
+    return keyNames[key] != NONE ? pkg + ":" + strings.get(keyNames[key]) : pkg;
+  }
+
+  private ImmutableList<Dependency> decodeDependencies(int row) {
+    ImmutableList.Builder<Dependency> builder = ImmutableList.builder();
+    for (int i = dependencyOffsets[row]; i < dependencyOffsets[row + 1]; i++) {
+      builder.add(
+          ProjectDataInterner.intern(
+              new Dependency(decodeKey(dependencies[i]), DEPENDENCY_TYPES[dependencyTypes[i]])));
+    }
+    return builder.build();
+  }
+
+  private ArtifactLocation decodeArtifact(int artifact) {
+    int directory = artifactDirectories[artifact];
+    String name = strings.get(artifactNames[artifact]);
+    return ProjectDataInterner.intern(
+        ArtifactLocation.builder()
+            .setRootExecutionPathFragment(strings.get(artifactRoots[artifact]).intern())
+            .setRelativePath(directory != NONE ? strings.get(directory) + "/" + name : name)
+            .setIsSource((artifactFlags[artifact] & IS_SOURCE) != 0)
+            .setIsExternal((artifactFlags[artifact] & IS_EXTERNAL) != 0)
+            .build());
+  }
+
+  private ImmutableList<String> decodeStrings(int[] indices, int start, int end) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (int i = start; i < end; i++) {
+      builder.add(ProjectDataInterner.intern(strings.get(indices[i])));
+    }
+    return builder.build();
+  }
+
+  /** The string used to order target rows: the label, followed by any aspect ids. */
+  private String encodedKeyString(int key) {
+    StringBuilder builder = new StringBuilder(decodeLabel(key));
+    for (int i = aspectIdOffsets[key]; i < aspectIdOffsets[key + 1]; i++) {
+      builder.append('#').append(strings.get(aspectIds[i]));
+    }
+    return builder.toString();
+  }
+
+  private static String keyString(TargetKey key) {
+    return key.toString();
+  }
+
+  /**
+   * A dictionary of strings, stored as a single UTF-8 buffer. Strings are decoded on each access.
+   */
+  private static final class StringTable {
+    private final byte[] data;
+    private final int[] offsets;
+
+    StringTable(byte[] data, int[] offsets) {
+      this.data = data;
+      this.offsets = offsets;
+    }
+
+    String get(int index) {
+      return new String(data, offsets[index], offsets[index + 1] - offsets[index], UTF_8);
+    }
+  }
+
+  private static final class StringTableBuilder {
+    private final Map<String, Integer> indices = new HashMap<>();
+    private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    private final IntList offsets = new IntList();
+
+    StringTableBuilder() {
+      offsets.add(0);
+    }
+
+    int add(String string) {
+      Integer index = indices.get(string);
+      if (index == null) {
+        index = indices.size();
+        indices.put(string, index);
+        byte[] bytes = string.getBytes(UTF_8);
+        data.write(bytes, 0, bytes.length);
+        offsets.add(data.size());
+      }
+      return index;
+    }
+
+    StringTable build() {
+      return new StringTable(data.toByteArray(), offsets.toArray());
+    }
+  }
+
+  /** Accumulates the columns for a list of targets, sorted by {@link #keyString}. */
+  private static final class Builder {
+    final StringTableBuilder strings = new StringTableBuilder();
+
+    final Map<ArtifactLocation, Integer> artifactIndices = new HashMap<>();
+    final IntList artifactRoots = new IntList();
+    final IntList artifactDirectories = new IntList();
+    final IntList artifactNames = new IntList();
+    final ByteArrayOutputStream artifactFlags = new ByteArrayOutputStream();
+
+    final Map<TargetKey, Integer> keyIndices = new HashMap<>();
+    final IntList keyPackages = new IntList();
+    final IntList keyNames = new IntList();
+    final IntList aspectIdOffsets = new IntList();
+    final IntList aspectIds = new IntList();
+
+    final int targetCount;
+    final Map<Kind, Integer> kindIndices = new HashMap<>();
+    final List<Kind> kindTable = new ArrayList<>();
+    final IntList kinds = new IntList();
+    final IntList buildFiles = new IntList();
+    final IntList dependencyOffsets = new IntList();
+    final IntList dependencies = new IntList();
+    final ByteArrayOutputStream dependencyTypes = new ByteArrayOutputStream();
+    final IntList tagOffsets = new IntList();
+    final IntList tags = new IntList();
+    final IntList sourceOffsets = new IntList();
+    final IntList sources = new IntList();
+    final List<byte[]> languageInfos = new ArrayList<>();
+
+    private final List<TargetIdeInfo> targets;
+
+    Builder(List<TargetIdeInfo> sortedTargets) {
+      this.targets = sortedTargets;
+      this.targetCount = sortedTargets.size();
+      aspectIdOffsets.add(0);
+      dependencyOffsets.add(0);
+      tagOffsets.add(0);
+      sourceOffsets.add(0);
+    }
+
+    CompactTargetMap build() {
+      // Target rows come first in the key table, so a target's row is also its key index.
+      for (TargetIdeInfo target : targets) {
+        addKey(target.getKey());
+      }
+      for (TargetIdeInfo target : targets) {
+        addTarget(target);
+      }
+      return new CompactTargetMap(this);
+    }
+
+    private void addTarget(TargetIdeInfo target) {
+      Kind kind = target.getKind();
+      kinds.add(
+          kindIndices.computeIfAbsent(
+              kind,
+              k -> {
+                kindTable.add(k);
+                return kindTable.size() - 1;
+              }));
+      buildFiles.add(target.getBuildFile() != null ? addArtifact(target.getBuildFile()) : NONE);
+      for (Dependency dependency : target.getDependencies()) {
+        dependencies.add(addKey(dependency.getTargetKey()));
+        dependencyTypes.write(dependency.getDependencyType().ordinal());
+      }
+      dependencyOffsets.add(dependencies.size());
+      for (String tag : target.getTags()) {
+        tags.add(strings.add(tag));
+      }
+      tagOffsets.add(tags.size());
+      for (ArtifactLocation source : target.getSources()) {
+        sources.add(addArtifact(source));
+      }
+      sourceOffsets.add(sources.size());
+
+      IntellijIdeInfo.TargetIdeInfo languageInfo =
+          target.toProto().toBuilder()
+              .clearKey()
+              .clearKindString()
+              .clearBuildFileArtifactLocation()
+              .clearDeps()
+              .clearTags()
+              .build();
+      languageInfos.add(languageInfo.getSerializedSize() > 0 ? languageInfo.toByteArray() : null);
+    }
+
+    private int addKey(TargetKey key) {
+      Integer index = keyIndices.get(key);
+      if (index != null) {
+        return index;
+      }
+      index = keyIndices.size();
+      keyIndices.put(key, index);
+      String label = key.getLabel().toString();
+      int colon = label.lastIndexOf(':');
+      keyPackages.add(strings.add(colon >= 0 ? label.substring(0, colon) : label));
+      keyNames.add(colon >= 0 ? strings.add(label.substring(colon + 1)) : NONE);
+      for (String aspectId : key.getAspectIds()) {
+        aspectIds.add(strings.add(aspectId));
+      }
+      aspectIdOffsets.add(aspectIds.size());
+      return index;
+    }
+
+    private int addArtifact(ArtifactLocation artifact) {
+      Integer index = artifactIndices.get(artifact);
+      if (index != null) {
+        return index;
+      }
+      index = artifactIndices.size();
+      artifactIndices.put(artifact, index);
+      String path = artifact.getRelativePath();
+      int slash = path.lastIndexOf('/');
+      artifactRoots.add(strings.add(artifact.getRootExecutionPathFragment()));
+      artifactDirectories.add(slash >= 0 ? strings.add(path.substring(0, slash)) : NONE);
+      artifactNames.add(strings.add(path.substring(slash + 1)));
+      artifactFlags.write(
+          (artifact.isSource() ? IS_SOURCE : 0) | (artifact.isExternal() ? IS_EXTERNAL : 0));
+      return index;
+    }
+  }
+
+  /** A growable list of primitive ints. */
+  private static final class IntList {
+    private int[] values = new int[16];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
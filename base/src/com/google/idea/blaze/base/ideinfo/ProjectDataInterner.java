@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.base.ideinfo;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Interner;
 import com.google.common.collect.Interners;
 import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
@@ -42,7 +43,7 @@ public abstract class ProjectDataInterner {
     return instance.doIntern(label);
   }
 
-  static String intern(String string) {
+  public static String intern(String string) {
     return instance.doIntern(string);
   }
 
@@ -66,6 +67,16 @@ public abstract class ProjectDataInterner {
     return instance.doIntern(executionRootPath);
   }
 
+  /**
+   * Interns a list of (already interned) elements. Used for the large transitive lists which are
+   * repeated verbatim across many targets. Only lists with identical contents are shared, and only
+   * in memory; it doesn't affect the serialized project data.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> ImmutableList<T> internList(ImmutableList<T> list) {
+    return list.isEmpty() ? list : (ImmutableList<T>) instance.doInternList(list);
+  }
+
   abstract Label doIntern(Label label);
 
   abstract String doIntern(String string);
@@ -80,6 +91,8 @@ public abstract class ProjectDataInterner {
 
   abstract ExecutionRootPath doIntern(ExecutionRootPath executionRootPath);
 
+  abstract ImmutableList<?> doInternList(ImmutableList<?> list);
+
   private static class NoOp extends ProjectDataInterner {
     @Override
     Label doIntern(Label label) {
@@ -115,6 +128,11 @@ public abstract class ProjectDataInterner {
     ExecutionRootPath doIntern(ExecutionRootPath executionRootPath) {
       return executionRootPath;
     }
+
+    @Override
+    ImmutableList<?> doInternList(ImmutableList<?> list) {
+      return list;
+    }
   }
 
   private static class Impl extends ProjectDataInterner {
@@ -128,6 +146,7 @@ public abstract class ProjectDataInterner {
         Interners.newWeakInterner();
     private static final Interner<ExecutionRootPath> executionRootPathInterner =
         Interners.newWeakInterner();
+    private static final Interner<ImmutableList<?>> listInterner = Interners.newWeakInterner();
 
     @Override
     Label doIntern(Label label) {
@@ -163,6 +182,11 @@ public abstract class ProjectDataInterner {
     ExecutionRootPath doIntern(ExecutionRootPath executionRootPath) {
       return executionRootPathInterner.intern(executionRootPath);
     }
+
+    @Override
+    ImmutableList<?> doInternList(ImmutableList<?> list) {
+      return listInterner.intern(list);
+    }
   }
 
   static class Updater implements SyncListener {
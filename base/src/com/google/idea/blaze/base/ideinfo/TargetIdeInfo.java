@@ -52,6 +52,10 @@ public final class TargetIdeInfo implements ProtoWrapper<IntellijIdeInfo.TargetI
   @Nullable private final JavaToolchainIdeInfo javaToolchainIdeInfo;
   @Nullable private final KotlinToolchainIdeInfo kotlinToolchainIdeInfo;
 
+  /** The compact target map this is a view onto, or null for a regular target. */
+  @Nullable private final CompactTargetMap compactTargets;
+  private final int compactRow;
+
   private TargetIdeInfo(
       TargetKey key,
       Kind kind,
@@ -93,6 +97,42 @@ public final class TargetIdeInfo implements ProtoWrapper<IntellijIdeInfo.TargetI
     this.testIdeInfo = testIdeInfo;
     this.javaToolchainIdeInfo = javaToolchainIdeInfo;
     this.kotlinToolchainIdeInfo = kotlinToolchainIdeInfo;
+    this.compactTargets = null;
+    this.compactRow = -1;
+  }
+
+  /**
+   * Creates a lightweight view onto a row of a {@link CompactTargetMap}. Only the key and kind are
+   * held; other fields are decoded from the compact map when requested.
+   */
+  private TargetIdeInfo(TargetKey key, Kind kind, CompactTargetMap compactTargets, int row) {
+    this.key = key;
+    this.kind = kind;
+    this.buildFile = null;
+    this.dependencies = ImmutableList.of();
+    this.tags = ImmutableList.of();
+    this.sources = ImmutableSet.of();
+    this.cIdeInfo = null;
+    this.cToolchainIdeInfo = null;
+    this.javaIdeInfo = null;
+    this.androidIdeInfo = null;
+    this.androidSdkIdeInfo = null;
+    this.androidAarIdeInfo = null;
+    this.pyIdeInfo = null;
+    this.goIdeInfo = null;
+    this.jsIdeInfo = null;
+    this.tsIdeInfo = null;
+    this.dartIdeInfo = null;
+    this.testIdeInfo = null;
+    this.javaToolchainIdeInfo = null;
+    this.kotlinToolchainIdeInfo = null;
+    this.compactTargets = compactTargets;
+    this.compactRow = row;
+  }
+
+  static TargetIdeInfo compactView(
+      TargetKey key, Kind kind, CompactTargetMap compactTargets, int row) {
+    return new TargetIdeInfo(key, kind, compactTargets, row);
   }
 
   @Nullable
@@ -178,6 +218,9 @@ public final class TargetIdeInfo implements ProtoWrapper<IntellijIdeInfo.TargetI
 
   @Override
   public IntellijIdeInfo.TargetIdeInfo toProto() {
+    if (compactTargets != null) {
+      return compactTargets.decode(compactRow).toProto();
+    }
     IntellijIdeInfo.TargetIdeInfo.Builder builder =
         IntellijIdeInfo.TargetIdeInfo.newBuilder()
             .setKey(key.toProto())
@@ -212,89 +255,97 @@ public final class TargetIdeInfo implements ProtoWrapper<IntellijIdeInfo.TargetI
 
   @Nullable
   public ArtifactLocation getBuildFile() {
-    return buildFile;
+    return compactTargets != null ? compactTargets.buildFile(compactRow) : buildFile;
   }
 
   public ImmutableList<Dependency> getDependencies() {
-    return dependencies;
+    return compactTargets != null ? compactTargets.dependencies(compactRow) : dependencies;
   }
 
   public ImmutableList<String> getTags() {
-    return tags;
+    return compactTargets != null ? compactTargets.tags(compactRow) : tags;
   }
 
   public ImmutableSet<ArtifactLocation> getSources() {
-    return sources;
+    return compactTargets != null ? compactTargets.sources(compactRow) : sources;
   }
 
   @Nullable
   public CIdeInfo getcIdeInfo() {
-    return cIdeInfo;
+    return languageInfo().cIdeInfo;
   }
 
   @Nullable
   public CToolchainIdeInfo getcToolchainIdeInfo() {
-    return cToolchainIdeInfo;
+    return languageInfo().cToolchainIdeInfo;
   }
 
   @Nullable
   public JavaIdeInfo getJavaIdeInfo() {
-    return javaIdeInfo;
+    return languageInfo().javaIdeInfo;
   }
 
   @Nullable
   public AndroidIdeInfo getAndroidIdeInfo() {
-    return androidIdeInfo;
+    return languageInfo().androidIdeInfo;
   }
 
   @Nullable
   public AndroidSdkIdeInfo getAndroidSdkIdeInfo() {
-    return androidSdkIdeInfo;
+    return languageInfo().androidSdkIdeInfo;
   }
 
   @Nullable
   public AndroidAarIdeInfo getAndroidAarIdeInfo() {
-    return androidAarIdeInfo;
+    return languageInfo().androidAarIdeInfo;
   }
 
   @Nullable
   public PyIdeInfo getPyIdeInfo() {
-    return pyIdeInfo;
+    return languageInfo().pyIdeInfo;
   }
 
   @Nullable
   public GoIdeInfo getGoIdeInfo() {
-    return goIdeInfo;
+    return languageInfo().goIdeInfo;
   }
 
   @Nullable
   public JsIdeInfo getJsIdeInfo() {
-    return jsIdeInfo;
+    return languageInfo().jsIdeInfo;
   }
 
   @Nullable
   public TsIdeInfo getTsIdeInfo() {
-    return tsIdeInfo;
+    return languageInfo().tsIdeInfo;
   }
 
   @Nullable
   public DartIdeInfo getDartIdeInfo() {
-    return dartIdeInfo;
+    return languageInfo().dartIdeInfo;
   }
 
   @Nullable
   public TestIdeInfo getTestIdeInfo() {
-    return testIdeInfo;
+    return languageInfo().testIdeInfo;
   }
 
   @Nullable
   public JavaToolchainIdeInfo getJavaToolchainIdeInfo() {
-    return javaToolchainIdeInfo;
+    return languageInfo().javaToolchainIdeInfo;
   }
 
   @Nullable
   public KotlinToolchainIdeInfo getKotlinToolchainIdeInfo() {
-    return kotlinToolchainIdeInfo;
+    return languageInfo().kotlinToolchainIdeInfo;
+  }
+
+  /**
+   * Returns the target holding the language-specific ide info: this target, or for a compact view,
+   * the (cached) fully decoded target.
+   */
+  private TargetIdeInfo languageInfo() {
+    return compactTargets != null ? compactTargets.decode(compactRow) : this;
   }
 
   public TargetInfo toTargetInfo() {
@@ -509,50 +560,56 @@ public final class TargetIdeInfo implements ProtoWrapper<IntellijIdeInfo.TargetI
       return false;
     }
     TargetIdeInfo that = (TargetIdeInfo) o;
-    return Objects.equals(key, that.key)
-        && kind == that.kind
-        && Objects.equals(buildFile, that.buildFile)
-        && Objects.equals(dependencies, that.dependencies)
-        && Objects.equals(tags, that.tags)
-        && Objects.equals(sources, that.sources)
-        && Objects.equals(cIdeInfo, that.cIdeInfo)
-        && Objects.equals(cToolchainIdeInfo, that.cToolchainIdeInfo)
-        && Objects.equals(javaIdeInfo, that.javaIdeInfo)
-        && Objects.equals(androidIdeInfo, that.androidIdeInfo)
-        && Objects.equals(androidSdkIdeInfo, that.androidSdkIdeInfo)
-        && Objects.equals(androidAarIdeInfo, that.androidAarIdeInfo)
-        && Objects.equals(pyIdeInfo, that.pyIdeInfo)
-        && Objects.equals(goIdeInfo, that.goIdeInfo)
-        && Objects.equals(jsIdeInfo, that.jsIdeInfo)
-        && Objects.equals(tsIdeInfo, that.tsIdeInfo)
-        && Objects.equals(dartIdeInfo, that.dartIdeInfo)
-        && Objects.equals(testIdeInfo, that.testIdeInfo)
-        && Objects.equals(javaToolchainIdeInfo, that.javaToolchainIdeInfo)
-        && Objects.equals(kotlinToolchainIdeInfo, that.kotlinToolchainIdeInfo);
+    if (compactTargets != null && compactTargets == that.compactTargets) {
+      return compactRow == that.compactRow;
+    }
+    TargetIdeInfo info = languageInfo();
+    TargetIdeInfo thatInfo = that.languageInfo();
+    return Objects.equals(getKey(), that.getKey())
+        && getKind() == that.getKind()
+        && Objects.equals(getBuildFile(), that.getBuildFile())
+        && Objects.equals(getDependencies(), that.getDependencies())
+        && Objects.equals(getTags(), that.getTags())
+        && Objects.equals(getSources(), that.getSources())
+        && Objects.equals(info.cIdeInfo, thatInfo.cIdeInfo)
+        && Objects.equals(info.cToolchainIdeInfo, thatInfo.cToolchainIdeInfo)
+        && Objects.equals(info.javaIdeInfo, thatInfo.javaIdeInfo)
+        && Objects.equals(info.androidIdeInfo, thatInfo.androidIdeInfo)
+        && Objects.equals(info.androidSdkIdeInfo, thatInfo.androidSdkIdeInfo)
+        && Objects.equals(info.androidAarIdeInfo, thatInfo.androidAarIdeInfo)
+        && Objects.equals(info.pyIdeInfo, thatInfo.pyIdeInfo)
+        && Objects.equals(info.goIdeInfo, thatInfo.goIdeInfo)
+        && Objects.equals(info.jsIdeInfo, thatInfo.jsIdeInfo)
+        && Objects.equals(info.tsIdeInfo, thatInfo.tsIdeInfo)
+        && Objects.equals(info.dartIdeInfo, thatInfo.dartIdeInfo)
+        && Objects.equals(info.testIdeInfo, thatInfo.testIdeInfo)
+        && Objects.equals(info.javaToolchainIdeInfo, thatInfo.javaToolchainIdeInfo)
+        && Objects.equals(info.kotlinToolchainIdeInfo, thatInfo.kotlinToolchainIdeInfo);
   }
 
   @Override
   public int hashCode() {
+    TargetIdeInfo info = languageInfo();
     return Objects.hash(
-        key,
-        kind,
-        buildFile,
-        dependencies,
-        tags,
-        sources,
-        cIdeInfo,
-        cToolchainIdeInfo,
-        javaIdeInfo,
-        androidIdeInfo,
-        androidSdkIdeInfo,
-        androidAarIdeInfo,
-        pyIdeInfo,
-        goIdeInfo,
-        jsIdeInfo,
-        tsIdeInfo,
-        dartIdeInfo,
-        testIdeInfo,
-        javaToolchainIdeInfo,
-        kotlinToolchainIdeInfo);
+        getKey(),
+        getKind(),
+        getBuildFile(),
+        getDependencies(),
+        getTags(),
+        getSources(),
+        info.cIdeInfo,
+        info.cToolchainIdeInfo,
+        info.javaIdeInfo,
+        info.androidIdeInfo,
+        info.androidSdkIdeInfo,
+        info.androidAarIdeInfo,
+        info.pyIdeInfo,
+        info.goIdeInfo,
+        info.jsIdeInfo,
+        info.tsIdeInfo,
+        info.dartIdeInfo,
+        info.testIdeInfo,
+        info.javaToolchainIdeInfo,
+        info.kotlinToolchainIdeInfo);
   }
 }
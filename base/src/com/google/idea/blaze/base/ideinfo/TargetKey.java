@@ -54,7 +54,7 @@ public final class TargetKey
     return label;
   }
 
-  private ImmutableList<String> getAspectIds() {
+  ImmutableList<String> getAspectIds() {
     return aspectIds;
   }
 
@@ -15,22 +15,81 @@
  */
 package com.google.idea.blaze.base.ideinfo;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Functions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import java.util.Map;
 import java.util.Objects;
 import javax.annotation.Nullable;
 
-/** Map of configured targets (and soon aspects). */
+/**
+ * Map of configured targets (and soon aspects).
+ *
+ * <p>Targets may be decoded lazily (for example, from a memory-mapped project data file), in which
+ * case each target is only decoded when first requested, and the full map is only built if a
+ * caller asks for all targets.
+ *
+ * <p>Targets may also be held in a {@link CompactTargetMap}, in which case the map holds
+ * lightweight {@link TargetIdeInfo} views, whose fields are decoded from the compact map on
+ * request.
+ */
 public final class TargetMap implements ProtoWrapper<ProjectData.TargetMap> {
-  private final ImmutableMap<TargetKey, TargetIdeInfo> targetMap;
+  private static final BoolExperiment useCompactTargetMap =
+      new BoolExperiment("blaze.target.map.compact", false);
+
+  @Nullable private volatile ImmutableMap<TargetKey, TargetIdeInfo> targetMap;
+  @Nullable private final ImmutableMap<TargetKey, Supplier<TargetIdeInfo>> lazyTargets;
 
   public TargetMap(ImmutableMap<TargetKey, TargetIdeInfo> targetMap) {
+    this(targetMap, null);
+  }
+
+  private TargetMap(
+      @Nullable ImmutableMap<TargetKey, TargetIdeInfo> targetMap,
+      @Nullable ImmutableMap<TargetKey, Supplier<TargetIdeInfo>> lazyTargets) {
     this.targetMap = targetMap;
+    this.lazyTargets = lazyTargets;
+  }
+
+  /**
+   * Creates a target map whose targets are decoded on demand. Each supplier is called at most once,
+   * and may return null if the target can no longer be decoded.
+   */
+  public static TargetMap lazy(ImmutableMap<TargetKey, Supplier<TargetIdeInfo>> targets) {
+    ImmutableMap<TargetKey, Supplier<TargetIdeInfo>> memoized =
+        ImmutableMap.copyOf(Maps.transformValues(targets, Suppliers::memoize));
+    return new TargetMap(null, memoized);
+  }
+
+  /** Creates a target map holding views onto the targets in a {@link CompactTargetMap}. */
+  public static TargetMap compact(CompactTargetMap targets) {
+    return new TargetMap(targets.views());
   }
 
   public static TargetMap fromProto(ProjectData.TargetMap proto) {
+    return fromProto(proto, compactTargetMapEnabled());
+  }
+
+  @VisibleForTesting
+  static TargetMap fromProto(ProjectData.TargetMap proto, boolean compact) {
+    if (compact) {
+      return compact(
+          CompactTargetMap.create(
+              proto.getTargetsList().stream()
+                  .map(TargetIdeInfo::fromProto)
+                  .filter(Objects::nonNull)
+                  .collect(ImmutableList.toImmutableList())));
+    }
     return new TargetMap(
         proto.getTargetsList().stream()
             .map(TargetIdeInfo::fromProto)
@@ -38,30 +97,76 @@ public final class TargetMap implements ProtoWrapper<ProjectData.TargetMap> {
             .collect(ImmutableMap.toImmutableMap(TargetIdeInfo::getKey, Functions.identity())));
   }
 
+  private static boolean compactTargetMapEnabled() {
+    Application application = ApplicationManager.getApplication();
+    return application != null && !application.isUnitTestMode() && useCompactTargetMap.getValue();
+  }
+
   @Override
   public ProjectData.TargetMap toProto() {
     ProjectData.TargetMap.Builder builder = ProjectData.TargetMap.newBuilder();
-    targetMap.values().stream().map(TargetIdeInfo::toProto).forEach(builder::addTargets);
+    map().values().stream().map(TargetIdeInfo::toProto).forEach(builder::addTargets);
     return builder.build();
   }
 
   @Nullable
   public TargetIdeInfo get(TargetKey key) {
-    return targetMap.get(key);
+    ImmutableMap<TargetKey, TargetIdeInfo> targetMap = this.targetMap;
+    if (targetMap != null) {
+      return targetMap.get(key);
+    }
+    Supplier<TargetIdeInfo> target = lazyTargets.get(key);
+    return target != null ? target.get() : null;
   }
 
   public boolean contains(TargetKey key) {
-    return targetMap.containsKey(key);
+    ImmutableMap<TargetKey, TargetIdeInfo> targetMap = this.targetMap;
+    if (targetMap != null) {
+      return targetMap.containsKey(key);
+    }
+    // checks the key set directly, rather than decoding the target
+    return lazyTargets.containsKey(key);
+  }
+
+  /** Returns the keys of all targets, without decoding any lazily-loaded targets. */
+  public ImmutableSet<TargetKey> keys() {
+    ImmutableMap<TargetKey, TargetIdeInfo> targetMap = this.targetMap;
+    if (targetMap != null) {
+      return targetMap.keySet();
+    }
+    return lazyTargets.keySet();
   }
 
   public ImmutableCollection<TargetIdeInfo> targets() {
-    return targetMap.values();
+    return map().values();
   }
 
   public ImmutableMap<TargetKey, TargetIdeInfo> map() {
+    ImmutableMap<TargetKey, TargetIdeInfo> targetMap = this.targetMap;
+    if (targetMap == null) {
+      synchronized (this) {
+        targetMap = this.targetMap;
+        if (targetMap == null) {
+          targetMap = decodeAll(lazyTargets);
+          this.targetMap = targetMap;
+        }
+      }
+    }
     return targetMap;
   }
 
+  private static ImmutableMap<TargetKey, TargetIdeInfo> decodeAll(
+      ImmutableMap<TargetKey, Supplier<TargetIdeInfo>> lazyTargets) {
+    ImmutableMap.Builder<TargetKey, TargetIdeInfo> builder = ImmutableMap.builder();
+    for (Map.Entry<TargetKey, Supplier<TargetIdeInfo>> entry : lazyTargets.entrySet()) {
+      TargetIdeInfo target = entry.getValue().get();
+      if (target != null) {
+        builder.put(entry.getKey(), target);
+      }
+    }
+    return builder.build();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -71,11 +176,11 @@ public final class TargetMap implements ProtoWrapper<ProjectData.TargetMap> {
       return false;
     }
     TargetMap other = (TargetMap) o;
-    return Objects.equals(targetMap, other.targetMap);
+    return Objects.equals(map(), other.map());
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(targetMap);
+    return Objects.hash(map());
   }
 }
@@ -20,8 +20,11 @@ import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
 import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
 import com.google.idea.blaze.base.lang.buildfile.references.LabelUtils;
 import com.google.idea.blaze.base.lang.buildfile.references.QuoteType;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex.Symbol;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex.SymbolKind;
+import icons.BlazeIcons;
 import java.util.List;
-import java.util.Objects;
 import javax.annotation.Nullable;
 import javax.swing.Icon;
 
@@ -43,46 +46,54 @@ public class LabelRuleLookupElement extends BuildLookupElement {
 
     String ruleFragment = LabelUtils.getRuleComponent(originalString);
     List<BuildLookupElement> lookups = Lists.newArrayList();
-    for (FuncallExpression target : file.findChildrenByClass(FuncallExpression.class)) {
-      String targetName = target.getName();
-      if (targetName == null
-          || Objects.equals(target.getName(), excluded)
-          || !targetName.startsWith(ruleFragment)) {
-        continue;
+    List<Symbol> symbols = BuildSymbolIndex.getAllSymbols(file);
+    if (symbols != null) {
+      // use the index where possible, to avoid parsing the BUILD file
+      for (Symbol symbol : symbols) {
+        if (symbol.kind == SymbolKind.RULE
+            && symbol.type != null
+            && acceptTarget(symbol.name, ruleFragment, excluded)) {
+          lookups.add(
+              new LabelRuleLookupElement(packagePrefix, symbol.name, symbol.type, quoteType));
+        }
       }
-      String ruleType = target.getFunctionName();
-      if (ruleType == null) {
-        continue;
+    } else {
+      for (FuncallExpression target : file.findChildrenByClass(FuncallExpression.class)) {
+        String targetName = target.getName();
+        String ruleType = target.getFunctionName();
+        if (targetName != null
+            && ruleType != null
+            && acceptTarget(targetName, ruleFragment, excluded)) {
+          lookups.add(new LabelRuleLookupElement(packagePrefix, targetName, ruleType, quoteType));
+        }
       }
-      lookups.add(
-          new LabelRuleLookupElement(packagePrefix, target, targetName, ruleType, quoteType));
     }
     return lookups.isEmpty()
         ? BuildLookupElement.EMPTY_ARRAY
         : lookups.toArray(new BuildLookupElement[lookups.size()]);
   }
 
-  private final FuncallExpression target;
+  private static boolean acceptTarget(
+      String targetName, String ruleFragment, @Nullable String excluded) {
+    return !targetName.equals(excluded) && targetName.startsWith(ruleFragment);
+  }
+
   private final String targetName;
   private final String ruleType;
 
   private LabelRuleLookupElement(
-      String packagePrefix,
-      FuncallExpression target,
-      String targetName,
-      String ruleType,
-      QuoteType quoteType) {
+      String packagePrefix, String targetName, String ruleType, QuoteType quoteType) {
     super(packagePrefix + targetName, quoteType);
-    this.target = target;
     this.targetName = targetName;
     this.ruleType = ruleType;
 
     assert (packagePrefix.isEmpty() || packagePrefix.endsWith(":"));
   }
 
+  /** All top-level function calls with a 'name' argument are treated as rules. */
   @Override
   public Icon getIcon() {
-    return target.getIcon(0);
+    return BlazeIcons.BuildRule;
   }
 
   @Override
@@ -21,6 +21,7 @@ import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
 import com.google.idea.blaze.base.lang.buildfile.completion.BuildLookupElement;
 import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
 import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetName;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
@@ -91,9 +92,11 @@ public class BuildReferenceManager {
     return null;
   }
 
+  @Nullable
   private FuncallExpression findRule(File packageDir, String targetName) {
     BuildFile psiFile = findBuildFile(packageDir);
-    return psiFile != null ? psiFile.findRule(targetName) : null;
+    // uses the index where possible, to avoid parsing BUILD files which don't contain the rule
+    return psiFile != null ? BuildSymbolIndex.findRule(psiFile, targetName) : null;
   }
 
   @Nullable
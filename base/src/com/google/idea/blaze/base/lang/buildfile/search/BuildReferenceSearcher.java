@@ -20,11 +20,14 @@ import com.google.idea.blaze.base.lang.buildfile.language.BuildFileType;
 import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
 import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile.BlazeFileType;
 import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
+import com.google.idea.blaze.base.lang.buildfile.psi.FunctionStatement;
 import com.google.idea.blaze.base.lang.buildfile.psi.NamedBuildElement;
 import com.google.idea.blaze.base.lang.buildfile.psi.util.PsiUtils;
 import com.google.idea.blaze.base.lang.buildfile.references.LabelUtils;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.sdkcompat.query.QueryExecutorBaseAdapter;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
 import com.intellij.psi.PsiElement;
 import com.intellij.psi.PsiFile;
@@ -35,6 +38,7 @@ import com.intellij.psi.search.SearchScope;
 import com.intellij.psi.search.UsageSearchContext;
 import com.intellij.psi.search.searches.ReferencesSearch.SearchParameters;
 import com.intellij.util.Processor;
+import java.util.Collection;
 import java.util.List;
 import javax.annotation.Nullable;
 
@@ -51,8 +55,15 @@ public class BuildReferenceSearcher
     PsiElement element = params.getElementToSearch();
     if (element instanceof NamedBuildElement) {
       String fnName = ((NamedBuildElement) element).getName();
-      if (fnName != null) {
-        searchForString(params, element, fnName);
+      if (fnName == null) {
+        return;
+      }
+      SearchScope scope = params.getScopeDeterminedByUser();
+      if (element instanceof FunctionStatement) {
+        scope = limitScopeToLoadingFiles(scope, element.getProject(), fnName);
+      }
+      if (scope != null) {
+        searchForString(params, scope, element, fnName);
       }
       return;
     }
@@ -158,6 +169,25 @@ public class BuildReferenceSearcher
     return scope.intersectWith(new LocalSearchScope(file));
   }
 
+  /**
+   * Functions are only referenced by string from load statements, so if the index is available,
+   * only search files loading a symbol with that name.<br>
+   * Returns null if the resulting scope is empty
+   */
+  @Nullable
+  private static SearchScope limitScopeToLoadingFiles(
+      SearchScope scope, Project project, String functionName) {
+    if (!(scope instanceof GlobalSearchScope)) {
+      return scope;
+    }
+    Collection<VirtualFile> files =
+        BuildSymbolIndex.findFilesLoadingSymbol(project, functionName, (GlobalSearchScope) scope);
+    if (files == null) {
+      return scope;
+    }
+    return files.isEmpty() ? null : GlobalSearchScope.filesScope(project, files);
+  }
+
   private static void searchForString(SearchParameters params, PsiElement element, String string) {
     searchForString(params, params.getScopeDeterminedByUser(), element, string);
   }
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.search;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.lang.buildfile.language.BuildFileType;
+import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
+import com.google.idea.blaze.base.lang.buildfile.psi.FuncallExpression;
+import com.google.idea.blaze.base.lang.buildfile.psi.FunctionStatement;
+import com.google.idea.blaze.base.lang.buildfile.psi.LoadStatement;
+import com.google.idea.blaze.base.lang.buildfile.psi.LoadedSymbol;
+import com.google.idea.blaze.base.lang.buildfile.psi.StringLiteral;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.ProjectScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Indexes the top-level symbols of BUILD and Skylark files: named rules, function definitions and
+ * load()ed symbols. This lets label resolution, completion and find usages skip parsing files
+ * which don't contain the symbol they're looking for.
+ *
+ * <p>Keys are symbol names: a rule's 'name' attribute, a function's name, or a loaded symbol's name
+ * as it appears in the loaded extension (i.e. ignoring any alias). In addition, every symbol in a
+ * file is listed under {@link #ALL_SYMBOLS_KEY}, for callers enumerating a file's contents.
+ *
+ * <p>Each symbol records the text offset of its declaring element (the rule call, function
+ * definition or load statement), so a positive lookup can go straight to the element rather than
+ * searching the file.
+ *
+ * <p>The static query methods return null if the index can't be used for the given file (e.g. in
+ * dumb mode, or for files outside the project), in which case callers should fall back to PSI.
+ */
+public class BuildSymbolIndex
+    extends FileBasedIndexExtension<String, List<BuildSymbolIndex.Symbol>> {
+
+  public static final ID<String, List<Symbol>> NAME = ID.create("BlazeBuildSymbolIndex");
+
+  private static final int VERSION = 2;
+
+  /** ':' isn't valid in target names or Skylark identifiers, so can't clash with a symbol name. */
+  private static final String ALL_SYMBOLS_KEY = ":";
+
+  /** The kinds of indexed symbol. */
+  public enum SymbolKind {
+    RULE,
+    FUNCTION,
+    LOADED_SYMBOL,
+  }
+
+  /** A top-level symbol in a BUILD or Skylark file. */
+  public static final class Symbol {
+    public final SymbolKind kind;
+    public final String name;
+    /** The rule type for rules, or the extension label for loaded symbols. */
+    @Nullable public final String type;
+    /** The start offset of the element declaring this symbol. */
+    public final int offset;
+
+    Symbol(SymbolKind kind, String name, @Nullable String type, int offset) {
+      this.kind = kind;
+      this.name = name;
+      this.type = type;
+      this.offset = offset;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Symbol)) {
+        return false;
+      }
+      Symbol other = (Symbol) o;
+      return kind == other.kind
+          && name.equals(other.name)
+          && Objects.equals(type, other.type)
+          && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, name, type, offset);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s (%s) at %d", kind, name, type, offset);
+    }
+  }
+
+  /**
+   * Returns whether the given BUILD file might contain a top-level rule with the given name. Only
+   * returns false if the index is available and contains no such rule.
+   */
+  public static boolean mightContainRule(BuildFile file, String ruleName) {
+    List<Symbol> symbols = getSymbols(file, ruleName);
+    return symbols == null || symbols.stream().anyMatch(s -> s.kind == SymbolKind.RULE);
+  }
+
+  /**
+   * Finds a top-level rule with the given name, as {@link BuildFile#findRule} does. Uses the
+   * indexed offset where possible, rather than searching every rule in the file; falls back to
+   * {@link BuildFile#findRule} if the index is unavailable or out of date.
+   */
+  @Nullable
+  public static FuncallExpression findRule(BuildFile file, String ruleName) {
+    List<Symbol> symbols = getSymbols(file, ruleName);
+    if (symbols == null) {
+      return file.findRule(ruleName);
+    }
+    boolean indexed = false;
+    for (Symbol symbol : symbols) {
+      if (symbol.kind != SymbolKind.RULE) {
+        continue;
+      }
+      indexed = true;
+      FuncallExpression rule =
+          PsiTreeUtil.findElementOfClassAtOffset(
+              file, symbol.offset, FuncallExpression.class, /* strictStart= */ true);
+      if (rule != null
+          && rule.getParent() == file
+          && ruleName.equals(rule.getNameArgumentValue())) {
+        return rule;
+      }
+    }
+    // the file may have changed since it was indexed
+    return indexed ? file.findRule(ruleName) : null;
+  }
+
+  /** Returns all the indexed symbols in the given file, or null if the index can't be used. */
+  @Nullable
+  public static List<Symbol> getAllSymbols(BuildFile file) {
+    return getSymbols(file, ALL_SYMBOLS_KEY);
+  }
+
+  /**
+   * Returns the files within the given scope which load a symbol with the given name, or null if
+   * the index isn't available.
+   */
+  @Nullable
+  public static Collection<VirtualFile> findFilesLoadingSymbol(
+      Project project, String symbolName, GlobalSearchScope scope) {
+    if (DumbService.isDumb(project)) {
+      return null;
+    }
+    Set<VirtualFile> files = new HashSet<>();
+    FileBasedIndex.getInstance()
+        .processValues(
+            NAME,
+            symbolName,
+            null,
+            (file, symbols) -> {
+              if (symbols.stream().anyMatch(s -> s.kind == SymbolKind.LOADED_SYMBOL)) {
+                files.add(file);
+              }
+              return true;
+            },
+            scope);
+    return files;
+  }
+
+  @Nullable
+  private static List<Symbol> getSymbols(PsiFile file, String key) {
+    Project project = file.getProject();
+    VirtualFile vf = file.getVirtualFile();
+    if (vf == null
+        || DumbService.isDumb(project)
+        || !ProjectScope.getAllScope(project).contains(vf)) {
+      return null;
+    }
+    List<List<Symbol>> values =
+        FileBasedIndex.getInstance().getValues(NAME, key, GlobalSearchScope.fileScope(project, vf));
+    if (values.size() == 1) {
+      return values.get(0);
+    }
+    List<Symbol> symbols = new ArrayList<>();
+    values.forEach(symbols::addAll);
+    return symbols;
+  }
+
+  @Override
+  public ID<String, List<Symbol>> getName() {
+    return NAME;
+  }
+
+  @Override
+  public DataIndexer<String, List<Symbol>, FileContent> getIndexer() {
+    return BuildSymbolIndex::indexFile;
+  }
+
+  @Override
+  public KeyDescriptor<String> getKeyDescriptor() {
+    return EnumeratorStringDescriptor.INSTANCE;
+  }
+
+  @Override
+  public DataExternalizer<List<Symbol>> getValueExternalizer() {
+    return SymbolListExternalizer.INSTANCE;
+  }
+
+  @Override
+  public FileBasedIndex.InputFilter getInputFilter() {
+    return new DefaultFileTypeSpecificInputFilter(BuildFileType.INSTANCE);
+  }
+
+  @Override
+  public boolean dependsOnFileContent() {
+    return true;
+  }
+
+  @Override
+  public int getVersion() {
+    return VERSION;
+  }
+
+  private static Map<String, List<Symbol>> indexFile(FileContent content) {
+    PsiFile psiFile = content.getPsiFile();
+    if (!(psiFile instanceof BuildFile)) {
+      return ImmutableMap.of();
+    }
+    BuildFile file = (BuildFile) psiFile;
+    List<Symbol> symbols = new ArrayList<>();
+    // must match BuildFile#findRule, which doesn't require a function name
+    for (FuncallExpression rule : file.findChildrenByClass(FuncallExpression.class)) {
+      String name = rule.getNameArgumentValue();
+      if (name != null) {
+        symbols.add(new Symbol(SymbolKind.RULE, name, rule.getFunctionName(), startOffset(rule)));
+      }
+    }
+    for (FunctionStatement function : file.getFunctionDeclarations()) {
+      String name = function.getName();
+      if (name != null) {
+        symbols.add(new Symbol(SymbolKind.FUNCTION, name, null, startOffset(function)));
+      }
+    }
+    for (LoadStatement load : file.findChildrenByClass(LoadStatement.class)) {
+      String extension = load.getImportedPath();
+      for (LoadedSymbol loadedSymbol : load.getImportedSymbolElements()) {
+        StringLiteral imported = loadedSymbol.getImport();
+        String name = imported != null ? imported.getStringContents() : null;
+        if (name != null) {
+          symbols.add(new Symbol(SymbolKind.LOADED_SYMBOL, name, extension, startOffset(load)));
+        }
+      }
+    }
+    if (symbols.isEmpty()) {
+      return ImmutableMap.of();
+    }
+    Map<String, List<Symbol>> map = new HashMap<>();
+    for (Symbol symbol : symbols) {
+      map.computeIfAbsent(symbol.name, k -> new ArrayList<>(1)).add(symbol);
+    }
+    map.put(ALL_SYMBOLS_KEY, symbols);
+    return map;
+  }
+
+  private static int startOffset(PsiElement element) {
+    return element.getTextRange().getStartOffset();
+  }
+
+  private static final class SymbolListExternalizer implements DataExternalizer<List<Symbol>> {
+    static final SymbolListExternalizer INSTANCE = new SymbolListExternalizer();
+
+    private static final SymbolKind[] KINDS = SymbolKind.values();
+
+    @Override
+    public void save(DataOutput out, List<Symbol> symbols) throws IOException {
+      DataInputOutputUtil.writeINT(out, symbols.size());
+      for (Symbol symbol : symbols) {
+        out.writeByte(symbol.kind.ordinal());
+        out.writeUTF(symbol.name);
+        out.writeUTF(symbol.type != null ? symbol.type : "");
+        DataInputOutputUtil.writeINT(out, symbol.offset);
+      }
+    }
+
+    @Override
+    public List<Symbol> read(DataInput in) throws IOException {
+      int size = DataInputOutputUtil.readINT(in);
+      ImmutableList.Builder<Symbol> symbols = ImmutableList.builder();
+      for (int i = 0; i < size; i++) {
+        SymbolKind kind = KINDS[in.readByte()];
+        String name = in.readUTF();
+        String type = in.readUTF();
+        int offset = DataInputOutputUtil.readINT(in);
+        symbols.add(new Symbol(kind, name, type.isEmpty() ? null : type, offset));
+      }
+      return symbols.build();
+    }
+  }
+}
@@ -70,12 +70,17 @@ public final class BlazeProjectData implements ProtoWrapper<ProjectData.BlazePro
   @VisibleForTesting
   public static BlazeProjectData fromProto(
       BuildSystem buildSystem, ProjectData.BlazeProjectData proto) {
+    return fromProto(buildSystem, proto, TargetMap.fromProto(proto.getTargetMap()));
+  }
+
+  private static BlazeProjectData fromProto(
+      BuildSystem buildSystem, ProjectData.BlazeProjectData proto, TargetMap targetMap) {
     BlazeInfo blazeInfo = BlazeInfo.fromProto(buildSystem, proto.getBlazeInfo());
     WorkspacePathResolver workspacePathResolver =
         WorkspacePathResolver.fromProto(proto.getWorkspacePathResolver());
     return new BlazeProjectData(
         proto.getSyncTime(),
-        TargetMap.fromProto(proto.getTargetMap()),
+        targetMap,
         blazeInfo,
         BlazeVersionData.fromProto(proto.getBlazeVersionData()),
         workspacePathResolver,
@@ -86,15 +91,17 @@ public final class BlazeProjectData implements ProtoWrapper<ProjectData.BlazePro
 
   @Override
   public ProjectData.BlazeProjectData toProto() {
+    return toProtoBuilderWithoutTargets().setTargetMap(targetMap.toProto()).build();
+  }
+
+  private ProjectData.BlazeProjectData.Builder toProtoBuilderWithoutTargets() {
     return ProjectData.BlazeProjectData.newBuilder()
         .setSyncTime(syncTime)
-        .setTargetMap(targetMap.toProto())
         .setBlazeInfo(blazeInfo.toProto())
         .setBlazeVersionData(blazeVersionData.toProto())
         .setWorkspacePathResolver(workspacePathResolver.toProto())
         .setWorkspaceLanguageSettings(workspaceLanguageSettings.toProto())
-        .setSyncState(syncState.toProto())
-        .build();
+        .setSyncState(syncState.toProto());
   }
 
   public long getSyncTime() {
@@ -129,13 +136,22 @@ public final class BlazeProjectData implements ProtoWrapper<ProjectData.BlazePro
     return syncState;
   }
 
+  /**
+   * Loads project data saved in either the indexed format (in which case targets are decoded
+   * lazily), or the legacy gzipped proto format.
+   */
   public static BlazeProjectData loadFromDisk(BuildSystem buildSystem, File file)
       throws IOException {
+    if (IndexedProjectDataFile.isIndexedFormat(file)) {
+      IndexedProjectDataFile.ProjectDataWithTargets data = IndexedProjectDataFile.read(file);
+      return fromProto(buildSystem, data.metadata, data.targetMap);
+    }
     try (InputStream stream = new GZIPInputStream(new FileInputStream(file))) {
       return fromProto(buildSystem, ProjectData.BlazeProjectData.parseFrom(stream));
     }
   }
 
+  /** Saves the project data as a single gzipped proto. */
   public void saveToDisk(File file) throws IOException {
     ProjectData.BlazeProjectData proto = toProto();
     try (OutputStream stream = new GZIPOutputStream(new FileOutputStream(file))) {
@@ -143,6 +159,35 @@ public final class BlazeProjectData implements ProtoWrapper<ProjectData.BlazePro
     }
   }
 
+  /**
+   * Saves the project data in an uncompressed, indexed format, allowing targets to be decoded
+   * lazily from a memory-mapped file when the project is next opened.
+   */
+  public void saveToDiskIndexed(File file) throws IOException {
+    IndexedProjectDataFile.write(file, toProtoBuilderWithoutTargets().build(), targetMap);
+  }
+
+  /**
+   * Appends the differences from the previously saved project data to the journal of an indexed
+   * project data file, rather than rewriting the whole file.
+   *
+   * @param previous the project data most recently saved to, or loaded from, the given file.
+   * @return false if nothing was written because too much has changed, in which case the caller
+   *     should rewrite the file via {@link #saveToDiskIndexed}.
+   */
+  public boolean appendToJournal(File file, BlazeProjectData previous) throws IOException {
+    return ProjectDataJournal.append(
+        file,
+        toProtoBuilderWithoutTargets().build(),
+        previous.syncState.toProto(),
+        targetMap);
+  }
+
+  /** Returns the size of the journal of changes appended to the given project data file. */
+  public static long getJournalSize(File file) {
+    return IndexedProjectDataFile.getJournalFile(file).length();
+  }
+
   @Override
   public boolean equals(Object o) {
     if (o == this) {
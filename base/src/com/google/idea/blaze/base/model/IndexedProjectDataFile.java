@@ -0,0 +1,285 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.model;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableCollection;
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.protobuf.repackaged.CodedInputStream;
+import com.google.protobuf.repackaged.CodedOutputStream;
+import com.google.protobuf.repackaged.ExtensionRegistryLite;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.annotation.Nullable;
+
+/**
+ * An uncompressed, indexed on-disk format for {@link BlazeProjectData}, read via a memory-mapped
+ * file so that individual targets can be decoded lazily.
+ *
+ * <p>File layout:
+ *
+ * <ul>
+ *   <li>header: magic bytes, a format version and a random generation id
+ *   <li>the project data proto, without its target map (length-delimited)
+ *   <li>the serialized {@link IntellijIdeInfo.TargetIdeInfo} for each target, back to back
+ *   <li>an index of (target key, offset, length) entries
+ *   <li>the offset of the index, as a little-endian fixed64
+ * </ul>
+ *
+ * <p>Subsequent saves may append only their changes to a {@link ProjectDataJournal} alongside this
+ * file, which is replayed when reading. Rewriting the file discards the journal.
+ */
+final class IndexedProjectDataFile {
+
+  private static final Logger logger = Logger.getInstance(IndexedProjectDataFile.class);
+
+  private static final byte[] MAGIC = {'B', 'L', 'Z', 'P', 'D', 'I', 'D', 'X'};
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = MAGIC.length + 4 + 8;
+  private static final int TRAILER_SIZE = 8;
+
+  private IndexedProjectDataFile() {}
+
+  /** Returns true if the given file is in this format, rather than the legacy gzipped proto. */
+  static boolean isIndexedFormat(File file) throws IOException {
+    byte[] header = new byte[MAGIC.length];
+    try (InputStream stream = new FileInputStream(file)) {
+      int read = 0;
+      while (read < header.length) {
+        int count = stream.read(header, read, header.length - read);
+        if (count < 0) {
+          return false;
+        }
+        read += count;
+      }
+    }
+    return Arrays.equals(header, MAGIC);
+  }
+
+  /** Returns the journal of changes saved since the given project data file was written. */
+  static File getJournalFile(File file) {
+    return new File(file.getPath() + ".journal");
+  }
+
+  /** Reads the generation id of the given project data file, identifying its journal. */
+  static long readGeneration(File file) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) {
+          throw new IOException("Truncated project data file: " + file);
+        }
+      }
+    }
+    return checkHeader(file, header);
+  }
+
+  static void write(File file, ProjectData.BlazeProjectData metadata, TargetMap targetMap)
+      throws IOException {
+    // write to a temporary file, then move it into place: the old file may still be mapped
+    File tempFile = new File(file.getPath() + ".tmp");
+    try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+      CodedOutputStream output = CodedOutputStream.newInstance(stream);
+      output.writeRawBytes(MAGIC);
+      output.writeFixed32NoTag(VERSION);
+      output.writeFixed64NoTag(ThreadLocalRandom.current().nextLong());
+      output.writeMessageNoTag(metadata);
+
+      ImmutableCollection<TargetIdeInfo> targets = targetMap.targets();
+      long[] offsets = new long[targets.size()];
+      int[] lengths = new int[targets.size()];
+      int i = 0;
+      for (TargetIdeInfo target : targets) {
+        byte[] bytes = target.toProto().toByteArray();
+        offsets[i] = output.getTotalBytesWritten();
+        lengths[i++] = bytes.length;
+        output.writeRawBytes(bytes);
+      }
+
+      long indexOffset = output.getTotalBytesWritten();
+      output.writeUInt32NoTag(targets.size());
+      i = 0;
+      for (TargetIdeInfo target : targets) {
+        output.writeMessageNoTag(target.getKey().toProto());
+        output.writeUInt64NoTag(offsets[i]);
+        output.writeUInt32NoTag(lengths[i++]);
+      }
+      output.writeFixed64NoTag(indexOffset);
+      output.flush();
+    }
+    Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    // the journal's generation no longer matches, but there's no point keeping it around
+    Files.deleteIfExists(getJournalFile(file).toPath());
+  }
+
+  /**
+   * Reads the project data and target index, then replays any journaled changes. Individual
+   * targets are only decoded when first requested from the resulting {@link TargetMap}.
+   */
+  static ProjectDataWithTargets read(File file) throws IOException {
+    SerializedProjectData data = readSerialized(file);
+    ImmutableMap.Builder<TargetKey, Supplier<TargetIdeInfo>> targets = ImmutableMap.builder();
+    for (Map.Entry<TargetKey, ByteBuffer> entry : data.targets.entrySet()) {
+      ByteBuffer serialized = entry.getValue();
+      targets.put(entry.getKey(), () -> decodeTarget(serialized));
+    }
+    return new ProjectDataWithTargets(data.metadata, TargetMap.lazy(targets.build()));
+  }
+
+  /**
+   * Reads the project data and the serialized form of each target, as of the most recent save
+   * (i.e. with any journaled changes applied), without decoding any targets.
+   */
+  static SerializedProjectData readSerialized(File file) throws IOException {
+    ByteBuffer buffer = readBuffer(file);
+    if (buffer.limit() < HEADER_SIZE + TRAILER_SIZE) {
+      throw new IOException("Truncated project data file: " + file);
+    }
+    ByteBuffer littleEndian = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+    long generation = checkHeader(file, littleEndian);
+    long indexOffset = littleEndian.getLong(buffer.limit() - TRAILER_SIZE);
+    if (indexOffset < HEADER_SIZE || indexOffset > buffer.limit() - TRAILER_SIZE) {
+      throw new IOException("Corrupt project data file: " + file);
+    }
+
+    CodedInputStream metadataInput = newCodedInput(slice(buffer, HEADER_SIZE, buffer.limit()));
+    ProjectData.BlazeProjectData metadata =
+        metadataInput.readMessage(
+            ProjectData.BlazeProjectData.parser(), ExtensionRegistryLite.getEmptyRegistry());
+
+    CodedInputStream indexInput =
+        newCodedInput(slice(buffer, (int) indexOffset, buffer.limit() - TRAILER_SIZE));
+    int count = indexInput.readUInt32();
+    Map<TargetKey, ByteBuffer> targets = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      TargetKey key =
+          TargetKey.fromProto(
+              indexInput.readMessage(
+                  IntellijIdeInfo.TargetKey.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+      int offset = (int) indexInput.readUInt64();
+      int length = indexInput.readUInt32();
+      if (offset < HEADER_SIZE || offset + length > indexOffset) {
+        throw new IOException("Corrupt project data file index: " + file);
+      }
+      targets.put(key, slice(buffer, offset, offset + length));
+    }
+    metadata = ProjectDataJournal.replay(getJournalFile(file), generation, metadata, targets);
+    return new SerializedProjectData(metadata, targets);
+  }
+
+  /** The project data proto (without targets), and the serialized form of each target. */
+  static class SerializedProjectData {
+    final ProjectData.BlazeProjectData metadata;
+    final Map<TargetKey, ByteBuffer> targets;
+
+    SerializedProjectData(
+        ProjectData.BlazeProjectData metadata, Map<TargetKey, ByteBuffer> targets) {
+      this.metadata = metadata;
+      this.targets = targets;
+    }
+  }
+
+  /** The project data proto (without targets), and the lazily-decoded target map. */
+  static class ProjectDataWithTargets {
+    final ProjectData.BlazeProjectData metadata;
+    final TargetMap targetMap;
+
+    ProjectDataWithTargets(ProjectData.BlazeProjectData metadata, TargetMap targetMap) {
+      this.metadata = metadata;
+      this.targetMap = targetMap;
+    }
+  }
+
+  /** Checks the magic bytes and version of the given header, returning its generation id. */
+  private static long checkHeader(File file, ByteBuffer littleEndianHeader) throws IOException {
+    byte[] magic = new byte[MAGIC.length];
+    for (int i = 0; i < MAGIC.length; i++) {
+      magic[i] = littleEndianHeader.get(i);
+    }
+    int version = littleEndianHeader.getInt(MAGIC.length);
+    if (!Arrays.equals(magic, MAGIC) || version != VERSION) {
+      throw new IOException("Unrecognized project data file format: " + file);
+    }
+    return littleEndianHeader.getLong(MAGIC.length + 4);
+  }
+
+  @Nullable
+  private static TargetIdeInfo decodeTarget(ByteBuffer serialized) {
+    try {
+      return TargetIdeInfo.fromProto(
+          IntellijIdeInfo.TargetIdeInfo.parseFrom(serialized.duplicate()));
+    } catch (IOException e) {
+      logger.warn("Couldn't decode target from project data file", e);
+      return null;
+    }
+  }
+
+  private static ByteBuffer readBuffer(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Project data file too large to map: " + file);
+      }
+      if (!SystemInfo.isWindows) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      }
+      // mapped files can't be replaced on Windows, so read the file onto the heap instead
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new IOException("Unexpected end of project data file: " + file);
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+  static ByteBuffer slice(ByteBuffer buffer, int start, int end) {
+    ByteBuffer duplicate = buffer.duplicate();
+    duplicate.position(start);
+    duplicate.limit(end);
+    return duplicate.slice();
+  }
+
+  private static CodedInputStream newCodedInput(ByteBuffer buffer) {
+    CodedInputStream input = CodedInputStream.newInstance(buffer);
+    input.setSizeLimit(Integer.MAX_VALUE);
+    return input;
+  }
+}
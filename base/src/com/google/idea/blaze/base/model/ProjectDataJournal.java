@@ -0,0 +1,266 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.model;
+
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.protobuf.repackaged.CodedInputStream;
+import com.google.protobuf.repackaged.CodedOutputStream;
+import com.google.protobuf.repackaged.Descriptors.FieldDescriptor;
+import com.google.protobuf.repackaged.ExtensionRegistryLite;
+import com.intellij.openapi.diagnostic.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of the changes made to an {@link IndexedProjectDataFile} since it was
+ * written, so that syncs which only touch a few targets don't rewrite all the project data.
+ *
+ * <p>File layout: magic bytes, a format version and the generation id of the project data file the
+ * journal applies to, followed by length-delimited records. Each record holds:
+ *
+ * <ul>
+ *   <li>the project data proto, without targets, and with only the changed sync state fields
+ *   <li>the field numbers of any sync state fields which were cleared
+ *   <li>the keys of any removed targets
+ *   <li>the key and serialized proto of each new or changed target
+ * </ul>
+ */
+final class ProjectDataJournal {
+
+  private static final Logger logger = Logger.getInstance(ProjectDataJournal.class);
+
+  private static final byte[] MAGIC = {'B', 'L', 'Z', 'P', 'D', 'J', 'N', 'L'};
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = MAGIC.length + 4 + 8;
+
+  /** If more than this fraction of targets changed, rewriting the whole file is preferable. */
+  private static final double MAX_CHANGED_TARGETS_FRACTION = 0.25;
+
+  private ProjectDataJournal() {}
+
+  /**
+   * Appends the differences between the previously saved and current project data to the journal
+   * of the given project data file.
+   *
+   * <p>Targets are compared with their serialized form in the file (and any existing journal), so
+   * the previously saved targets don't need to be decoded. A target whose serialization differs
+   * only in ordering (e.g. of map entries) is conservatively treated as changed.
+   *
+   * @return false if nothing was appended, because so many targets changed that the project data
+   *     file should be rewritten instead.
+   */
+  static boolean append(
+      File file,
+      ProjectData.BlazeProjectData metadata,
+      ProjectData.SyncState previousSyncState,
+      TargetMap targets)
+      throws IOException {
+    Map<TargetKey, ByteBuffer> previousTargets =
+        IndexedProjectDataFile.readSerialized(file).targets;
+    List<TargetKey> removedTargets = new ArrayList<>();
+    for (TargetKey key : previousTargets.keySet()) {
+      if (!targets.contains(key)) {
+        removedTargets.add(key);
+      }
+    }
+    List<IntellijIdeInfo.TargetIdeInfo> changedTargets = new ArrayList<>();
+    int maxChanged = (int) (targets.targets().size() * MAX_CHANGED_TARGETS_FRACTION);
+    for (TargetIdeInfo target : targets.targets()) {
+      IntellijIdeInfo.TargetIdeInfo proto = target.toProto();
+      ByteBuffer previous = previousTargets.get(target.getKey());
+      if (previous == null || !previous.equals(ByteBuffer.wrap(proto.toByteArray()))) {
+        changedTargets.add(proto);
+        if (changedTargets.size() + removedTargets.size() > maxChanged) {
+          return false;
+        }
+      }
+    }
+
+    ProjectData.SyncState syncState = metadata.getSyncState();
+    ProjectData.SyncState.Builder changedSyncState = ProjectData.SyncState.newBuilder();
+    List<Integer> clearedSyncStateFields = new ArrayList<>();
+    for (FieldDescriptor field : ProjectData.SyncState.getDescriptor().getFields()) {
+      if (!syncState.hasField(field)) {
+        if (previousSyncState.hasField(field)) {
+          clearedSyncStateFields.add(field.getNumber());
+        }
+      } else if (!syncState.getField(field).equals(previousSyncState.getField(field))) {
+        changedSyncState.setField(field, syncState.getField(field));
+      }
+    }
+
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    CodedOutputStream output = CodedOutputStream.newInstance(record);
+    output.writeMessageNoTag(metadata.toBuilder().setSyncState(changedSyncState).build());
+    output.writeUInt32NoTag(clearedSyncStateFields.size());
+    for (int fieldNumber : clearedSyncStateFields) {
+      output.writeUInt32NoTag(fieldNumber);
+    }
+    output.writeUInt32NoTag(removedTargets.size());
+    for (TargetKey key : removedTargets) {
+      output.writeMessageNoTag(key.toProto());
+    }
+    output.writeUInt32NoTag(changedTargets.size());
+    for (IntellijIdeInfo.TargetIdeInfo target : changedTargets) {
+      output.writeMessageNoTag(target.getKey());
+      output.writeMessageNoTag(target);
+    }
+    output.flush();
+
+    File journal = IndexedProjectDataFile.getJournalFile(file);
+    boolean newJournal = !journal.exists();
+    try (OutputStream stream = new FileOutputStream(journal, /* append= */ true)) {
+      CodedOutputStream journalOutput = CodedOutputStream.newInstance(stream);
+      if (newJournal) {
+        journalOutput.writeRawBytes(MAGIC);
+        journalOutput.writeFixed32NoTag(VERSION);
+        journalOutput.writeFixed64NoTag(IndexedProjectDataFile.readGeneration(file));
+      }
+      journalOutput.writeByteArrayNoTag(record.toByteArray());
+      journalOutput.flush();
+    }
+    return true;
+  }
+
+  /**
+   * Applies the journaled changes (if any) to the given project data and targets, returning the
+   * updated project data. Stale journals are deleted, and any incomplete trailing record (e.g. from
+   * a crash while saving) is truncated.
+   */
+  static ProjectData.BlazeProjectData replay(
+      File journal,
+      long generation,
+      ProjectData.BlazeProjectData metadata,
+      Map<TargetKey, ByteBuffer> targets)
+      throws IOException {
+    if (!journal.exists()) {
+      return metadata;
+    }
+    byte[] data = Files.readAllBytes(journal.toPath());
+    if (!isValidHeader(data, generation)) {
+      logger.info("Discarding stale project data journal: " + journal);
+      Files.deleteIfExists(journal.toPath());
+      return metadata;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    int position = HEADER_SIZE;
+    while (position < data.length) {
+      try {
+        CodedInputStream input =
+            CodedInputStream.newInstance(data, position, data.length - position);
+        int length = input.readRawVarint32();
+        int start = position + input.getTotalBytesRead();
+        if (length < 0 || start + length > data.length) {
+          break;
+        }
+        metadata = replayRecord(buffer, start, length, metadata, targets);
+        position = start + length;
+      } catch (IOException e) {
+        break;
+      }
+    }
+    if (position < data.length) {
+      logger.warn("Truncating incomplete project data journal: " + journal);
+      try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+        file.setLength(position);
+      }
+    }
+    return metadata;
+  }
+
+  private static ProjectData.BlazeProjectData replayRecord(
+      ByteBuffer buffer,
+      int start,
+      int length,
+      ProjectData.BlazeProjectData metadata,
+      Map<TargetKey, ByteBuffer> targets)
+      throws IOException {
+    CodedInputStream input = CodedInputStream.newInstance(buffer.array(), start, length);
+    input.setSizeLimit(Integer.MAX_VALUE);
+    ProjectData.BlazeProjectData record =
+        input.readMessage(
+            ProjectData.BlazeProjectData.parser(), ExtensionRegistryLite.getEmptyRegistry());
+
+    ProjectData.SyncState.Builder syncState = metadata.getSyncState().toBuilder();
+    for (Map.Entry<FieldDescriptor, Object> field :
+        record.getSyncState().getAllFields().entrySet()) {
+      syncState.setField(field.getKey(), field.getValue());
+    }
+    int clearedCount = input.readUInt32();
+    for (int i = 0; i < clearedCount; i++) {
+      FieldDescriptor field =
+          ProjectData.SyncState.getDescriptor().findFieldByNumber(input.readUInt32());
+      if (field != null) {
+        syncState.clearField(field);
+      }
+    }
+
+    // only apply target changes once the whole record has been read successfully
+    List<TargetKey> removed = new ArrayList<>();
+    int removedCount = input.readUInt32();
+    for (int i = 0; i < removedCount; i++) {
+      removed.add(readTargetKey(input));
+    }
+    List<TargetKey> changedKeys = new ArrayList<>();
+    List<ByteBuffer> changedTargets = new ArrayList<>();
+    int changedCount = input.readUInt32();
+    for (int i = 0; i < changedCount; i++) {
+      changedKeys.add(readTargetKey(input));
+      int targetLength = input.readRawVarint32();
+      int targetOffset = start + input.getTotalBytesRead();
+      input.skipRawBytes(targetLength);
+      changedTargets.add(
+          IndexedProjectDataFile.slice(buffer, targetOffset, targetOffset + targetLength));
+    }
+
+    removed.forEach(targets::remove);
+    for (int i = 0; i < changedKeys.size(); i++) {
+      targets.put(changedKeys.get(i), changedTargets.get(i));
+    }
+    return record.toBuilder().setSyncState(syncState).build();
+  }
+
+  private static TargetKey readTargetKey(CodedInputStream input) throws IOException {
+    return TargetKey.fromProto(
+        input.readMessage(
+            IntellijIdeInfo.TargetKey.parser(), ExtensionRegistryLite.getEmptyRegistry()));
+  }
+
+  private static boolean isValidHeader(byte[] data, long generation) {
+    if (data.length < HEADER_SIZE
+        || !Arrays.equals(Arrays.copyOf(data, MAGIC.length), MAGIC)) {
+      return false;
+    }
+    ByteBuffer header = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+    return header.getInt(MAGIC.length) == VERSION
+        && header.getLong(MAGIC.length + 4) == generation;
+  }
+}
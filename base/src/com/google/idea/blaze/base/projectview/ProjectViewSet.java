@@ -22,11 +22,15 @@ import com.google.idea.blaze.base.projectview.section.ListSection;
 import com.google.idea.blaze.base.projectview.section.ScalarSection;
 import com.google.idea.blaze.base.projectview.section.Section;
 import com.google.idea.blaze.base.projectview.section.SectionKey;
+import com.intellij.openapi.util.Key;
 import java.io.File;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 import javax.annotation.Nullable;
 
 /** A collection of project views and their file names. */
@@ -35,10 +39,33 @@ public final class ProjectViewSet implements Serializable {
 
   private final ImmutableList<ProjectViewFile> projectViewFiles;
 
+  @Nullable private transient volatile ConcurrentMap<Key<?>, Object> cachedValues;
+
   public ProjectViewSet(ImmutableList<ProjectViewFile> projectViewFiles) {
     this.projectViewFiles = projectViewFiles;
   }
 
+  /**
+   * Returns a value derived from this project view set, computing it on first access. Project view
+   * sets are immutable, so this lets expensive derived state (e.g. compiled glob matchers) be
+   * shared between all callers.
+   */
+  public <T> T getCachedValue(Key<T> key, Function<ProjectViewSet, T> computer) {
+    ConcurrentMap<Key<?>, Object> values = cachedValues;
+    if (values == null) {
+      synchronized (this) {
+        values = cachedValues;
+        if (values == null) {
+          values = new ConcurrentHashMap<>();
+          cachedValues = values;
+        }
+      }
+    }
+    @SuppressWarnings("unchecked")
+    T value = (T) values.computeIfAbsent(key, k -> computer.apply(this));
+    return value;
+  }
+
   /** Returns all values from all list sections in the project views, in order */
   public <T> List<T> listItems(SectionKey<T, ListSection<T>> key) {
     List<T> result = Lists.newArrayList();
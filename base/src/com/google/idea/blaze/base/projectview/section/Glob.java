@@ -17,11 +17,13 @@ package com.google.idea.blaze.base.projectview.section;
 
 import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.idea.blaze.base.ideinfo.ProtoWrapper;
 import com.intellij.openapi.fileTypes.FileNameMatcher;
 import java.io.Serializable;
 import java.util.Collection;
 import java.util.List;
+import javax.annotation.Nullable;
 import org.jetbrains.jps.model.fileTypes.FileNameMatcherFactory;
 
 /** Glob matcher. */
@@ -40,6 +42,7 @@ public final class Glob implements ProtoWrapper<String>, Serializable {
   public static final class GlobSet {
 
     private final ImmutableList<Glob> globs;
+    @Nullable private volatile GlobSetMatcher matcher;
 
     public GlobSet(Collection<Glob> globs) {
       this.globs = ImmutableList.copyOf(globs);
@@ -50,12 +53,16 @@ public final class Glob implements ProtoWrapper<String>, Serializable {
     }
 
     public boolean matches(String string) {
-      for (Glob glob : globs) {
-        if (glob.matches(string)) {
-          return true;
-        }
+      if (globs.isEmpty()) {
+        return false;
       }
-      return false;
+      GlobSetMatcher matcher = this.matcher;
+      if (matcher == null) {
+        // compiled on first use; racing threads may each compile it, but the results are identical
+        matcher = new GlobSetMatcher(Lists.transform(globs, Glob::toString));
+        this.matcher = matcher;
+      }
+      return matcher.matches(string);
     }
 
     public static GlobSet fromProto(List<String> proto) {
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.projectview.section;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+
+/**
+ * Matches a string against a set of globs in a single pass, rather than trying each glob's {@link
+ * com.intellij.openapi.fileTypes.FileNameMatcher} in turn.
+ *
+ * <p>Follows the same rules as {@link org.jetbrains.jps.model.fileTypes.FileNameMatcherFactory}:
+ * '*' matches any sequence of characters (including '/'), '?' matches any single character, and
+ * '*.ext' patterns match the extension case-insensitively.
+ *
+ * <p>The common pattern shapes are grouped so their cost doesn't grow with the number of globs:
+ * exact names and extensions are hash lookups, and 'prefix*' / '*suffix' patterns share a trie
+ * each. Any remaining patterns are combined into a single regular expression.
+ */
+final class GlobSetMatcher {
+
+  private final ImmutableSet<String> exactMatches;
+  /** Lower-case extensions, without the leading '.' */
+  private final ImmutableSet<String> extensions;
+
+  private final CharTrie prefixes = new CharTrie();
+  /** Suffixes are stored reversed, so they can be matched from the end of the string. */
+  private final CharTrie reversedSuffixes = new CharTrie();
+
+  private final ImmutableList<String> infixes;
+  @Nullable private final Pattern otherPatterns;
+
+  GlobSetMatcher(Iterable<String> patterns) {
+    ImmutableSet.Builder<String> exactMatches = ImmutableSet.builder();
+    ImmutableSet.Builder<String> extensions = ImmutableSet.builder();
+    ImmutableList.Builder<String> infixes = ImmutableList.builder();
+    ImmutableList.Builder<String> otherPatterns = ImmutableList.builder();
+    for (String pattern : patterns) {
+      if (isExtensionPattern(pattern)) {
+        extensions.add(pattern.substring(2).toLowerCase(Locale.ROOT));
+        continue;
+      }
+      if (pattern.indexOf('?') >= 0) {
+        otherPatterns.add(pattern);
+        continue;
+      }
+      int stars = countStars(pattern);
+      int length = pattern.length();
+      if (stars == 0) {
+        exactMatches.add(pattern);
+      } else if (stars == 1 && pattern.charAt(length - 1) == '*') {
+        prefixes.add(pattern.substring(0, length - 1), /* reversed= */ false);
+      } else if (stars == 1 && pattern.charAt(0) == '*') {
+        reversedSuffixes.add(pattern.substring(1), /* reversed= */ true);
+      } else if (stars == 2 && pattern.charAt(0) == '*' && pattern.charAt(length - 1) == '*') {
+        infixes.add(pattern.substring(1, length - 1));
+      } else {
+        otherPatterns.add(pattern);
+      }
+    }
+    this.exactMatches = exactMatches.build();
+    this.extensions = extensions.build();
+    this.infixes = infixes.build();
+    this.otherPatterns = combine(otherPatterns.build());
+  }
+
+  boolean matches(String string) {
+    if (exactMatches.contains(string)
+        || prefixes.matchesPrefixOf(string)
+        || reversedSuffixes.matchesSuffixOf(string)) {
+      return true;
+    }
+    if (!extensions.isEmpty()) {
+      int dot = string.lastIndexOf('.');
+      if (dot >= 0 && extensions.contains(string.substring(dot + 1).toLowerCase(Locale.ROOT))) {
+        return true;
+      }
+    }
+    for (String infix : infixes) {
+      if (string.contains(infix)) {
+        return true;
+      }
+    }
+    return otherPatterns != null && otherPatterns.matcher(string).matches();
+  }
+
+  /** Mirrors the conditions under which an ExtensionFileNameMatcher is used. */
+  private static boolean isExtensionPattern(String pattern) {
+    return pattern.startsWith("*.")
+        && pattern.indexOf('*', 2) < 0
+        && pattern.indexOf('.', 2) < 0
+        && pattern.indexOf('?', 2) < 0;
+  }
+
+  private static int countStars(String pattern) {
+    int count = 0;
+    for (int i = 0; i < pattern.length(); i++) {
+      if (pattern.charAt(i) == '*') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  @Nullable
+  private static Pattern combine(ImmutableList<String> globs) {
+    if (globs.isEmpty()) {
+      return null;
+    }
+    return Pattern.compile(
+        globs.stream().map(GlobSetMatcher::toRegex).collect(Collectors.joining("|")),
+        Pattern.DOTALL);
+  }
+
+  private static String toRegex(String glob) {
+    StringBuilder regex = new StringBuilder("(?:");
+    int literalStart = 0;
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c != '*' && c != '?') {
+        continue;
+      }
+      if (i > literalStart) {
+        regex.append(Pattern.quote(glob.substring(literalStart, i)));
+      }
+      regex.append(c == '*' ? ".*" : ".");
+      literalStart = i + 1;
+    }
+    if (literalStart < glob.length()) {
+      regex.append(Pattern.quote(glob.substring(literalStart)));
+    }
+    return regex.append(')').toString();
+  }
+
+  /** A trie of literal strings, used to find whether any of them is a prefix/suffix of a string. */
+  private static final class CharTrie {
+    private final Node root = new Node();
+    private boolean isEmpty = true;
+
+    private static final class Node {
+      final Map<Character, Node> children = new HashMap<>();
+      boolean terminal;
+    }
+
+    void add(String literal, boolean reversed) {
+      Node node = root;
+      int length = literal.length();
+      for (int i = 0; i < length; i++) {
+        char c = literal.charAt(reversed ? length - 1 - i : i);
+        node = node.children.computeIfAbsent(c, k -> new Node());
+      }
+      node.terminal = true;
+      isEmpty = false;
+    }
+
+    boolean matchesPrefixOf(String string) {
+      if (isEmpty) {
+        return false;
+      }
+      Node node = root;
+      for (int i = 0; !node.terminal; i++) {
+        if (i == string.length()) {
+          return false;
+        }
+        node = node.children.get(string.charAt(i));
+        if (node == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    boolean matchesSuffixOf(String string) {
+      if (isEmpty) {
+        return false;
+      }
+      Node node = root;
+      for (int i = string.length() - 1; !node.terminal; i--) {
+        if (i < 0) {
+          return false;
+        }
+        node = node.children.get(string.charAt(i));
+        if (node == null) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -41,6 +41,7 @@ public class Sections {
           RunConfigurationsSection.PARSER,
           ShardBlazeBuildsSection.PARSER,
           TargetShardSizeSection.PARSER,
+          ShardsInFlightSection.PARSER,
           BazelBinarySection.PARSER);
 
   public static List<SectionParser> getParsers() {
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.projectview.section.sections;
+
+import com.google.idea.blaze.base.projectview.parser.ParseContext;
+import com.google.idea.blaze.base.projectview.parser.ProjectViewParser;
+import com.google.idea.blaze.base.projectview.section.ScalarSection;
+import com.google.idea.blaze.base.projectview.section.ScalarSectionParser;
+import com.google.idea.blaze.base.projectview.section.SectionKey;
+import com.google.idea.blaze.base.projectview.section.SectionParser;
+import javax.annotation.Nullable;
+
+/** Allows the user to pipeline reading of sharded sync build output with subsequent builds. */
+public class ShardsInFlightSection {
+  public static final SectionKey<Integer, ScalarSection<Integer>> KEY =
+      SectionKey.of("shards_in_flight");
+  public static final SectionParser PARSER = new ShardsInFlightSectionParser();
+
+  private static class ShardsInFlightSectionParser extends ScalarSectionParser<Integer> {
+    ShardsInFlightSectionParser() {
+      super(KEY, ':');
+    }
+
+    @Nullable
+    @Override
+    protected Integer parseItem(ProjectViewParser parser, ParseContext parseContext, String rest) {
+      try {
+        int value = Integer.parseInt(rest);
+        if (value >= 0) {
+          return value;
+        }
+      } catch (NumberFormatException e) {
+        // handled below
+      }
+      parseContext.addError(
+          String.format("Invalid shards in flight '%s': must be a non-negative integer", rest));
+      return null;
+    }
+
+    @Override
+    protected void printItem(StringBuilder sb, Integer value) {
+      sb.append(value.toString());
+    }
+
+    @Override
+    public ItemType getItemType() {
+      return ItemType.Other;
+    }
+
+    @Override
+    public String quickDocs() {
+      return "Sets the maximum number of built shards whose IDE info output is read in the "
+          + "background while the next shard builds, when sharding build invocations during sync. "
+          + "0 disables pipelining. Only relevant if 'shard_sync: true' is also set";
+    }
+  }
+}
@@ -31,6 +31,11 @@ import javax.annotation.Nullable;
 /** Looks for a test rule in the same blaze package as the source file. */
 class BlazePackageHeuristic implements TestTargetHeuristic {
 
+  @Override
+  public boolean dependsOnPsi() {
+    return false;
+  }
+
   @Override
   public boolean matchesSource(
       Project project,
@@ -26,6 +26,11 @@ import javax.annotation.Nullable;
 /** Looks for a test rule with rule name matching the source file. */
 public class TargetNameHeuristic implements TestTargetHeuristic {
 
+  @Override
+  public boolean dependsOnPsi() {
+    return false;
+  }
+
   @Override
   public boolean matchesSource(
       Project project,
@@ -49,6 +49,11 @@ public class TestSizeFromRoughTargetNameHeuristic implements TestTargetHeuristic
         .orElse(null);
   }
 
+  @Override
+  public boolean dependsOnPsi() {
+    return false;
+  }
+
   @Override
   public boolean matchesSource(
       Project project,
@@ -25,6 +25,11 @@ import javax.annotation.Nullable;
 /** Matches source files to test rules based on size annotations/tags. */
 public class TestSizeHeuristic implements TestTargetHeuristic {
 
+  @Override
+  public boolean dependsOnPsi() {
+    return false;
+  }
+
   @Override
   public boolean matchesSource(
       Project project,
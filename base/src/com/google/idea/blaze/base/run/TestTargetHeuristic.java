@@ -47,6 +47,9 @@ public interface TestTargetHeuristic {
     if (psiFile == null) {
       return null;
     }
+    if (TestTargetSelectionCache.isEnabled()) {
+      return TestTargetSelectionCache.getTestTarget(psiFile);
+    }
     VirtualFile vf = psiFile.getVirtualFile();
     File file = vf != null ? new File(vf.getPath()) : null;
     if (file == null) {
@@ -93,6 +96,15 @@ public interface TestTargetHeuristic {
     return filteredTargets.get(0);
   }
 
+  /**
+   * Returns false if {@link #matchesSource} doesn't look at the source {@link PsiFile}, i.e. only
+   * depends on the target, the source file path and the test size. The results of such heuristics
+   * are cached per source file until the next sync.
+   */
+  default boolean dependsOnPsi() {
+    return true;
+  }
+
   /** Returns true if the rule and source file match, according to this heuristic. */
   boolean matchesSource(
       Project project,
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.dependencies.TargetInfo;
+import com.google.idea.blaze.base.model.primitives.RuleType;
+import com.google.idea.blaze.base.run.targetfinder.FuturesUtil;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.common.experiments.BoolExperiment;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.CachedValueProvider.Result;
+import com.intellij.psi.util.CachedValuesManager;
+import java.io.File;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the test target chosen for each source file by {@link
+ * TestTargetHeuristic#testTargetForPsiElement}, which is called for every test method in a file
+ * each time run line markers and configuration producers are evaluated.
+ *
+ * <p>The candidate targets for a source file, and the results of the heuristics which don't depend
+ * on the PSI, are computed once per sync. The final choice is cached on the {@link PsiFile}, and
+ * recomputed (re-running only the PSI-dependent heuristics) when the file changes.
+ *
+ * <p>Nothing is cached while a higher-priority {@link SourceToTargetFinder} is still running.
+ */
+final class TestTargetSelectionCache {
+
+  private static final BoolExperiment enabled =
+      new BoolExperiment("blaze.test.target.selection.cache", true);
+
+  private TestTargetSelectionCache() {}
+
+  static boolean isEnabled() {
+    return enabled.getValue();
+  }
+
+  /** Chooses a test target for the given source file, as per {@link TestTargetHeuristic}. */
+  @Nullable
+  static TargetInfo getTestTarget(PsiFile psiFile) {
+    return CachedValuesManager.getCachedValue(
+        psiFile,
+        () -> {
+          Candidates candidates = getCandidates(psiFile);
+          TargetInfo target = candidates != null ? candidates.choose(psiFile) : null;
+          if (target == null || !candidates.complete) {
+            // don't cache negative or provisional results: the candidates might not be available
+            // yet, or a higher-priority finder might still return different ones
+            return Result.create(target, ModificationTracker.EVER_CHANGED);
+          }
+          return Result.create(
+              target,
+              psiFile,
+              SyncCache.getInstance(psiFile.getProject()).getModificationTracker());
+        });
+  }
+
+  @Nullable
+  private static Candidates getCandidates(PsiFile psiFile) {
+    VirtualFile vf = psiFile.getVirtualFile();
+    if (vf == null) {
+      return null;
+    }
+    Project project = psiFile.getProject();
+    File file = new File(vf.getPath());
+    ConcurrentMap<File, Candidates> candidatesBySource =
+        SyncCache.getInstance(project)
+            .get(TestTargetSelectionCache.class, (p, projectData) -> new ConcurrentHashMap<>());
+    Candidates cached = candidatesBySource != null ? candidatesBySource.get(file) : null;
+    if (cached != null) {
+      return cached;
+    }
+    // as per SourceToTargetFinder#findTargetsForSourceFile, but also tracking whether the result
+    // could still change
+    Collection<TargetInfo> targets = null;
+    boolean complete = true;
+    for (SourceToTargetFinder finder : SourceToTargetFinder.EP_NAME.getExtensions()) {
+      Future<Collection<TargetInfo>> future =
+          finder.targetsForSourceFile(project, file, Optional.of(RuleType.TEST));
+      if (!future.isDone()) {
+        complete = false;
+        continue;
+      }
+      Collection<TargetInfo> result = FuturesUtil.getIgnoringErrors(future);
+      if (result != null && !result.isEmpty()) {
+        targets = result;
+        break;
+      }
+    }
+    if (targets == null) {
+      return null;
+    }
+    Candidates candidates =
+        new Candidates(
+            project,
+            file,
+            ImmutableList.copyOf(targets),
+            TestTargetHeuristic.EP_NAME.getExtensions(),
+            complete);
+    if (complete && candidatesBySource != null) {
+      candidatesBySource.put(file, candidates);
+    }
+    return candidates;
+  }
+
+  /**
+   * The test targets reachable from a source file, along with the precomputed matches of each
+   * heuristic which doesn't depend on the PSI.
+   */
+  private static final class Candidates {
+    private final Project project;
+    private final File sourceFile;
+    private final ImmutableList<TargetInfo> targets;
+    private final TestTargetHeuristic[] heuristics;
+    /** The targets matched by each heuristic, or null for heuristics which depend on the PSI. */
+    private final BitSet[] precomputedMatches;
+    /** False if higher-priority {@link SourceToTargetFinder}s hadn't finished. */
+    private final boolean complete;
+
+    Candidates(
+        Project project,
+        File sourceFile,
+        ImmutableList<TargetInfo> targets,
+        TestTargetHeuristic[] heuristics,
+        boolean complete) {
+      this.project = project;
+      this.sourceFile = sourceFile;
+      this.targets = targets;
+      this.heuristics = heuristics;
+      this.complete = complete;
+      this.precomputedMatches = new BitSet[heuristics.length];
+      BitSet allTargets = allTargets();
+      for (int i = 0; i < heuristics.length; i++) {
+        if (!heuristics[i].dependsOnPsi()) {
+          precomputedMatches[i] = matches(heuristics[i], allTargets, null);
+        }
+      }
+    }
+
+    private BitSet allTargets() {
+      BitSet all = new BitSet(targets.size());
+      all.set(0, targets.size());
+      return all;
+    }
+
+    /** Returns the subset of the given targets matched by the heuristic. */
+    private BitSet matches(
+        TestTargetHeuristic heuristic, BitSet candidates, @Nullable PsiFile sourcePsiFile) {
+      BitSet matches = new BitSet(targets.size());
+      for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+        if (heuristic.matchesSource(project, targets.get(i), sourcePsiFile, sourceFile, null)) {
+          matches.set(i);
+        }
+      }
+      return matches;
+    }
+
+    /** Mirrors {@link TestTargetHeuristic#chooseTestTargetForSourceFile}, with no test size. */
+    TargetInfo choose(PsiFile sourcePsiFile) {
+      BitSet filtered = allTargets();
+      for (int i = 0; i < heuristics.length; i++) {
+        BitSet matches;
+        if (precomputedMatches[i] != null) {
+          matches = (BitSet) precomputedMatches[i].clone();
+          matches.and(filtered);
+        } else {
+          matches = matches(heuristics[i], filtered, sourcePsiFile);
+        }
+        int count = matches.cardinality();
+        if (count == 1) {
+          return targets.get(matches.nextSetBit(0));
+        }
+        if (count > 1) {
+          // subsequent heuristics will only consider these matches
+          filtered = matches;
+        }
+      }
+      return targets.get(filtered.nextSetBit(0));
+    }
+  }
+}
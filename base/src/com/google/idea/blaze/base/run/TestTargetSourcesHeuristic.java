@@ -34,6 +34,11 @@ import javax.annotation.Nullable;
  */
 public class TestTargetSourcesHeuristic implements TestTargetHeuristic {
 
+  @Override
+  public boolean dependsOnPsi() {
+    return false;
+  }
+
   @Override
   public boolean matchesSource(
       Project project,
@@ -27,7 +27,7 @@ import com.google.idea.blaze.base.model.primitives.TargetExpression;
 import com.google.idea.blaze.base.run.BlazeCommandRunConfiguration;
 import com.google.idea.blaze.base.run.BlazeCommandRunConfigurationType;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
-import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
+import com.google.idea.blaze.base.targetmaps.DependencyGraph;
 import com.intellij.execution.actions.ConfigurationContext;
 import com.intellij.execution.actions.ConfigurationFromContext;
 import com.intellij.openapi.project.Project;
@@ -92,7 +92,9 @@ public abstract class BlazeWebTestConfigurationProducer
     // The target will be updated to match the kind at the end.
     configuration.setTargetInfo(
         TargetInfo.builder(label, GenericBlazeRules.RuleTypes.WEB_TEST.toString()).build());
-    return ReverseDependencyMap.get(project).get(TargetKey.forPlainTarget(label)).stream()
+    return DependencyGraph.get(project)
+        .getReverseDependencies(TargetKey.forPlainTarget(label))
+        .stream()
         .map(targetMap::get)
         .filter(Objects::nonNull)
         .map(TargetIdeInfo::getKind)
@@ -140,7 +142,9 @@ public abstract class BlazeWebTestConfigurationProducer
       return ImmutableList.of();
     }
     TargetMap targetMap = projectData.getTargetMap();
-    return ReverseDependencyMap.get(project).get(TargetKey.forPlainTarget(wrappedTest)).stream()
+    return DependencyGraph.get(project)
+        .getReverseDependencies(TargetKey.forPlainTarget(wrappedTest))
+        .stream()
         .map(targetMap::get)
         .filter(Objects::nonNull)
         .filter(t -> t.getKind() == GenericBlazeRules.RuleTypes.WEB_TEST.getKind())
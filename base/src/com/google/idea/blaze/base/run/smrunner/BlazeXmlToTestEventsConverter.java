@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.base.run.smrunner;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
@@ -49,6 +50,7 @@ import com.intellij.execution.testframework.sm.runner.events.TestSuiteFinishedEv
 import com.intellij.execution.testframework.sm.runner.events.TestSuiteStartedEvent;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
@@ -57,6 +59,10 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.annotation.Nullable;
 import jetbrains.buildServer.messages.serviceMessages.TestSuiteStarted;
 
@@ -65,6 +71,11 @@ public class BlazeXmlToTestEventsConverter extends OutputToGeneralTestEventsConv
   private static final ErrorOrFailureOrSkipped NO_ERROR = new ErrorOrFailureOrSkipped();
   private static final BoolExperiment removeZeroRunTimeCheck =
       new BoolExperiment("remove.zero.run.time.check", true);
+  @VisibleForTesting
+  static final BoolExperiment streamTestResults =
+      new BoolExperiment("blaze.test.stream.results", false);
+  private static final BoolExperiment useTestXmlPullParser =
+      new BoolExperiment("blaze.test.xml.pull.parser", true);
 
   {
     NO_ERROR.message = "No message"; // cannot be null
@@ -72,49 +83,106 @@ public class BlazeXmlToTestEventsConverter extends OutputToGeneralTestEventsConv
 
   private final BlazeTestResultFinderStrategy testResultFinderStrategy;
 
+  /** Guards calls to the test events processor, which may come from multiple threads. */
+  private final Object processorLock = new Object();
+
+  private boolean testingStarted = false;
+
+  /** Targets whose results were streamed while blaze was running. */
+  private final Set<Label> streamedTargets = ConcurrentHashMap.newKeySet();
+  private final Queue<ListenableFuture<?>> streamedResults = new ConcurrentLinkedQueue<>();
+
   public BlazeXmlToTestEventsConverter(
       String testFrameworkName,
       TestConsoleProperties testConsoleProperties,
       BlazeTestResultFinderStrategy testResultFinderStrategy) {
     super(testFrameworkName, testConsoleProperties);
     this.testResultFinderStrategy = testResultFinderStrategy;
+    if (streamTestResults.getValue()) {
+      testResultFinderStrategy.streamTestResults(this::processStreamedTestResults);
+    }
+  }
+
+  /**
+   * Parses and reports the results of a single target while blaze is still running. Any targets
+   * not reported here are handled in {@link #flushBufferOnProcessTermination}.
+   */
+  private void processStreamedTestResults(BlazeTestResults testResults) {
+    for (Label label : testResults.perTargetResults.keySet()) {
+      if (!streamedTargets.add(label)) {
+        continue;
+      }
+      streamedResults.add(
+          FetchExecutor.EXECUTOR.submit(
+              () -> {
+                ParsedTargetResults parsedResults =
+                    parseTestXml(label, testResults.perTargetResults.get(label));
+                synchronized (processorLock) {
+                  startTesting();
+                  processParsedTestResults(parsedResults);
+                }
+              }));
+    }
+  }
+
+  @Override
+  public void dispose() {
+    testResultFinderStrategy.stopStreamingTestResults();
+    super.dispose();
   }
 
   @Override
   public void flushBufferOnProcessTermination(int exitCode) {
     super.flushBufferOnProcessTermination(exitCode);
-    BlazeTestResults testResults = testResultFinderStrategy.findTestResults();
-    if (testResults == null || testResults == BlazeTestResults.NO_RESULTS) {
-      BlazeTestExitStatus exitStatus = BlazeTestExitStatus.forExitCode(exitCode);
-      if (exitStatus == null) {
-        reportTestRuntimeError(
-            "Unknown Error",
-            "Test runtime terminated unexpectedly with exit code " + exitCode + ".");
-      } else {
-        reportTestRuntimeError(exitStatus.title, exitStatus.message);
+    try {
+      BlazeTestResults testResults = testResultFinderStrategy.findTestResults();
+      // wait for any targets already read from the stream to be reported
+      FuturesUtil.getIgnoringErrors(Futures.successfulAsList(streamedResults));
+      if ((testResults == null || testResults == BlazeTestResults.NO_RESULTS)
+          && streamedTargets.isEmpty()) {
+        BlazeTestExitStatus exitStatus = BlazeTestExitStatus.forExitCode(exitCode);
+        if (exitStatus == null) {
+          reportTestRuntimeError(
+              "Unknown Error",
+              "Test runtime terminated unexpectedly with exit code " + exitCode + ".");
+        } else {
+          reportTestRuntimeError(exitStatus.title, exitStatus.message);
+        }
+      } else if (testResults != null) {
+        processAllTestResults(testResults);
       }
-    } else {
-      processAllTestResults(testResults);
+    } finally {
+      // streamed results may have been read from output files, even if there are no final results
+      testResultFinderStrategy.deleteTemporaryOutputXmlFiles();
+    }
+  }
+
+  /** Notifies the test UI that results are about to be reported. Must hold the processor lock. */
+  private void startTesting() {
+    if (!testingStarted) {
+      testingStarted = true;
+      onStartTesting();
+      getProcessor().onTestsReporterAttached();
     }
   }
 
   private void processAllTestResults(BlazeTestResults testResults) {
-    onStartTesting();
-    getProcessor().onTestsReporterAttached();
-    try {
-      List<ListenableFuture<ParsedTargetResults>> futures = new ArrayList<>();
-      for (Label label : testResults.perTargetResults.keySet()) {
-        futures.add(
-            FetchExecutor.EXECUTOR.submit(
-                () -> parseTestXml(label, testResults.perTargetResults.get(label))));
+    List<ListenableFuture<ParsedTargetResults>> futures = new ArrayList<>();
+    for (Label label : testResults.perTargetResults.keySet()) {
+      if (streamedTargets.contains(label)) {
+        continue;
       }
-      List<ParsedTargetResults> parsedResults =
-          FuturesUtil.getIgnoringErrors(Futures.allAsList(futures));
+      futures.add(
+          FetchExecutor.EXECUTOR.submit(
+              () -> parseTestXml(label, testResults.perTargetResults.get(label))));
+    }
+    List<ParsedTargetResults> parsedResults =
+        FuturesUtil.getIgnoringErrors(Futures.allAsList(futures));
+    synchronized (processorLock) {
+      startTesting();
       if (parsedResults != null) {
         parsedResults.forEach(this::processParsedTestResults);
       }
-    } finally {
-      testResultFinderStrategy.deleteTemporaryOutputXmlFiles();
     }
   }
 
@@ -143,9 +211,11 @@ public class BlazeXmlToTestEventsConverter extends OutputToGeneralTestEventsConv
     List<File> outputFiles = new ArrayList<>();
     results.forEach(result -> outputFiles.addAll(result.getOutputXmlFiles()));
     List<TestSuite> targetSuites = new ArrayList<>();
+    boolean usePullParser = useTestXmlPullParser.getValue();
     for (File file : outputFiles) {
-      try (InputStream input = new FileInputStream(file)) {
-        targetSuites.add(BlazeXmlSchema.parse(input));
+      try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+        targetSuites.add(
+            usePullParser ? TestXmlPullParser.parse(input) : BlazeXmlSchema.parse(input));
       } catch (Exception e) {
         // ignore parsing errors -- most common cause is user cancellation, which we can't easily
         // recognize.
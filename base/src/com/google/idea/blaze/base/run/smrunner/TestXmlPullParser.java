@@ -0,0 +1,259 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run.smrunner;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.ErrorOrFailureOrSkipped;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.TestCase;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.TestSuite;
+import java.io.InputStream;
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Parses the test.xml generated by the blaze/bazel testing framework into the {@link
+ * BlazeXmlSchema} model, using a StAX pull parser rather than JAXB.
+ *
+ * <p>Elements not in the model (e.g. 'system-out' elements, which can be hundreds of MB for
+ * parameterized tests) are skipped without being buffered, and retained text is truncated to
+ * {@link #MAX_TEXT_LENGTH} characters.
+ */
+final class TestXmlPullParser {
+
+  /** The maximum number of characters retained for a single error message or output block. */
+  @VisibleForTesting static final int MAX_TEXT_LENGTH = 1 << 20;
+
+  @VisibleForTesting static final String TRUNCATED_SUFFIX = "\n<output truncated>";
+
+  private static final XMLInputFactory FACTORY = createFactory();
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    return factory;
+  }
+
+  private TestXmlPullParser() {}
+
+  static TestSuite parse(InputStream input) {
+    XMLStreamReader reader = null;
+    try {
+      reader = FACTORY.createXMLStreamReader(input);
+      if (!nextChildElement(reader)) {
+        throw new RuntimeException("Test XML has no root element");
+      }
+      switch (reader.getLocalName()) {
+        case "testsuites":
+          // optional wrapping XML element. Some test runners don't include it.
+          TestSuite outer = new TestSuite();
+          while (nextChildElement(reader)) {
+            if (reader.getLocalName().equals("testsuite")) {
+              outer.testSuites.add(parseTestSuite(reader));
+            } else {
+              skipElement(reader);
+            }
+          }
+          return outer;
+        case "testsuite":
+          return parseTestSuite(reader);
+        default:
+          throw new RuntimeException("Unexpected root element: " + reader.getLocalName());
+      }
+    } catch (XMLStreamException e) {
+      throw new RuntimeException("Failed to parse test XML", e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (XMLStreamException e) {
+          // ignore
+        }
+      }
+    }
+  }
+
+  /** Parses a 'testsuite' or 'testdecorator' element, leaving the reader at its end tag. */
+  private static TestSuite parseTestSuite(XMLStreamReader reader) throws XMLStreamException {
+    TestSuite suite = new TestSuite();
+    suite.name = reader.getAttributeValue(null, "name");
+    suite.classname = reader.getAttributeValue(null, "classname");
+    suite.tests = parseInt(reader.getAttributeValue(null, "tests"));
+    suite.failures = parseInt(reader.getAttributeValue(null, "failures"));
+    suite.errors = parseInt(reader.getAttributeValue(null, "errors"));
+    suite.skipped = parseInt(reader.getAttributeValue(null, "skipped"));
+    suite.disabled = parseInt(reader.getAttributeValue(null, "disabled"));
+    suite.time = parseDouble(reader.getAttributeValue(null, "time"));
+    suite.sysOut = truncate(reader.getAttributeValue(null, "system-out"));
+    suite.sysErr = truncate(reader.getAttributeValue(null, "system-err"));
+
+    while (nextChildElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "testsuite":
+          suite.testSuites.add(parseTestSuite(reader));
+          break;
+        case "testdecorator":
+          suite.testDecorators.add(parseTestSuite(reader));
+          break;
+        case "testcase":
+          suite.testCases.add(parseTestCase(reader));
+          break;
+        case "error":
+          suite.error = parseErrorOrFailureOrSkipped(reader);
+          break;
+        case "failure":
+          suite.failure = parseErrorOrFailureOrSkipped(reader);
+          break;
+        default:
+          skipElement(reader);
+      }
+    }
+    return suite;
+  }
+
+  /** Parses a 'testcase' element, leaving the reader at its end tag. */
+  private static TestCase parseTestCase(XMLStreamReader reader) throws XMLStreamException {
+    TestCase test = new TestCase();
+    test.name = reader.getAttributeValue(null, "name");
+    test.classname = reader.getAttributeValue(null, "classname");
+    test.status = reader.getAttributeValue(null, "status");
+    test.result = reader.getAttributeValue(null, "result");
+    test.time = reader.getAttributeValue(null, "time");
+    test.sysOut = truncate(reader.getAttributeValue(null, "system-out"));
+    test.sysErr = truncate(reader.getAttributeValue(null, "system-err"));
+
+    while (nextChildElement(reader)) {
+      switch (reader.getLocalName()) {
+        case "error":
+          test.errors.add(parseErrorOrFailureOrSkipped(reader));
+          break;
+        case "failure":
+          test.failures.add(parseErrorOrFailureOrSkipped(reader));
+          break;
+        case "skipped":
+          test.skipped = parseErrorOrFailureOrSkipped(reader);
+          break;
+        default:
+          skipElement(reader);
+      }
+    }
+    return test;
+  }
+
+  /**
+   * Parses an 'error', 'failure' or 'skipped' element, leaving the reader at its end tag. Only
+   * direct text content is retained; any child elements are skipped.
+   */
+  private static ErrorOrFailureOrSkipped parseErrorOrFailureOrSkipped(XMLStreamReader reader)
+      throws XMLStreamException {
+    ErrorOrFailureOrSkipped result = new ErrorOrFailureOrSkipped();
+    result.message = reader.getAttributeValue(null, "message");
+    result.type = reader.getAttributeValue(null, "type");
+
+    StringBuilder content = new StringBuilder();
+    boolean truncated = false;
+    int event;
+    while ((event = reader.next()) != XMLStreamConstants.END_ELEMENT) {
+      switch (event) {
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+          int remaining = MAX_TEXT_LENGTH - content.length();
+          int length = reader.getTextLength();
+          if (length > remaining) {
+            truncated = true;
+            length = remaining;
+          }
+          content.append(reader.getTextCharacters(), reader.getTextStart(), length);
+          break;
+        case XMLStreamConstants.START_ELEMENT:
+          skipElement(reader);
+          break;
+        default: // ignore comments and processing instructions
+      }
+    }
+    result.content = truncated ? content.append(TRUNCATED_SUFFIX).toString() : content.toString();
+    return result;
+  }
+
+  /**
+   * Advances to the next child element of the current element, ignoring any text, comments, etc.
+   * Returns false (leaving the reader at the current element's end tag) if there are no more child
+   * elements.
+   */
+  private static boolean nextChildElement(XMLStreamReader reader) throws XMLStreamException {
+    while (reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        return true;
+      }
+      if (event == XMLStreamConstants.END_ELEMENT) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Skips the current element and all its children, without retaining any text, leaving the reader
+   * at its end tag.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  @Nullable
+  private static String truncate(@Nullable String text) {
+    if (text == null || text.length() <= MAX_TEXT_LENGTH) {
+      return text;
+    }
+    return text.substring(0, MAX_TEXT_LENGTH) + TRUNCATED_SUFFIX;
+  }
+
+  private static int parseInt(@Nullable String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static double parseDouble(@Nullable String value) {
+    if (value == null) {
+      return 0;
+    }
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+}
@@ -15,6 +15,7 @@
  */
 package com.google.idea.blaze.base.run.testlogs;
 
+import java.util.function.Consumer;
 import javax.annotation.Nullable;
 
 /** A strategy for locating results from 'blaze test' invocation (e.g. output XML files). */
@@ -27,6 +28,24 @@ public interface BlazeTestResultFinderStrategy {
   @Nullable
   BlazeTestResults findTestResults();
 
+  /**
+   * Starts reading test results while 'blaze test' is still running, passing each target's results
+   * to the consumer (on a background thread) as soon as they're complete. Must be called before the
+   * 'blaze test' process starts.
+   *
+   * <p>Returns false if streaming isn't supported. Either way, {@link #findTestResults} returns all
+   * results once the process completes, including those already passed to the consumer.
+   */
+  default boolean streamTestResults(Consumer<BlazeTestResults> consumer) {
+    return false;
+  }
+
+  /**
+   * Stops reading streamed test results without waiting for 'blaze test' to complete. Only needed
+   * if {@link #findTestResults} won't be called (e.g. the process never started).
+   */
+  default void stopStreamingTestResults() {}
+
   /** Remove any temporary files used by this result finder. */
   void deleteTemporaryOutputXmlFiles();
 }
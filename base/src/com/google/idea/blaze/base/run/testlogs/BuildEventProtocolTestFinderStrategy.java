@@ -15,13 +15,19 @@
  */
 package com.google.idea.blaze.base.run.testlogs;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.command.buildresult.BuildEventProtocolOutputReader;
+import com.google.idea.blaze.base.command.buildresult.TailingInputStream;
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
 
 /**
  * A strategy for locating results from a single 'blaze test' invocation (e.g. output XML files).
@@ -35,22 +41,80 @@ public final class BuildEventProtocolTestFinderStrategy implements BlazeTestResu
 
   private final File outputFile;
 
+  @Nullable private TailingInputStream streamingInput;
+  @Nullable private ListenableFuture<BlazeTestResults> streamedResults;
+
   public BuildEventProtocolTestFinderStrategy(File bepOutputFile) {
     this.outputFile = bepOutputFile;
   }
 
+  @Override
+  public boolean streamTestResults(Consumer<BlazeTestResults> consumer) {
+    TailingInputStream tailingStream = new TailingInputStream(outputFile);
+    streamingInput = tailingStream;
+    streamedResults =
+        BlazeExecutor.getInstance()
+            .submit(
+                () -> {
+                  try (InputStream inputStream = new BufferedInputStream(tailingStream)) {
+                    return BuildEventProtocolOutputReader.parseTestResults(inputStream, consumer);
+                  }
+                });
+    return true;
+  }
+
+  @Override
+  public void stopStreamingTestResults() {
+    if (streamingInput != null) {
+      try {
+        streamingInput.close();
+      } catch (IOException e) {
+        logger.warn(e);
+      }
+    }
+  }
+
   @Override
   public BlazeTestResults findTestResults() {
+    try {
+      BlazeTestResults results = getStreamedResults();
+      return results != null ? results : readTestResults();
+    } finally {
+      stopStreamingTestResults();
+      if (!outputFile.delete()) {
+        logger.warn("Could not delete BEP output file: " + outputFile);
+      }
+    }
+  }
+
+  /**
+   * Waits for the remaining streamed BEP output to be read. Returns null if results weren't
+   * streamed, or the stream couldn't be read, in which case the BEP file is re-read in full.
+   */
+  @Nullable
+  private BlazeTestResults getStreamedResults() {
+    if (streamingInput == null || streamedResults == null) {
+      return null;
+    }
+    streamingInput.finish();
+    try {
+      return streamedResults.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      logger.warn(e);
+      return null;
+    }
+  }
+
+  private BlazeTestResults readTestResults() {
     try (InputStream inputStream =
         new BufferedInputStream(InputStreamProvider.getInstance().getFile(outputFile))) {
       return BuildEventProtocolOutputReader.parseTestResults(inputStream);
     } catch (IOException e) {
       logger.warn(e);
       return BlazeTestResults.NO_RESULTS;
-    } finally {
-      if (!outputFile.delete()) {
-        logger.warn("Could not delete BEP output file: " + outputFile);
-      }
     }
   }
 
@@ -17,11 +17,8 @@ package com.google.idea.blaze.base.run.testmap;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Queues;
-import com.google.common.collect.Sets;
 import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
@@ -29,13 +26,11 @@ import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
-import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
+import com.google.idea.blaze.base.targetmaps.DependencyGraph;
 import com.intellij.openapi.project.Project;
 import java.io.File;
 import java.util.Collection;
 import java.util.List;
-import java.util.Queue;
-import java.util.Set;
 import java.util.function.Predicate;
 
 /** Filters a {@link TargetMap} according to a given filter. */
@@ -61,30 +56,20 @@ public class FilteredTargetMap {
     BlazeProjectData blazeProjectData =
         BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
     if (blazeProjectData != null) {
-      return targetsForSourceFileImpl(ReverseDependencyMap.get(project), sourceFile);
+      return targetsForSourceFileImpl(DependencyGraph.get(project), sourceFile);
     }
     return ImmutableList.of();
   }
 
   private Collection<TargetIdeInfo> targetsForSourceFileImpl(
-      ImmutableMultimap<TargetKey, TargetKey> rdepsMap, File sourceFile) {
+      DependencyGraph dependencyGraph, File sourceFile) {
     List<TargetIdeInfo> result = Lists.newArrayList();
     Collection<TargetKey> roots = rootsMap.get(sourceFile);
-
-    Queue<TargetKey> todo = Queues.newArrayDeque();
-    todo.addAll(roots);
-    Set<TargetKey> seen = Sets.newHashSet();
-    while (!todo.isEmpty()) {
-      TargetKey targetKey = todo.remove();
-      if (!seen.add(targetKey)) {
-        continue;
-      }
-
+    for (TargetKey targetKey : dependencyGraph.getTransitiveReverseDependencies(roots)) {
       TargetIdeInfo target = targetMap.get(targetKey);
       if (filter.test(target)) {
         result.add(target);
       }
-      todo.addAll(rdepsMap.get(targetKey));
     }
     return result;
   }
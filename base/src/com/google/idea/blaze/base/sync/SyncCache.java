@@ -16,26 +16,84 @@
 package com.google.idea.blaze.base.sync;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.ExtensionPointName;
 import com.intellij.openapi.project.Project;
-import java.util.Map;
+import com.intellij.openapi.util.ModificationTracker;
+import com.intellij.openapi.util.SimpleModificationTracker;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import javax.annotation.Nullable;
 
-/** Computes a cache on the project data. */
+/**
+ * Computes a cache on the project data.
+ *
+ * <p>Each key is computed at most once per sync, without blocking readers of other keys.
+ */
 public class SyncCache {
+  private static final Logger logger = Logger.getInstance(SyncCache.class);
+
+  private static final BoolExperiment precomputeAfterSync =
+      new BoolExperiment("blaze.sync.cache.precompute", true);
+
   /** Computes a value based on the sync project data. */
   public interface SyncCacheComputable<T> {
     T compute(Project project, BlazeProjectData projectData);
   }
 
+  /** A cached value which is computed in the background as soon as sync completes. */
+  public interface Precomputed {
+    ExtensionPointName<Precomputed> EP_NAME =
+        ExtensionPointName.create("com.google.idea.blaze.SyncCachePrecomputed");
+
+    /** The key passed to {@link SyncCache#get} when reading the value. */
+    Object getKey();
+
+    SyncCacheComputable<?> getComputable();
+  }
+
+  /** Usage statistics for a single cache key, accumulated across syncs. */
+  public static final class Stats {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder computeNanos = new LongAdder();
+
+    public long getHits() {
+      return hits.sum();
+    }
+
+    /** The number of times the value was computed. */
+    public long getMisses() {
+      return misses.sum();
+    }
+
+    public long getComputeTimeMillis() {
+      return TimeUnit.NANOSECONDS.toMillis(computeNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "hits=%d, misses=%d, compute time=%dms",
+          getHits(), getMisses(), getComputeTimeMillis());
+    }
+  }
+
   private final Project project;
-  private final Map<Object, Object> cache = Maps.newHashMap();
+  private final ConcurrentMap<Object, Entry> cache = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, Stats> stats = new ConcurrentHashMap<>();
+  private final SimpleModificationTracker modificationTracker = new SimpleModificationTracker();
 
   public SyncCache(Project project) {
     this.project = project;
@@ -45,25 +103,74 @@ public class SyncCache {
     return ServiceManager.getService(project, SyncCache.class);
   }
 
-  /** Computes a value derived from the sync project data and caches it until the next sync. */
+  /**
+   * Computes a value derived from the sync project data and caches it until the next sync.
+   *
+   * <p>If another thread is already computing the value for this key, waits for that computation
+   * rather than repeating it.
+   */
   @Nullable
   @SuppressWarnings("unchecked")
-  public synchronized <T> T get(Object key, SyncCacheComputable<T> computable) {
-    T value = (T) cache.get(key);
-    if (value == null) {
-      BlazeProjectData blazeProjectData =
-          BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
-      if (blazeProjectData != null) {
-        value = computable.compute(project, blazeProjectData);
-        cache.put(key, value);
-      }
-    }
-    return value;
+  public <T> T get(Object key, SyncCacheComputable<T> computable) {
+    Stats keyStats = stats.computeIfAbsent(key, k -> new Stats());
+    // the entry is only created here; computing the value doesn't hold any lock on the map
+    Entry entry = cache.computeIfAbsent(key, k -> new Entry());
+    return (T) entry.get(project, computable, keyStats);
+  }
+
+  /** Starts computing the value for the given key in the background, if not already cached. */
+  public void precompute(Object key, SyncCacheComputable<?> computable) {
+    BlazeExecutor.getInstance().submit(() -> get(key, computable));
+  }
+
+  /** Returns the usage statistics of each key requested so far. */
+  public ImmutableMap<Object, Stats> getStats() {
+    return ImmutableMap.copyOf(stats);
+  }
+
+  /**
+   * Incremented each time the cache is cleared. Lets {@link
+   * com.intellij.psi.util.CachedValue}s derived from cached values be invalidated on sync.
+   */
+  public ModificationTracker getModificationTracker() {
+    return modificationTracker;
   }
 
   @VisibleForTesting
-  public synchronized void clear() {
+  public void clear() {
+    // any computation still in progress only updates its (now unreachable) entry
     cache.clear();
+    modificationTracker.incModificationCount();
+  }
+
+  /** A single cached value, computed at most once. */
+  private static final class Entry {
+    @Nullable private volatile Object value;
+
+    @Nullable
+    Object get(Project project, SyncCacheComputable<?> computable, Stats stats) {
+      Object value = this.value;
+      if (value == null) {
+        synchronized (this) {
+          value = this.value;
+          if (value == null) {
+            BlazeProjectData blazeProjectData =
+                BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
+            if (blazeProjectData == null) {
+              return null;
+            }
+            stats.misses.increment();
+            long start = System.nanoTime();
+            value = computable.compute(project, blazeProjectData);
+            stats.computeNanos.add(System.nanoTime() - start);
+            this.value = value;
+            return value;
+          }
+        }
+      }
+      stats.hits.increment();
+      return value;
+    }
   }
 
   static class ClearSyncCache implements SyncListener {
@@ -77,7 +184,15 @@ public class SyncCache {
         SyncMode syncMode,
         SyncResult syncResult) {
       SyncCache syncCache = getInstance(project);
+      if (logger.isDebugEnabled()) {
+        syncCache.stats.forEach((key, stats) -> logger.debug("Sync cache " + key + ": " + stats));
+      }
       syncCache.clear();
+      if (precomputeAfterSync.getValue()) {
+        for (Precomputed precomputed : Precomputed.EP_NAME.getExtensions()) {
+          syncCache.precompute(precomputed.getKey(), precomputed.getComputable());
+        }
+      }
     }
   }
 }
@@ -38,6 +38,7 @@ import com.google.idea.blaze.base.command.BlazeFlags;
 import com.google.idea.blaze.base.command.BlazeInvocationContext;
 import com.google.idea.blaze.base.command.buildresult.BuildResultHelper;
 import com.google.idea.blaze.base.command.buildresult.BuildResultHelper.GetArtifactsException;
+import com.google.idea.blaze.base.command.buildresult.BuildResultHelper.StreamedBuildArtifacts;
 import com.google.idea.blaze.base.command.buildresult.BuildResultHelperProvider;
 import com.google.idea.blaze.base.command.info.BlazeConfigurationHandler;
 import com.google.idea.blaze.base.command.info.BlazeInfo;
@@ -72,8 +73,10 @@ import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy.OutputGro
 import com.google.idea.blaze.base.sync.projectview.ImportRoots;
 import com.google.idea.blaze.base.sync.projectview.LanguageSupport;
 import com.google.idea.blaze.base.sync.projectview.WorkspaceLanguageSettings;
+import com.google.idea.blaze.base.sync.sharding.BlazeBuildTargetSharder;
 import com.google.idea.blaze.base.sync.sharding.ShardedTargetList;
 import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Ref;
@@ -90,6 +93,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import javax.annotation.Nullable;
@@ -99,6 +103,10 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
 
   private static final Logger logger = Logger.getInstance(BlazeIdeInterfaceAspectsImpl.class);
 
+  /** Whether ide-info files should be parsed as they're built, while blaze is still running. */
+  private static final BoolExperiment streamAspectOutput =
+      new BoolExperiment("blaze.sync.stream.aspect.output", false);
+
   @Override
   public IdeResult updateTargetMap(
       Project project,
@@ -133,6 +141,17 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
       oldTargetMap = null;
     }
 
+    int shardsInFlight = BlazeBuildTargetSharder.getShardsInFlight(projectViewSet);
+    boolean pipelineShards = shardsInFlight > 0 && shardedTargets.shardedTargets.size() > 1;
+    PipelinedIdeInfoReader pipelinedReader =
+        pipelineShards || streamAspectOutput.getValue()
+            ? new PipelinedIdeInfoReader(
+                aspectStrategy,
+                prevState != null ? prevState.fileState : null,
+                shardsInFlight,
+                BlazeExecutor.getInstance().getExecutor())
+            : null;
+
     IdeInfoResult ideInfoResult =
         getIdeInfo(
             project,
@@ -142,9 +161,13 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
             blazeInfo,
             workspaceLanguageSettings.getActiveLanguages(),
             shardedTargets,
-            aspectStrategy);
+            aspectStrategy,
+            pipelinedReader);
     context.output(PrintOutput.log("ide-info result: " + ideInfoResult.buildResult.status));
     if (ideInfoResult.buildResult.status == BuildResult.Status.FATAL_ERROR) {
+      if (pipelinedReader != null) {
+        pipelinedReader.cancel();
+      }
       return new IdeResult(oldTargetMap, ideInfoResult.buildResult);
     }
     // If there was a partial error, make a best-effort attempt to sync. Retain
@@ -160,6 +183,9 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
         FileDiffer.updateFiles(
             prevState != null ? prevState.fileState : null, fileList, updatedFiles, removedFiles);
     if (fileState == null) {
+      if (pipelinedReader != null) {
+        pipelinedReader.cancel();
+      }
       return new IdeResult(oldTargetMap, BuildResult.FATAL_ERROR);
     }
 
@@ -173,13 +199,22 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                 "Total rules: %d, new/changed: %d, removed: %d",
                 targetCount, updatedFiles.size(), removedCount)));
 
+    // files already read while later shards were building don't need to be fetched again
     ListenableFuture<?> prefetchFuture =
-        PrefetchService.getInstance().prefetchFiles(updatedFiles, true, false);
+        pipelinedReader != null
+            ? Futures.allAsList(
+                pipelinedReader.allFilesRead(),
+                PrefetchService.getInstance()
+                    .prefetchFiles(pipelinedReader.getUnreadFiles(updatedFiles), true, false))
+            : PrefetchService.getInstance().prefetchFiles(updatedFiles, true, false);
     if (!FutureUtil.waitForFuture(context, prefetchFuture)
         .timed("FetchAspectOutput", EventType.Prefetching)
         .withProgressMessage("Reading IDE info result...")
         .run()
         .success()) {
+      if (pipelinedReader != null) {
+        pipelinedReader.cancel();
+      }
       return new IdeResult(oldTargetMap, BuildResult.FATAL_ERROR);
     }
 
@@ -202,7 +237,8 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
             updatedFiles,
             removedFiles,
             mergeWithOldState,
-            targetMapReference);
+            targetMapReference,
+            pipelinedReader);
     if (state == null) {
       return new IdeResult(oldTargetMap, BuildResult.FATAL_ERROR);
     }
@@ -228,9 +264,11 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
       BlazeInfo blazeInfo,
       ImmutableSet<LanguageClass> activeLanguages,
       ShardedTargetList shardedTargets,
-      AspectStrategy aspectStrategy) {
+      AspectStrategy aspectStrategy,
+      @Nullable PipelinedIdeInfoReader pipelinedReader) {
 
     Set<File> ideInfoFiles = new LinkedHashSet<>();
+    List<File> shardFiles = new ArrayList<>();
     Function<Integer, String> progressMessage =
         count ->
             String.format(
@@ -247,16 +285,35 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                   blazeInfo,
                   activeLanguages,
                   targets,
-                  aspectStrategy);
+                  aspectStrategy,
+                  streamAspectOutput.getValue() ? pipelinedReader : null);
           ideInfoFiles.addAll(result.files);
+          shardFiles.addAll(result.files);
           return result.buildResult;
         };
+    Consumer<BuildResult> onShardComplete =
+        result -> {
+          if (pipelinedReader != null && result.status != Status.FATAL_ERROR) {
+            try {
+              pipelinedReader.shardBuilt(shardFiles);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              context.setCancelled();
+            }
+          }
+          shardFiles.clear();
+        };
     BuildResult result =
-        shardedTargets.runShardedCommand(project, context, progressMessage, invocation);
+        shardedTargets.runShardedCommand(
+            project, context, progressMessage, invocation, onShardComplete);
     return new IdeInfoResult(ideInfoFiles, result);
   }
 
-  /** Runs blaze build with the aspect's ide-info output group for a given set of targets */
+  /**
+   * Runs blaze build with the aspect's ide-info output group for a given set of targets.
+   *
+   * <p>If a streaming reader is provided, ide-info files are passed to it as soon as they're built.
+   */
   private static IdeInfoResult getIdeInfoForTargets(
       Project project,
       BlazeContext context,
@@ -265,7 +322,8 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
       BlazeInfo blazeInfo,
       ImmutableSet<LanguageClass> activeLanguages,
       List<TargetExpression> targets,
-      AspectStrategy aspectStrategy) {
+      AspectStrategy aspectStrategy,
+      @Nullable PipelinedIdeInfoReader streamingReader) {
     try (BuildResultHelper buildResultHelper =
         BuildResultHelperProvider.forFilesForSync(
             project, blazeInfo, aspectStrategy.getAspectOutputFilePredicate())) {
@@ -282,7 +340,13 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                       BlazeCommandName.BUILD,
                       BlazeInvocationContext.SYNC_CONTEXT));
 
-      aspectStrategy.addAspectAndOutputGroups(builder, OutputGroup.INFO, activeLanguages);
+      aspectStrategy.addAspectAndOutputGroups(
+          builder, aspectStrategy.getInfoOutputGroup(), activeLanguages);
+
+      StreamedBuildArtifacts streamedArtifacts =
+          streamingReader != null
+              ? buildResultHelper.streamBuildArtifacts(streamingReader::fileBuilt)
+              : null;
 
       int retVal =
           ExternalTask.builder(workspaceRoot)
@@ -303,7 +367,11 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
           childContext -> {
             try {
               childContext.push(new TimingScope("IdeInfoBuildArtifacts", EventType.Other));
-              return new IdeInfoResult(buildResultHelper.getBuildArtifacts(), buildResult);
+              ImmutableList<File> files =
+                  streamedArtifacts != null
+                      ? streamedArtifacts.getAll()
+                      : buildResultHelper.getBuildArtifacts();
+              return new IdeInfoResult(files, buildResult);
             } catch (GetArtifactsException e) {
               IssueOutput.error("Failed to get ide-info files: " + e.getMessage()).submit(context);
               return new IdeInfoResult(ImmutableList.of(), buildResult);
@@ -335,7 +403,8 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
       List<File> newFiles,
       List<File> removedFiles,
       boolean mergeWithOldState,
-      Ref<TargetMap> targetMapReference) {
+      Ref<TargetMap> targetMapReference,
+      @Nullable PipelinedIdeInfoReader pipelinedReader) {
     Result<BlazeIdeInterfaceState> result =
         Scope.push(
             parentContext,
@@ -391,7 +460,12 @@ public class BlazeIdeInterfaceAspectsImpl implements BlazeIdeInterface {
                             () -> {
                               totalSizeLoaded.addAndGet(file.length());
                               IntellijIdeInfo.TargetIdeInfo message =
-                                  aspectStrategy.readAspectFile(file);
+                                  pipelinedReader != null
+                                      ? pipelinedReader.getParsed(file)
+                                      : null;
+                              if (message == null) {
+                                message = aspectStrategy.readAspectFile(file);
+                              }
                               TargetIdeInfo target =
                                   protoToTarget(
                                       workspaceLanguageSettings,
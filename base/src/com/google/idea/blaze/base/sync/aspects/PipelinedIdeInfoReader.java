@@ -0,0 +1,172 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.filecache.FileDiffer;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.prefetch.PrefetchService;
+import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy;
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+
+/**
+ * Parses ide-info files in the background while blaze is still building.
+ *
+ * <p>Files are either read as soon as the build announces them ({@link #fileBuilt}), or are
+ * prefetched and read once each build shard completes ({@link #shardBuilt}), while subsequent
+ * shards are building. At most {@code maxShardsInFlight} completed shards are read concurrently
+ * with the next blaze invocation. Beyond that, {@link #shardBuilt} blocks until the oldest shard
+ * has been read.
+ */
+final class PipelinedIdeInfoReader {
+
+  private final AspectStrategy aspectStrategy;
+  private final ImmutableMap<File, Long> previousFileState;
+  private final int maxShardsInFlight;
+  private final ListeningExecutorService executor;
+
+  private final Map<File, ListenableFuture<IntellijIdeInfo.TargetIdeInfo>> parsedFiles =
+      new ConcurrentHashMap<>();
+  private final Deque<ListenableFuture<?>> shardsInFlight = new ArrayDeque<>();
+
+  PipelinedIdeInfoReader(
+      AspectStrategy aspectStrategy,
+      @Nullable ImmutableMap<File, Long> previousFileState,
+      int maxShardsInFlight,
+      ListeningExecutorService executor) {
+    this.aspectStrategy = aspectStrategy;
+    this.previousFileState = previousFileState != null ? previousFileState : ImmutableMap.of();
+    this.maxShardsInFlight = maxShardsInFlight;
+    this.executor = executor;
+  }
+
+  /**
+   * Starts reading a single ide-info file, if it's new or changed. Called while the build is still
+   * running, as soon as the file has been built. Thread-safe.
+   */
+  void fileBuilt(File file) {
+    long timestamp = FileOperationProvider.getInstance().getFileModifiedTime(file);
+    if (timestamp == 0 || Objects.equals(timestamp, previousFileState.get(file))) {
+      return;
+    }
+    parsedFiles.computeIfAbsent(file, f -> executor.submit(() -> aspectStrategy.readAspectFile(f)));
+  }
+
+  /**
+   * Starts reading the new or changed ide-info files output by a single build shard. Blocks while
+   * more than the maximum number of shards are still being read.
+   */
+  void shardBuilt(Collection<File> files) throws InterruptedException {
+    List<File> updatedFiles = getUpdatedFiles(files);
+    if (!updatedFiles.isEmpty()) {
+      ListenableFuture<?> prefetchFuture =
+          PrefetchService.getInstance().prefetchFiles(updatedFiles, true, false);
+      List<ListenableFuture<IntellijIdeInfo.TargetIdeInfo>> futures = new ArrayList<>();
+      for (File file : updatedFiles) {
+        ListenableFuture<IntellijIdeInfo.TargetIdeInfo> future =
+            Futures.transformAsync(
+                prefetchFuture,
+                unused -> executor.submit(() -> aspectStrategy.readAspectFile(file)),
+                MoreExecutors.directExecutor());
+        parsedFiles.put(file, future);
+        futures.add(future);
+      }
+      shardsInFlight.add(Futures.successfulAsList(futures));
+    }
+    while (shardsInFlight.size() > maxShardsInFlight) {
+      waitFor(shardsInFlight.removeFirst());
+    }
+  }
+
+  /**
+   * Returns a future which completes once all files passed to this reader so far have been read.
+   */
+  ListenableFuture<?> allFilesRead() {
+    return Futures.successfulAsList(ImmutableList.copyOf(parsedFiles.values()));
+  }
+
+  /** Returns the subset of the given files which haven't been read by this pipeline. */
+  ImmutableList<File> getUnreadFiles(Collection<File> files) {
+    return files
+        .stream()
+        .filter(file -> !parsedFiles.containsKey(file))
+        .collect(toImmutableList());
+  }
+
+  /**
+   * Returns the previously parsed contents of the given ide-info file, or null if it wasn't
+   * successfully read by this pipeline. Must only be called once {@link #allFilesRead} is done.
+   */
+  @Nullable
+  IntellijIdeInfo.TargetIdeInfo getParsed(File file) {
+    ListenableFuture<IntellijIdeInfo.TargetIdeInfo> future = parsedFiles.remove(file);
+    if (future == null || !future.isDone() || future.isCancelled()) {
+      return null;
+    }
+    try {
+      return Futures.getDone(future);
+    } catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  /** Cancels any outstanding reads, and discards the parsed results. */
+  void cancel() {
+    parsedFiles.values().forEach(future -> future.cancel(true));
+    parsedFiles.clear();
+  }
+
+  private List<File> getUpdatedFiles(Collection<File> files) {
+    ImmutableMap<File, Long> fileState = FileDiffer.readFileState(files);
+    if (fileState == null) {
+      return ImmutableList.of();
+    }
+    List<File> updated = new ArrayList<>();
+    for (Map.Entry<File, Long> entry : fileState.entrySet()) {
+      if (!parsedFiles.containsKey(entry.getKey())
+          && !entry.getValue().equals(previousFileState.get(entry.getKey()))) {
+        updated.add(entry.getKey());
+      }
+    }
+    return updated;
+  }
+
+  private static void waitFor(ListenableFuture<?> future) throws InterruptedException {
+    try {
+      future.get();
+    } catch (ExecutionException e) {
+      // failures are ignored here; the affected files are read again when updating the target map
+    }
+  }
+}
@@ -19,14 +19,18 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
 import com.google.idea.blaze.base.command.BlazeCommand;
 import com.google.idea.blaze.base.model.primitives.LanguageClass;
 import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.sync.aspects.strategy.IdeInfoTextFormatReader.UnsupportedSyntaxException;
 import com.google.idea.blaze.base.util.BuildSystemExtensionPoint;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.google.protobuf.repackaged.TextFormat;
 import com.intellij.openapi.extensions.ExtensionPointName;
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -45,12 +49,25 @@ public abstract class AspectStrategy implements BuildSystemExtensionPoint {
   private static final ExtensionPointName<AspectStrategy> EP_NAME =
       ExtensionPointName.create("com.google.idea.blaze.AspectStrategy");
 
+  private static final String BINARY_ASPECT_FILE_SUFFIX = ".intellij-info.pb";
+
   private static final Predicate<String> ASPECT_OUTPUT_FILE_PREDICATE =
-      str -> str.endsWith(".intellij-info.txt") || str.endsWith(".intellij-info.txt.gz");
+      str ->
+          str.endsWith(".intellij-info.txt")
+              || str.endsWith(".intellij-info.txt.gz")
+              || str.endsWith(BINARY_ASPECT_FILE_SUFFIX);
+
+  private static final BoolExperiment useBinaryIdeInfo =
+      new BoolExperiment("blaze.sync.binary.ide.info", false);
+
+  private static final BoolExperiment useFastTextFormatReader =
+      new BoolExperiment("blaze.sync.fast.text.format.reader", true);
 
   /** A Blaze output group created by the aspect. */
   public enum OutputGroup {
     INFO("intellij-info-"),
+    /** The same ide info as {@link #INFO}, as length-delimited binary protos. */
+    INFO_BINARY("intellij-info-binary-"),
     RESOLVE("intellij-resolve-"),
     COMPILE("intellij-compile-");
 
@@ -67,6 +84,11 @@ public abstract class AspectStrategy implements BuildSystemExtensionPoint {
 
   public abstract String getName();
 
+  /** The output group used to retrieve the ide info during sync. */
+  public OutputGroup getInfoOutputGroup() {
+    return useBinaryIdeInfo.getValue() ? OutputGroup.INFO_BINARY : OutputGroup.INFO;
+  }
+
   protected abstract List<String> getAspectFlags();
 
   /**
@@ -98,7 +120,7 @@ public abstract class AspectStrategy implements BuildSystemExtensionPoint {
   public final ImmutableList<String> getOutputGroups(
       OutputGroup outputGroup, Set<LanguageClass> activeLanguages) {
     TreeSet<String> outputGroups = new TreeSet<>();
-    if (outputGroup.equals(OutputGroup.INFO)) {
+    if (outputGroup.equals(OutputGroup.INFO) || outputGroup.equals(OutputGroup.INFO_BINARY)) {
       outputGroups.add(outputGroup.prefix + "generic");
     }
     for (LanguageClass langClass : activeLanguages) {
@@ -116,13 +138,35 @@ public abstract class AspectStrategy implements BuildSystemExtensionPoint {
 
   public final IntellijIdeInfo.TargetIdeInfo readAspectFile(File file) throws IOException {
     try (InputStream inputStream = getAspectInputStream(file)) {
-      IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
-      TextFormat.Parser parser = TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
-      parser.merge(new InputStreamReader(inputStream, UTF_8), builder);
-      return builder.build();
+      if (file.getName().endsWith(BINARY_ASPECT_FILE_SUFFIX)) {
+        IntellijIdeInfo.TargetIdeInfo info =
+            IntellijIdeInfo.TargetIdeInfo.parseDelimitedFrom(inputStream);
+        if (info == null) {
+          throw new IOException("Empty aspect output file: " + file);
+        }
+        return info;
+      }
+      if (!useFastTextFormatReader.getValue()) {
+        return parseTextFormat(new InputStreamReader(inputStream, UTF_8));
+      }
+      byte[] bytes = ByteStreams.toByteArray(inputStream);
+      try {
+        return IdeInfoTextFormatReader.parse(bytes);
+      } catch (UnsupportedSyntaxException e) {
+        // fall back to the generic parser, which also skips unknown fields
+        return parseTextFormat(new InputStreamReader(new ByteArrayInputStream(bytes), UTF_8));
+      }
     }
   }
 
+  private static IntellijIdeInfo.TargetIdeInfo parseTextFormat(Readable input)
+      throws IOException {
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    TextFormat.Parser parser = TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
+    parser.merge(input, builder);
+    return builder.build();
+  }
+
   private static InputStream getAspectInputStream(File file) throws IOException {
     InputStream inputStream = new BufferedInputStream(new FileInputStream(file));
     if (file.getName().endsWith(".gz")) {
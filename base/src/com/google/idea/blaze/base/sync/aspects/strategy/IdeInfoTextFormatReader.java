@@ -0,0 +1,369 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects.strategy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.ideinfo.ProjectDataInterner;
+import com.google.protobuf.repackaged.ByteString;
+import com.google.protobuf.repackaged.Descriptors.Descriptor;
+import com.google.protobuf.repackaged.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.repackaged.Descriptors.FieldDescriptor;
+import com.google.protobuf.repackaged.Message;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Parses the text-format {@link IntellijIdeInfo.TargetIdeInfo} protos written by the aspect.
+ *
+ * <p>Compared to the generic {@link com.google.protobuf.repackaged.TextFormat} parser, this works
+ * directly on the raw UTF-8 bytes rather than a regex-based tokenizer, caches a field table per
+ * message type, and interns string values (mostly paths and labels) as they're read.
+ *
+ * <p>Only the subset of the text format produced by the aspect is supported. Anything else
+ * (unknown fields, list or angle-bracket syntax, unusual escapes, ...) causes an {@link
+ * UnsupportedSyntaxException}, in which case callers should fall back to the generic parser.
+ */
+final class IdeInfoTextFormatReader {
+
+  /** Thrown when the input uses syntax this reader doesn't support. */
+  static final class UnsupportedSyntaxException extends Exception {
+    UnsupportedSyntaxException(String message) {
+      super(message);
+    }
+  }
+
+  private static final ConcurrentMap<Descriptor, ImmutableMap<String, FieldDescriptor>>
+      fieldTables = new ConcurrentHashMap<>();
+
+  private final byte[] input;
+  private int pos;
+
+  private IdeInfoTextFormatReader(byte[] input) {
+    this.input = input;
+  }
+
+  static IntellijIdeInfo.TargetIdeInfo parse(byte[] input) throws UnsupportedSyntaxException {
+    IdeInfoTextFormatReader reader = new IdeInfoTextFormatReader(input);
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    reader.parseFields(builder, /* topLevel= */ true);
+    return builder.build();
+  }
+
+  /** Parses fields until the end of the input (top-level) or a closing brace. */
+  private void parseFields(Message.Builder builder, boolean topLevel)
+      throws UnsupportedSyntaxException {
+    ImmutableMap<String, FieldDescriptor> fields = fieldTable(builder.getDescriptorForType());
+    while (true) {
+      skipWhitespaceAndComments();
+      if (pos >= input.length) {
+        if (!topLevel) {
+          throw new UnsupportedSyntaxException("Unexpected end of input");
+        }
+        return;
+      }
+      if (input[pos] == '}') {
+        if (topLevel) {
+          throw new UnsupportedSyntaxException("Unexpected '}'");
+        }
+        pos++;
+        return;
+      }
+      String name = readIdentifier();
+      FieldDescriptor field = fields.get(name);
+      if (field == null) {
+        throw new UnsupportedSyntaxException("Unknown field: " + name);
+      }
+      skipWhitespaceAndComments();
+      boolean hasColon = consume(':');
+      skipWhitespaceAndComments();
+      Object value;
+      if (field.getJavaType() == FieldDescriptor.JavaType.MESSAGE) {
+        if (!consume('{')) {
+          throw new UnsupportedSyntaxException("Expected '{' for field " + name);
+        }
+        Message.Builder child = builder.newBuilderForField(field);
+        parseFields(child, /* topLevel= */ false);
+        value = child.build();
+      } else {
+        if (!hasColon) {
+          throw new UnsupportedSyntaxException("Expected ':' after field " + name);
+        }
+        value = readScalar(field);
+      }
+      if (field.isRepeated()) {
+        builder.addRepeatedField(field, value);
+      } else {
+        builder.setField(field, value);
+      }
+      skipWhitespaceAndComments();
+      // optional field separators
+      if (!consume(';')) {
+        consume(',');
+      }
+    }
+  }
+
+  private Object readScalar(FieldDescriptor field) throws UnsupportedSyntaxException {
+    switch (field.getJavaType()) {
+      case STRING:
+        return ProjectDataInterner.intern(new String(readQuotedBytes(), UTF_8));
+      case BYTE_STRING:
+        return ByteString.copyFrom(readQuotedBytes());
+      case BOOLEAN:
+        return readBoolean();
+      case INT:
+        return (int) readInteger();
+      case LONG:
+        return readInteger();
+      case FLOAT:
+        return (float) readFloatingPoint();
+      case DOUBLE:
+        return readFloatingPoint();
+      case ENUM:
+        return readEnum(field);
+      default:
+        throw new UnsupportedSyntaxException("Unsupported field type: " + field.getJavaType());
+    }
+  }
+
+  private EnumValueDescriptor readEnum(FieldDescriptor field) throws UnsupportedSyntaxException {
+    EnumValueDescriptor value;
+    if (pos < input.length && (isDigit(input[pos]) || input[pos] == '-')) {
+      value = field.getEnumType().findValueByNumber((int) readInteger());
+    } else {
+      value = field.getEnumType().findValueByName(readIdentifier());
+    }
+    if (value == null) {
+      throw new UnsupportedSyntaxException("Unknown enum value for field " + field.getName());
+    }
+    return value;
+  }
+
+  private boolean readBoolean() throws UnsupportedSyntaxException {
+    String token = readIdentifierOrNumber();
+    switch (token) {
+      case "true":
+      case "t":
+      case "1":
+        return true;
+      case "false":
+      case "f":
+      case "0":
+        return false;
+      default:
+        throw new UnsupportedSyntaxException("Invalid boolean: " + token);
+    }
+  }
+
+  private long readInteger() throws UnsupportedSyntaxException {
+    String token = readNumberToken();
+    try {
+      return Long.parseLong(token);
+    } catch (NumberFormatException e) {
+      // hex, octal, etc.
+      throw new UnsupportedSyntaxException("Unsupported integer: " + token);
+    }
+  }
+
+  private double readFloatingPoint() throws UnsupportedSyntaxException {
+    String token = readNumberToken();
+    try {
+      return Double.parseDouble(token);
+    } catch (NumberFormatException e) {
+      throw new UnsupportedSyntaxException("Unsupported number: " + token);
+    }
+  }
+
+  private String readNumberToken() throws UnsupportedSyntaxException {
+    int start = pos;
+    if (pos < input.length && input[pos] == '-') {
+      pos++;
+    }
+    while (pos < input.length && (isDigit(input[pos]) || input[pos] == '.')) {
+      pos++;
+    }
+    if (pos == start || (pos < input.length && isIdentifierChar(input[pos]))) {
+      throw new UnsupportedSyntaxException("Unsupported number at offset " + start);
+    }
+    return new String(input, start, pos - start, UTF_8);
+  }
+
+  private String readIdentifier() throws UnsupportedSyntaxException {
+    int start = pos;
+    while (pos < input.length && isIdentifierChar(input[pos])) {
+      pos++;
+    }
+    if (pos == start || isDigit(input[start])) {
+      throw new UnsupportedSyntaxException("Expected identifier at offset " + start);
+    }
+    return new String(input, start, pos - start, UTF_8);
+  }
+
+  private String readIdentifierOrNumber() throws UnsupportedSyntaxException {
+    int start = pos;
+    while (pos < input.length && isIdentifierChar(input[pos])) {
+      pos++;
+    }
+    if (pos == start) {
+      throw new UnsupportedSyntaxException("Expected value at offset " + start);
+    }
+    return new String(input, start, pos - start, UTF_8);
+  }
+
+  /**
+   * Reads one or more adjacent quoted strings, returning the concatenated, unescaped bytes. Unlike
+   * the generic parser, there's no intermediate char[] / String copy unless an escape is present.
+   */
+  private byte[] readQuotedBytes() throws UnsupportedSyntaxException {
+    if (pos >= input.length || (input[pos] != '"' && input[pos] != '\'')) {
+      throw new UnsupportedSyntaxException("Expected string at offset " + pos);
+    }
+    ByteArrayOutputStream escaped = null;
+    byte[] result = null;
+    do {
+      byte quote = input[pos++];
+      int start = pos;
+      while (pos < input.length && input[pos] != quote && input[pos] != '\\') {
+        if (input[pos] == '\n') {
+          throw new UnsupportedSyntaxException("Unterminated string at offset " + start);
+        }
+        pos++;
+      }
+      if (pos >= input.length) {
+        throw new UnsupportedSyntaxException("Unterminated string at offset " + start);
+      }
+      if (input[pos] == quote && result == null && escaped == null) {
+        // common case: a single string with no escapes
+        result = Arrays.copyOfRange(input, start, pos);
+        pos++;
+      } else {
+        if (escaped == null) {
+          escaped = new ByteArrayOutputStream();
+          if (result != null) {
+            escaped.write(result, 0, result.length);
+            result = null;
+          }
+        }
+        escaped.write(input, start, pos - start);
+        readEscapedRemainder(quote, escaped);
+      }
+      skipWhitespaceAndComments();
+    } while (pos < input.length && (input[pos] == '"' || input[pos] == '\''));
+    return escaped != null ? escaped.toByteArray() : result;
+  }
+
+  /** Reads the rest of a quoted string containing escapes, including the closing quote. */
+  private void readEscapedRemainder(byte quote, ByteArrayOutputStream out)
+      throws UnsupportedSyntaxException {
+    while (pos < input.length) {
+      byte b = input[pos++];
+      if (b == quote) {
+        return;
+      }
+      if (b == '\n') {
+        break;
+      }
+      if (b != '\\') {
+        out.write(b);
+        continue;
+      }
+      if (pos >= input.length) {
+        break;
+      }
+      byte c = input[pos++];
+      switch (c) {
+        case 'n':
+          out.write('\n');
+          break;
+        case 't':
+          out.write('\t');
+          break;
+        case 'r':
+          out.write('\r');
+          break;
+        case '"':
+        case '\'':
+        case '\\':
+          out.write(c);
+          break;
+        default:
+          if (c >= '0' && c <= '7') {
+            // octal escape, used for non-ASCII bytes
+            int value = c - '0';
+            for (int i = 0; i < 2 && pos < input.length && isOctal(input[pos]); i++) {
+              value = value * 8 + (input[pos++] - '0');
+            }
+            out.write(value);
+            break;
+          }
+          throw new UnsupportedSyntaxException("Unsupported escape: \\" + (char) c);
+      }
+    }
+    throw new UnsupportedSyntaxException("Unterminated string");
+  }
+
+  private boolean consume(char c) {
+    if (pos < input.length && input[pos] == c) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private void skipWhitespaceAndComments() {
+    while (pos < input.length) {
+      byte b = input[pos];
+      if (b == '#') {
+        while (pos < input.length && input[pos] != '\n') {
+          pos++;
+        }
+      } else if (b == ' ' || b == '\n' || b == '\t' || b == '\r') {
+        pos++;
+      } else {
+        return;
+      }
+    }
+  }
+
+  private static ImmutableMap<String, FieldDescriptor> fieldTable(Descriptor descriptor) {
+    return fieldTables.computeIfAbsent(
+        descriptor,
+        d -> {
+          ImmutableMap.Builder<String, FieldDescriptor> fields = ImmutableMap.builder();
+          for (FieldDescriptor field : d.getFields()) {
+            fields.put(field.getName(), field);
+          }
+          return fields.build();
+        });
+  }
+
+  private static boolean isIdentifierChar(byte b) {
+    return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || isDigit(b) || b == '_';
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static boolean isOctal(byte b) {
+    return b >= '0' && b <= '7';
+  }
+}
@@ -21,6 +21,7 @@ import com.google.idea.blaze.base.async.executor.ProgressiveTaskWithProgressIndi
 import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.settings.BlazeImportSettings;
 import com.google.idea.common.concurrency.ConcurrencyUtil;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.progress.ProgressIndicator;
@@ -38,12 +39,27 @@ public class BlazeProjectDataManagerImpl implements BlazeProjectDataManager {
   private static final Logger logger =
       Logger.getInstance(BlazeProjectDataManagerImpl.class.getName());
 
+  /** Whether project data is saved in the indexed format, rather than as a gzipped proto. */
+  private static final BoolExperiment useIndexedFormat =
+      new BoolExperiment("blaze.project.data.indexed.format", true);
+
+  /** Whether incremental changes are appended to a journal, rather than rewriting the file. */
+  private static final BoolExperiment useJournal =
+      new BoolExperiment("blaze.project.data.journal", true);
+
+  /** The journal is compacted once it grows beyond this fraction of the project data file. */
+  private static final double MAX_JOURNAL_SIZE_FRACTION = 0.25;
+
   private final Project project;
   // a per-project single-threaded executor to write project data to disk
   private final ListeningExecutorService writeDataExecutor;
 
   @Nullable private volatile BlazeProjectData blazeProjectData;
 
+  // the project data currently stored in the indexed cache file, which journal entries are relative
+  // to. Only accessed while synchronized.
+  @Nullable private BlazeProjectData savedProjectData;
+
   public static BlazeProjectDataManagerImpl getImpl(Project project) {
     return (BlazeProjectDataManagerImpl) BlazeProjectDataManager.getInstance(project);
   }
@@ -79,7 +95,12 @@ public class BlazeProjectDataManagerImpl implements BlazeProjectDataManager {
   private synchronized BlazeProjectData loadProject(BlazeImportSettings importSettings) {
     try {
       File file = getCacheFile(project, importSettings);
+      boolean indexed = file.exists();
+      if (!indexed) {
+        file = getLegacyCacheFile(project, importSettings);
+      }
       blazeProjectData = BlazeProjectData.loadFromDisk(importSettings.getBuildSystem(), file);
+      savedProjectData = indexed ? blazeProjectData : null;
       return blazeProjectData;
     } catch (Throwable e) {
       if (!(e instanceof FileNotFoundException)) {
@@ -101,8 +122,20 @@ public class BlazeProjectDataManagerImpl implements BlazeProjectDataManager {
             (ProgressIndicator indicator) -> {
               try {
                 File file = getCacheFile(project, importSettings);
+                File legacyFile = getLegacyCacheFile(project, importSettings);
                 synchronized (this) {
-                  blazeProjectData.saveToDisk(file);
+                  BlazeProjectData previous = savedProjectData;
+                  savedProjectData = null;
+                  if (useIndexedFormat.getValue()) {
+                    if (!appendToJournal(file, blazeProjectData, previous)) {
+                      blazeProjectData.saveToDiskIndexed(file);
+                    }
+                    savedProjectData = blazeProjectData;
+                    deleteIfExists(legacyFile);
+                  } else {
+                    blazeProjectData.saveToDisk(legacyFile);
+                    deleteIfExists(file);
+                  }
                 }
               } catch (Throwable e) {
                 logger.error(serializationErrorMessage(e), e);
@@ -110,6 +143,22 @@ public class BlazeProjectDataManagerImpl implements BlazeProjectDataManager {
             });
   }
 
+  /**
+   * Tries to save only the changes since the previous save, returning false if the whole file
+   * should be rewritten instead (also compacting the journal).
+   */
+  private static boolean appendToJournal(
+      File file, BlazeProjectData projectData, @Nullable BlazeProjectData previous)
+      throws IOException {
+    if (!useJournal.getValue() || previous == null || !file.exists()) {
+      return false;
+    }
+    if (BlazeProjectData.getJournalSize(file) > file.length() * MAX_JOURNAL_SIZE_FRACTION) {
+      return false;
+    }
+    return projectData.appendToJournal(file, previous);
+  }
+
   private static String serializationErrorMessage(Throwable e) {
     String message = "Could not save cache data file to disk.";
     if (!(e instanceof IOException)) {
@@ -118,7 +167,19 @@ public class BlazeProjectDataManagerImpl implements BlazeProjectDataManager {
     return message + " Please resync project.";
   }
 
+  private static void deleteIfExists(File file) {
+    if (file.exists() && !file.delete()) {
+      logger.warn("Could not delete stale cache data file: " + file);
+    }
+  }
+
+  /** The project data file, in the indexed format read lazily via a memory-mapped file. */
   private static File getCacheFile(Project project, BlazeImportSettings importSettings) {
+    return new File(BlazeDataStorage.getProjectCacheDir(project, importSettings), "cache.dat");
+  }
+
+  /** The project data file, as a single gzipped proto. Still read, to migrate older projects. */
+  private static File getLegacyCacheFile(Project project, BlazeImportSettings importSettings) {
     return new File(BlazeDataStorage.getProjectCacheDir(project, importSettings), "cache.dat.gz");
   }
 }
@@ -32,6 +32,8 @@ import com.intellij.openapi.roots.OrderRootType;
 import com.intellij.openapi.roots.impl.libraries.ProjectLibraryTable;
 import com.intellij.openapi.roots.libraries.Library;
 import com.intellij.openapi.roots.libraries.LibraryTable;
+import com.intellij.openapi.util.Disposer;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -43,6 +45,11 @@ import java.util.stream.Collectors;
 public class LibraryEditor {
   private static final Logger logger = Logger.getInstance(LibraryEditor.class);
 
+  /** The root types populated by {@link BlazeLibrary#modifyLibraryModel}. */
+  private static final OrderRootType[] EDITED_ROOT_TYPES = {
+    OrderRootType.CLASSES, OrderRootType.SOURCES
+  };
+
   public static void updateProjectLibraries(
       Project project,
       BlazeContext context,
@@ -61,14 +68,21 @@ public class LibraryEditor {
     LibraryTable libraryTable = ProjectLibraryTable.getInstance(project);
     LibraryTable.ModifiableModel libraryTableModel = libraryTable.getModifiableModel();
     try {
+      int touched = 0;
       for (BlazeLibrary library : libraries) {
-        updateLibrary(
+        if (updateLibrary(
             project,
             blazeProjectData.getArtifactLocationDecoder(),
             libraryTable,
             libraryTableModel,
-            library);
+            library)) {
+          touched++;
+        }
       }
+      context.output(
+          PrintOutput.log(
+              String.format(
+                  "Updated %d libraries (%d unchanged)", touched, libraries.size() - touched)));
 
       // Garbage collect unused libraries
       List<LibrarySource> librarySources = Lists.newArrayList();
@@ -104,7 +118,15 @@ public class LibraryEditor {
     }
   }
 
-  public static void updateLibrary(
+  /**
+   * Creates or updates the IntelliJ library corresponding to the given {@link BlazeLibrary}.
+   *
+   * <p>Existing libraries are only committed if their roots have changed, to avoid unnecessary
+   * root change events and reindexing.
+   *
+   * @return true if the library was created or modified
+   */
+  public static boolean updateLibrary(
       Project project,
       ArtifactLocationDecoder artifactLocationDecoder,
       LibraryTable libraryTable,
@@ -119,18 +141,33 @@ public class LibraryEditor {
     }
     Library.ModifiableModel libraryModel = library.getModifiableModel();
     if (libraryExists) {
-      for (String url : libraryModel.getUrls(OrderRootType.CLASSES)) {
-        libraryModel.removeRoot(url, OrderRootType.CLASSES);
-      }
-      for (String url : libraryModel.getUrls(OrderRootType.SOURCES)) {
-        libraryModel.removeRoot(url, OrderRootType.SOURCES);
+      for (OrderRootType type : EDITED_ROOT_TYPES) {
+        for (String url : libraryModel.getUrls(type)) {
+          libraryModel.removeRoot(url, type);
+        }
       }
     }
+    boolean changed = true;
     try {
       blazeLibrary.modifyLibraryModel(project, artifactLocationDecoder, libraryModel);
+      changed = !libraryExists || rootsChanged(library, libraryModel);
     } finally {
-      libraryModel.commit();
+      if (changed) {
+        libraryModel.commit();
+      } else {
+        Disposer.dispose(libraryModel);
+      }
+    }
+    return changed;
+  }
+
+  private static boolean rootsChanged(Library library, Library.ModifiableModel libraryModel) {
+    for (OrderRootType type : EDITED_ROOT_TYPES) {
+      if (!Arrays.equals(library.getUrls(type), libraryModel.getUrls(type))) {
+        return true;
+      }
     }
+    return false;
   }
 
   public static void configureDependencies(
@@ -15,9 +15,11 @@
  */
 package com.google.idea.blaze.base.sync.projectstructure;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMap.Builder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -37,29 +39,65 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
 
 /**
  * Directory structure representation used by {@link ContentEntryEditor}.
  *
  * <p>The purpose of this class is to pull out all file system operations out of the project
  * structure commit step, as this step locks the UI.
+ *
+ * <p>The previous sync's directory structure is reused where possible: a directory is only
+ * re-listed if its modified time has changed, the VFS has reported a change to its child
+ * directories, or it was modified so close to when it was last listed that a later change could
+ * have left its modified time unchanged.
  */
 public class DirectoryStructure {
 
+  /**
+   * The coarsest modified time resolution we expect from a file system (e.g. FAT has 2 second
+   * resolution, ext3 and HFS+ 1 second).
+   */
+  @VisibleForTesting static final long MODIFIED_TIME_GRANULARITY_MS = 2000;
+
   final ImmutableMap<WorkspacePath, DirectoryStructure> directories;
 
-  private DirectoryStructure(ImmutableMap<WorkspacePath, DirectoryStructure> directories) {
+  /** The directory's modified time when it was listed, or 0 for the root container. */
+  final long modifiedTime;
+
+  /** When the directory was listed, or 0 for the root container. */
+  final long listedTime;
+
+  DirectoryStructure(
+      ImmutableMap<WorkspacePath, DirectoryStructure> directories,
+      long modifiedTime,
+      long listedTime) {
     this.directories = directories;
+    this.modifiedTime = modifiedTime;
+    this.listedTime = listedTime;
+  }
+
+  /**
+   * Whether the given previous listing of a directory is still valid. A modified time within the
+   * file system's timestamp resolution of the listing time doesn't prove the directory is
+   * unchanged: it may have been modified again in the same tick, after it was listed.
+   */
+  private static boolean canReuse(DirectoryStructure previous, long modifiedTime) {
+    return modifiedTime != 0
+        && modifiedTime == previous.modifiedTime
+        && modifiedTime + MODIFIED_TIME_GRANULARITY_MS < previous.listedTime;
   }
 
   public static ListenableFuture<DirectoryStructure> getRootDirectoryStructure(
       Project project, WorkspaceRoot workspaceRoot, ProjectViewSet projectViewSet) {
     AtomicBoolean cancelled = new AtomicBoolean(false);
     try {
+      DirectoryStructureCache cache = DirectoryStructureCache.getInstance(project);
       ListenableFuture<DirectoryStructure> future =
           FetchExecutor.EXECUTOR.submit(
               () ->
-                  computeRootDirectoryStructure(project, workspaceRoot, projectViewSet, cancelled));
+                  computeRootDirectoryStructure(
+                      project, workspaceRoot, projectViewSet, cache, cancelled));
       future.addListener(() -> cancelled.set(true), MoreExecutors.directExecutor());
       return future;
 
@@ -73,15 +111,50 @@ public class DirectoryStructure {
       Project project,
       WorkspaceRoot workspaceRoot,
       ProjectViewSet projectViewSet,
+      DirectoryStructureCache cache,
       AtomicBoolean cancelled)
       throws ExecutionException, InterruptedException {
-    FileOperationProvider fileOperationProvider = FileOperationProvider.getInstance();
     ImportRoots importRoots =
         ImportRoots.builder(workspaceRoot, Blaze.getBuildSystem(project))
             .add(projectViewSet)
             .build();
     Collection<WorkspacePath> rootDirectories = importRoots.rootDirectories();
     Set<WorkspacePath> excludeDirectories = importRoots.excludeDirectories();
+    DirectoryStructure previous = cache.getPrevious(rootDirectories, excludeDirectories);
+    ImmutableSet<String> changedDirectories = cache.getChangedDirectories();
+    DirectoryStructure result =
+        computeRootDirectoryStructure(
+            workspaceRoot,
+            rootDirectories,
+            excludeDirectories,
+            previous,
+            changedDirectories,
+            FetchExecutor.EXECUTOR,
+            cancelled);
+    if (!cancelled.get()) {
+      cache.update(
+          new DirectoryStructureCache.Snapshot(rootDirectories, excludeDirectories, result),
+          changedDirectories);
+    }
+    return result;
+  }
+
+  /**
+   * Walks the given root directories, reusing the children of any directory in {@code previous}
+   * whose modified time is unchanged (and not too close to when it was listed), and which isn't in
+   * {@code changedDirectories}.
+   */
+  @VisibleForTesting
+  static DirectoryStructure computeRootDirectoryStructure(
+      WorkspaceRoot workspaceRoot,
+      Collection<WorkspacePath> rootDirectories,
+      Set<WorkspacePath> excludeDirectories,
+      @Nullable DirectoryStructure previous,
+      Set<String> changedDirectories,
+      ListeningExecutorService executorService,
+      AtomicBoolean cancelled)
+      throws ExecutionException, InterruptedException {
+    FileOperationProvider fileOperationProvider = FileOperationProvider.getInstance();
     List<ListenableFuture<PathStructurePair>> futures =
         Lists.newArrayListWithExpectedSize(rootDirectories.size());
     for (WorkspacePath rootDirectory : rootDirectories) {
@@ -89,9 +162,11 @@ public class DirectoryStructure {
           walkDirectoryStructure(
               workspaceRoot,
               excludeDirectories,
+              changedDirectories,
               fileOperationProvider,
-              FetchExecutor.EXECUTOR,
+              executorService,
               rootDirectory,
+              previous != null ? previous.directories.get(rootDirectory) : null,
               cancelled));
     }
     ImmutableMap.Builder<WorkspacePath, DirectoryStructure> result = ImmutableMap.builder();
@@ -100,25 +175,50 @@ public class DirectoryStructure {
         result.put(pair.path, pair.directoryStructure);
       }
     }
-    return new DirectoryStructure(result.build());
+    return new DirectoryStructure(result.build(), 0, 0);
   }
 
   private static ListenableFuture<PathStructurePair> walkDirectoryStructure(
       WorkspaceRoot workspaceRoot,
       Set<WorkspacePath> excludeDirectories,
+      Set<String> changedDirectories,
       FileOperationProvider fileOperationProvider,
       ListeningExecutorService executorService,
       WorkspacePath workspacePath,
+      @Nullable DirectoryStructure previous,
       AtomicBoolean cancelled) {
     if (cancelled.get() || excludeDirectories.contains(workspacePath)) {
       return Futures.immediateFuture(null);
     }
     File file = workspaceRoot.fileForPath(workspacePath);
-    if (!fileOperationProvider.isDirectory(file)) {
-      return Futures.immediateFuture(null);
-    }
-    ListenableFuture<File[]> childrenFuture =
-        executorService.submit(() -> fileOperationProvider.listFiles(file));
+    ListenableFuture<Children> childrenFuture =
+        executorService.submit(
+            () -> {
+              long listedTime = System.currentTimeMillis();
+              long modifiedTime = fileOperationProvider.getFileModifiedTime(file);
+              if (previous != null
+                  && canReuse(previous, modifiedTime)
+                  && !changedDirectories.contains(file.getPath())) {
+                return new Children(
+                    modifiedTime, previous.listedTime, previous.directories.keySet(), previous);
+              }
+              if (!fileOperationProvider.isDirectory(file)) {
+                return null;
+              }
+              File[] files = fileOperationProvider.listFiles(file);
+              if (files == null) {
+                return null;
+              }
+              List<WorkspacePath> paths = Lists.newArrayListWithExpectedSize(files.length);
+              for (File child : files) {
+                try {
+                  paths.add(workspaceRoot.workspacePathFor(child));
+                } catch (IllegalArgumentException e) {
+                  // stop at directories with unhandled characters.
+                }
+              }
+              return new Children(modifiedTime, listedTime, paths, previous);
+            });
     return Futures.transformAsync(
         childrenFuture,
         children -> {
@@ -126,22 +226,19 @@ public class DirectoryStructure {
             return Futures.immediateFuture(null);
           }
           List<ListenableFuture<PathStructurePair>> futures =
-              Lists.newArrayListWithExpectedSize(children.length);
-          for (File child : children) {
-            WorkspacePath childWorkspacePath;
-            try {
-              childWorkspacePath = workspaceRoot.workspacePathFor(child);
-            } catch (IllegalArgumentException e) {
-              // stop at directories with unhandled characters.
-              continue;
-            }
+              Lists.newArrayListWithExpectedSize(children.paths.size());
+          for (WorkspacePath childWorkspacePath : children.paths) {
             futures.add(
                 walkDirectoryStructure(
                     workspaceRoot,
                     excludeDirectories,
+                    changedDirectories,
                     fileOperationProvider,
                     executorService,
                     childWorkspacePath,
+                    children.previous != null
+                        ? children.previous.directories.get(childWorkspacePath)
+                        : null,
                     cancelled));
           }
           return Futures.transform(
@@ -155,13 +252,34 @@ public class DirectoryStructure {
                       }
                     }
                     return new PathStructurePair(
-                        workspacePath, new DirectoryStructure(result.build()));
+                        workspacePath,
+                        new DirectoryStructure(
+                            result.build(), children.modifiedTime, children.listedTime));
                   },
               executorService);
         },
         executorService);
   }
 
+  /** The (possibly reused) children of a directory. */
+  private static class Children {
+    final long modifiedTime;
+    final long listedTime;
+    final Collection<WorkspacePath> paths;
+    @Nullable final DirectoryStructure previous;
+
+    Children(
+        long modifiedTime,
+        long listedTime,
+        Collection<WorkspacePath> paths,
+        @Nullable DirectoryStructure previous) {
+      this.modifiedTime = modifiedTime;
+      this.listedTime = listedTime;
+      this.paths = paths;
+      this.previous = previous;
+    }
+  }
+
   private static class PathStructurePair {
     final WorkspacePath path;
     final DirectoryStructure directoryStructure;
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.projectstructure;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.settings.BlazeImportSettings;
+import com.google.idea.blaze.base.settings.BlazeImportSettingsManager;
+import com.google.idea.blaze.base.sync.data.BlazeDataStorage;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileAdapter;
+import com.intellij.openapi.vfs.VirtualFileEvent;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.VirtualFileMoveEvent;
+import com.intellij.openapi.vfs.VirtualFilePropertyEvent;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+
+/**
+ * Retains the most recently computed {@link DirectoryStructure}, both in memory and on disk, so the
+ * next sync only needs to re-list directories which have changed.
+ *
+ * <p>Also records directories the VFS reports as having had child directories added, removed or
+ * renamed, which are always re-listed regardless of their timestamp.
+ */
+final class DirectoryStructureCache {
+  private static final Logger logger = Logger.getInstance(DirectoryStructureCache.class);
+
+  private static final int VERSION = 2;
+
+  static DirectoryStructureCache getInstance(Project project) {
+    return ServiceManager.getService(project, DirectoryStructureCache.class);
+  }
+
+  /** A directory structure, along with the import roots it was computed for. */
+  @VisibleForTesting
+  static final class Snapshot {
+    final ImmutableSet<WorkspacePath> rootDirectories;
+    final ImmutableSet<WorkspacePath> excludeDirectories;
+    final DirectoryStructure directoryStructure;
+
+    Snapshot(
+        Collection<WorkspacePath> rootDirectories,
+        Collection<WorkspacePath> excludeDirectories,
+        DirectoryStructure directoryStructure) {
+      this.rootDirectories = ImmutableSet.copyOf(rootDirectories);
+      this.excludeDirectories = ImmutableSet.copyOf(excludeDirectories);
+      this.directoryStructure = directoryStructure;
+    }
+  }
+
+  private final Project project;
+  private final Set<String> changedDirectories = ConcurrentHashMap.newKeySet();
+
+  @Nullable private volatile Snapshot snapshot;
+  private volatile boolean loaded;
+
+  public DirectoryStructureCache(Project project) {
+    this.project = project;
+    VirtualFileManager.getInstance().addVirtualFileListener(new DirectoryListener(), project);
+  }
+
+  /**
+   * Returns the previous directory structure, if it was computed for the same import roots.
+   * Otherwise returns null.
+   */
+  @Nullable
+  DirectoryStructure getPrevious(
+      Collection<WorkspacePath> rootDirectories, Collection<WorkspacePath> excludeDirectories) {
+    if (!loaded) {
+      File file = getCacheFile();
+      snapshot = file != null ? read(file) : null;
+      loaded = true;
+    }
+    Snapshot snapshot = this.snapshot;
+    if (snapshot == null
+        || !snapshot.rootDirectories.equals(ImmutableSet.copyOf(rootDirectories))
+        || !snapshot.excludeDirectories.equals(ImmutableSet.copyOf(excludeDirectories))) {
+      return null;
+    }
+    return snapshot.directoryStructure;
+  }
+
+  /** The absolute paths of directories with changed children, as reported by the VFS. */
+  ImmutableSet<String> getChangedDirectories() {
+    return ImmutableSet.copyOf(changedDirectories);
+  }
+
+  /**
+   * Stores a newly computed directory structure. The given VFS changes are now reflected in the
+   * stored structure, so are no longer tracked.
+   */
+  void update(Snapshot snapshot, Set<String> handledChanges) {
+    this.snapshot = snapshot;
+    this.loaded = true;
+    changedDirectories.removeAll(handledChanges);
+    File file = getCacheFile();
+    if (file != null) {
+      write(file, snapshot);
+    }
+  }
+
+  @Nullable
+  private File getCacheFile() {
+    BlazeImportSettings importSettings =
+        BlazeImportSettingsManager.getInstance(project).getImportSettings();
+    if (importSettings == null) {
+      return null;
+    }
+    return new File(
+        BlazeDataStorage.getProjectCacheDir(project, importSettings), "directory_structure.dat");
+  }
+
+  @VisibleForTesting
+  @Nullable
+  static Snapshot read(File file) {
+    if (!FileOperationProvider.getInstance().exists(file)) {
+      return null;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+      if (in.readInt() != VERSION) {
+        return null;
+      }
+      ImmutableSet<WorkspacePath> rootDirectories = readPaths(in);
+      ImmutableSet<WorkspacePath> excludeDirectories = readPaths(in);
+      return new Snapshot(rootDirectories, excludeDirectories, readStructure(in));
+    } catch (IOException | IllegalArgumentException e) {
+      logger.warn("Failed to read directory structure " + file, e);
+      return null;
+    }
+  }
+
+  @VisibleForTesting
+  static void write(File file, Snapshot snapshot) {
+    File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      FileOperationProvider.getInstance().mkdirs(file.getParentFile());
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(VERSION);
+        writePaths(out, snapshot.rootDirectories);
+        writePaths(out, snapshot.excludeDirectories);
+        writeStructure(out, snapshot.directoryStructure);
+      }
+      Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      logger.warn("Failed to write directory structure " + file, e);
+    }
+  }
+
+  private static ImmutableSet<WorkspacePath> readPaths(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    ImmutableSet.Builder<WorkspacePath> paths = ImmutableSet.builder();
+    for (int i = 0; i < size; i++) {
+      paths.add(new WorkspacePath(in.readUTF()));
+    }
+    return paths.build();
+  }
+
+  private static void writePaths(DataOutputStream out, Set<WorkspacePath> paths)
+      throws IOException {
+    out.writeInt(paths.size());
+    for (WorkspacePath path : paths) {
+      out.writeUTF(path.relativePath());
+    }
+  }
+
+  private static DirectoryStructure readStructure(DataInputStream in) throws IOException {
+    long modifiedTime = in.readLong();
+    long listedTime = in.readLong();
+    int size = in.readInt();
+    ImmutableMap.Builder<WorkspacePath, DirectoryStructure> directories = ImmutableMap.builder();
+    for (int i = 0; i < size; i++) {
+      WorkspacePath path = new WorkspacePath(in.readUTF());
+      directories.put(path, readStructure(in));
+    }
+    return new DirectoryStructure(directories.build(), modifiedTime, listedTime);
+  }
+
+  private static void writeStructure(DataOutputStream out, DirectoryStructure structure)
+      throws IOException {
+    out.writeLong(structure.modifiedTime);
+    out.writeLong(structure.listedTime);
+    out.writeInt(structure.directories.size());
+    for (Map.Entry<WorkspacePath, DirectoryStructure> entry : structure.directories.entrySet()) {
+      out.writeUTF(entry.getKey().relativePath());
+      writeStructure(out, entry.getValue());
+    }
+  }
+
+  private void onChildDirectoryChanged(@Nullable VirtualFile parent) {
+    if (parent != null) {
+      changedDirectories.add(parent.getPath());
+    }
+  }
+
+  /** Records the parents of added, removed, moved or renamed directories. */
+  private class DirectoryListener extends VirtualFileAdapter {
+    @Override
+    public void propertyChanged(VirtualFilePropertyEvent event) {
+      if (VirtualFile.PROP_NAME.equals(event.getPropertyName()) && event.getFile().isDirectory()) {
+        onChildDirectoryChanged(event.getParent());
+      }
+    }
+
+    @Override
+    public void fileCreated(VirtualFileEvent event) {
+      if (event.getFile().isDirectory()) {
+        onChildDirectoryChanged(event.getParent());
+      }
+    }
+
+    @Override
+    public void fileDeleted(VirtualFileEvent event) {
+      if (event.getFile().isDirectory()) {
+        onChildDirectoryChanged(event.getParent());
+      }
+    }
+
+    @Override
+    public void fileMoved(VirtualFileMoveEvent event) {
+      if (event.getFile().isDirectory()) {
+        onChildDirectoryChanged(event.getOldParent());
+        onChildDirectoryChanged(event.getNewParent());
+      }
+    }
+  }
+}
@@ -19,22 +19,29 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.projectview.section.Glob;
 import com.google.idea.blaze.base.projectview.section.sections.TestSourceSection;
+import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.File;
 import java.util.stream.Collectors;
 
 /** Affects the way sources are imported. */
 public class SourceTestConfig {
+  private static final Key<Glob.GlobSet> TEST_SOURCE_GLOBS = Key.create("blaze.test.source.globs");
+
   private final Glob.GlobSet testSources;
 
   public SourceTestConfig(ProjectViewSet projectViewSet) {
     this.testSources =
-        new Glob.GlobSet(
-            projectViewSet
-                .listItems(TestSourceSection.KEY)
-                .stream()
-                .map(SourceTestConfig::modifyGlob)
-                .collect(Collectors.toList()));
+        projectViewSet.getCachedValue(TEST_SOURCE_GLOBS, SourceTestConfig::getTestSourceGlobs);
+  }
+
+  private static Glob.GlobSet getTestSourceGlobs(ProjectViewSet projectViewSet) {
+    return new Glob.GlobSet(
+        projectViewSet
+            .listItems(TestSourceSection.KEY)
+            .stream()
+            .map(SourceTestConfig::modifyGlob)
+            .collect(Collectors.toList()));
   }
 
   private static Glob modifyGlob(Glob glob) {
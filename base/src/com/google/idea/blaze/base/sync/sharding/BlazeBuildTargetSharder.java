@@ -22,6 +22,7 @@ import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
 import com.google.idea.blaze.base.projectview.ProjectViewManager;
 import com.google.idea.blaze.base.projectview.ProjectViewSet;
 import com.google.idea.blaze.base.projectview.section.sections.ShardBlazeBuildsSection;
+import com.google.idea.blaze.base.projectview.section.sections.ShardsInFlightSection;
 import com.google.idea.blaze.base.projectview.section.sections.TargetShardSizeSection;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.Scope;
@@ -46,6 +47,13 @@ public class BlazeBuildTargetSharder {
   private static final IntExperiment targetShardSize =
       new IntExperiment("blaze.target.shard.size", 1000);
 
+  /**
+   * Default number of built shards whose ide-info output is read in the background while later
+   * shards build. Can be overridden by the user.
+   */
+  private static final IntExperiment shardsInFlight =
+      new IntExperiment("blaze.sync.shards.in.flight", 0);
+
   // number of packages per blaze query shard
   static final int PACKAGE_SHARD_SIZE = 500;
 
@@ -77,6 +85,19 @@ public class BlazeBuildTargetSharder {
         .orElse(targetShardSize.getValue());
   }
 
+  /**
+   * Maximum number of built shards whose ide-info output may be read in the background while
+   * subsequent shards are building. Zero if sync shouldn't be pipelined.
+   */
+  public static int getShardsInFlight(ProjectViewSet projectViewSet) {
+    if (!shardingEnabled(projectViewSet)) {
+      return 0;
+    }
+    return projectViewSet
+        .getScalarValue(ShardsInFlightSection.KEY)
+        .orElse(shardsInFlight.getValue());
+  }
+
   /** Expand wildcard target patterns and partition the resulting target list. */
   public static ShardedTargetsResult expandAndShardTargets(
       Project project,
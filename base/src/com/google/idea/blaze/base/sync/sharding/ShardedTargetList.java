@@ -23,6 +23,7 @@ import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.aspects.BuildResult;
 import com.intellij.openapi.project.Project;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 /** Partitioned list of blaze targets. */
@@ -48,11 +49,27 @@ public class ShardedTargetList {
       BlazeContext context,
       Function<Integer, String> progressMessage,
       Function<List<TargetExpression>, BuildResult> invocation) {
+    return runShardedCommand(project, context, progressMessage, invocation, result -> {});
+  }
+
+  /**
+   * Runs the provided blaze invocation on each target list shard, returning the combined {@link
+   * BuildResult}. The shard completion callback is run once per shard, after any out of memory
+   * retry, and before the next shard's invocation begins.
+   */
+  public BuildResult runShardedCommand(
+      Project project,
+      BlazeContext context,
+      Function<Integer, String> progressMessage,
+      Function<List<TargetExpression>, BuildResult> invocation,
+      Consumer<BuildResult> onShardComplete) {
     if (isEmpty()) {
       return BuildResult.SUCCESS;
     }
     if (shardedTargets.size() == 1) {
-      return invocation.apply(shardedTargets.get(0));
+      BuildResult result = invocation.apply(shardedTargets.get(0));
+      onShardComplete.accept(result);
+      return result;
     }
     int progress = 0;
     BuildResult output = null;
@@ -65,6 +82,7 @@ public class ShardedTargetList {
         IssueOutput.warn(retryOnOomMessage(project, i)).submit(context);
         result = invocation.apply(shardedTargets.get(i));
       }
+      onShardComplete.accept(result);
       output = output == null ? result : BuildResult.combine(output, result);
       if (output.status == BuildResult.Status.FATAL_ERROR) {
         return output;
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.targetmaps;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.ideinfo.Dependency;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.intellij.openapi.project.Project;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, immutable index of the dependency graph of a {@link TargetMap}, built once per sync.
+ *
+ * <p>Each target is assigned a dense int id, and forward and reverse edges are stored as
+ * compressed sparse row arrays, so traversals don't allocate per visited target.
+ *
+ * <p>Forward edges follow the semantics of {@link TransitiveDependencyMap}: each dependency is
+ * resolved to the plain target with the same label, whether or not it's in the target map. Reverse
+ * edges follow {@link ReverseDependencyMap}: only dependencies present in the target map are
+ * included.
+ */
+public final class DependencyGraph {
+
+  private static final DependencyGraph EMPTY = create(new TargetMap(ImmutableMap.of()));
+
+  private final ImmutableMap<TargetKey, Integer> ids;
+  private final TargetKey[] keys;
+  private final int[] depOffsets;
+  private final int[] deps;
+  private final int[] rdepOffsets;
+  private final int[] rdeps;
+
+  private DependencyGraph(
+      ImmutableMap<TargetKey, Integer> ids,
+      TargetKey[] keys,
+      int[] depOffsets,
+      int[] deps,
+      int[] rdepOffsets,
+      int[] rdeps) {
+    this.ids = ids;
+    this.keys = keys;
+    this.depOffsets = depOffsets;
+    this.deps = deps;
+    this.rdepOffsets = rdepOffsets;
+    this.rdeps = rdeps;
+  }
+
+  /** Returns the dependency graph of the project's current target map, cached until next sync. */
+  public static DependencyGraph get(Project project) {
+    DependencyGraph graph =
+        SyncCache.getInstance(project).get(DependencyGraph.class, DependencyGraph::compute);
+    return graph != null ? graph : EMPTY;
+  }
+
+  @SuppressWarnings("unused")
+  private static DependencyGraph compute(Project project, BlazeProjectData projectData) {
+    return create(projectData.getTargetMap());
+  }
+
+  /** Builds the dependency graph in the background as soon as sync completes. */
+  static class Precompute implements SyncCache.Precomputed {
+    @Override
+    public Object getKey() {
+      return DependencyGraph.class;
+    }
+
+    @Override
+    public SyncCache.SyncCacheComputable<?> getComputable() {
+      return DependencyGraph::compute;
+    }
+  }
+
+  public static DependencyGraph create(TargetMap targetMap) {
+    Collection<TargetIdeInfo> targets = targetMap.targets();
+    int targetCount = targets.size();
+    Map<TargetKey, Integer> ids = new HashMap<>();
+    for (TargetIdeInfo target : targets) {
+      ids.put(target.getKey(), ids.size());
+    }
+
+    // forward edges; dependencies outside the target map get ids after all the targets
+    int[] depOffsets = new int[targetCount + 1];
+    IntArrayBuilder deps = new IntArrayBuilder();
+    // reverse edges, initially as (dependency, dependent) pairs
+    IntArrayBuilder rdepPairs = new IntArrayBuilder();
+    int[] rdepCounts = new int[targetCount];
+    int id = 0;
+    for (TargetIdeInfo target : targets) {
+      for (Dependency dep : target.getDependencies()) {
+        TargetKey depKey = dep.getTargetKey();
+        Integer depId = ids.get(depKey);
+        if (depId != null && depId < targetCount) {
+          rdepPairs.add(depId);
+          rdepPairs.add(id);
+          rdepCounts[depId]++;
+        }
+        if (!depKey.isPlainTarget()) {
+          depKey = TargetKey.forPlainTarget(depKey.getLabel());
+          depId = ids.get(depKey);
+        }
+        if (depId == null) {
+          depId = ids.size();
+          ids.put(depKey, depId);
+        }
+        deps.add(depId);
+      }
+      depOffsets[++id] = deps.size();
+    }
+
+    int nodeCount = ids.size();
+    TargetKey[] keys = new TargetKey[nodeCount];
+    ids.forEach((key, value) -> keys[value] = key);
+
+    // nodes outside the target map have no outgoing edges, so they share the final offset
+    int[] paddedDepOffsets = Arrays.copyOf(depOffsets, nodeCount + 1);
+    Arrays.fill(paddedDepOffsets, targetCount + 1, nodeCount + 1, depOffsets[targetCount]);
+
+    int[] rdepOffsets = new int[nodeCount + 1];
+    for (int i = 0; i < targetCount; i++) {
+      rdepOffsets[i + 1] = rdepOffsets[i] + rdepCounts[i];
+    }
+    Arrays.fill(rdepOffsets, targetCount + 1, nodeCount + 1, rdepOffsets[targetCount]);
+    int[] rdeps = new int[rdepOffsets[targetCount]];
+    int[] next = Arrays.copyOf(rdepOffsets, targetCount);
+    int[] pairs = rdepPairs.build();
+    for (int i = 0; i < pairs.length; i += 2) {
+      rdeps[next[pairs[i]]++] = pairs[i + 1];
+    }
+
+    return new DependencyGraph(
+        ImmutableMap.copyOf(ids), keys, paddedDepOffsets, deps.build(), rdepOffsets, rdeps);
+  }
+
+  /** Returns the targets in the target map which directly depend on the given target. */
+  public ImmutableList<TargetKey> getReverseDependencies(TargetKey key) {
+    Integer id = ids.get(key);
+    if (id == null) {
+      return ImmutableList.of();
+    }
+    ImmutableList.Builder<TargetKey> result = ImmutableList.builder();
+    for (int i = rdepOffsets[id]; i < rdepOffsets[id + 1]; i++) {
+      result.add(keys[rdeps[i]]);
+    }
+    return result.build();
+  }
+
+  /**
+   * Returns the given targets and everything which transitively depends on them, in breadth-first
+   * order. Targets not in the graph are ignored.
+   */
+  public ImmutableList<TargetKey> getTransitiveReverseDependencies(Collection<TargetKey> roots) {
+    IntArrayBuilder queue = new IntArrayBuilder();
+    IntHashSet seen = new IntHashSet();
+    for (TargetKey root : roots) {
+      Integer id = ids.get(root);
+      if (id != null && seen.add(id)) {
+        queue.add(id);
+      }
+    }
+    traverse(queue, 0, seen, rdepOffsets, rdeps, -1);
+    return toKeys(queue);
+  }
+
+  /**
+   * Returns the transitive dependencies of the given targets, in breadth-first order. The given
+   * targets are only included if they're a transitive dependency of one of the others.
+   */
+  public ImmutableSet<TargetKey> getTransitiveDependencies(Collection<TargetKey> targets) {
+    IntArrayBuilder queue = new IntArrayBuilder();
+    IntHashSet seen = new IntHashSet();
+    enqueueDependencies(targets, queue, seen);
+    traverse(queue, 0, seen, depOffsets, deps, -1);
+    return ImmutableSet.copyOf(toKeys(queue));
+  }
+
+  /**
+   * Returns true if {@code possibleDependent} transitively depends on {@code possibleDependency}.
+   * Stops traversing as soon as the dependency is found.
+   */
+  public boolean hasTransitiveDependency(
+      TargetKey possibleDependent, TargetKey possibleDependency) {
+    Integer target = ids.get(possibleDependency);
+    if (target == null) {
+      return false;
+    }
+    IntArrayBuilder queue = new IntArrayBuilder();
+    IntHashSet seen = new IntHashSet();
+    enqueueDependencies(ImmutableList.of(possibleDependent), queue, seen);
+    if (seen.contains(target)) {
+      return true;
+    }
+    traverse(queue, 0, seen, depOffsets, deps, target);
+    return seen.contains(target);
+  }
+
+  private void enqueueDependencies(
+      Collection<TargetKey> targets, IntArrayBuilder queue, IntHashSet seen) {
+    for (TargetKey key : targets) {
+      Integer id = ids.get(key);
+      if (id == null) {
+        continue;
+      }
+      for (int i = depOffsets[id]; i < depOffsets[id + 1]; i++) {
+        int dep = deps[i];
+        if (seen.add(dep)) {
+          queue.add(dep);
+        }
+      }
+    }
+  }
+
+  /**
+   * Breadth-first traversal of the given edges, appending newly reached nodes to the queue. Stops
+   * early once {@code stopAt} is reached.
+   */
+  private static void traverse(
+      IntArrayBuilder queue, int head, IntHashSet seen, int[] offsets, int[] edges, int stopAt) {
+    while (head < queue.size()) {
+      int node = queue.get(head++);
+      for (int i = offsets[node]; i < offsets[node + 1]; i++) {
+        int next = edges[i];
+        if (seen.add(next)) {
+          queue.add(next);
+          if (next == stopAt) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  private ImmutableList<TargetKey> toKeys(IntArrayBuilder ids) {
+    ImmutableList.Builder<TargetKey> result = ImmutableList.builder();
+    for (int i = 0; i < ids.size(); i++) {
+      result.add(keys[ids.get(i)]);
+    }
+    return result.build();
+  }
+
+  /** A growable array of primitive ints. */
+  private static class IntArrayBuilder {
+    private int[] values = new int[16];
+    private int size = 0;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int get(int index) {
+      return values[index];
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] build() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  /**
+   * An open-addressing set of non-negative ints. Traversals use this rather than a {@link
+   * java.util.BitSet} over the whole graph, so a query's cost is proportional to the number of
+   * targets it visits, not the size of the project.
+   */
+  private static class IntHashSet {
+    // stores each value + 1, so that 0 marks an empty slot
+    private int[] slots = new int[16];
+    private int size = 0;
+
+    /** Adds the value, returning false if it was already present. */
+    boolean add(int value) {
+      if ((size + 1) * 2 > slots.length) {
+        resize();
+      }
+      if (insert(slots, value + 1)) {
+        size++;
+        return true;
+      }
+      return false;
+    }
+
+    boolean contains(int value) {
+      int entry = value + 1;
+      int mask = slots.length - 1;
+      for (int i = hash(entry) & mask; slots[i] != 0; i = (i + 1) & mask) {
+        if (slots[i] == entry) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void resize() {
+      int[] newSlots = new int[slots.length * 2];
+      for (int entry : slots) {
+        if (entry != 0) {
+          insert(newSlots, entry);
+        }
+      }
+      slots = newSlots;
+    }
+
+    private static boolean insert(int[] slots, int entry) {
+      int mask = slots.length - 1;
+      for (int i = hash(entry) & mask; ; i = (i + 1) & mask) {
+        if (slots[i] == entry) {
+          return false;
+        }
+        if (slots[i] == 0) {
+          slots[i] = entry;
+          return true;
+        }
+      }
+    }
+
+    private static int hash(int entry) {
+      int h = entry * 0x9E3779B9;
+      return h ^ (h >>> 16);
+    }
+  }
+}
@@ -25,7 +25,11 @@ import com.google.idea.blaze.base.model.BlazeProjectData;
 import com.google.idea.blaze.base.sync.SyncCache;
 import com.intellij.openapi.project.Project;
 
-/** Handy class to create an reverse dep map of all targets */
+/**
+ * Handy class to create an reverse dep map of all targets.
+ *
+ * <p>Prefer {@link DependencyGraph}, which answers the same queries without boxing.
+ */
 public class ReverseDependencyMap {
   public static ImmutableMultimap<TargetKey, TargetKey> get(Project project) {
     ImmutableMultimap<TargetKey, TargetKey> map =
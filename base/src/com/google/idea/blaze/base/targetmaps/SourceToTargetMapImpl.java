@@ -69,11 +69,24 @@ public class SourceToTargetMapImpl implements SourceToTargetMap {
   }
 
   @Nullable
-  private synchronized ImmutableMultimap<File, TargetKey> getSourceToTargetMap() {
+  private ImmutableMultimap<File, TargetKey> getSourceToTargetMap() {
     return SyncCache.getInstance(project)
         .get(SourceToTargetMapImpl.class, SourceToTargetMapImpl::computeSourceToTargetMap);
   }
 
+  /** Builds the source to target map in the background as soon as sync completes. */
+  static class Precompute implements SyncCache.Precomputed {
+    @Override
+    public Object getKey() {
+      return SourceToTargetMapImpl.class;
+    }
+
+    @Override
+    public SyncCache.SyncCacheComputable<?> getComputable() {
+      return SourceToTargetMapImpl::computeSourceToTargetMap;
+    }
+  }
+
   @SuppressWarnings("unused")
   private static ImmutableMultimap<File, TargetKey> computeSourceToTargetMap(
       Project project, BlazeProjectData blazeProjectData) {
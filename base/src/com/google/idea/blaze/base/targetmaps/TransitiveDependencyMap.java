@@ -23,8 +23,6 @@ import com.google.idea.blaze.base.ideinfo.Dependency;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
-import com.google.idea.blaze.base.model.BlazeProjectData;
-import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
 import java.util.Collection;
@@ -35,7 +33,12 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Stream;
 
-/** Handy class to find all transitive dependencies of a given target */
+/**
+ * Handy class to find all transitive dependencies of a given target.
+ *
+ * <p>Queries against the project's target map use the {@link DependencyGraph} cached until the
+ * next sync; the static methods traverse an arbitrary {@link TargetMap} directly.
+ */
 public class TransitiveDependencyMap {
   private final Project project;
 
@@ -54,24 +57,12 @@ public class TransitiveDependencyMap {
   public boolean hasTransitiveDependency(
       TargetKey possibleDependent, TargetKey possibleDependency) {
 
-    BlazeProjectData blazeProjectData =
-        BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
-    if (blazeProjectData == null) {
-      return false;
-    }
-
-    return getTransitiveDependenciesStream(possibleDependent, blazeProjectData.getTargetMap())
-        .anyMatch(possibleDependency::equals);
+    return DependencyGraph.get(project)
+        .hasTransitiveDependency(possibleDependent, possibleDependency);
   }
 
   public ImmutableCollection<TargetKey> getTransitiveDependencies(TargetKey targetKey) {
-    BlazeProjectData blazeProjectData =
-        BlazeProjectDataManager.getInstance(project).getBlazeProjectData();
-    if (blazeProjectData == null) {
-      return ImmutableSet.of();
-    }
-    // TODO: see if we need caching.
-    return getTransitiveDependencies(targetKey, blazeProjectData.getTargetMap());
+    return DependencyGraph.get(project).getTransitiveDependencies(ImmutableList.of(targetKey));
   }
 
   public static ImmutableCollection<TargetKey> getTransitiveDependencies(
@@ -132,8 +123,7 @@ public class TransitiveDependencyMap {
 
       return target.getDependencies().stream()
           .map(Dependency::getTargetKey)
-          .map(TargetKey::getLabel)
-          .map(TargetKey::forPlainTarget);
+          .map(key -> key.isPlainTarget() ? key : TargetKey.forPlainTarget(key.getLabel()));
     }
 
     @Override
@@ -18,11 +18,13 @@ package com.google.idea.blaze.base.ui.problems;
 import com.google.idea.blaze.base.io.VfsUtils;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
 import com.google.idea.blaze.base.settings.BlazeUserSettings.FocusBehavior;
+import com.google.idea.common.experiments.IntExperiment;
 import com.intellij.icons.AllIcons;
 import com.intellij.ide.errorTreeView.ErrorTreeElement;
 import com.intellij.ide.errorTreeView.ErrorTreeElementKind;
 import com.intellij.ide.errorTreeView.ErrorViewStructure;
 import com.intellij.ide.errorTreeView.GroupingElement;
+import com.intellij.ide.errorTreeView.NavigatableMessageElement;
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.fileEditor.OpenFileDescriptor;
@@ -37,20 +39,19 @@ import com.intellij.pom.Navigatable;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.util.concurrency.SequentialTaskExecutor;
 import com.intellij.util.ui.MessageCategory;
 import com.intellij.util.ui.UIUtil;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.EnumSet;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.StringTokenizer;
-import java.util.UUID;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.swing.Icon;
 
@@ -66,7 +67,32 @@ public class BlazeProblemsView {
   private static final String TOOL_WINDOW_ID = "Blaze Problems";
   private static final EnumSet<ErrorTreeElementKind> ALL_MESSAGE_KINDS =
       EnumSet.allOf(ErrorTreeElementKind.class);
-  private static final int MAX_ISSUES = 2000;
+
+  private static final IntExperiment maxIssues =
+      new IntExperiment("blaze.problems.view.max.issues", 2000);
+  private static final IntExperiment maxIssuesPerFile =
+      new IntExperiment("blaze.problems.view.max.issues.per.file", 200);
+
+  /** How long to wait for more problems to arrive before updating the view. */
+  private static final int BATCH_DELAY_MILLIS = 100;
+
+  private static final String HIDDEN_PROBLEMS_GROUP = "Too many problems";
+
+  private static final Navigatable NOT_NAVIGABLE =
+      new Navigatable() {
+        @Override
+        public void navigate(boolean requestFocus) {}
+
+        @Override
+        public boolean canNavigate() {
+          return false;
+        }
+
+        @Override
+        public boolean canNavigateToSource() {
+          return false;
+        }
+      };
 
   private final ExecutorService viewUpdater =
       SequentialTaskExecutor.createSequentialApplicationPoolExecutor("BlazeProblemsView pool");
@@ -76,11 +102,11 @@ public class BlazeProblemsView {
   private final Project project;
   private final BlazeProblemsViewPanel panel;
 
-  private final Set<Integer> problemHashes = Collections.synchronizedSet(new HashSet<>());
-  private final AtomicInteger problemCount = new AtomicInteger(0);
-  private volatile boolean didFocusProblemsView = false;
-  private volatile FocusBehavior focusBehavior;
-  private volatile UUID currentSessionId = UUID.randomUUID();
+  private volatile ProblemsViewSession session = newSession(null);
+
+  // the 'N more problems' nodes for problems hidden due to the limits, keyed by file (or null for
+  // those hidden due to the total limit); only accessed by the view updater
+  private final Map<File, NavigatableMessageElement> summaryNodes = new HashMap<>();
 
   public BlazeProblemsView(Project project, ToolWindowManager wm) {
     this.project = project;
@@ -102,64 +128,150 @@ public class BlazeProblemsView {
   }
 
   public void newProblemsContext(FocusBehavior focusBehavior) {
+    // any problems still queued belong to the previous session, and are dropped with it
+    session = newSession(focusBehavior);
     viewUpdater.execute(
         () -> {
-          currentSessionId = UUID.randomUUID();
           ErrorViewStructure tree = panel.getErrorViewStructure();
           for (ErrorTreeElement child : tree.getChildElements(tree.getRootElement())) {
             tree.removeElement(child);
           }
-          problemCount.set(0);
-          didFocusProblemsView = false;
-          this.focusBehavior = focusBehavior;
-          problemHashes.clear();
+          summaryNodes.clear();
           updateIcon();
           panel.reload();
         });
   }
 
+  private static ProblemsViewSession newSession(@Nullable FocusBehavior focusBehavior) {
+    return new ProblemsViewSession(
+        focusBehavior, maxIssues.getValue(), maxIssuesPerFile.getValue());
+  }
+
+  /**
+   * Queues a problem to be added to the view. Queued problems are added in batches, to avoid
+   * updating the tree once per problem when a build reports many of them.
+   */
   public void addMessage(IssueOutput issue, @Nullable Navigatable openInConsole) {
-    if (!problemHashes.add(issue.hashCode())) {
+    ProblemsViewSession session = this.session;
+    ProblemsViewSession.AddResult result = session.add(issue, openInConsole);
+    if (result == ProblemsViewSession.AddResult.DUPLICATE) {
       return;
     }
-    int count = problemCount.incrementAndGet();
-    if (count > MAX_ISSUES) {
+    scheduleDrain(session);
+    if (result == ProblemsViewSession.AddResult.HIDDEN) {
       return;
     }
-    if (count == MAX_ISSUES) {
-      issue =
-          IssueOutput.warn("Too many problems found. Only showing the first " + MAX_ISSUES).build();
+    boolean focus =
+        session.focusBehavior == FocusBehavior.ALWAYS
+            || (session.focusBehavior == FocusBehavior.ON_ERROR
+                && issue.getCategory() == IssueOutput.Category.ERROR);
+    if (focus && session.didFocusProblemsView.compareAndSet(false, true)) {
+      focusProblemsView();
+    }
+  }
+
+  private void scheduleDrain(ProblemsViewSession session) {
+    if (session.markDrainScheduled()) {
+      AppExecutorUtil.getAppScheduledExecutorService()
+          .schedule(
+              () -> viewUpdater.execute(() -> drainPendingProblems(session)),
+              BATCH_DELAY_MILLIS,
+              TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /** Adds all queued problems to the view, with a single tree and icon update. */
+  private void drainPendingProblems(ProblemsViewSession session) {
+    if (session != this.session) {
+      return;
+    }
+    ProblemsViewSession.Batch batch = session.drain();
+    ErrorViewStructure structure = panel.getErrorViewStructure();
+    for (ProblemsViewSession.PendingProblem problem : batch.problems) {
+      addToTree(structure, session, problem.issue, problem.openInConsole);
+    }
+    for (ProblemsViewSession.HiddenProblems hidden : batch.changedHiddenCounts) {
+      updateSummaryNode(structure, session, hidden);
     }
+    panel.updateTree();
+    updateIcon();
+  }
+
+  /**
+   * Adds a problem directly to the structure (rather than via the panel, which would update the
+   * tree), so the tree is only updated once per batch.
+   */
+  private void addToTree(
+      ErrorViewStructure structure,
+      ProblemsViewSession session,
+      IssueOutput issue,
+      @Nullable Navigatable openInConsole) {
     VirtualFile file = issue.getFile() != null ? resolveVirtualFile(issue.getFile()) : null;
     Navigatable navigatable = issue.getNavigatable();
     if (navigatable == null && file != null) {
       navigatable =
           new OpenFileDescriptor(project, file, issue.getLine() - 1, issue.getColumn() - 1);
     }
+    if (navigatable == null) {
+      navigatable = openInConsole;
+    }
     IssueOutput.Category category = issue.getCategory();
-    int type = translateCategory(category);
+    ErrorTreeElementKind kind =
+        ErrorTreeElementKind.convertMessageFromCompilerErrorType(translateCategory(category));
     String[] text = convertMessage(issue);
+    if (navigatable == null) {
+      structure.addMessage(kind, text, null, null, -1, -1, session.id);
+      return;
+    }
     String groupName = file != null ? file.getPresentableUrl() : category.name();
-    addMessage(
-        type,
-        text,
+    GroupingElement group = structure.lookupGroupingElement(groupName);
+    if (group != null && !session.id.equals(group.getData())) {
+      structure.removeElement(group);
+    }
+    structure.addNavigatableMessage(
         groupName,
-        file,
-        navigatable,
-        openInConsole,
-        getExportTextPrefix(issue),
-        getRenderTextPrefix(issue));
+        new ProblemsViewMessageElement(
+            kind,
+            structure.getGroupingElement(groupName, session.id, file),
+            text,
+            navigatable,
+            openInConsole,
+            getExportTextPrefix(issue),
+            getRenderTextPrefix(issue)));
+  }
 
-    if (didFocusProblemsView) {
-      return;
+  /** Adds or replaces the 'N more problems' node for problems hidden due to the limits. */
+  private void updateSummaryNode(
+      ErrorViewStructure structure,
+      ProblemsViewSession session,
+      ProblemsViewSession.HiddenProblems hidden) {
+    NavigatableMessageElement previous = summaryNodes.remove(hidden.file);
+    if (previous != null) {
+      structure.removeElement(previous);
     }
-    boolean focus =
-        focusBehavior == FocusBehavior.ALWAYS
-            || (focusBehavior == FocusBehavior.ON_ERROR && category == IssueOutput.Category.ERROR);
-    if (focus) {
-      didFocusProblemsView = true;
-      focusProblemsView();
+    String groupName;
+    VirtualFile vf;
+    Navigatable navigatable;
+    if (hidden.file != null) {
+      vf = resolveVirtualFile(hidden.file);
+      groupName = vf != null ? vf.getPresentableUrl() : hidden.file.getPath();
+      navigatable = vf != null ? new OpenFileDescriptor(project, vf) : NOT_NAVIGABLE;
+    } else {
+      vf = null;
+      groupName = HIDDEN_PROBLEMS_GROUP;
+      navigatable = NOT_NAVIGABLE;
     }
+    String text = session.getSummaryText(hidden);
+    NavigatableMessageElement element =
+        new NavigatableMessageElement(
+            ErrorTreeElementKind.INFO,
+            structure.getGroupingElement(groupName, session.id, vf),
+            new String[] {text},
+            navigatable,
+            text,
+            "");
+    structure.addNavigatableMessage(groupName, element);
+    summaryNodes.put(hidden.file, element);
   }
 
   /**
@@ -227,51 +339,6 @@ public class BlazeProblemsView {
     return "";
   }
 
-  private void addMessage(
-      int type,
-      String[] text,
-      String groupName,
-      @Nullable VirtualFile file,
-      @Nullable Navigatable navigatable,
-      @Nullable Navigatable openInConsole,
-      String exportTextPrefix,
-      String rendererTextPrefix) {
-    UUID sessionId = currentSessionId;
-    viewUpdater.execute(
-        () -> {
-          final ErrorViewStructure structure = panel.getErrorViewStructure();
-          final GroupingElement group = structure.lookupGroupingElement(groupName);
-          if (group != null && !sessionId.equals(group.getData())) {
-            structure.removeElement(group);
-          }
-          if (openInConsole != null) {
-            structure.addNavigatableMessage(
-                groupName,
-                new ProblemsViewMessageElement(
-                    ErrorTreeElementKind.convertMessageFromCompilerErrorType(type),
-                    structure.getGroupingElement(groupName, sessionId, file),
-                    text,
-                    navigatable != null ? navigatable : openInConsole,
-                    openInConsole,
-                    exportTextPrefix,
-                    rendererTextPrefix));
-            panel.updateTree();
-          } else if (navigatable != null) {
-            panel.addMessage(
-                type,
-                text,
-                groupName,
-                navigatable,
-                exportTextPrefix,
-                rendererTextPrefix,
-                sessionId);
-          } else {
-            panel.addMessage(type, text, null, -1, -1, sessionId);
-          }
-          updateIcon();
-        });
-  }
-
   private void updateIcon() {
     UIUtil.invokeLaterIfNeeded(
         () -> {
@@ -24,25 +24,26 @@ import javax.annotation.Nullable;
 /** A problems view entry which supports navigating back to the blaze console view. */
 public class ProblemsViewMessageElement extends NavigatableMessageElement {
 
-  private final Navigatable consoleNavigatable;
+  @Nullable private final Navigatable consoleNavigatable;
 
   /**
    * @param navigatable 'navigate to source' (or double-clicking) uses this
    * @param consoleNavigatable an alternative navigatable, used to focus the console view at this
-   *     problem.
+   *     problem. Null if the problem has no associated console output.
    */
   public ProblemsViewMessageElement(
       ErrorTreeElementKind kind,
       @Nullable GroupingElement parent,
       String[] message,
       Navigatable navigatable,
-      Navigatable consoleNavigatable,
+      @Nullable Navigatable consoleNavigatable,
       String exportText,
       String rendererTextPrefix) {
     super(kind, parent, message, navigatable, exportText, rendererTextPrefix);
     this.consoleNavigatable = consoleNavigatable;
   }
 
+  @Nullable
   Navigatable getBlazeConsoleNavigatable() {
     return consoleNavigatable;
   }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ui.problems;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.idea.blaze.base.scope.output.IssueOutput;
+import com.google.idea.blaze.base.settings.BlazeUserSettings.FocusBehavior;
+import com.intellij.pom.Navigatable;
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * The problems reported to the {@link BlazeProblemsView} since its last {@link
+ * BlazeProblemsView#newProblemsContext}.
+ *
+ * <p>Drops duplicate problems, and those over the total and per-file limits (only counting them),
+ * and queues the rest to be added to the view in batches.
+ */
+final class ProblemsViewSession {
+
+  /** What happened to a problem passed to {@link #add}. */
+  enum AddResult {
+    QUEUED,
+    DUPLICATE,
+    HIDDEN,
+  }
+
+  /** A problem waiting to be added to the view. */
+  static final class PendingProblem {
+    final IssueOutput issue;
+    @Nullable final Navigatable openInConsole;
+
+    PendingProblem(IssueOutput issue, @Nullable Navigatable openInConsole) {
+      this.issue = issue;
+      this.openInConsole = openInConsole;
+    }
+  }
+
+  /** The number of problems hidden in a file, or in total if the file is null. */
+  static final class HiddenProblems {
+    @Nullable final File file;
+    final int count;
+
+    HiddenProblems(@Nullable File file, int count) {
+      this.file = file;
+      this.count = count;
+    }
+  }
+
+  /** The problems queued since the last drain, and any changes to the hidden problem counts. */
+  static final class Batch {
+    final ImmutableList<PendingProblem> problems;
+    final ImmutableList<HiddenProblems> changedHiddenCounts;
+
+    Batch(ImmutableList<PendingProblem> problems, ImmutableList<HiddenProblems> hidden) {
+      this.problems = problems;
+      this.changedHiddenCounts = hidden;
+    }
+  }
+
+  final UUID id = UUID.randomUUID();
+  @Nullable final FocusBehavior focusBehavior;
+  final AtomicBoolean didFocusProblemsView = new AtomicBoolean(false);
+
+  private final int maxIssues;
+  private final int maxIssuesPerFile;
+
+  /**
+   * Messages are interned, as the same message is often reported at many locations (e.g. a
+   * deprecation warning).
+   */
+  private static final Interner<String> messageInterner = Interners.newWeakInterner();
+
+  /** Used to dedupe problems. */
+  private final Set<ProblemKey> seen = ConcurrentHashMap.newKeySet();
+
+  private final AtomicInteger shownCount = new AtomicInteger(0);
+  private final ConcurrentMap<File, AtomicInteger> countPerFile = new ConcurrentHashMap<>();
+  private final AtomicInteger hiddenCount = new AtomicInteger(0);
+  private final ConcurrentMap<File, AtomicInteger> hiddenCountPerFile = new ConcurrentHashMap<>();
+
+  private final Queue<PendingProblem> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+
+  // the hidden counts as of the last drain; only accessed by the draining thread
+  private int drainedHiddenCount = 0;
+  private final Map<File, Integer> drainedHiddenCountPerFile = new HashMap<>();
+
+  ProblemsViewSession(@Nullable FocusBehavior focusBehavior, int maxIssues, int maxIssuesPerFile) {
+    this.focusBehavior = focusBehavior;
+    this.maxIssues = maxIssues;
+    this.maxIssuesPerFile = maxIssuesPerFile;
+  }
+
+  AddResult add(IssueOutput issue, @Nullable Navigatable openInConsole) {
+    if (!seen.add(new ProblemKey(issue))) {
+      return AddResult.DUPLICATE;
+    }
+    File file = issue.getFile();
+    if (file != null && increment(countPerFile, file) > maxIssuesPerFile) {
+      increment(hiddenCountPerFile, file);
+      return AddResult.HIDDEN;
+    }
+    if (shownCount.incrementAndGet() > maxIssues) {
+      hiddenCount.incrementAndGet();
+      return AddResult.HIDDEN;
+    }
+    pending.add(new PendingProblem(issue, openInConsole));
+    return AddResult.QUEUED;
+  }
+
+  private static int increment(ConcurrentMap<File, AtomicInteger> counts, File file) {
+    return counts.computeIfAbsent(file, f -> new AtomicInteger()).incrementAndGet();
+  }
+
+  /**
+   * Returns true if the caller should schedule a call to {@link #drain}, i.e. if one isn't already
+   * scheduled.
+   */
+  boolean markDrainScheduled() {
+    return drainScheduled.compareAndSet(false, true);
+  }
+
+  /** Removes and returns the queued problems, along with any changed hidden problem counts. */
+  Batch drain() {
+    // problems added from now on will schedule another drain
+    drainScheduled.set(false);
+    ImmutableList.Builder<PendingProblem> problems = ImmutableList.builder();
+    PendingProblem problem;
+    while ((problem = pending.poll()) != null) {
+      problems.add(problem);
+    }
+    ImmutableList.Builder<HiddenProblems> hidden = ImmutableList.builder();
+    for (Map.Entry<File, AtomicInteger> entry : hiddenCountPerFile.entrySet()) {
+      int count = entry.getValue().get();
+      Integer previous = drainedHiddenCountPerFile.put(entry.getKey(), count);
+      if (previous == null || previous != count) {
+        hidden.add(new HiddenProblems(entry.getKey(), count));
+      }
+    }
+    int count = hiddenCount.get();
+    if (count != drainedHiddenCount) {
+      drainedHiddenCount = count;
+      hidden.add(new HiddenProblems(null, count));
+    }
+    return new Batch(problems.build(), hidden.build());
+  }
+
+  /** The text of the 'N more problems' node summarizing the given hidden problems. */
+  String getSummaryText(HiddenProblems hidden) {
+    return hidden.file != null
+        ? String.format(
+            "%d more problems in this file not shown (limit is %d per file)",
+            hidden.count, maxIssuesPerFile)
+        : String.format(
+            "%d more problems not shown. Only the first %d are listed.", hidden.count, maxIssues);
+  }
+
+  /** Identifies a problem by its displayed fields. */
+  private static final class ProblemKey {
+    @Nullable private final File file;
+    private final int line;
+    private final int column;
+    private final IssueOutput.Category category;
+    private final String message;
+
+    ProblemKey(IssueOutput issue) {
+      this.file = issue.getFile();
+      this.line = issue.getLine();
+      this.column = issue.getColumn();
+      this.category = issue.getCategory();
+      this.message = messageInterner.intern(issue.getMessage());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ProblemKey)) {
+        return false;
+      }
+      ProblemKey other = (ProblemKey) o;
+      return Objects.equals(file, other.file)
+          && line == other.line
+          && column == other.column
+          && category == other.category
+          && message.equals(other.message);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(file, line, column, category, message);
+    }
+  }
+}
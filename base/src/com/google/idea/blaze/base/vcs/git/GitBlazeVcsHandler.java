@@ -25,11 +25,14 @@ import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.settings.BuildSystem;
 import com.google.idea.blaze.base.sync.workspace.WorkingSet;
 import com.google.idea.blaze.base.vcs.BlazeVcsHandler;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.text.StringUtil;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.charset.Charset;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /** Vcs diff provider for git */
@@ -37,6 +40,9 @@ public class GitBlazeVcsHandler implements BlazeVcsHandler {
 
   private static final Logger logger = Logger.getInstance(GitBlazeVcsHandler.class);
 
+  private static final BoolExperiment useCatFileBatch =
+      new BoolExperiment("blaze.git.cat.file.batch", true);
+
   @Override
   public String getVcsName() {
     return "git";
@@ -78,11 +84,19 @@ public class GitBlazeVcsHandler implements BlazeVcsHandler {
       WorkspaceRoot workspaceRoot,
       WorkspacePath path,
       ListeningExecutorService executor) {
-    return executor.submit(() -> getGitUpstreamContent(workspaceRoot, path));
+    return executor.submit(() -> getGitUpstreamContent(project, workspaceRoot, path));
   }
 
-  private static String getGitUpstreamContent(WorkspaceRoot workspaceRoot, WorkspacePath path) {
+  private static String getGitUpstreamContent(
+      Project project, WorkspaceRoot workspaceRoot, WorkspacePath path) {
     String upstreamSha = getUpstreamSha(workspaceRoot, false);
+    String objectName = String.format("%s:./%s", upstreamSha, path.relativePath());
+    if (useCatFileBatch.getValue()) {
+      byte[] content = GitObjectReader.getInstance(project).read(workspaceRoot, objectName);
+      if (content != null) {
+        return new String(content, Charset.defaultCharset());
+      }
+    }
     ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
     ExternalTask.builder(workspaceRoot)
         .args(
@@ -94,7 +108,7 @@ public class GitBlazeVcsHandler implements BlazeVcsHandler {
             "--no-expand-tabs",
             "--no-notes",
             "--no-textconv",
-            String.format("%s:./%s", upstreamSha, path.relativePath()))
+            objectName)
         .stdout(outputStream)
         .build()
         .run();
@@ -121,12 +135,17 @@ public class GitBlazeVcsHandler implements BlazeVcsHandler {
    */
   @Nullable
   public static String getUpstreamSha(WorkspaceRoot workspaceRoot, boolean suppressErrors) {
+    String cachedSha = GitUpstreamShaCache.get(workspaceRoot);
+    if (cachedSha != null) {
+      return cachedSha;
+    }
     ByteArrayOutputStream stdout = new ByteArrayOutputStream();
     ByteArrayOutputStream stderr = new ByteArrayOutputStream();
 
+    // also print the upstream ref's full name, so we know which ref to watch for changes
     int retVal =
         ExternalTask.builder(workspaceRoot)
-            .args("git", "rev-parse", "@{u}")
+            .args("git", "rev-parse", "@{u}", "--symbolic-full-name", "@{u}")
             .stdout(stdout)
             .stderr(stderr)
             .build()
@@ -137,6 +156,14 @@ public class GitBlazeVcsHandler implements BlazeVcsHandler {
       }
       return null;
     }
-    return StringUtil.trimEnd(stdout.toString(), "\n");
+    List<String> lines = StringUtil.split(stdout.toString(), "\n");
+    if (lines.isEmpty()) {
+      return null;
+    }
+    String upstreamSha = lines.get(0).trim();
+    if (lines.size() > 1) {
+      GitUpstreamShaCache.put(workspaceRoot, upstreamSha, lines.get(1).trim());
+    }
+    return upstreamSha;
   }
 }
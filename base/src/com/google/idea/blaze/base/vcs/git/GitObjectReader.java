@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.io.ByteStreams;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Reads git objects via a long-lived 'git cat-file --batch' process, rather than forking a new git
+ * process per object.
+ */
+final class GitObjectReader implements Disposable {
+  private static final Logger logger = Logger.getInstance(GitObjectReader.class);
+
+  static GitObjectReader getInstance(Project project) {
+    return ServiceManager.getService(project, GitObjectReader.class);
+  }
+
+  @Nullable private File workingDirectory;
+  @Nullable private Process process;
+  @Nullable private InputStream stdout;
+  @Nullable private OutputStream stdin;
+
+  public GitObjectReader() {}
+
+  /**
+   * Returns the contents of the given object (e.g. '[sha]:./path/to/file', relative to the
+   * workspace root), or an empty array if there is no such object.
+   *
+   * <p>Returns null if the object couldn't be read, in which case callers should fall back to
+   * running git directly.
+   */
+  @Nullable
+  synchronized byte[] read(WorkspaceRoot workspaceRoot, String objectName) {
+    if (objectName.indexOf('\n') >= 0) {
+      return null;
+    }
+    try {
+      ensureStarted(workspaceRoot.directory());
+      stdin.write((objectName + "\n").getBytes(StandardCharsets.UTF_8));
+      stdin.flush();
+      return readObject(stdout);
+    } catch (IOException e) {
+      logger.warn("Failed to read git object " + objectName, e);
+      stop();
+      return null;
+    }
+  }
+
+  private void ensureStarted(File workingDirectory) throws IOException {
+    if (process != null && process.isAlive() && workingDirectory.equals(this.workingDirectory)) {
+      return;
+    }
+    stop();
+    Process process =
+        new ProcessBuilder("git", "cat-file", "--batch")
+            .directory(workingDirectory)
+            .redirectError(
+                ProcessBuilder.Redirect.appendTo(
+                    new File(SystemInfo.isWindows ? "NUL" : "/dev/null")))
+            .start();
+    this.workingDirectory = workingDirectory;
+    this.process = process;
+    this.stdout = new BufferedInputStream(process.getInputStream());
+    this.stdin = new BufferedOutputStream(process.getOutputStream());
+  }
+
+  /**
+   * Reads a single 'git cat-file --batch' response. Returns an empty array if the object doesn't
+   * exist, and null if it's not a blob.
+   */
+  @VisibleForTesting
+  @Nullable
+  static byte[] readObject(InputStream input) throws IOException {
+    String header = readLine(input);
+    // the object name is echoed back, and may contain spaces
+    if (header.endsWith(" missing") || header.endsWith(" ambiguous")) {
+      return new byte[0];
+    }
+    String[] parts = header.split(" ");
+    if (parts.length != 3) {
+      throw new IOException("Unexpected git cat-file output: " + header);
+    }
+    int size;
+    try {
+      size = Integer.parseInt(parts[2]);
+    } catch (NumberFormatException e) {
+      throw new IOException("Unexpected git cat-file output: " + header, e);
+    }
+    byte[] content = new byte[size];
+    ByteStreams.readFully(input, content);
+    if (input.read() != '\n') {
+      throw new IOException("Missing newline after git object " + parts[0]);
+    }
+    return parts[1].equals("blob") ? content : null;
+  }
+
+  private static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = input.read()) != '\n') {
+      if (b == -1) {
+        throw new EOFException("git cat-file exited unexpectedly");
+      }
+      line.write(b);
+    }
+    return new String(line.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  private void stop() {
+    if (process != null) {
+      process.destroy();
+    }
+    process = null;
+    stdout = null;
+    stdin = null;
+    workingDirectory = null;
+  }
+
+  @Override
+  public synchronized void dispose() {
+    stop();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the upstream commit SHA of each git repository, so 'git rev-parse @{u}' only needs to be
+ * run when the repository's HEAD, config or upstream ref change.
+ *
+ * <p>The git directory is located the same way git does: searching upward from the workspace root
+ * for a '.git' entry, and following the 'gitdir:' pointer if it's a file (as for worktrees and
+ * submodules). If the repository state can't be read, nothing is cached.
+ */
+final class GitUpstreamShaCache {
+
+  private static final String GITDIR_PREFIX = "gitdir:";
+
+  private static final ConcurrentMap<File, Entry> cache = new ConcurrentHashMap<>();
+
+  private GitUpstreamShaCache() {}
+
+  /** The state of the files 'git rev-parse @{u}' depends on. */
+  private static final class RepositoryState {
+    @Nullable private final String head;
+    @Nullable private final String upstreamRef;
+    private final long packedRefsModifiedTime;
+    private final long configModifiedTime;
+
+    RepositoryState(
+        @Nullable String head,
+        @Nullable String upstreamRef,
+        long packedRefsModifiedTime,
+        long configModifiedTime) {
+      this.head = head;
+      this.upstreamRef = upstreamRef;
+      this.packedRefsModifiedTime = packedRefsModifiedTime;
+      this.configModifiedTime = configModifiedTime;
+    }
+
+    /** Returns the current repository state, or null if it can't be read. */
+    @Nullable
+    static RepositoryState read(@Nullable GitDirs gitDirs, String upstreamRefName) {
+      if (gitDirs == null) {
+        return null;
+      }
+      String head = readSmallFile(new File(gitDirs.gitDir, "HEAD"));
+      if (head == null) {
+        return null;
+      }
+      // refs, packed-refs and config are shared between all the worktrees of a repository
+      FileOperationProvider files = FileOperationProvider.getInstance();
+      return new RepositoryState(
+          head,
+          readSmallFile(new File(gitDirs.commonDir, upstreamRefName)),
+          files.getFileModifiedTime(new File(gitDirs.commonDir, "packed-refs")),
+          files.getFileModifiedTime(new File(gitDirs.commonDir, "config")));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RepositoryState)) {
+        return false;
+      }
+      RepositoryState other = (RepositoryState) o;
+      return Objects.equals(head, other.head)
+          && Objects.equals(upstreamRef, other.upstreamRef)
+          && packedRefsModifiedTime == other.packedRefsModifiedTime
+          && configModifiedTime == other.configModifiedTime;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(head, upstreamRef, packedRefsModifiedTime, configModifiedTime);
+    }
+  }
+
+  /**
+   * The git directory holding a worktree's HEAD, and the common directory holding the refs and
+   * config shared by all worktrees. These are the same unless the workspace is a linked worktree.
+   */
+  static final class GitDirs {
+    final File gitDir;
+    final File commonDir;
+
+    GitDirs(File gitDir, File commonDir) {
+      this.gitDir = gitDir;
+      this.commonDir = commonDir;
+    }
+  }
+
+  private static final class Entry {
+    final String upstreamSha;
+    final String upstreamRefName;
+    final RepositoryState state;
+
+    Entry(String upstreamSha, String upstreamRefName, RepositoryState state) {
+      this.upstreamSha = upstreamSha;
+      this.upstreamRefName = upstreamRefName;
+      this.state = state;
+    }
+  }
+
+  /** Returns the cached upstream SHA, or null if it's not cached or may have changed. */
+  @Nullable
+  static String get(WorkspaceRoot workspaceRoot) {
+    Entry entry = cache.get(workspaceRoot.directory());
+    if (entry == null) {
+      return null;
+    }
+    RepositoryState state =
+        RepositoryState.read(resolveGitDirs(workspaceRoot.directory()), entry.upstreamRefName);
+    if (state == null) {
+      cache.remove(workspaceRoot.directory());
+      return null;
+    }
+    return state.equals(entry.state) ? entry.upstreamSha : null;
+  }
+
+  /**
+   * Caches the upstream SHA. The full name of the upstream ref (e.g. 'refs/remotes/origin/master')
+   * is used to detect when it changes.
+   */
+  static void put(WorkspaceRoot workspaceRoot, String upstreamSha, String upstreamRefName) {
+    RepositoryState state =
+        RepositoryState.read(resolveGitDirs(workspaceRoot.directory()), upstreamRefName);
+    if (state == null) {
+      cache.remove(workspaceRoot.directory());
+      return;
+    }
+    cache.put(workspaceRoot.directory(), new Entry(upstreamSha, upstreamRefName, state));
+  }
+
+  /**
+   * Finds the git directories for the repository containing the given directory, searching
+   * upwards for a '.git' directory or 'gitdir:' file. Returns null if they can't be found.
+   */
+  @VisibleForTesting
+  @Nullable
+  static GitDirs resolveGitDirs(File workspaceDirectory) {
+    FileOperationProvider files = FileOperationProvider.getInstance();
+    for (File dir = workspaceDirectory; dir != null; dir = dir.getParentFile()) {
+      File dotGit = new File(dir, ".git");
+      if (files.isDirectory(dotGit)) {
+        return new GitDirs(dotGit, dotGit);
+      }
+      if (files.isFile(dotGit)) {
+        return resolveGitFile(dotGit);
+      }
+    }
+    return null;
+  }
+
+  /** Follows the 'gitdir: <path>' pointer in a worktree or submodule's '.git' file. */
+  @Nullable
+  private static GitDirs resolveGitFile(File dotGitFile) {
+    String contents = readSmallFile(dotGitFile);
+    if (contents == null || !contents.startsWith(GITDIR_PREFIX)) {
+      return null;
+    }
+    File gitDir =
+        resolvePath(dotGitFile.getParentFile(), contents.substring(GITDIR_PREFIX.length()));
+    if (!FileOperationProvider.getInstance().isDirectory(gitDir)) {
+      return null;
+    }
+    // linked worktrees point at their shared repository directory via a 'commondir' file
+    String commonDir = readSmallFile(new File(gitDir, "commondir"));
+    return new GitDirs(gitDir, commonDir != null ? resolvePath(gitDir, commonDir) : gitDir);
+  }
+
+  private static File resolvePath(File base, String path) {
+    File file = new File(path.trim());
+    return file.isAbsolute() ? file : new File(base, file.getPath());
+  }
+
+  /** Returns the contents of a small file (e.g. a loose ref), or null if it doesn't exist. */
+  @Nullable
+  private static String readSmallFile(File file) {
+    if (!FileOperationProvider.getInstance().exists(file)) {
+      return null;
+    }
+    try {
+      return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+}
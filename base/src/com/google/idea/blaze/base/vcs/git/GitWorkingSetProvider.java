@@ -46,17 +46,16 @@ public class GitWorkingSetProvider {
   public static WorkingSet calculateWorkingSet(
       WorkspaceRoot workspaceRoot, String upstreamSha, BlazeContext context) {
 
-    String gitRoot = getConsoleOutput(workspaceRoot, "git", "rev-parse", "--show-toplevel");
-    if (gitRoot == null) {
-      return null;
-    }
-    GitStatusLineProcessor processor = new GitStatusLineProcessor(workspaceRoot, gitRoot);
+    // '--relative' limits the diff to the workspace root, and lists paths relative to it, so we
+    // don't need to look up the git root separately.
+    GitStatusLineProcessor processor =
+        new GitStatusLineProcessor(workspaceRoot, workspaceRoot.directory().getPath());
     ByteArrayOutputStream stderr = new ByteArrayOutputStream();
 
     // Do a git diff to find all modified files we know about
     int retVal =
         ExternalTask.builder(workspaceRoot)
-            .args("git", "diff", "--name-status", "--no-renames", upstreamSha)
+            .args("git", "diff", "--name-status", "--no-renames", "--relative", upstreamSha)
             .context(context)
             .stdout(LineProcessingOutputStream.of(processor))
             .stderr(stderr)
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Supplier;
+
+/**
+ * Shared harness for the benchmarks in the 'benchmarks' target. Results are only reported, never
+ * asserted on, since timings and allocation counts vary between JVMs and machines.
+ */
+public final class Benchmarks {
+  private static final int WARMUP_ITERATIONS = 3;
+  private static final int ITERATIONS = 10;
+
+  private Benchmarks() {}
+
+  /** A benchmarked operation. */
+  public interface Operation {
+    void run() throws Exception;
+  }
+
+  /** The mean time taken and memory allocated by a single run of an operation. */
+  public static final class Result {
+    public final long millis;
+    public final long allocatedBytes;
+
+    private Result(long millis, long allocatedBytes) {
+      this.millis = millis;
+      this.allocatedBytes = allocatedBytes;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%d ms, %d MB allocated", millis, allocatedBytes >> 20);
+    }
+  }
+
+  /** Runs the operation a few times to warm up, then measures the mean of several runs. */
+  public static Result measure(Operation operation) throws Exception {
+    for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+      operation.run();
+    }
+    long startAllocated = allocatedBytes();
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      operation.run();
+    }
+    long millis = (System.nanoTime() - start) / 1_000_000;
+    return new Result(millis / ITERATIONS, (allocatedBytes() - startAllocated) / ITERATIONS);
+  }
+
+  /** Returns the approximate heap retained by the object created by the given supplier. */
+  public static long retainedHeap(Supplier<Object> supplier) {
+    long before = usedHeap();
+    Object retained = supplier.get();
+    long after = usedHeap();
+    // keep the object reachable until after the measurement
+    if (retained == null) {
+      throw new IllegalStateException("Supplier returned null");
+    }
+    return after - before;
+  }
+
+  /** Reports a benchmark result. */
+  public static void report(String benchmark, String format, Object... args) {
+    System.out.println(benchmark + ": " + String.format(format, args));
+  }
+
+  private static long allocatedBytes() {
+    return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ideinfo;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.Benchmarks;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Compares the retained heap of a {@link TargetMap} holding {@link TargetIdeInfo} objects with an
+ * equivalent {@link CompactTargetMap}, for a synthetic 200k target project.
+ *
+ * <p>Correctness is covered by {@link CompactTargetMapTest}. Not part of the regular unit test
+ * suite; run via the 'benchmarks' target with a large heap.
+ */
+@RunWith(JUnit4.class)
+public class TargetMapHeapBenchmarkTest extends BlazeTestCase {
+  private static final int PACKAGES = 4000;
+  private static final int TARGETS_PER_PACKAGE = 50;
+  private static final int DEPS_PER_TARGET = 8;
+  private static final int SOURCES_PER_TARGET = 4;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void compareRetainedHeap() {
+    long objectHeap =
+        Benchmarks.retainedHeap(
+            () ->
+                new TargetMap(
+                    syntheticTargets().stream()
+                        .collect(ImmutableMap.toImmutableMap(TargetIdeInfo::getKey, t -> t))));
+    long compactHeap = Benchmarks.retainedHeap(() -> CompactTargetMap.create(syntheticTargets()));
+
+    Benchmarks.report(
+        "CompactTargetMap",
+        "%d targets: TargetMap %d MB, CompactTargetMap %d MB (%.1fx smaller)",
+        PACKAGES * TARGETS_PER_PACKAGE,
+        objectHeap >> 20,
+        compactHeap >> 20,
+        (double) objectHeap / compactHeap);
+  }
+
+  /**
+   * Returns synthetic targets, round-tripped through their proto form so they're interned the same
+   * way as targets read during sync.
+   */
+  private static ImmutableList<TargetIdeInfo> syntheticTargets() {
+    ImmutableList.Builder<TargetIdeInfo> targets = ImmutableList.builder();
+    for (int pkg = 0; pkg < PACKAGES; pkg++) {
+      String packagePath = String.format("project/module%d/src/package%d", pkg % 40, pkg);
+      for (int target = 0; target < TARGETS_PER_PACKAGE; target++) {
+        targets.add(TargetIdeInfo.fromProto(syntheticTarget(pkg, packagePath, target).toProto()));
+      }
+    }
+    return targets.build();
+  }
+
+  private static TargetIdeInfo syntheticTarget(int pkg, String packagePath, int target) {
+    String name = "target" + target;
+    TargetIdeInfo.Builder builder =
+        TargetIdeInfo.builder()
+            .setLabel("//" + packagePath + ":" + name)
+            .setKind(target % 10 == 0 ? "sh_binary" : "sh_library")
+            .setBuildFile(source(packagePath + "/BUILD"))
+            .addTag(target % 2 == 0 ? "manual" : "no-ide");
+    for (int i = 0; i < DEPS_PER_TARGET; i++) {
+      // mostly depend on other targets in the same package, plus some in earlier packages
+      int depPackage = i < DEPS_PER_TARGET / 2 ? pkg : (pkg * 31 + i) % PACKAGES;
+      builder.addDependency(
+          String.format(
+              "//project/module%d/src/package%d:target%d",
+              depPackage % 40, depPackage, (target + i + 1) % TARGETS_PER_PACKAGE));
+    }
+    CIdeInfo.Builder cInfo = CIdeInfo.builder();
+    for (int i = 0; i < SOURCES_PER_TARGET; i++) {
+      cInfo.addSource(source(packagePath + "/" + name + "_" + i + ".cc"));
+    }
+    builder.setCInfo(cInfo);
+    builder.setJavaInfo(
+        JavaIdeInfo.builder()
+            .addJar(
+                LibraryArtifact.builder()
+                    .setClassJar(generated(packagePath + "/lib" + name + ".jar"))
+                    .setInterfaceJar(generated(packagePath + "/lib" + name + "-hjar.jar"))
+                    .addSourceJar(generated(packagePath + "/lib" + name + "-src.jar"))));
+    return builder.build();
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+
+  private static ArtifactLocation generated(String relativePath) {
+    return ArtifactLocation.builder()
+        .setRootExecutionPathFragment("bazel-out/k8-fastbuild/bin")
+        .setRelativePath(relativePath)
+        .build();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run.smrunner;
+
+import com.google.common.base.Strings;
+import com.google.idea.blaze.base.Benchmarks;
+import com.google.idea.blaze.base.Benchmarks.Result;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.TestSuite;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.function.Function;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Compares the time taken and memory allocated by {@link TestXmlPullParser} and the JAXB-based
+ * {@link BlazeXmlSchema#parse}, for generated test.xml files with many test cases and large
+ * 'system-out' and failure blocks.
+ *
+ * <p>Correctness is covered by {@link TestXmlPullParserTest}. Not part of the regular unit test
+ * suite; run via the 'benchmarks' target.
+ */
+@RunWith(JUnit4.class)
+public class TestXmlParserBenchmarkTest {
+  private static final int SUITES = 50;
+  private static final int TEST_CASES_PER_SUITE = 200;
+  private static final int OUTPUT_LINES_PER_TEST_CASE = 50;
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Test
+  public void compareParsers() throws Exception {
+    File xml = generateTestXml(tmpFolder.newFile("test.xml"));
+
+    Result jaxb = Benchmarks.measure(() -> parse(xml, BlazeXmlSchema::parse));
+    Result pull = Benchmarks.measure(() -> parse(xml, TestXmlPullParser::parse));
+
+    Benchmarks.report(
+        "TestXmlPullParser",
+        "%d KB test.xml: JAXB %s; pull parser %s",
+        xml.length() >> 10,
+        jaxb,
+        pull);
+  }
+
+  private static TestSuite parse(File xml, Function<InputStream, TestSuite> parser)
+      throws IOException {
+    try (InputStream input = new BufferedInputStream(new FileInputStream(xml))) {
+      return parser.apply(input);
+    }
+  }
+
+  private static File generateTestXml(File file) throws IOException {
+    String outputLine = Strings.repeat("parameterized test output ", 4) + "&#xA;";
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      writer.write("<?xml version='1.0' encoding='UTF-8'?>\n<testsuites>\n");
+      for (int suite = 0; suite < SUITES; suite++) {
+        writer.write(
+            String.format(
+                "<testsuite name='com.google.Suite%d' tests='%d' time='12.5'>\n",
+                suite, TEST_CASES_PER_SUITE));
+        for (int test = 0; test < TEST_CASES_PER_SUITE; test++) {
+          writer.write(
+              String.format(
+                  "<testcase name='test[%d]' classname='com.google.Suite%d' time='0.06'"
+                      + " status='run' result='completed'>\n",
+                  test, suite));
+          if (test % 10 == 0) {
+            writer.write("<failure message='expected:&lt;1&gt; but was:&lt;2&gt;'>");
+            writer.write(Strings.repeat("\tat com.google.Suite.test(Suite.java:10)\n", 40));
+            writer.write("</failure>\n");
+          }
+          writer.write("<system-out>");
+          writer.write(Strings.repeat(outputLine, OUTPUT_LINES_PER_TEST_CASE));
+          writer.write("</system-out>\n</testcase>\n");
+        }
+        writer.write("<system-out>");
+        writer.write(Strings.repeat(outputLine, OUTPUT_LINES_PER_TEST_CASE * 10));
+        writer.write("</system-out>\n</testsuite>\n");
+      }
+      writer.write("</testsuites>\n");
+    }
+    return file;
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects.strategy;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.intellij.aspect.Common;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.Benchmarks;
+import com.google.idea.blaze.base.Benchmarks.Result;
+import com.google.protobuf.repackaged.TextFormat;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Compares the time taken and memory allocated by {@link IdeInfoTextFormatReader} and the generic
+ * {@link TextFormat} parser.
+ *
+ * <p>By default a generated corpus is used. To benchmark real aspect output, point the
+ * 'ide.info.corpus' system property at a directory containing .intellij-info.txt files (e.g. a
+ * copy of bazel-out after a sync).
+ *
+ * <p>Correctness is covered by {@link IdeInfoTextFormatReaderTest}. Not part of the regular unit
+ * test suite; run via the 'benchmarks' target.
+ */
+@RunWith(JUnit4.class)
+public class IdeInfoTextFormatReaderBenchmarkTest {
+  private static final int GENERATED_TARGETS = 2000;
+
+  @Test
+  public void compareParsers() throws Exception {
+    List<byte[]> corpus = loadCorpus();
+    long totalBytes = corpus.stream().mapToLong(bytes -> bytes.length).sum();
+
+    Result generic =
+        Benchmarks.measure(
+            () -> parseAll(corpus, IdeInfoTextFormatReaderBenchmarkTest::parseGeneric));
+    Result fast = Benchmarks.measure(() -> parseAll(corpus, IdeInfoTextFormatReader::parse));
+
+    Benchmarks.report(
+        "IdeInfoTextFormatReader",
+        "%d files, %d KB: TextFormat %s; IdeInfoTextFormatReader %s",
+        corpus.size(),
+        totalBytes >> 10,
+        generic,
+        fast);
+  }
+
+  private interface Parser {
+    IntellijIdeInfo.TargetIdeInfo parse(byte[] input) throws Exception;
+  }
+
+  private static void parseAll(List<byte[]> corpus, Parser parser) throws Exception {
+    for (byte[] file : corpus) {
+      parser.parse(file);
+    }
+  }
+
+  private static IntellijIdeInfo.TargetIdeInfo parseGeneric(byte[] input) throws IOException {
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    TextFormat.Parser parser = TextFormat.Parser.newBuilder().setAllowUnknownFields(true).build();
+    parser.merge(new String(input, UTF_8), builder);
+    return builder.build();
+  }
+
+  private static List<byte[]> loadCorpus() throws IOException {
+    String corpusDir = System.getProperty("ide.info.corpus");
+    if (corpusDir == null) {
+      return generateCorpus();
+    }
+    ImmutableList.Builder<byte[]> corpus = ImmutableList.builder();
+    try (Stream<Path> files = Files.walk(new File(corpusDir).toPath())) {
+      for (Path path : files.collect(Collectors.toList())) {
+        if (path.toString().endsWith(".intellij-info.txt")) {
+          corpus.add(Files.readAllBytes(path));
+        }
+      }
+    }
+    return corpus.build();
+  }
+
+  private static List<byte[]> generateCorpus() {
+    ImmutableList.Builder<byte[]> corpus = ImmutableList.builder();
+    for (int i = 0; i < GENERATED_TARGETS; i++) {
+      String pkg = "java/com/google/project" + (i % 50) + "/module" + i;
+      IntellijIdeInfo.TargetIdeInfo.Builder target =
+          IntellijIdeInfo.TargetIdeInfo.newBuilder()
+              .setKindString("java_library")
+              .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//" + pkg + ":lib"))
+              .setBuildFileArtifactLocation(source(pkg + "/BUILD"))
+              .addTags("manual");
+      IntellijIdeInfo.JavaIdeInfo.Builder java = IntellijIdeInfo.JavaIdeInfo.newBuilder();
+      for (int j = 0; j < 20; j++) {
+        java.addSources(source(pkg + "/Source" + j + ".java"));
+      }
+      java.addJars(
+          IntellijIdeInfo.LibraryArtifact.newBuilder()
+              .setJar(generated(pkg + "/liblib.jar"))
+              .setInterfaceJar(generated(pkg + "/liblib-hjar.jar"))
+              .addSourceJars(generated(pkg + "/liblib-src.jar")));
+      target.setJavaIdeInfo(java);
+      for (int j = 0; j < 30; j++) {
+        target.addDeps(
+            IntellijIdeInfo.Dependency.newBuilder()
+                .setTarget(
+                    IntellijIdeInfo.TargetKey.newBuilder()
+                        .setLabel("//java/com/google/common" + j + ":lib")));
+      }
+      corpus.add(TextFormat.printToString(target.build()).getBytes(UTF_8));
+    }
+    return corpus.build();
+  }
+
+  private static Common.ArtifactLocation source(String path) {
+    return Common.ArtifactLocation.newBuilder().setRelativePath(path).setIsSource(true).build();
+  }
+
+  private static Common.ArtifactLocation generated(String path) {
+    return Common.ArtifactLocation.newBuilder()
+        .setRelativePath(path)
+        .setRootExecutionPathFragment("bazel-out/k8-fastbuild/bin")
+        .build();
+  }
+}
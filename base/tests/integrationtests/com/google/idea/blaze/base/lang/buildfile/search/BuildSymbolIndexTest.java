@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.lang.buildfile.search;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.lang.buildfile.BuildFileIntegrationTestCase;
+import com.google.idea.blaze.base.lang.buildfile.psi.BuildFile;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex.Symbol;
+import com.google.idea.blaze.base.lang.buildfile.search.BuildSymbolIndex.SymbolKind;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.intellij.psi.search.GlobalSearchScope;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link BuildSymbolIndex}. */
+@RunWith(JUnit4.class)
+public class BuildSymbolIndexTest extends BuildFileIntegrationTestCase {
+
+  @Test
+  public void testIndexesTopLevelSymbols() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "load(':macros.bzl', 'my_macro', alias = 'other_macro')",
+            "java_library(name = 'lib')",
+            "my_macro(name = 'generated')",
+            "def helper():",
+            "  java_binary(name = 'nested')");
+
+    List<Symbol> symbols = BuildSymbolIndex.getAllSymbols(file);
+
+    String text = file.getText();
+    assertThat(symbols)
+        .containsExactly(
+            new Symbol(SymbolKind.LOADED_SYMBOL, "my_macro", ":macros.bzl", 0),
+            new Symbol(SymbolKind.LOADED_SYMBOL, "other_macro", ":macros.bzl", 0),
+            new Symbol(SymbolKind.RULE, "lib", "java_library", text.indexOf("java_library")),
+            new Symbol(SymbolKind.RULE, "generated", "my_macro", text.indexOf("my_macro(")),
+            new Symbol(SymbolKind.FUNCTION, "helper", null, text.indexOf("def helper")));
+  }
+
+  @Test
+  public void testMightContainRule() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "java_library(name = 'lib')",
+            "def helper():",
+            "  pass");
+
+    assertThat(BuildSymbolIndex.mightContainRule(file, "lib")).isTrue();
+    assertThat(BuildSymbolIndex.mightContainRule(file, "helper")).isFalse();
+    assertThat(BuildSymbolIndex.mightContainRule(file, "missing")).isFalse();
+  }
+
+  @Test
+  public void testFindRule_matchesBuildFileFindRule() {
+    BuildFile file =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "java_library(name = 'lib')",
+            "make_rule()(name = 'curried')",
+            "def helper():",
+            "  java_binary(name = 'nested')");
+
+    for (String name : ImmutableList.of("lib", "curried", "nested", "helper", "missing")) {
+      assertThat(BuildSymbolIndex.findRule(file, name)).isEqualTo(file.findRule(name));
+      assertThat(BuildSymbolIndex.mightContainRule(file, name))
+          .isEqualTo(file.findRule(name) != null);
+    }
+    assertThat(BuildSymbolIndex.findRule(file, "lib")).isNotNull();
+  }
+
+  @Test
+  public void testFindFilesLoadingSymbol() {
+    BuildFile loading =
+        createBuildFile(
+            new WorkspacePath("java/com/google/BUILD"),
+            "load('//tools:macros.bzl', 'my_macro')",
+            "my_macro(name = 'lib')");
+    createBuildFile(
+        new WorkspacePath("java/com/google/other/BUILD"), "java_library(name = 'my_macro')");
+
+    assertThat(
+            BuildSymbolIndex.findFilesLoadingSymbol(
+                getProject(), "my_macro", GlobalSearchScope.allScope(getProject())))
+        .containsExactly(loading.getVirtualFile());
+  }
+}
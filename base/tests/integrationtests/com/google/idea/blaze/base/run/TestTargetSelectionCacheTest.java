@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.idea.blaze.base.BlazeIntegrationTestCase;
+import com.google.idea.blaze.base.dependencies.TargetInfo;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.model.BlazeProjectData;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.model.primitives.RuleType;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.sync.SyncCache;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiFile;
+import java.io.File;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Integration tests for {@link TestTargetSelectionCache}. */
+@RunWith(JUnit4.class)
+public class TestTargetSelectionCacheTest extends BlazeIntegrationTestCase {
+
+  private final AtomicInteger finderCalls = new AtomicInteger();
+  private volatile Future<Collection<TargetInfo>> highPriorityResult =
+      Futures.immediateFuture(ImmutableList.of());
+
+  @Before
+  public final void doSetup() {
+    BlazeProjectData blazeProjectData = MockBlazeProjectDataBuilder.builder(workspaceRoot).build();
+    registerProjectService(
+        BlazeProjectDataManager.class, new MockBlazeProjectDataManager(blazeProjectData));
+    registerExtension(
+        SourceToTargetFinder.EP_NAME,
+        (SourceToTargetFinder) (project, sourceFile, ruleType) -> highPriorityResult);
+    registerExtension(
+        SourceToTargetFinder.EP_NAME,
+        new SourceToTargetFinder() {
+          @Override
+          public Future<Collection<TargetInfo>> targetsForSourceFile(
+              Project project, File sourceFile, Optional<RuleType> ruleType) {
+            finderCalls.incrementAndGet();
+            return Futures.immediateFuture(
+                ImmutableList.of(testTarget("//foo:other_test"), testTarget("//foo:FooTest")));
+          }
+        });
+  }
+
+  @Test
+  public void testChoosesSameTargetAsHeuristics() {
+    PsiFile file = workspace.createPsiFile(new WorkspacePath("foo/FooTest.java"));
+
+    TargetInfo target = TestTargetSelectionCache.getTestTarget(file);
+
+    assertThat(target.label).isEqualTo(Label.create("//foo:FooTest"));
+    assertThat(target)
+        .isEqualTo(
+            TestTargetHeuristic.chooseTestTargetForSourceFile(
+                getProject(),
+                file,
+                new File(file.getVirtualFile().getPath()),
+                ImmutableList.of(testTarget("//foo:other_test"), testTarget("//foo:FooTest")),
+                null));
+  }
+
+  @Test
+  public void testCandidatesCachedUntilSync() {
+    PsiFile file = workspace.createPsiFile(new WorkspacePath("foo/FooTest.java"));
+
+    TestTargetSelectionCache.getTestTarget(file);
+    TestTargetSelectionCache.getTestTarget(file);
+    assertThat(finderCalls.get()).isEqualTo(1);
+
+    SyncCache.getInstance(getProject()).clear();
+    TestTargetSelectionCache.getTestTarget(file);
+    assertThat(finderCalls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testSlowHigherPriorityFinder_resultNotCachedUntilDone() {
+    SettableFuture<Collection<TargetInfo>> slowResult = SettableFuture.create();
+    highPriorityResult = slowResult;
+    PsiFile file = workspace.createPsiFile(new WorkspacePath("foo/FooTest.java"));
+
+    // the lower-priority result is used while the slow finder is still running...
+    assertThat(TestTargetSelectionCache.getTestTarget(file).label)
+        .isEqualTo(Label.create("//foo:FooTest"));
+    TestTargetSelectionCache.getTestTarget(file);
+    assertThat(finderCalls.get()).isEqualTo(2);
+
+    // ...but isn't cached, so is replaced once the slow finder finishes
+    slowResult.set(ImmutableList.of(testTarget("//foo:FooTest_slow")));
+    assertThat(TestTargetSelectionCache.getTestTarget(file).label)
+        .isEqualTo(Label.create("//foo:FooTest_slow"));
+    assertThat(TestTargetSelectionCache.getTestTarget(file).label)
+        .isEqualTo(Label.create("//foo:FooTest_slow"));
+    assertThat(finderCalls.get()).isEqualTo(2);
+  }
+
+  private static TargetInfo testTarget(String label) {
+    return TargetIdeInfo.builder().setLabel(label).setKind("sh_test").build().toTargetInfo();
+  }
+}
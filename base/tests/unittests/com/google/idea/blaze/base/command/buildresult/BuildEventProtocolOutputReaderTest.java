@@ -26,10 +26,12 @@ import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.Bui
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TargetCompletedId;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TargetConfiguredId;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TestResultId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TestSummaryId;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.NamedSetOfFiles;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.TargetComplete;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.TargetConfigured;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.TestResult;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.TestSummary;
 import com.google.idea.blaze.base.BlazeTestCase;
 import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
 import com.google.idea.blaze.base.model.primitives.GenericBlazeRules.RuleTypes;
@@ -43,8 +45,11 @@ import com.intellij.openapi.vfs.LocalFileSystem;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
@@ -227,6 +232,49 @@ public class BuildEventProtocolOutputReaderTest extends BlazeTestCase {
     assertThat(parsedFilenames).containsExactlyElementsIn(allFiles).inOrder();
   }
 
+  @Test
+  public void parseAllOutputFilenames_tailingStream_passesEachNewFileToConsumer() throws Exception {
+    ImmutableList<String> fileSet1 = ImmutableList.of("/usr/out/genfiles/foo.pb.h");
+    ImmutableList<String> fileSet2 =
+        ImmutableList.of("/usr/out/genfiles/foo.pb.h", "/usr/out/genfiles/foo.proto.h");
+
+    File bepFile = new File(tmpFolder.getRoot(), "bep_output");
+    TailingInputStream inputStream = new TailingInputStream(bepFile);
+    Thread writer =
+        new Thread(
+            () -> {
+              try (OutputStream output = new FileOutputStream(bepFile)) {
+                BuildEvent.newBuilder()
+                    .setNamedSetOfFiles(setOfFiles(fileSet1))
+                    .build()
+                    .writeDelimitedTo(output);
+                output.flush();
+                Thread.sleep(200);
+                BuildEvent.newBuilder()
+                    .setNamedSetOfFiles(setOfFiles(fileSet2))
+                    .build()
+                    .writeDelimitedTo(output);
+              } catch (IOException | InterruptedException e) {
+                throw new RuntimeException(e);
+              } finally {
+                inputStream.finish();
+              }
+            });
+    writer.start();
+
+    List<File> streamedFiles = new ArrayList<>();
+    ImmutableList<File> parsedFilenames =
+        BuildEventProtocolOutputReader.parseAllOutputFilenames(
+            inputStream, path -> true, streamedFiles::add);
+    writer.join();
+
+    ImmutableList<File> allFiles =
+        ImmutableList.of(
+            new File("/usr/out/genfiles/foo.pb.h"), new File("/usr/out/genfiles/foo.proto.h"));
+    assertThat(parsedFilenames).containsExactlyElementsIn(allFiles).inOrder();
+    assertThat(streamedFiles).containsExactlyElementsIn(allFiles).inOrder();
+  }
+
   @Test
   public void testStatusEnum_handlesAllProtoEnumValues() {
     Set<String> protoValues =
@@ -407,6 +455,44 @@ public class BuildEventProtocolOutputReaderTest extends BlazeTestCase {
         .containsExactly(new File("/usr/local/tmp/_cache/second_result.xml"));
   }
 
+  @Test
+  public void parseTestResults_withTestSummary_passesCompletedTargetsToConsumer()
+      throws IOException {
+    BuildEvent.Builder shard1 =
+        testResultEvent(
+            "//java/com/google:Test1",
+            BuildEventStreamProtos.TestStatus.PASSED,
+            ImmutableList.of("/usr/local/tmp/_cache/shard1/test.xml"));
+    BuildEvent.Builder shard2 =
+        testResultEvent(
+            "//java/com/google:Test1",
+            BuildEventStreamProtos.TestStatus.FAILED,
+            ImmutableList.of("/usr/local/tmp/_cache/shard2/test.xml"));
+    BuildEvent.Builder test2 =
+        testResultEvent(
+            "//java/com/google:Test2",
+            BuildEventStreamProtos.TestStatus.PASSED,
+            ImmutableList.of("/usr/local/tmp/_cache/test2/test.xml"));
+
+    List<BlazeTestResults> streamedResults = new ArrayList<>();
+    BlazeTestResults results =
+        BuildEventProtocolOutputReader.parseTestResults(
+            asInputStream(shard1, test2, shard2, testSummaryEvent("//java/com/google:Test1")),
+            streamedResults::add);
+
+    assertThat(results.perTargetResults).hasSize(3);
+    assertThat(streamedResults).hasSize(1);
+    BlazeTestResults streamed = streamedResults.get(0);
+    assertThat(streamed.perTargetResults.keySet())
+        .containsExactly(Label.create("//java/com/google:Test1"));
+    assertThat(
+            streamed.perTargetResults.values().stream()
+                .map(BlazeTestResult::getTestStatus)
+                .collect(toImmutableList()))
+        .containsExactly(TestStatus.PASSED, TestStatus.FAILED)
+        .inOrder();
+  }
+
   private static InputStream asInputStream(BuildEvent.Builder... events) throws IOException {
     return asInputStream(Arrays.asList(events));
   }
@@ -446,6 +532,13 @@ public class BuildEventProtocolOutputReaderTest extends BlazeTestCase {
                     filePaths.stream().map(this::toEventFile).collect(toImmutableList())));
   }
 
+  private static BuildEvent.Builder testSummaryEvent(String label) {
+    return BuildEvent.newBuilder()
+        .setId(
+            BuildEventId.newBuilder().setTestSummary(TestSummaryId.newBuilder().setLabel(label)))
+        .setTestSummary(TestSummary.getDefaultInstance());
+  }
+
   private NamedSetOfFiles setOfFiles(List<String> filePaths) {
     return NamedSetOfFiles.newBuilder()
         .addAllFiles(filePaths.stream().map(this::toEventFile).collect(toImmutableList()))
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ideinfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.Sets;
+import com.google.devtools.intellij.aspect.Common;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link CIdeInfo}. */
+@RunWith(JUnit4.class)
+public class CIdeInfoTest {
+
+  @Test
+  public void testUnchangedFromSerializationRoundTrip() {
+    IntellijIdeInfo.CIdeInfo proto = cIdeInfoProto("foo.cc");
+    assertThat(CIdeInfo.fromProto(proto).toProto()).isEqualTo(proto);
+  }
+
+  @Test
+  public void testIdenticalTransitiveListsAreShared() {
+    CIdeInfo first = CIdeInfo.fromProto(cIdeInfoProto("foo.cc"));
+    CIdeInfo second = CIdeInfo.fromProto(cIdeInfoProto("bar.cc"));
+
+    assertThat(second.getTransitiveIncludeDirectories())
+        .isSameAs(first.getTransitiveIncludeDirectories());
+    assertThat(second.getTransitiveQuoteIncludeDirectories())
+        .isSameAs(first.getTransitiveQuoteIncludeDirectories());
+    assertThat(second.getTransitiveSystemIncludeDirectories())
+        .isSameAs(first.getTransitiveSystemIncludeDirectories());
+    assertThat(second.getTransitiveDefines()).isSameAs(first.getTransitiveDefines());
+  }
+
+  @Test
+  public void testIdenticalTransitiveListsHeldOnceInMemory() {
+    Set<List<?>> distinctLists = Sets.newIdentityHashSet();
+    for (int i = 0; i < 100; i++) {
+      CIdeInfo info = CIdeInfo.fromProto(cIdeInfoProto("source" + i + ".cc"));
+      distinctLists.add(info.getTransitiveIncludeDirectories());
+      distinctLists.add(info.getTransitiveQuoteIncludeDirectories());
+      distinctLists.add(info.getTransitiveSystemIncludeDirectories());
+      distinctLists.add(info.getTransitiveDefines());
+    }
+    // one copy of each list, rather than one per target
+    assertThat(distinctLists).hasSize(4);
+  }
+
+  @Test
+  public void testSharedListsStillSerializedPerTarget() {
+    // interning only affects the in-memory representation: each target's proto has its own copy
+    IntellijIdeInfo.CIdeInfo first = CIdeInfo.fromProto(cIdeInfoProto("foo.cc")).toProto();
+    IntellijIdeInfo.CIdeInfo second = CIdeInfo.fromProto(cIdeInfoProto("bar.cc")).toProto();
+
+    assertThat(first.getTransitiveDefineList()).containsExactly("NDEBUG");
+    assertThat(second.getTransitiveDefineList()).containsExactly("NDEBUG");
+  }
+
+  private static IntellijIdeInfo.CIdeInfo cIdeInfoProto(String source) {
+    return IntellijIdeInfo.CIdeInfo.newBuilder()
+        .addSource(Common.ArtifactLocation.newBuilder().setRelativePath(source))
+        .addTargetCopt("-Wall")
+        .addTransitiveIncludeDirectory("third_party/include")
+        .addTransitiveQuoteIncludeDirectory(".")
+        .addTransitiveQuoteIncludeDirectory("bazel-out/genfiles")
+        .addTransitiveDefine("NDEBUG")
+        .addTransitiveSystemIncludeDirectory("third_party/stl")
+        .build();
+  }
+}
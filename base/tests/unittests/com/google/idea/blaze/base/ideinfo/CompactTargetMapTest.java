@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ideinfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.Dependency.DependencyType;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link CompactTargetMap}. */
+@RunWith(JUnit4.class)
+public class CompactTargetMapTest extends BlazeTestCase {
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void testDecodedTargetsEqualOriginals() {
+    TargetIdeInfo binary =
+        TargetIdeInfo.builder()
+            .setLabel("//foo/bar:binary")
+            .setKind("sh_binary")
+            .setBuildFile(source("foo/bar/BUILD"))
+            .addTag("manual")
+            .addDependency("//foo/bar:lib")
+            .addRuntimeDep("@external//baz:runtime")
+            .setJavaInfo(
+                JavaIdeInfo.builder()
+                    .setMainClass("com.google.Main")
+                    .addJar(
+                        LibraryArtifact.builder()
+                            .setClassJar(generated("foo/bar/libbinary.jar"))
+                            .addSourceJar(generated("foo/bar/libbinary-src.jar"))))
+            .build();
+    TargetIdeInfo lib =
+        TargetIdeInfo.builder()
+            .setLabel("//foo/bar:lib")
+            .setKind("sh_library")
+            .setCInfo(CIdeInfo.builder().addSource(source("foo/bar/lib.cc")))
+            .build();
+
+    CompactTargetMap map = CompactTargetMap.create(ImmutableList.of(binary, lib));
+
+    assertThat(map.size()).isEqualTo(2);
+    assertThat(map.keys()).containsExactly(binary.getKey(), lib.getKey());
+    assertThat(map.get(binary.getKey())).isEqualTo(binary);
+    assertThat(map.get(lib.getKey())).isEqualTo(lib);
+    assertThat(map.targets()).containsExactly(binary, lib);
+  }
+
+  @Test
+  public void testColumnAccessors() {
+    TargetIdeInfo target =
+        TargetIdeInfo.builder()
+            .setLabel("//foo:test")
+            .setKind("sh_test")
+            .setBuildFile(source("foo/BUILD"))
+            .addTag("exclusive")
+            .addTag("manual")
+            .addSource(source("foo/test.sh"))
+            .addSource(source("foo/data/input.txt"))
+            .addRuntimeDep("//foo:data")
+            .build();
+    CompactTargetMap map = CompactTargetMap.create(ImmutableList.of(target));
+    TargetKey key = target.getKey();
+
+    assertThat(map.getKind(key)).isEqualTo(Kind.fromRuleName("sh_test"));
+    assertThat(map.getBuildFile(key)).isEqualTo(source("foo/BUILD"));
+    assertThat(map.getTags(key)).containsExactly("exclusive", "manual").inOrder();
+    assertThat(map.getSources(key))
+        .containsExactly(source("foo/test.sh"), source("foo/data/input.txt"));
+    assertThat(map.getDependencies(key))
+        .containsExactly(
+            new Dependency(
+                TargetKey.forPlainTarget(Label.create("//foo:data")), DependencyType.RUNTIME));
+  }
+
+  @Test
+  public void testMissingTargets() {
+    CompactTargetMap map =
+        CompactTargetMap.create(
+            ImmutableList.of(
+                TargetIdeInfo.builder()
+                    .setLabel("//foo:lib")
+                    .setKind("sh_library")
+                    .addDependency("//foo:dep")
+                    .build()));
+    TargetKey dep = TargetKey.forPlainTarget(Label.create("//foo:dep"));
+
+    assertThat(map.contains(dep)).isFalse();
+    assertThat(map.get(dep)).isNull();
+    assertThat(map.getKind(dep)).isNull();
+    assertThat(map.getDependencies(dep)).isEmpty();
+    assertThat(map.getSources(dep)).isEmpty();
+  }
+
+  @Test
+  public void testViewsMatchOriginals() {
+    TargetIdeInfo target =
+        TargetIdeInfo.builder()
+            .setLabel("//foo:lib")
+            .setKind("sh_library")
+            .setBuildFile(source("foo/BUILD"))
+            .addTag("manual")
+            .addDependency("//foo:dep")
+            .setJavaInfo(JavaIdeInfo.builder().setMainClass("com.google.Main"))
+            .build();
+    CompactTargetMap map = CompactTargetMap.create(ImmutableList.of(target));
+
+    TargetIdeInfo view = map.views().get(target.getKey());
+    assertThat(view.getKind()).isEqualTo(target.getKind());
+    assertThat(view.getBuildFile()).isEqualTo(target.getBuildFile());
+    assertThat(view.getTags()).isEqualTo(target.getTags());
+    assertThat(view.getDependencies()).isEqualTo(target.getDependencies());
+    assertThat(view.getJavaIdeInfo()).isEqualTo(target.getJavaIdeInfo());
+    assertThat(view.hashCode()).isEqualTo(target.hashCode());
+    assertThat(view.toProto()).isEqualTo(target.toProto());
+    assertThat(target).isEqualTo(view);
+  }
+
+  @Test
+  public void testDecodedLanguageInfoCached() {
+    TargetIdeInfo target =
+        TargetIdeInfo.builder()
+            .setLabel("//foo:lib")
+            .setKind("sh_library")
+            .setJavaInfo(JavaIdeInfo.builder().setMainClass("com.google.Main"))
+            .build();
+    CompactTargetMap map = CompactTargetMap.create(ImmutableList.of(target));
+
+    JavaIdeInfo decoded = map.get(target.getKey()).getJavaIdeInfo();
+    assertThat(map.get(target.getKey()).getJavaIdeInfo()).isSameAs(decoded);
+    assertThat(map.targets().get(0).getJavaIdeInfo()).isSameAs(decoded);
+  }
+
+  @Test
+  public void testDuplicateKeys_lastTargetWins() {
+    TargetKey key = TargetKey.forPlainTarget(Label.create("//foo:lib"));
+    CompactTargetMap map =
+        CompactTargetMap.create(
+            ImmutableList.of(
+                TargetIdeInfo.builder().setLabel("//foo:lib").setKind("sh_library").build(),
+                TargetIdeInfo.builder().setLabel("//foo:lib").setKind("sh_binary").build()));
+
+    assertThat(map.keys()).containsExactly(key);
+    assertThat(map.getKind(key)).isEqualTo(Kind.fromRuleName("sh_binary"));
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+
+  private static ArtifactLocation generated(String relativePath) {
+    return ArtifactLocation.builder()
+        .setRootExecutionPathFragment("bazel-out/k8-fastbuild/bin")
+        .setRelativePath(relativePath)
+        .build();
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ideinfo;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo.Dependency.DependencyType;
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TargetMap}, with and without a compact backing map. */
+@RunWith(JUnit4.class)
+public class TargetMapTest extends BlazeTestCase {
+
+  private static final TargetKey BINARY = TargetKey.forPlainTarget(Label.create("//foo:binary"));
+  private static final TargetKey LIB = TargetKey.forPlainTarget(Label.create("//foo:lib"));
+  private static final TargetKey MISSING = TargetKey.forPlainTarget(Label.create("//foo:missing"));
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void testCompactMapMatchesRegularMap() {
+    ProjectData.TargetMap proto = targetMapProto();
+    TargetMap regular = TargetMap.fromProto(proto, false);
+    TargetMap compact = TargetMap.fromProto(proto, true);
+
+    assertThat(compact).isEqualTo(regular);
+    assertThat(compact.hashCode()).isEqualTo(regular.hashCode());
+    assertThat(compact.keys()).containsExactly(BINARY, LIB);
+    assertThat(compact.targets()).containsExactlyElementsIn(regular.targets());
+    assertThat(compact.get(LIB)).isEqualTo(regular.get(LIB));
+    assertThat(compact.contains(LIB)).isTrue();
+    assertThat(compact.contains(MISSING)).isFalse();
+    assertThat(compact.get(MISSING)).isNull();
+  }
+
+  @Test
+  public void testCompactMap_fieldsDecodedFromViews() {
+    TargetMap compact = TargetMap.fromProto(targetMapProto(), true);
+
+    TargetIdeInfo binary = compact.get(BINARY);
+    assertThat(binary.getKind()).isEqualTo(Kind.fromRuleName("sh_binary"));
+    assertThat(binary.getBuildFile()).isEqualTo(source("foo/BUILD"));
+    assertThat(binary.getTags()).containsExactly("manual");
+    assertThat(binary.getDependencies())
+        .containsExactly(new Dependency(LIB, DependencyType.COMPILE_TIME));
+    assertThat(binary.getJavaIdeInfo().getMainClass()).isEqualTo("com.google.Main");
+    assertThat(compact.get(LIB).getJavaIdeInfo()).isNull();
+  }
+
+  @Test
+  public void testCompactMap_mapMemoized() {
+    TargetMap compact = TargetMap.fromProto(targetMapProto(), true);
+
+    assertThat(compact.map()).isSameAs(compact.map());
+    assertThat(compact.get(BINARY)).isSameAs(compact.get(BINARY));
+  }
+
+  @Test
+  public void testCompactMap_protoRoundTrip() {
+    ProjectData.TargetMap proto = targetMapProto();
+    TargetMap compact = TargetMap.fromProto(proto, true);
+
+    assertThat(TargetMap.fromProto(compact.toProto(), false))
+        .isEqualTo(TargetMap.fromProto(proto, false));
+  }
+
+  private static ProjectData.TargetMap targetMapProto() {
+    TargetIdeInfo binary =
+        TargetIdeInfo.builder()
+            .setLabel(BINARY.getLabel())
+            .setKind("sh_binary")
+            .setBuildFile(source("foo/BUILD"))
+            .addTag("manual")
+            .addDependency(LIB.getLabel())
+            .setJavaInfo(JavaIdeInfo.builder().setMainClass("com.google.Main"))
+            .build();
+    TargetIdeInfo lib =
+        TargetIdeInfo.builder()
+            .setLabel(LIB.getLabel())
+            .setKind("sh_library")
+            .setBuildFile(source("foo/BUILD"))
+            .build();
+    return ProjectData.TargetMap.newBuilder()
+        .addTargets(binary.toProto())
+        .addTargets(lib.toProto())
+        .build();
+  }
+
+  private static ArtifactLocation source(String relativePath) {
+    return ArtifactLocation.builder().setRelativePath(relativePath).setIsSource(true).build();
+  }
+}
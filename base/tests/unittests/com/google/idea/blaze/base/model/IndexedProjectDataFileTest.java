@@ -0,0 +1,189 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.devtools.intellij.model.ProjectData;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link IndexedProjectDataFile}. */
+@RunWith(JUnit4.class)
+public class IndexedProjectDataFileTest extends BlazeTestCase {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void testRoundTrip_targetsDecodedLazily() throws IOException {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel("//foo:lib")
+                    .setKind("sh_library")
+                    .addSource(ArtifactLocation.builder().setRelativePath("foo/lib.sh"))
+                    .addDependency("//bar:lib"))
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel("//bar:lib")
+                    .setKind("sh_library")
+                    .addSource(ArtifactLocation.builder().setRelativePath("bar/lib.sh")))
+            .build();
+    ProjectData.BlazeProjectData metadata =
+        ProjectData.BlazeProjectData.newBuilder().setSyncTime(1234).build();
+
+    File file = tmpFolder.newFile("cache.dat");
+    IndexedProjectDataFile.write(file, metadata, targetMap);
+
+    assertThat(IndexedProjectDataFile.isIndexedFormat(file)).isTrue();
+    IndexedProjectDataFile.ProjectDataWithTargets read = IndexedProjectDataFile.read(file);
+    assertThat(read.metadata).isEqualTo(metadata);
+
+    TargetKey key = TargetKey.forPlainTarget(Label.create("//foo:lib"));
+    assertThat(read.targetMap.get(key)).isEqualTo(targetMap.get(key));
+    assertThat(read.targetMap.contains(TargetKey.forPlainTarget(Label.create("//baz:lib"))))
+        .isFalse();
+    assertThat(read.targetMap).isEqualTo(targetMap);
+  }
+
+  @Test
+  public void testJournal_changesReplayedOnRead() throws IOException {
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel("//foo:lib")
+                    .setKind("sh_library")
+                    .addSource(ArtifactLocation.builder().setRelativePath("foo/lib.sh")))
+            .addTarget(TargetIdeInfo.builder().setLabel("//bar:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//baz:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//qux:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//quux:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//corge:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//grault:lib").setKind("sh_library"))
+            .addTarget(TargetIdeInfo.builder().setLabel("//garply:lib").setKind("sh_library"))
+            .build();
+    ProjectData.BlazeProjectData metadata =
+        ProjectData.BlazeProjectData.newBuilder().setSyncTime(1234).build();
+    File file = tmpFolder.newFile("cache.dat");
+    IndexedProjectDataFile.write(file, metadata, targetMap);
+
+    TargetMapBuilder updated = TargetMapBuilder.builder();
+    targetMap.targets().stream()
+        .filter(target -> !target.getKey().getLabel().equals(Label.create("//bar:lib")))
+        .filter(target -> !target.getKey().getLabel().equals(Label.create("//foo:lib")))
+        .forEach(updated::addTarget);
+    TargetMap updatedTargetMap =
+        updated
+            .addTarget(
+                TargetIdeInfo.builder()
+                    .setLabel("//foo:lib")
+                    .setKind("sh_library")
+                    .addSource(ArtifactLocation.builder().setRelativePath("foo/other.sh")))
+            .build();
+    ProjectData.BlazeProjectData updatedMetadata = metadata.toBuilder().setSyncTime(5678).build();
+
+    assertThat(
+            ProjectDataJournal.append(
+                file,
+                updatedMetadata,
+                metadata.getSyncState(),
+                updatedTargetMap))
+        .isTrue();
+
+    IndexedProjectDataFile.ProjectDataWithTargets read = IndexedProjectDataFile.read(file);
+    assertThat(read.metadata).isEqualTo(updatedMetadata);
+    assertThat(read.targetMap).isEqualTo(updatedTargetMap);
+
+    // rewriting the file discards the journal
+    IndexedProjectDataFile.write(file, metadata, targetMap);
+    assertThat(IndexedProjectDataFile.getJournalFile(file).exists()).isFalse();
+    assertThat(IndexedProjectDataFile.read(file).targetMap).isEqualTo(targetMap);
+  }
+
+  @Test
+  public void testJournal_unchangedTargetsNotRecorded() throws IOException {
+    TargetMapBuilder builder = TargetMapBuilder.builder();
+    for (int i = 0; i < 8; i++) {
+      builder.addTarget(
+          TargetIdeInfo.builder()
+              .setLabel("//pkg" + i + ":lib")
+              .setKind("sh_library")
+              .addSource(ArtifactLocation.builder().setRelativePath("pkg" + i + "/lib.sh")));
+    }
+    TargetMap targetMap = builder.build();
+    ProjectData.BlazeProjectData metadata =
+        ProjectData.BlazeProjectData.newBuilder().setSyncTime(1234).build();
+    File file = tmpFolder.newFile("cache.dat");
+    IndexedProjectDataFile.write(file, metadata, targetMap);
+
+    // an equal, but separately decoded, target map
+    TargetMap reloaded = new TargetMap(IndexedProjectDataFile.read(file).targetMap.map());
+    assertThat(
+            ProjectDataJournal.append(
+                file,
+                metadata.toBuilder().setSyncTime(5678).build(),
+                metadata.getSyncState(),
+                reloaded))
+        .isTrue();
+
+    String journal =
+        new String(
+            Files.readAllBytes(IndexedProjectDataFile.getJournalFile(file).toPath()),
+            StandardCharsets.ISO_8859_1);
+    assertThat(journal).doesNotContain("//pkg");
+    assertThat(IndexedProjectDataFile.read(file).targetMap).isEqualTo(targetMap);
+  }
+
+  @Test
+  public void testLegacyGzippedFile_notIndexedFormat() throws IOException {
+    File file = tmpFolder.newFile("cache.dat.gz");
+    try (OutputStream stream = new GZIPOutputStream(new FileOutputStream(file))) {
+      ProjectData.BlazeProjectData.getDefaultInstance().writeTo(stream);
+    }
+    assertThat(IndexedProjectDataFile.isIndexedFormat(file)).isFalse();
+  }
+}
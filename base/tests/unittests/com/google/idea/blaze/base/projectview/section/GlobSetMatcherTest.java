@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.projectview.section;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link GlobSetMatcher}. */
+@RunWith(JUnit4.class)
+public class GlobSetMatcherTest {
+
+  @Test
+  public void testExactMatch() {
+    GlobSetMatcher matcher = matcher("BUILD", "foo/bar.jar");
+
+    assertThat(matcher.matches("BUILD")).isTrue();
+    assertThat(matcher.matches("foo/bar.jar")).isTrue();
+    assertThat(matcher.matches("foo/bar.jar2")).isFalse();
+    assertThat(matcher.matches("build")).isFalse();
+  }
+
+  @Test
+  public void testExtensionMatchIgnoresCase() {
+    GlobSetMatcher matcher = matcher("*.jar");
+
+    assertThat(matcher.matches("foo/bar.jar")).isTrue();
+    assertThat(matcher.matches("foo/bar.JAR")).isTrue();
+    assertThat(matcher.matches("foo/bar.jar.txt")).isFalse();
+    assertThat(matcher.matches("foo/jar")).isFalse();
+  }
+
+  @Test
+  public void testPrefixMatch() {
+    GlobSetMatcher matcher = matcher("javatests*", "java/com/google/test*");
+
+    assertThat(matcher.matches("javatests/com/google/FooTest.java")).isTrue();
+    assertThat(matcher.matches("java/com/google/testing/Foo.java")).isTrue();
+    assertThat(matcher.matches("java/com/google/Foo.java")).isFalse();
+    assertThat(matcher.matches("javatest")).isFalse();
+  }
+
+  @Test
+  public void testSuffixMatch() {
+    GlobSetMatcher matcher = matcher("*_deploy.jar", "*-src.jar");
+
+    assertThat(matcher.matches("foo/bar_deploy.jar")).isTrue();
+    assertThat(matcher.matches("foo/bar-src.jar")).isTrue();
+    assertThat(matcher.matches("foo/bar.jar")).isFalse();
+  }
+
+  @Test
+  public void testInfixMatch() {
+    GlobSetMatcher matcher = matcher("*/guava/*");
+
+    assertThat(matcher.matches("third_party/guava/guava.jar")).isTrue();
+    assertThat(matcher.matches("third_party/guava.jar")).isFalse();
+  }
+
+  @Test
+  public void testOtherWildcardPatterns() {
+    GlobSetMatcher matcher = matcher("third_party/*/lib?.jar", "a*b*c", "weird(chars)+*.[ch]");
+
+    assertThat(matcher.matches("third_party/foo/bar/lib1.jar")).isTrue();
+    assertThat(matcher.matches("third_party/foo/lib12.jar")).isFalse();
+    assertThat(matcher.matches("abc")).isTrue();
+    assertThat(matcher.matches("a/b/c")).isTrue();
+    assertThat(matcher.matches("a/c")).isFalse();
+    assertThat(matcher.matches("weird(chars)+foo.[ch]")).isTrue();
+    assertThat(matcher.matches("weird(chars)+foo.c")).isFalse();
+  }
+
+  @Test
+  public void testStarMatchesEverything() {
+    assertThat(matcher("*").matches("")).isTrue();
+    assertThat(matcher("*").matches("any/path")).isTrue();
+  }
+
+  @Test
+  public void testEmptySetMatchesNothing() {
+    assertThat(matcher().matches("")).isFalse();
+    assertThat(matcher().matches("foo")).isFalse();
+  }
+
+  private static GlobSetMatcher matcher(String... patterns) {
+    return new GlobSetMatcher(ImmutableList.copyOf(patterns));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run.smrunner;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.google.idea.blaze.base.run.testlogs.BlazeTestResult;
+import com.google.idea.blaze.base.run.testlogs.BlazeTestResult.TestStatus;
+import com.google.idea.blaze.base.run.testlogs.BlazeTestResultFinderStrategy;
+import com.google.idea.blaze.base.run.testlogs.BlazeTestResults;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import com.intellij.execution.testframework.TestConsoleProperties;
+import com.intellij.execution.testframework.sm.runner.GeneralTestEventsProcessor;
+import com.intellij.execution.testframework.sm.runner.events.TestSuiteStartedEvent;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for the streaming of test results in {@link BlazeXmlToTestEventsConverter}. */
+@RunWith(JUnit4.class)
+public class BlazeXmlToTestEventsConverterTest extends BlazeTestCase {
+
+  private static final Label FIRST = Label.create("//foo:first_test");
+  private static final Label SECOND = Label.create("//foo:second_test");
+
+  private final GeneralTestEventsProcessor processor = mock(GeneralTestEventsProcessor.class);
+  private final FakeTestResultFinderStrategy strategy = new FakeTestResultFinderStrategy();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    MockExperimentService experimentService = new MockExperimentService();
+    experimentService.setExperiment(BlazeXmlToTestEventsConverter.streamTestResults, true);
+    applicationServices.register(ExperimentService.class, experimentService);
+    registerExtensionPoint(BlazeTestEventsHandler.EP_NAME, BlazeTestEventsHandler.class);
+  }
+
+  @Test
+  public void testStreamedTargets_notReportedAgainWhenFlushed() {
+    BlazeXmlToTestEventsConverter converter = createConverter();
+    strategy.streamedResultsConsumer.accept(results(FIRST));
+    strategy.finalResults = results(FIRST, SECOND);
+
+    converter.flushBufferOnProcessTermination(1);
+
+    assertThat(reportedSuites()).containsExactly(FIRST.toString(), SECOND.toString());
+  }
+
+  @Test
+  public void testRepeatedlyStreamedTarget_reportedOnce() {
+    BlazeXmlToTestEventsConverter converter = createConverter();
+    strategy.streamedResultsConsumer.accept(results(FIRST));
+    strategy.streamedResultsConsumer.accept(results(FIRST));
+    strategy.finalResults = results(FIRST);
+
+    converter.flushBufferOnProcessTermination(1);
+
+    assertThat(reportedSuites()).containsExactly(FIRST.toString());
+  }
+
+  @Test
+  public void testNothingStreamed_allTargetsReportedWhenFlushed() {
+    BlazeXmlToTestEventsConverter converter = createConverter();
+    strategy.finalResults = results(FIRST, SECOND);
+
+    converter.flushBufferOnProcessTermination(1);
+
+    assertThat(reportedSuites()).containsExactly(FIRST.toString(), SECOND.toString());
+    assertThat(strategy.deletedTemporaryFiles).isTrue();
+  }
+
+  @Test
+  public void testFindingResultsFails_temporaryFilesStillDeleted() {
+    BlazeXmlToTestEventsConverter converter = createConverter();
+    strategy.streamedResultsConsumer.accept(results(FIRST));
+    strategy.findResultsFailure = new IllegalStateException("BEP file unreadable");
+
+    try {
+      converter.flushBufferOnProcessTermination(1);
+      fail("Should have thrown IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageThat().contains("BEP file unreadable");
+    }
+    assertThat(strategy.deletedTemporaryFiles).isTrue();
+  }
+
+  private BlazeXmlToTestEventsConverter createConverter() {
+    BlazeXmlToTestEventsConverter converter =
+        new BlazeXmlToTestEventsConverter("Blaze", mock(TestConsoleProperties.class), strategy);
+    converter.setProcessor(processor);
+    assertThat(strategy.streamedResultsConsumer).isNotNull();
+    return converter;
+  }
+
+  /** The names of the suites reported to the test UI, in order. */
+  private List<String> reportedSuites() {
+    ArgumentCaptor<TestSuiteStartedEvent> suites =
+        ArgumentCaptor.forClass(TestSuiteStartedEvent.class);
+    verify(processor, atLeastOnce()).onSuiteStarted(suites.capture());
+    return suites.getAllValues().stream()
+        .map(TestSuiteStartedEvent::getName)
+        .collect(Collectors.toList());
+  }
+
+  /** Results for targets which failed to build, so are reported without parsing any test XML. */
+  private static BlazeTestResults results(Label... labels) {
+    ImmutableList.Builder<BlazeTestResult> results = ImmutableList.builder();
+    for (Label label : labels) {
+      results.add(
+          BlazeTestResult.create(label, null, TestStatus.FAILED_TO_BUILD, ImmutableSet.of()));
+    }
+    return BlazeTestResults.fromFlatList(results.build());
+  }
+
+  private static class FakeTestResultFinderStrategy implements BlazeTestResultFinderStrategy {
+    @Nullable Consumer<BlazeTestResults> streamedResultsConsumer;
+    @Nullable BlazeTestResults finalResults;
+    @Nullable RuntimeException findResultsFailure;
+    boolean deletedTemporaryFiles = false;
+
+    @Override
+    public boolean streamTestResults(Consumer<BlazeTestResults> consumer) {
+      streamedResultsConsumer = consumer;
+      return true;
+    }
+
+    @Nullable
+    @Override
+    public BlazeTestResults findTestResults() {
+      if (findResultsFailure != null) {
+        throw findResultsFailure;
+      }
+      return finalResults;
+    }
+
+    @Override
+    public void deleteTemporaryOutputXmlFiles() {
+      deletedTemporaryFiles = true;
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.run.smrunner;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.ErrorOrFailureOrSkipped;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.TestCase;
+import com.google.idea.blaze.base.run.smrunner.BlazeXmlSchema.TestSuite;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link TestXmlPullParser}. */
+@RunWith(JUnit4.class)
+public class TestXmlPullParserTest {
+
+  private static final String[] SHARDED_SUITES = {
+    "<?xml version='1.0' encoding='UTF-8'?>",
+    "<testsuites>",
+    "  <testsuite name='com.google.ConfigTest' time='10.5' tests='3' failures='1' skipped='1'>",
+    "    <properties><property name='foo' value='bar'/></properties>",
+    "    <testcase name='testCase1' classname='com.google.ConfigTest' time='7.9' status='run'",
+    "        result='completed'>",
+    "      <failure message='failed' type='AssertionError'>Error message</failure>",
+    "      <failure message='failed2' type='AssertionError'><![CDATA[Another <Error>]]></failure>",
+    "      <system-out>PASS&#xA;&#xA;</system-out>",
+    "    </testcase>",
+    "    <testcase name='testCase2' time='0.1' status='run' result='suppressed'>",
+    "      <skipped message='ignored'/>",
+    "    </testcase>",
+    "    <testcase name='testCase3' time='0.2'>",
+    "      <error message='crashed' type='NullPointerException'>at Foo.java:10</error>",
+    "    </testcase>",
+    "    <testdecorator name='decorator'>",
+    "      <testcase name='decorated' time='0.3' status='run'/>",
+    "    </testdecorator>",
+    "    <system-out />",
+    "    <system-err />",
+    "  </testsuite>",
+    "  <testsuite name='bar'>",
+    "    <testsuite name='nested'>",
+    "      <testcase name='bar_test_1' time='12.2' />",
+    "    </testsuite>",
+    "  </testsuite>",
+    "</testsuites>"
+  };
+
+  @Test
+  public void testMatchesJaxbParser() {
+    assertSameSuite(
+        TestXmlPullParser.parse(asInputStream(SHARDED_SUITES)),
+        BlazeXmlSchema.parse(asInputStream(SHARDED_SUITES)));
+  }
+
+  @Test
+  public void testNoTestSuitesOuterElement_matchesJaxbParser() {
+    String[] xml = {
+      "  <testsuite name=\"foo/bar\" tests=\"1\" time=\"19.268\">",
+      "      <testcase name=\"TestName\" result=\"completed\" status=\"run\" time=\"19.2\">",
+      "          <system-out>PASS&#xA;&#xA;</system-out>",
+      "      </testcase>",
+      "  </testsuite>"
+    };
+    assertSameSuite(
+        TestXmlPullParser.parse(asInputStream(xml)), BlazeXmlSchema.parse(asInputStream(xml)));
+  }
+
+  @Test
+  public void testEscapedContent_matchesJaxbParser() {
+    String[] xml = {
+      "<?xml version='1.0' encoding='UTF-8'?>",
+      "<testsuites>",
+      "  <testsuite name='com.google.Suite0' tests='2' time='12.5'>",
+      "    <testcase name='test[0]' classname='com.google.Suite0' time='0.06' status='run'",
+      "        result='completed'>",
+      "      <failure message='expected:&lt;1&gt; but was:&lt;2&gt;'>",
+      "\tat com.google.Suite.test(Suite.java:10)",
+      "</failure>",
+      "      <system-out>test output&#xA;more output&#xA;</system-out>",
+      "    </testcase>",
+      "    <testcase name='test[1]' classname='com.google.Suite0' time='0.06' status='run'>",
+      "      <system-out>test &amp; output&#xA;</system-out>",
+      "    </testcase>",
+      "    <system-out>suite output&#xA;</system-out>",
+      "  </testsuite>",
+      "  <testsuite name='com.google.Suite1' tests='0' time='0.1'/>",
+      "</testsuites>"
+    };
+    TestSuite parsed = TestXmlPullParser.parse(asInputStream(xml));
+
+    assertThat(parsed.testSuites).hasSize(2);
+    assertSameSuite(parsed, BlazeXmlSchema.parse(asInputStream(xml)));
+  }
+
+  @Test
+  public void testHugeFailureContent_truncated() {
+    String hugeContent = Strings.repeat("x", TestXmlPullParser.MAX_TEXT_LENGTH + 100);
+    TestSuite parsed =
+        TestXmlPullParser.parse(
+            asInputStream(
+                "<testsuite name='foo'>",
+                "  <testcase name='test' status='run'>",
+                "    <failure message='failed'>" + hugeContent + "</failure>",
+                "  </testcase>",
+                "</testsuite>"));
+
+    String content = parsed.testCases.get(0).failures.get(0).content;
+    assertThat(content)
+        .isEqualTo(
+            hugeContent.substring(0, TestXmlPullParser.MAX_TEXT_LENGTH)
+                + TestXmlPullParser.TRUNCATED_SUFFIX);
+  }
+
+  private static void assertSameSuite(TestSuite actual, TestSuite expected) {
+    assertThat(actual.name).isEqualTo(expected.name);
+    assertThat(actual.classname).isEqualTo(expected.classname);
+    assertThat(actual.tests).isEqualTo(expected.tests);
+    assertThat(actual.failures).isEqualTo(expected.failures);
+    assertThat(actual.errors).isEqualTo(expected.errors);
+    assertThat(actual.skipped).isEqualTo(expected.skipped);
+    assertThat(actual.time).isEqualTo(expected.time);
+    assertThat(actual.sysOut).isEqualTo(expected.sysOut);
+    assertThat(actual.sysErr).isEqualTo(expected.sysErr);
+    assertSameError(actual.error, expected.error);
+    assertSameError(actual.failure, expected.failure);
+
+    assertThat(actual.testSuites).hasSize(expected.testSuites.size());
+    for (int i = 0; i < expected.testSuites.size(); i++) {
+      assertSameSuite(actual.testSuites.get(i), expected.testSuites.get(i));
+    }
+    assertThat(actual.testDecorators).hasSize(expected.testDecorators.size());
+    for (int i = 0; i < expected.testDecorators.size(); i++) {
+      assertSameSuite(actual.testDecorators.get(i), expected.testDecorators.get(i));
+    }
+    assertThat(actual.testCases).hasSize(expected.testCases.size());
+    for (int i = 0; i < expected.testCases.size(); i++) {
+      assertSameTestCase(actual.testCases.get(i), expected.testCases.get(i));
+    }
+  }
+
+  private static void assertSameTestCase(TestCase actual, TestCase expected) {
+    assertThat(actual.name).isEqualTo(expected.name);
+    assertThat(actual.classname).isEqualTo(expected.classname);
+    assertThat(actual.status).isEqualTo(expected.status);
+    assertThat(actual.result).isEqualTo(expected.result);
+    assertThat(actual.time).isEqualTo(expected.time);
+    assertThat(actual.sysOut).isEqualTo(expected.sysOut);
+    assertThat(actual.sysErr).isEqualTo(expected.sysErr);
+    assertSameError(actual.skipped, expected.skipped);
+
+    assertThat(actual.failures).hasSize(expected.failures.size());
+    for (int i = 0; i < expected.failures.size(); i++) {
+      assertSameError(actual.failures.get(i), expected.failures.get(i));
+    }
+    assertThat(actual.errors).hasSize(expected.errors.size());
+    for (int i = 0; i < expected.errors.size(); i++) {
+      assertSameError(actual.errors.get(i), expected.errors.get(i));
+    }
+  }
+
+  private static void assertSameError(
+      ErrorOrFailureOrSkipped actual, ErrorOrFailureOrSkipped expected) {
+    if (expected == null) {
+      assertThat(actual).isNull();
+      return;
+    }
+    assertThat(actual).isNotNull();
+    assertThat(actual.message).isEqualTo(expected.message);
+    assertThat(actual.type).isEqualTo(expected.type);
+    assertThat(actual.content).isEqualTo(expected.content);
+  }
+
+  private static ByteArrayInputStream asInputStream(String... lines) {
+    return new ByteArrayInputStream(Joiner.on('\n').join(lines).getBytes(StandardCharsets.UTF_8));
+  }
+}
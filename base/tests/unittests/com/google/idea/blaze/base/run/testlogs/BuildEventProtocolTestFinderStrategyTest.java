@@ -21,19 +21,28 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.common.collect.ImmutableList;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos;
 import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TestResultId;
+import com.google.devtools.build.lib.buildeventstream.BuildEventStreamProtos.BuildEventId.TestSummaryId;
 import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.BlazeExecutorImpl;
 import com.google.idea.blaze.base.command.buildresult.BuildEventProtocolOutputReader;
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.google.idea.blaze.base.io.MockInputStreamProvider;
+import com.google.idea.blaze.base.model.primitives.Label;
 import com.intellij.openapi.vfs.LocalFileSystem;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import org.junit.After;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 import org.mockito.Mockito;
@@ -42,6 +51,8 @@ import org.mockito.Mockito;
 @RunWith(JUnit4.class)
 public class BuildEventProtocolTestFinderStrategyTest extends BlazeTestCase {
 
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
   private MockInputStreamProvider inputStreamProvider;
   private final Set<File> deletedFiles = new HashSet<>();
 
@@ -54,6 +65,7 @@ public class BuildEventProtocolTestFinderStrategyTest extends BlazeTestCase {
   protected void initTest(Container applicationServices, Container projectServices) {
     inputStreamProvider = new MockInputStreamProvider();
     applicationServices.register(InputStreamProvider.class, inputStreamProvider);
+    applicationServices.register(BlazeExecutor.class, new BlazeExecutorImpl());
   }
 
   @Test
@@ -89,6 +101,76 @@ public class BuildEventProtocolTestFinderStrategyTest extends BlazeTestCase {
     assertThat(finderStrategyResults.perTargetResults).isEqualTo(results.perTargetResults);
   }
 
+  @Test
+  public void streamTestResults_summarizedTargetsStreamedAndFileDeleted() throws IOException {
+    byte[] bep =
+        asByteArray(
+            ImmutableList.of(
+                testResultEvent(
+                    "//java/com/google:Test1",
+                    BuildEventStreamProtos.TestStatus.PASSED,
+                    ImmutableList.of("/usr/local/tmp/_cache/test_result.xml")),
+                testSummaryEvent("//java/com/google:Test1"),
+                testResultEvent(
+                    "//java/com/google:Test2",
+                    BuildEventStreamProtos.TestStatus.FAILED,
+                    ImmutableList.of("/usr/local/tmp/_cache/second_result.xml"))));
+    File bepOutputFile = createRealFile("bep_output.txt", bep);
+    BuildEventProtocolTestFinderStrategy strategy =
+        new BuildEventProtocolTestFinderStrategy(bepOutputFile);
+    List<BlazeTestResults> streamed = new CopyOnWriteArrayList<>();
+
+    assertThat(strategy.streamTestResults(streamed::add)).isTrue();
+    BlazeTestResults results = strategy.findTestResults();
+
+    assertThat(streamed).hasSize(1);
+    assertThat(streamed.get(0).perTargetResults.keySet())
+        .containsExactly(Label.create("//java/com/google:Test1"));
+    assertThat(results.perTargetResults)
+        .isEqualTo(
+            BuildEventProtocolOutputReader.parseTestResults(new ByteArrayInputStream(bep))
+                .perTargetResults);
+    assertThat(deletedFiles).contains(bepOutputFile);
+  }
+
+  @Test
+  public void streamTestResults_unreadableStream_fallsBackToFullReadAndFileDeleted()
+      throws IOException {
+    byte[] bep =
+        asByteArray(
+            ImmutableList.of(
+                testResultEvent(
+                    "//java/com/google:Test1",
+                    BuildEventStreamProtos.TestStatus.PASSED,
+                    ImmutableList.of("/usr/local/tmp/_cache/test_result.xml"))));
+    // the streamed read sees a malformed file, the full re-read sees valid BEP output
+    File bepOutputFile = createRealFile("bep_output.txt", new byte[] {5, -1, -1, -1, -1, -1});
+    inputStreamProvider.addFile(bepOutputFile.getPath(), bep);
+    BuildEventProtocolTestFinderStrategy strategy =
+        new BuildEventProtocolTestFinderStrategy(bepOutputFile);
+
+    strategy.streamTestResults(results -> {});
+    BlazeTestResults results = strategy.findTestResults();
+
+    assertThat(results.perTargetResults.keySet())
+        .containsExactly(Label.create("//java/com/google:Test1"));
+    assertThat(deletedFiles).contains(bepOutputFile);
+  }
+
+  /** Creates a file on disk, as streamed results are read directly rather than via a provider. */
+  private File createRealFile(String name, byte[] contents) throws IOException {
+    File file = tmpFolder.newFile(name);
+    Files.write(file.toPath(), contents);
+    File spy = Mockito.spy(file);
+    Mockito.when(spy.delete())
+        .then(
+            invocationOnMock -> {
+              deletedFiles.add(spy);
+              return true;
+            });
+    return spy;
+  }
+
   private File createMockFile(String path, byte[] contents) {
     File org = new File(path);
     File spy = Mockito.spy(org);
@@ -127,6 +209,14 @@ public class BuildEventProtocolTestFinderStrategyTest extends BlazeTestCase {
                         .collect(toImmutableList())));
   }
 
+  private static BuildEventStreamProtos.BuildEvent.Builder testSummaryEvent(String label) {
+    return BuildEventStreamProtos.BuildEvent.newBuilder()
+        .setId(
+            BuildEventStreamProtos.BuildEventId.newBuilder()
+                .setTestSummary(TestSummaryId.newBuilder().setLabel(label)))
+        .setTestSummary(BuildEventStreamProtos.TestSummary.getDefaultInstance());
+  }
+
   private static BuildEventStreamProtos.File toEventFile(String filePath) {
     return BuildEventStreamProtos.File.newBuilder().setUri(fileUrl(filePath)).build();
   }
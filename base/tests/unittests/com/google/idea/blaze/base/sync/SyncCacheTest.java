@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
+import com.google.idea.blaze.base.model.MockBlazeProjectDataManager;
+import com.google.idea.blaze.base.sync.data.BlazeProjectDataManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link SyncCache}. */
+@RunWith(JUnit4.class)
+public class SyncCacheTest extends BlazeTestCase {
+
+  private SyncCache syncCache;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    projectServices.register(
+        BlazeProjectDataManager.class,
+        new MockBlazeProjectDataManager(MockBlazeProjectDataBuilder.builder().build()));
+    syncCache = new SyncCache(project);
+    projectServices.register(SyncCache.class, syncCache);
+  }
+
+  @Test
+  public void testConcurrentReaders_computeValueOnce() throws Exception {
+    AtomicInteger computations = new AtomicInteger();
+    CountDownLatch computing = new CountDownLatch(1);
+    CountDownLatch finishComputing = new CountDownLatch(1);
+    SyncCache.SyncCacheComputable<String> slowComputable =
+        (project, projectData) -> {
+          computations.incrementAndGet();
+          computing.countDown();
+          await(finishComputing);
+          return "slow";
+        };
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      results.add(executor.submit(() -> syncCache.get("slow", slowComputable)));
+      computing.await(10, TimeUnit.SECONDS);
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> syncCache.get("slow", slowComputable)));
+      }
+
+      // other keys aren't blocked by the in-progress computation
+      assertThat(syncCache.get("fast", (project, projectData) -> "fast")).isEqualTo("fast");
+
+      finishComputing.countDown();
+      for (Future<String> result : results) {
+        assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo("slow");
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(computations.get()).isEqualTo(1);
+    assertThat(syncCache.getStats().get("slow").getMisses()).isEqualTo(1);
+    assertThat(syncCache.getStats().get("slow").getHits()).isEqualTo(3);
+  }
+
+  @Test
+  public void testClear_recomputesValue() {
+    AtomicInteger computations = new AtomicInteger();
+    SyncCache.SyncCacheComputable<Integer> computable =
+        (project, projectData) -> computations.incrementAndGet();
+
+    assertThat(syncCache.get("key", computable)).isEqualTo(1);
+    assertThat(syncCache.get("key", computable)).isEqualTo(1);
+    syncCache.clear();
+    assertThat(syncCache.get("key", computable)).isEqualTo(2);
+    assertThat(syncCache.getStats().get("key").getMisses()).isEqualTo(2);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
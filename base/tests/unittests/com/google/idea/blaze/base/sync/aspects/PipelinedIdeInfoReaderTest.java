@@ -0,0 +1,187 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.async.executor.BlazeExecutor;
+import com.google.idea.blaze.base.async.executor.MockBlazeExecutor;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.prefetch.MockPrefetchService;
+import com.google.idea.blaze.base.prefetch.PrefetchService;
+import com.google.idea.blaze.base.settings.BuildSystem;
+import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy;
+import com.google.idea.common.experiments.ExperimentService;
+import com.google.idea.common.experiments.MockExperimentService;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PipelinedIdeInfoReader}. */
+@RunWith(JUnit4.class)
+public class PipelinedIdeInfoReaderTest extends BlazeTestCase {
+
+  private static final AspectStrategy strategy = new MockAspectStrategy();
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    applicationServices.register(ExperimentService.class, new MockExperimentService());
+    applicationServices.register(FileOperationProvider.class, new FileOperationProvider());
+    applicationServices.register(BlazeExecutor.class, new MockBlazeExecutor());
+    applicationServices.register(PrefetchService.class, new MockPrefetchService());
+  }
+
+  @Test
+  public void testShardBuilt_parsedFilesAvailable() throws Exception {
+    IntellijIdeInfo.TargetIdeInfo foo = targetIdeInfo("//pkg:foo");
+    IntellijIdeInfo.TargetIdeInfo bar = targetIdeInfo("//pkg:bar");
+    File fooFile = writeAspectFile("foo", foo);
+    File barFile = writeAspectFile("bar", bar);
+
+    PipelinedIdeInfoReader reader =
+        new PipelinedIdeInfoReader(strategy, null, 1, MoreExecutors.newDirectExecutorService());
+    reader.shardBuilt(ImmutableList.of(fooFile, barFile));
+    reader.allFilesRead().get();
+
+    assertThat(reader.getParsed(fooFile)).isEqualTo(foo);
+    assertThat(reader.getParsed(barFile)).isEqualTo(bar);
+    // results are handed out only once
+    assertThat(reader.getParsed(fooFile)).isNull();
+  }
+
+  @Test
+  public void testShardBuilt_unchangedFilesNotRead() throws Exception {
+    File fooFile = writeAspectFile("foo", targetIdeInfo("//pkg:foo"));
+    File barFile = writeAspectFile("bar", targetIdeInfo("//pkg:bar"));
+    ImmutableMap<File, Long> previousState =
+        ImmutableMap.of(fooFile, FileOperationProvider.getInstance().getFileModifiedTime(fooFile));
+
+    PipelinedIdeInfoReader reader =
+        new PipelinedIdeInfoReader(
+            strategy, previousState, 1, MoreExecutors.newDirectExecutorService());
+    reader.shardBuilt(ImmutableList.of(fooFile, barFile));
+    reader.allFilesRead().get();
+
+    assertThat(reader.getUnreadFiles(ImmutableList.of(fooFile, barFile)))
+        .containsExactly(fooFile);
+  }
+
+  @Test
+  public void testGetUnreadFiles_excludesFilesAlreadyRead() throws Exception {
+    File fooFile = writeAspectFile("foo", targetIdeInfo("//pkg:foo"));
+    File barFile = writeAspectFile("bar", targetIdeInfo("//pkg:bar"));
+    File bazFile = writeAspectFile("baz", targetIdeInfo("//pkg:baz"));
+
+    PipelinedIdeInfoReader reader =
+        new PipelinedIdeInfoReader(strategy, null, 1, MoreExecutors.newDirectExecutorService());
+    reader.shardBuilt(ImmutableList.of(fooFile));
+    reader.fileBuilt(barFile);
+    reader.allFilesRead().get();
+
+    assertThat(reader.getUnreadFiles(ImmutableList.of(fooFile, barFile, bazFile)))
+        .containsExactly(bazFile);
+  }
+
+  @Test
+  public void testCancel_pendingParsesStopped() throws Exception {
+    File fooFile = writeAspectFile("foo", targetIdeInfo("//pkg:foo"));
+    File barFile = writeAspectFile("bar", targetIdeInfo("//pkg:bar"));
+    List<File> files = ImmutableList.of(fooFile, barFile);
+
+    ListeningExecutorService executor =
+        MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+    CountDownLatch blockExecutor = new CountDownLatch(1);
+    executor.submit(
+        () -> {
+          blockExecutor.await();
+          return null;
+        });
+    try {
+      PipelinedIdeInfoReader reader = new PipelinedIdeInfoReader(strategy, null, 2, executor);
+      reader.shardBuilt(files);
+      ListenableFuture<?> allFilesRead = reader.allFilesRead();
+      assertThat(allFilesRead.isDone()).isFalse();
+
+      reader.cancel();
+
+      // the queued parses are abandoned without waiting for the executor to reach them
+      assertThat(allFilesRead.isDone()).isTrue();
+      assertThat((List<?>) allFilesRead.get()).containsExactly(null, null);
+      assertThat(reader.getParsed(fooFile)).isNull();
+      assertThat(reader.getParsed(barFile)).isNull();
+      assertThat(reader.getUnreadFiles(files)).containsExactlyElementsIn(files);
+    } finally {
+      blockExecutor.countDown();
+      executor.shutdown();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private static IntellijIdeInfo.TargetIdeInfo targetIdeInfo(String label) {
+    return IntellijIdeInfo.TargetIdeInfo.newBuilder()
+        .setKindString("java_library")
+        .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel(label))
+        .build();
+  }
+
+  private File writeAspectFile(String name, IntellijIdeInfo.TargetIdeInfo info)
+      throws IOException {
+    File file = new File(tmpFolder.getRoot(), name + ".intellij-info.pb");
+    try (OutputStream out = new FileOutputStream(file)) {
+      info.writeDelimitedTo(out);
+    }
+    return file;
+  }
+
+  private static class MockAspectStrategy extends AspectStrategy {
+    private MockAspectStrategy() {}
+
+    @Override
+    public String getName() {
+      return "MockAspectStrategy";
+    }
+
+    @Override
+    protected List<String> getAspectFlags() {
+      return ImmutableList.of();
+    }
+
+    @Override
+    public ImmutableSet<BuildSystem> getSupportedBuildSystems() {
+      return ImmutableSet.copyOf(BuildSystem.values());
+    }
+  }
+}
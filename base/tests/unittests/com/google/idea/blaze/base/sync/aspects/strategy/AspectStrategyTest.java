@@ -19,6 +19,7 @@ import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
 import com.google.idea.blaze.base.BlazeTestCase;
 import com.google.idea.blaze.base.command.BlazeCommand;
 import com.google.idea.blaze.base.command.BlazeCommandName;
@@ -27,11 +28,17 @@ import com.google.idea.blaze.base.settings.BuildSystem;
 import com.google.idea.blaze.base.sync.aspects.strategy.AspectStrategy.OutputGroup;
 import com.google.idea.common.experiments.ExperimentService;
 import com.google.idea.common.experiments.MockExperimentService;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
@@ -41,6 +48,8 @@ public class AspectStrategyTest extends BlazeTestCase {
 
   private static final MockAspectStrategy strategy = new MockAspectStrategy();
 
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
   @Override
   protected void initTest(Container applicationServices, Container projectServices) {
     applicationServices.register(ExperimentService.class, new MockExperimentService());
@@ -55,6 +64,32 @@ public class AspectStrategyTest extends BlazeTestCase {
     assertThat(getOutputGroups(builder)).containsExactly("intellij-info-generic");
   }
 
+  @Test
+  public void testGenericBinaryOutputGroupAlwaysPresent() {
+    Set<LanguageClass> activeLanguages = ImmutableSet.of(LanguageClass.JAVA);
+
+    BlazeCommand.Builder builder = emptyBuilder();
+    strategy.addAspectAndOutputGroups(builder, OutputGroup.INFO_BINARY, activeLanguages);
+    assertThat(getOutputGroups(builder))
+        .containsExactly("intellij-info-binary-generic", "intellij-info-binary-java");
+  }
+
+  @Test
+  public void testReadBinaryAspectFile() throws IOException {
+    IntellijIdeInfo.TargetIdeInfo info =
+        IntellijIdeInfo.TargetIdeInfo.newBuilder()
+            .setKindString("java_library")
+            .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//foo:bar"))
+            .build();
+    File file = new File(tmpFolder.getRoot(), "bar-1234.intellij-info.pb");
+    try (OutputStream out = new FileOutputStream(file)) {
+      info.writeDelimitedTo(out);
+    }
+
+    assertThat(strategy.getAspectOutputFilePredicate().test(file.getPath())).isTrue();
+    assertThat(strategy.readAspectFile(file)).isEqualTo(info);
+  }
+
   @Test
   public void testNoGenericOutputGroupInResolveOrCompile() {
     Set<LanguageClass> activeLanguages = ImmutableSet.of(LanguageClass.JAVA);
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.aspects.strategy;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.devtools.intellij.aspect.Common;
+import com.google.devtools.intellij.ideinfo.IntellijIdeInfo;
+import com.google.idea.blaze.base.sync.aspects.strategy.IdeInfoTextFormatReader.UnsupportedSyntaxException;
+import com.google.protobuf.repackaged.TextFormat;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link IdeInfoTextFormatReader}. */
+@RunWith(JUnit4.class)
+public class IdeInfoTextFormatReaderTest {
+
+  @Test
+  public void testParsesPrintedProto() throws Exception {
+    IntellijIdeInfo.TargetIdeInfo info =
+        IntellijIdeInfo.TargetIdeInfo.newBuilder()
+            .setKindString("java_library")
+            .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//foo:bar"))
+            .setBuildFileArtifactLocation(
+                Common.ArtifactLocation.newBuilder()
+                    .setRelativePath("foo/BUILD")
+                    .setIsSource(true))
+            .addDeps(
+                IntellijIdeInfo.Dependency.newBuilder()
+                    .setTarget(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//foo:baz"))
+                    .setDependencyType(IntellijIdeInfo.Dependency.DependencyType.RUNTIME))
+            .addTags("no-ide")
+            .addTags("with \"quotes\", tabs\t and unicode é")
+            .setJavaIdeInfo(
+                IntellijIdeInfo.JavaIdeInfo.newBuilder()
+                    .addSources(
+                        Common.ArtifactLocation.newBuilder()
+                            .setRelativePath("foo/Bar.java")
+                            .setIsSource(true))
+                    .setMainClass("com.google.Bar"))
+            .setAndroidIdeInfo(
+                IntellijIdeInfo.AndroidIdeInfo.newBuilder().putManifestValues("key", "value"))
+            .build();
+
+    assertThat(parse(TextFormat.printToString(info))).isEqualTo(info);
+  }
+
+  @Test
+  public void testParsesLibraryArtifacts_matchesGenericParser() throws Exception {
+    IntellijIdeInfo.TargetIdeInfo.Builder builder =
+        IntellijIdeInfo.TargetIdeInfo.newBuilder()
+            .setKindString("java_library")
+            .setKey(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//foo:lib"));
+    IntellijIdeInfo.JavaIdeInfo.Builder java = IntellijIdeInfo.JavaIdeInfo.newBuilder();
+    for (int i = 0; i < 3; i++) {
+      java.addSources(
+          Common.ArtifactLocation.newBuilder()
+              .setRelativePath("foo/Source" + i + ".java")
+              .setIsSource(true));
+      builder.addDeps(
+          IntellijIdeInfo.Dependency.newBuilder()
+              .setTarget(IntellijIdeInfo.TargetKey.newBuilder().setLabel("//common" + i + ":lib")));
+    }
+    java.addJars(
+        IntellijIdeInfo.LibraryArtifact.newBuilder()
+            .setJar(generated("foo/liblib.jar"))
+            .setInterfaceJar(generated("foo/liblib-hjar.jar"))
+            .addSourceJars(generated("foo/liblib-src.jar")));
+    String text = TextFormat.printToString(builder.setJavaIdeInfo(java).build());
+
+    assertThat(parse(text)).isEqualTo(parseGeneric(text));
+  }
+
+  @Test
+  public void testParsesAspectSyntax() throws Exception {
+    // the aspect writes enums by number, and may use 'field {' or 'field: {'
+    String text =
+        "# comment\n"
+            + "kind_string: 'java_library'\n"
+            + "key { label: \"//foo:bar\" }\n"
+            + "deps: { target { label: \"//foo:baz\" } dependency_type: 1 }\n"
+            + "build_file_artifact_location {\n"
+            + "  relative_path: \"foo/\" \"BUILD\"\n"
+            + "  is_source: true\n"
+            + "}\n";
+
+    IntellijIdeInfo.TargetIdeInfo info = parse(text);
+
+    assertThat(info).isEqualTo(parseGeneric(text));
+    assertThat(info.getDeps(0).getDependencyType())
+        .isEqualTo(IntellijIdeInfo.Dependency.DependencyType.RUNTIME);
+    assertThat(info.getBuildFileArtifactLocation().getRelativePath()).isEqualTo("foo/BUILD");
+  }
+
+  @Test
+  public void testInternsStrings() throws Exception {
+    IntellijIdeInfo.TargetIdeInfo first = parse("key { label: \"//foo:bar\" }");
+    IntellijIdeInfo.TargetIdeInfo second = parse("key { label: \"//foo:bar\" }");
+
+    assertThat(first.getKey().getLabel()).isSameAs(second.getKey().getLabel());
+  }
+
+  @Test(expected = UnsupportedSyntaxException.class)
+  public void testUnknownField_throws() throws Exception {
+    parse("kind_string: \"java_library\"\nsome_new_field: 1\n");
+  }
+
+  @Test(expected = UnsupportedSyntaxException.class)
+  public void testListSyntax_throws() throws Exception {
+    parse("tags: [\"a\", \"b\"]\n");
+  }
+
+  @Test(expected = UnsupportedSyntaxException.class)
+  public void testUnterminatedMessage_throws() throws Exception {
+    parse("key { label: \"//foo:bar\"\n");
+  }
+
+  private static IntellijIdeInfo.TargetIdeInfo parse(String text)
+      throws UnsupportedSyntaxException {
+    return IdeInfoTextFormatReader.parse(text.getBytes(UTF_8));
+  }
+
+  private static Common.ArtifactLocation generated(String relativePath) {
+    return Common.ArtifactLocation.newBuilder()
+        .setRelativePath(relativePath)
+        .setRootExecutionPathFragment("bazel-out/k8-fastbuild/bin")
+        .build();
+  }
+
+  private static IntellijIdeInfo.TargetIdeInfo parseGeneric(String text) throws Exception {
+    IntellijIdeInfo.TargetIdeInfo.Builder builder = IntellijIdeInfo.TargetIdeInfo.newBuilder();
+    TextFormat.merge(text, builder);
+    return builder.build();
+  }
+}
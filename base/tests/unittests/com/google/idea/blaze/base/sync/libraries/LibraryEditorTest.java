@@ -0,0 +1,180 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.libraries;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.model.BlazeLibrary;
+import com.google.idea.blaze.base.model.LibraryKey;
+import com.google.idea.blaze.base.sync.workspace.ArtifactLocationDecoder;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.OrderRootType;
+import com.intellij.openapi.roots.libraries.Library;
+import com.intellij.openapi.roots.libraries.LibraryTable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LibraryEditor#updateLibrary}. */
+@RunWith(JUnit4.class)
+public class LibraryEditorTest extends BlazeTestCase {
+
+  private static final String LIBRARY_NAME = "lib";
+  private static final String CLASS_JAR = "jar:///root/lib.jar!/";
+  private static final String SOURCE_JAR = "jar:///root/lib-src.jar!/";
+
+  private final LibraryTable libraryTable = mock(LibraryTable.class);
+  private final LibraryTable.ModifiableModel libraryTableModel =
+      mock(LibraryTable.ModifiableModel.class);
+
+  @Test
+  public void testUnchangedLibrary_disposedNotCommitted() {
+    Library library = existingLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of(SOURCE_JAR));
+    Library.ModifiableModel model = library.getModifiableModel();
+
+    boolean changed =
+        updateLibrary(new FakeLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of(SOURCE_JAR)));
+
+    assertThat(changed).isFalse();
+    verify(model, never()).commit();
+    verify(model).dispose();
+    verify(libraryTableModel, never()).createLibrary(anyString());
+  }
+
+  @Test
+  public void testChangedClassRoots_committed() {
+    Library library = existingLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of(SOURCE_JAR));
+    Library.ModifiableModel model = library.getModifiableModel();
+
+    boolean changed =
+        updateLibrary(
+            new FakeLibrary(
+                ImmutableList.of(CLASS_JAR, "jar:///root/other.jar!/"),
+                ImmutableList.of(SOURCE_JAR)));
+
+    assertThat(changed).isTrue();
+    verify(model).commit();
+    assertThat(model.getUrls(OrderRootType.CLASSES))
+        .asList()
+        .containsExactly(CLASS_JAR, "jar:///root/other.jar!/")
+        .inOrder();
+  }
+
+  @Test
+  public void testChangedSourceRoots_committed() {
+    Library library = existingLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of(SOURCE_JAR));
+    Library.ModifiableModel model = library.getModifiableModel();
+
+    boolean changed =
+        updateLibrary(new FakeLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of()));
+
+    assertThat(changed).isTrue();
+    verify(model).commit();
+    assertThat(model.getUrls(OrderRootType.SOURCES)).isEmpty();
+  }
+
+  @Test
+  public void testNewLibrary_createdAndCommitted() {
+    Library library = mockLibrary(ImmutableList.of(), ImmutableList.of());
+    Library.ModifiableModel model = library.getModifiableModel();
+    when(libraryTableModel.createLibrary(LIBRARY_NAME)).thenReturn(library);
+
+    boolean changed =
+        updateLibrary(new FakeLibrary(ImmutableList.of(CLASS_JAR), ImmutableList.of(SOURCE_JAR)));
+
+    assertThat(changed).isTrue();
+    verify(libraryTableModel).createLibrary(LIBRARY_NAME);
+    verify(model).commit();
+    assertThat(model.getUrls(OrderRootType.CLASSES)).asList().containsExactly(CLASS_JAR);
+    assertThat(model.getUrls(OrderRootType.SOURCES)).asList().containsExactly(SOURCE_JAR);
+  }
+
+  private boolean updateLibrary(BlazeLibrary blazeLibrary) {
+    return LibraryEditor.updateLibrary(
+        mock(Project.class),
+        mock(ArtifactLocationDecoder.class),
+        libraryTable,
+        libraryTableModel,
+        blazeLibrary);
+  }
+
+  private Library existingLibrary(ImmutableList<String> classes, ImmutableList<String> sources) {
+    Library library = mockLibrary(classes, sources);
+    when(libraryTable.getLibraryByName(LIBRARY_NAME)).thenReturn(library);
+    return library;
+  }
+
+  /**
+   * Returns a library with the given committed roots, whose modifiable model tracks root changes.
+   */
+  private static Library mockLibrary(ImmutableList<String> classes, ImmutableList<String> sources) {
+    Library library = mock(Library.class);
+    when(library.getUrls(OrderRootType.CLASSES)).thenReturn(classes.toArray(new String[0]));
+    when(library.getUrls(OrderRootType.SOURCES)).thenReturn(sources.toArray(new String[0]));
+
+    ListMultimap<OrderRootType, String> roots = ArrayListMultimap.create();
+    roots.putAll(OrderRootType.CLASSES, classes);
+    roots.putAll(OrderRootType.SOURCES, sources);
+    Library.ModifiableModel model = mock(Library.ModifiableModel.class);
+    when(model.getUrls(any(OrderRootType.class)))
+        .thenAnswer(
+            invocation ->
+                roots.get((OrderRootType) invocation.getArguments()[0]).toArray(new String[0]));
+    doAnswer(
+            invocation ->
+                roots.put(
+                    (OrderRootType) invocation.getArguments()[1],
+                    (String) invocation.getArguments()[0]))
+        .when(model)
+        .addRoot(anyString(), any(OrderRootType.class));
+    doAnswer(invocation -> roots.remove(invocation.getArguments()[1], invocation.getArguments()[0]))
+        .when(model)
+        .removeRoot(anyString(), any(OrderRootType.class));
+    when(library.getModifiableModel()).thenReturn(model);
+    return library;
+  }
+
+  private static class FakeLibrary extends BlazeLibrary {
+    private final ImmutableList<String> classes;
+    private final ImmutableList<String> sources;
+
+    FakeLibrary(ImmutableList<String> classes, ImmutableList<String> sources) {
+      super(LibraryKey.fromIntelliJLibraryName(LIBRARY_NAME));
+      this.classes = classes;
+      this.sources = sources;
+    }
+
+    @Override
+    public void modifyLibraryModel(
+        Project project,
+        ArtifactLocationDecoder artifactLocationDecoder,
+        Library.ModifiableModel libraryModel) {
+      classes.forEach(url -> libraryModel.addRoot(url, OrderRootType.CLASSES));
+      sources.forEach(url -> libraryModel.addRoot(url, OrderRootType.SOURCES));
+    }
+  }
+}
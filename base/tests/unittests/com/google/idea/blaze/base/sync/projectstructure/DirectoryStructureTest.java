@@ -0,0 +1,195 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.sync.projectstructure;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspacePath;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import java.io.File;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DirectoryStructure}. */
+@RunWith(JUnit4.class)
+public class DirectoryStructureTest extends BlazeTestCase {
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  private final CountingFileOperationProvider fileOperationProvider =
+      new CountingFileOperationProvider();
+  private WorkspaceRoot workspaceRoot;
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(FileOperationProvider.class, fileOperationProvider);
+    workspaceRoot = new WorkspaceRoot(tmpFolder.getRoot());
+  }
+
+  @Test
+  public void testUnchangedDirectories_notRelisted() throws Exception {
+    mkdirs("java/com/foo", 1000L);
+    mkdirs("java/com/bar", 1000L);
+    setModifiedTime("java/com", 2000L);
+    setModifiedTime("java", 3000L);
+
+    DirectoryStructure first = compute(null, ImmutableSet.of());
+    fileOperationProvider.listFilesCalls.set(0);
+    DirectoryStructure second = compute(first, ImmutableSet.of());
+
+    assertThat(fileOperationProvider.listFilesCalls.get()).isEqualTo(0);
+    assertThat(paths(second)).containsExactly("java", "java/com", "java/com/foo", "java/com/bar");
+  }
+
+  @Test
+  public void testModifiedDirectory_onlyChangedSubtreeRelisted() throws Exception {
+    mkdirs("java/com/foo", 1000L);
+    setModifiedTime("java/com", 2000L);
+    setModifiedTime("java", 3000L);
+    DirectoryStructure first = compute(null, ImmutableSet.of());
+
+    mkdirs("java/com/bar/baz", 1000L);
+    setModifiedTime("java/com/bar", 1000L);
+    setModifiedTime("java/com", 4000L);
+    fileOperationProvider.listFilesCalls.set(0);
+    DirectoryStructure second = compute(first, ImmutableSet.of());
+
+    // java/com has changed, and java/com/bar and java/com/bar/baz are new.
+    assertThat(fileOperationProvider.listFilesCalls.get()).isEqualTo(3);
+    assertThat(paths(second))
+        .containsExactly("java", "java/com", "java/com/foo", "java/com/bar", "java/com/bar/baz");
+  }
+
+  @Test
+  public void testVfsChangedDirectory_relistedDespiteUnchangedTimestamp() throws Exception {
+    mkdirs("java/com/foo", 1000L);
+    setModifiedTime("java/com", 2000L);
+    setModifiedTime("java", 3000L);
+    DirectoryStructure first = compute(null, ImmutableSet.of());
+
+    mkdirs("java/com/bar", 1000L);
+    setModifiedTime("java/com", 2000L);
+    DirectoryStructure second =
+        compute(first, ImmutableSet.of(workspaceRoot.fileForPath(path("java/com")).getPath()));
+
+    assertThat(paths(second)).containsExactly("java", "java/com", "java/com/foo", "java/com/bar");
+  }
+
+  @Test
+  public void testRecentlyModifiedDirectory_relistedDespiteUnchangedTimestamp() throws Exception {
+    // modified within the timestamp granularity of the first listing
+    long now = System.currentTimeMillis();
+    mkdirs("java/com/foo", 1000L);
+    setModifiedTime("java/com", now);
+    setModifiedTime("java", 3000L);
+    DirectoryStructure first = compute(null, ImmutableSet.of());
+
+    // a change in the same timestamp tick, which leaves the modified time unchanged
+    mkdirs("java/com/bar", 1000L);
+    setModifiedTime("java/com", now);
+    fileOperationProvider.listFilesCalls.set(0);
+    DirectoryStructure second = compute(first, ImmutableSet.of());
+
+    // java/com is re-listed, and java/com/bar is new.
+    assertThat(fileOperationProvider.listFilesCalls.get()).isEqualTo(2);
+    assertThat(paths(second)).containsExactly("java", "java/com", "java/com/foo", "java/com/bar");
+  }
+
+  @Test
+  public void testSnapshotRoundTrip() throws Exception {
+    mkdirs("java/com/foo", 1000L);
+    mkdirs("javatests/com/foo", 1000L);
+    DirectoryStructure structure = compute(null, ImmutableSet.of());
+    File file = new File(tmpFolder.getRoot(), "cache/directory_structure.dat");
+
+    DirectoryStructureCache.write(
+        file,
+        new DirectoryStructureCache.Snapshot(
+            ImmutableList.of(path("java"), path("javatests")),
+            ImmutableList.of(),
+            structure));
+    DirectoryStructureCache.Snapshot snapshot = DirectoryStructureCache.read(file);
+
+    assertThat(snapshot.rootDirectories).containsExactly(path("java"), path("javatests"));
+    assertThat(snapshot.excludeDirectories).isEmpty();
+    assertThat(paths(snapshot.directoryStructure)).isEqualTo(paths(structure));
+    assertThat(snapshot.directoryStructure.directories.get(path("java")).modifiedTime)
+        .isEqualTo(structure.directories.get(path("java")).modifiedTime);
+    assertThat(snapshot.directoryStructure.directories.get(path("java")).listedTime)
+        .isEqualTo(structure.directories.get(path("java")).listedTime);
+  }
+
+  private DirectoryStructure compute(
+      @Nullable DirectoryStructure previous, Set<String> changedDirectories) throws Exception {
+    return DirectoryStructure.computeRootDirectoryStructure(
+        workspaceRoot,
+        ImmutableList.of(path("java"), path("javatests")),
+        ImmutableSet.of(),
+        previous,
+        changedDirectories,
+        MoreExecutors.newDirectExecutorService(),
+        new AtomicBoolean(false));
+  }
+
+  private void mkdirs(String relativePath, long modifiedTime) {
+    File dir = workspaceRoot.fileForPath(path(relativePath));
+    assertThat(dir.mkdirs()).isTrue();
+    assertThat(dir.setLastModified(modifiedTime)).isTrue();
+  }
+
+  private void setModifiedTime(String relativePath, long modifiedTime) {
+    assertThat(workspaceRoot.fileForPath(path(relativePath)).setLastModified(modifiedTime))
+        .isTrue();
+  }
+
+  private static Set<String> paths(DirectoryStructure structure) {
+    Set<String> paths = new TreeSet<>();
+    for (Map.Entry<WorkspacePath, DirectoryStructure> entry : structure.directories.entrySet()) {
+      paths.add(entry.getKey().relativePath());
+      paths.addAll(paths(entry.getValue()));
+    }
+    return paths;
+  }
+
+  private static WorkspacePath path(String relativePath) {
+    return new WorkspacePath(relativePath);
+  }
+
+  private static class CountingFileOperationProvider extends FileOperationProvider {
+    final AtomicInteger listFilesCalls = new AtomicInteger();
+
+    @Override
+    public File[] listFiles(File file) {
+      listFilesCalls.incrementAndGet();
+      return super.listFiles(file);
+    }
+  }
+}
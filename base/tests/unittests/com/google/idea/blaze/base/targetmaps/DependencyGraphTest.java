@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.targetmaps;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.ideinfo.TargetMap;
+import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
+import com.google.idea.blaze.base.model.primitives.GenericBlazeRules;
+import com.google.idea.blaze.base.model.primitives.Kind;
+import com.google.idea.blaze.base.model.primitives.Label;
+import com.intellij.openapi.extensions.impl.ExtensionPointImpl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link DependencyGraph}. */
+@RunWith(JUnit4.class)
+public class DependencyGraphTest extends BlazeTestCase {
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    ExtensionPointImpl<Kind.Provider> ep =
+        registerExtensionPoint(Kind.Provider.EP_NAME, Kind.Provider.class);
+    ep.registerExtension(new GenericBlazeRules());
+    applicationServices.register(Kind.ApplicationState.class, new Kind.ApplicationState());
+  }
+
+  @Test
+  public void testReverseDependencies_onlyIncludeTargetsInMap() {
+    DependencyGraph graph = DependencyGraph.create(buildDiamond());
+    assertThat(graph.getReverseDependencies(key("//diamond:d")))
+        .containsExactly(key("//diamond:b"), key("//diamond:c"));
+    assertThat(graph.getReverseDependencies(key("//diamond:a"))).isEmpty();
+    assertThat(graph.getReverseDependencies(key("//external:missing"))).isEmpty();
+  }
+
+  @Test
+  public void testTransitiveReverseDependencies_includeRootsInBreadthFirstOrder() {
+    DependencyGraph graph = DependencyGraph.create(buildDiamond());
+    assertThat(graph.getTransitiveReverseDependencies(ImmutableList.of(key("//diamond:d"))))
+        .containsExactly(
+            key("//diamond:d"), key("//diamond:b"), key("//diamond:c"), key("//diamond:a"))
+        .inOrder();
+  }
+
+  @Test
+  public void testTransitiveDependencies_includeTargetsMissingFromMap() {
+    DependencyGraph graph = DependencyGraph.create(buildDiamond());
+    assertThat(graph.getTransitiveDependencies(ImmutableList.of(key("//diamond:a"))))
+        .containsExactly(
+            key("//diamond:b"),
+            key("//diamond:c"),
+            key("//diamond:d"),
+            key("//external:missing"))
+        .inOrder();
+    assertThat(graph.getTransitiveDependencies(ImmutableList.of(key("//diamond:d")))).isEmpty();
+  }
+
+  @Test
+  public void testHasTransitiveDependency() {
+    DependencyGraph graph = DependencyGraph.create(buildDiamond());
+    assertThat(graph.hasTransitiveDependency(key("//diamond:a"), key("//diamond:d"))).isTrue();
+    assertThat(graph.hasTransitiveDependency(key("//diamond:a"), key("//external:missing")))
+        .isTrue();
+    assertThat(graph.hasTransitiveDependency(key("//diamond:d"), key("//diamond:a"))).isFalse();
+    assertThat(graph.hasTransitiveDependency(key("//diamond:a"), key("//diamond:a"))).isFalse();
+  }
+
+  private static TargetMap buildDiamond() {
+    return TargetMapBuilder.builder()
+        .addTarget(
+            TargetIdeInfo.builder()
+                .setLabel("//diamond:a")
+                .setKind("sh_library")
+                .addDependency("//diamond:b")
+                .addDependency("//diamond:c"))
+        .addTarget(
+            TargetIdeInfo.builder()
+                .setLabel("//diamond:b")
+                .setKind("sh_library")
+                .addDependency("//diamond:d"))
+        .addTarget(
+            TargetIdeInfo.builder()
+                .setLabel("//diamond:c")
+                .setKind("sh_library")
+                .addDependency("//diamond:d")
+                .addDependency("//external:missing"))
+        .addTarget(TargetIdeInfo.builder().setLabel("//diamond:d").setKind("sh_library"))
+        .build();
+  }
+
+  private static TargetKey key(String label) {
+    return TargetKey.forPlainTarget(Label.create(label));
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.ui.problems;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.idea.blaze.base.scope.output.IssueOutput;
+import com.google.idea.blaze.base.ui.problems.ProblemsViewSession.AddResult;
+import com.google.idea.blaze.base.ui.problems.ProblemsViewSession.Batch;
+import com.google.idea.blaze.base.ui.problems.ProblemsViewSession.HiddenProblems;
+import java.io.File;
+import java.util.stream.Collectors;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ProblemsViewSession}. */
+@RunWith(JUnit4.class)
+public class ProblemsViewSessionTest {
+
+  private static final File FOO = new File("/root/foo.java");
+  private static final File BAR = new File("/root/bar.java");
+
+  @Test
+  public void testProblemsBatchedUntilDrained() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 100);
+
+    assertThat(session.add(error(FOO, 1, "first"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.markDrainScheduled()).isTrue();
+    assertThat(session.add(error(FOO, 2, "second"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.markDrainScheduled()).isFalse();
+
+    Batch batch = session.drain();
+    assertThat(messages(batch)).containsExactly("first", "second").inOrder();
+    assertThat(batch.changedHiddenCounts).isEmpty();
+
+    // problems added after a drain schedule another
+    assertThat(session.markDrainScheduled()).isTrue();
+    assertThat(session.drain().problems).isEmpty();
+  }
+
+  @Test
+  public void testDuplicatesDropped() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 100);
+
+    assertThat(session.add(error(FOO, 1, "message"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(FOO, 1, "message"), null)).isEqualTo(AddResult.DUPLICATE);
+    assertThat(session.add(error(FOO, 2, "message"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(BAR, 1, "message"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(FOO, 1, "other message"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(IssueOutput.warn("message").inFile(FOO).onLine(1).build(), null))
+        .isEqualTo(AddResult.QUEUED);
+
+    assertThat(session.drain().problems).hasSize(5);
+  }
+
+  @Test
+  public void testMessagesWithCollidingHashesNotDeduped() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 100);
+    assertThat("Aa".hashCode()).isEqualTo("BB".hashCode());
+
+    assertThat(session.add(error(FOO, 1, "Aa"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(FOO, 1, "BB"), null)).isEqualTo(AddResult.QUEUED);
+
+    assertThat(messages(session.drain())).containsExactly("Aa", "BB").inOrder();
+  }
+
+  @Test
+  public void testDuplicatesNotCountedTowardsLimits() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 1);
+
+    session.add(error(FOO, 1, "message"), null);
+    assertThat(session.add(error(FOO, 1, "message"), null)).isEqualTo(AddResult.DUPLICATE);
+
+    assertThat(session.drain().changedHiddenCounts).isEmpty();
+  }
+
+  @Test
+  public void testPerFileLimit() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 2);
+
+    assertThat(session.add(error(FOO, 1, "foo1"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(FOO, 2, "foo2"), null)).isEqualTo(AddResult.QUEUED);
+    assertThat(session.add(error(FOO, 3, "foo3"), null)).isEqualTo(AddResult.HIDDEN);
+    assertThat(session.add(error(FOO, 4, "foo4"), null)).isEqualTo(AddResult.HIDDEN);
+    assertThat(session.add(error(BAR, 1, "bar1"), null)).isEqualTo(AddResult.QUEUED);
+
+    Batch batch = session.drain();
+    assertThat(messages(batch)).containsExactly("foo1", "foo2", "bar1").inOrder();
+    assertThat(batch.changedHiddenCounts).hasSize(1);
+    HiddenProblems hidden = batch.changedHiddenCounts.get(0);
+    assertThat(hidden.file).isEqualTo(FOO);
+    assertThat(hidden.count).isEqualTo(2);
+    assertThat(session.getSummaryText(hidden))
+        .isEqualTo("2 more problems in this file not shown (limit is 2 per file)");
+  }
+
+  @Test
+  public void testTotalLimit() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 2, 100);
+
+    session.add(error(FOO, 1, "foo1"), null);
+    session.add(error(BAR, 1, "bar1"), null);
+    assertThat(session.add(IssueOutput.error("no file").build(), null))
+        .isEqualTo(AddResult.HIDDEN);
+
+    Batch batch = session.drain();
+    assertThat(messages(batch)).containsExactly("foo1", "bar1").inOrder();
+    assertThat(batch.changedHiddenCounts).hasSize(1);
+    HiddenProblems hidden = batch.changedHiddenCounts.get(0);
+    assertThat(hidden.file).isNull();
+    assertThat(hidden.count).isEqualTo(1);
+    assertThat(session.getSummaryText(hidden))
+        .isEqualTo("1 more problems not shown. Only the first 2 are listed.");
+  }
+
+  @Test
+  public void testHiddenCountsOnlyReportedWhenChanged() {
+    ProblemsViewSession session = new ProblemsViewSession(null, 100, 1);
+
+    session.add(error(FOO, 1, "foo1"), null);
+    session.add(error(FOO, 2, "foo2"), null);
+    session.add(error(BAR, 1, "bar1"), null);
+    session.add(error(BAR, 2, "bar2"), null);
+    assertThat(session.drain().changedHiddenCounts).hasSize(2);
+
+    session.add(error(FOO, 3, "foo3"), null);
+    Batch batch = session.drain();
+    assertThat(batch.problems).isEmpty();
+    assertThat(batch.changedHiddenCounts).hasSize(1);
+    assertThat(batch.changedHiddenCounts.get(0).file).isEqualTo(FOO);
+    assertThat(batch.changedHiddenCounts.get(0).count).isEqualTo(2);
+
+    assertThat(session.drain().changedHiddenCounts).isEmpty();
+  }
+
+  private static IssueOutput error(File file, int line, String message) {
+    return IssueOutput.error(message).inFile(file).onLine(line).build();
+  }
+
+  private static Iterable<String> messages(Batch batch) {
+    return batch.problems.stream().map(p -> p.issue.getMessage()).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Tests for {@link GitObjectReader} */
+@RunWith(JUnit4.class)
+public class GitObjectReaderTest {
+
+  @Test
+  public void testReadsConsecutiveBlobs() throws IOException {
+    InputStream input =
+        asInputStream(
+            "45b983be36b73c0788dc9cbcb76cbb80fc7bb057 blob 3\nhi\n\n"
+                + "0fd3ab1ca3c4bf5a4b94b8b7b8f2c7b6a0e4f0b1 blob 12\nline1\nline2\n\n");
+
+    assertThat(new String(GitObjectReader.readObject(input), UTF_8)).isEqualTo("hi\n");
+    assertThat(new String(GitObjectReader.readObject(input), UTF_8)).isEqualTo("line1\nline2\n");
+  }
+
+  @Test
+  public void testMissingObject_returnsEmptyContent() throws IOException {
+    InputStream input = asInputStream("abc123:./java/com/google/My File.java missing\n");
+
+    assertThat(GitObjectReader.readObject(input)).isEmpty();
+  }
+
+  @Test
+  public void testNonBlobObject_returnsNull() throws IOException {
+    InputStream input = asInputStream("45b983be36b73c0788dc9cbcb76cbb80fc7bb057 tree 4\nabcd\n");
+
+    assertThat(GitObjectReader.readObject(input)).isNull();
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedOutput_throws() throws IOException {
+    GitObjectReader.readObject(
+        asInputStream("45b983be36b73c0788dc9cbcb76cbb80fc7bb057 blob 10\nhi"));
+  }
+
+  private static InputStream asInputStream(String output) {
+    return new ByteArrayInputStream(output.getBytes(UTF_8));
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.base.vcs.git;
+
+import static com.google.common.truth.Truth.assertThat;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.idea.blaze.base.BlazeTestCase;
+import com.google.idea.blaze.base.io.FileOperationProvider;
+import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
+import com.google.idea.blaze.base.vcs.git.GitUpstreamShaCache.GitDirs;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link GitUpstreamShaCache}. */
+@RunWith(JUnit4.class)
+public class GitUpstreamShaCacheTest extends BlazeTestCase {
+
+  private static final String UPSTREAM_REF = "refs/remotes/origin/master";
+
+  @Rule public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+  @Override
+  protected void initTest(Container applicationServices, Container projectServices) {
+    super.initTest(applicationServices, projectServices);
+    applicationServices.register(FileOperationProvider.class, new FileOperationProvider());
+  }
+
+  @Test
+  public void testNestedWorkspaceRoot_usesEnclosingRepository() throws IOException {
+    File repo = tmpFolder.newFolder("repo");
+    File gitDir = createGitDir(new File(repo, ".git"));
+    File workspace = new File(repo, "sub/workspace");
+    workspace.mkdirs();
+
+    GitDirs dirs = GitUpstreamShaCache.resolveGitDirs(workspace);
+    assertThat(dirs.gitDir).isEqualTo(gitDir);
+    assertThat(dirs.commonDir).isEqualTo(gitDir);
+
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(workspace);
+    GitUpstreamShaCache.put(workspaceRoot, "abc", UPSTREAM_REF);
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isEqualTo("abc");
+
+    write(new File(gitDir, UPSTREAM_REF), "def");
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isNull();
+  }
+
+  @Test
+  public void testLinkedWorktree_followsGitdirAndCommondir() throws IOException {
+    File mainGitDir = createGitDir(new File(tmpFolder.newFolder("main"), ".git"));
+    File worktreeGitDir = new File(mainGitDir, "worktrees/wt");
+    worktreeGitDir.mkdirs();
+    write(new File(worktreeGitDir, "HEAD"), "ref: refs/heads/feature\n");
+    write(new File(worktreeGitDir, "commondir"), "../..\n");
+    File worktree = tmpFolder.newFolder("wt");
+    write(new File(worktree, ".git"), "gitdir: " + worktreeGitDir.getPath() + "\n");
+
+    GitDirs dirs = GitUpstreamShaCache.resolveGitDirs(worktree);
+    assertThat(dirs.gitDir).isEqualTo(worktreeGitDir);
+    assertThat(dirs.commonDir.getCanonicalFile()).isEqualTo(mainGitDir.getCanonicalFile());
+
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(worktree);
+    GitUpstreamShaCache.put(workspaceRoot, "abc", UPSTREAM_REF);
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isEqualTo("abc");
+
+    // the worktree's own HEAD changes
+    write(new File(worktreeGitDir, "HEAD"), "ref: refs/heads/other\n");
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isNull();
+
+    // the shared upstream ref changes
+    GitUpstreamShaCache.put(workspaceRoot, "abc", UPSTREAM_REF);
+    write(new File(mainGitDir, UPSTREAM_REF), "def");
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isNull();
+  }
+
+  @Test
+  public void testRelativeGitdirPointer() throws IOException {
+    File submodule = tmpFolder.newFolder("super", "sub");
+    File gitDir = createGitDir(new File(tmpFolder.getRoot(), "super/.git/modules/sub"));
+    write(new File(submodule, ".git"), "gitdir: ../.git/modules/sub\n");
+
+    GitDirs dirs = GitUpstreamShaCache.resolveGitDirs(submodule);
+    assertThat(dirs.gitDir.getCanonicalFile()).isEqualTo(gitDir.getCanonicalFile());
+    assertThat(dirs.commonDir).isEqualTo(dirs.gitDir);
+  }
+
+  @Test
+  public void testUnreadableRepository_notCached() throws IOException {
+    File workspace = tmpFolder.newFolder("no_repo");
+    write(new File(workspace, ".git"), "gitdir: /does/not/exist\n");
+
+    WorkspaceRoot workspaceRoot = new WorkspaceRoot(workspace);
+    assertThat(GitUpstreamShaCache.resolveGitDirs(workspace)).isNull();
+    GitUpstreamShaCache.put(workspaceRoot, "abc", UPSTREAM_REF);
+    assertThat(GitUpstreamShaCache.get(workspaceRoot)).isNull();
+  }
+
+  private static File createGitDir(File gitDir) throws IOException {
+    new File(gitDir, "refs/remotes/origin").mkdirs();
+    write(new File(gitDir, "HEAD"), "ref: refs/heads/master\n");
+    write(new File(gitDir, "config"), "");
+    write(new File(gitDir, UPSTREAM_REF), "abc");
+    return gitDir;
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    Files.write(file.toPath(), contents.getBytes(UTF_8));
+  }
+}
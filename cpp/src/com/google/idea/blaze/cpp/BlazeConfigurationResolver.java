@@ -18,6 +18,7 @@ package com.google.idea.blaze.cpp;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -50,6 +51,7 @@ import com.google.idea.blaze.base.scope.scopes.TimingScope.EventType;
 import com.google.idea.blaze.base.settings.Blaze;
 import com.google.idea.blaze.base.sync.projectview.ProjectViewTargetImportFilter;
 import com.google.idea.blaze.base.sync.workspace.ExecutionRootPathResolver;
+import com.google.idea.common.experiments.BoolExperiment;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.io.FileUtilRt;
@@ -57,9 +59,12 @@ import com.intellij.openapi.vfs.VirtualFile;
 import java.io.File;
 import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -76,6 +81,9 @@ final class BlazeConfigurationResolver {
   // Sometimes genfiles/java is considered a header search root.
   private static final int GEN_HEADER_ROOT_SEARCH_LIMIT = 50;
 
+  private static final BoolExperiment reuseUnchangedConfigurations =
+      new BoolExperiment("blaze.cpp.resolve.incremental", true);
+
   private final Project project;
 
   BlazeConfigurationResolver(Project project) {
@@ -97,9 +105,23 @@ final class BlazeConfigurationResolver {
     ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap =
         BlazeConfigurationToolchainResolver.buildToolchainLookupMap(
             context, blazeProjectData.getTargetMap());
-    ImmutableMap<File, VirtualFile> headerRoots =
+    File executionRoot = blazeProjectData.getBlazeInfo().getExecutionRoot();
+    // Intermediate results are only valid if the execution root paths resolve the same way.
+    BlazeConfigurationResolverResult reusableResult =
+        reuseUnchangedConfigurations.getValue()
+                && executionRoot.equals(oldResult.executionRoot)
+            ? oldResult
+            : BlazeConfigurationResolverResult.empty();
+    ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath =
         collectHeaderRoots(
-            context, blazeProjectData, toolchainLookupMap, executionRootPathResolver);
+            context,
+            blazeProjectData,
+            toolchainLookupMap,
+            executionRootPathResolver,
+            reusableResult.headerRootsByPath);
+    ImmutableMap<File, VirtualFile> headerRoots = flattenHeaderRoots(headerRootsByPath);
+    ImmutableSet<ExecutionRootPath> changedHeaderRootPaths =
+        changedHeaderRootPaths(reusableResult.headerRootsByPath, headerRootsByPath);
     ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings =
         BlazeConfigurationToolchainResolver.buildCompilerSettingsMap(
             context,
@@ -117,42 +139,64 @@ final class BlazeConfigurationResolver {
         headerRoots,
         compilerSettings,
         executionRootPathResolver,
+        reusableResult,
+        changedHeaderRootPaths,
         builder);
     builder.setCompilerSettings(compilerSettings);
+    builder.setExecutionRoot(executionRoot);
+    builder.setHeaderRootsByPath(headerRootsByPath);
     return builder.build();
   }
 
-  private static ImmutableMap<File, VirtualFile> collectHeaderRoots(
-      BlazeContext parentContext,
-      BlazeProjectData blazeProjectData,
-      ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
-      ExecutionRootPathResolver executionRootPathResolver) {
+  private static ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>>
+      collectHeaderRoots(
+          BlazeContext parentContext,
+          BlazeProjectData blazeProjectData,
+          ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
+          ExecutionRootPathResolver executionRootPathResolver,
+          ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> oldHeaderRoots) {
     // Type specification needed to avoid incorrect type inference during command line build.
     return Scope.push(
         parentContext,
-        (ScopedFunction<ImmutableMap<File, VirtualFile>>)
+        (ScopedFunction<ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>>>)
             context -> {
               context.push(new TimingScope("Resolve header include roots", EventType.Other));
               Set<ExecutionRootPath> paths =
                   collectExecutionRootPaths(blazeProjectData.getTargetMap(), toolchainLookupMap);
               return doCollectHeaderRoots(
-                  context, blazeProjectData, paths, executionRootPathResolver);
+                  context, blazeProjectData, paths, executionRootPathResolver, oldHeaderRoots);
             });
   }
 
-  private static ImmutableMap<File, VirtualFile> doCollectHeaderRoots(
-      BlazeContext context,
-      BlazeProjectData projectData,
-      Set<ExecutionRootPath> rootPaths,
-      ExecutionRootPathResolver pathResolver) {
-    ConcurrentMap<File, VirtualFile> rootsMap = Maps.newConcurrentMap();
+  /**
+   * Resolves each execution root path to the header roots it contributes. Paths which previously
+   * resolved to header roots which are all still valid are reused without touching the VFS; only
+   * new paths, and paths which previously had no header roots, are resolved again.
+   */
+  private static ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>>
+      doCollectHeaderRoots(
+          BlazeContext context,
+          BlazeProjectData projectData,
+          Set<ExecutionRootPath> rootPaths,
+          ExecutionRootPathResolver pathResolver,
+          ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> oldHeaderRoots) {
+    ConcurrentMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> rootsByPath =
+        Maps.newConcurrentMap();
     List<ListenableFuture<Void>> futures = Lists.newArrayListWithCapacity(rootPaths.size());
     AtomicInteger genRootsWithHeaders = new AtomicInteger();
     AtomicInteger genRootsWithoutHeaders = new AtomicInteger();
+    AtomicInteger reusedRoots = new AtomicInteger();
     for (ExecutionRootPath path : rootPaths) {
+      ImmutableMap<File, VirtualFile> oldRoots = oldHeaderRoots.get(path);
+      if (oldRoots != null && oldRoots.values().stream().allMatch(VirtualFile::isValid)) {
+        rootsByPath.put(path, oldRoots);
+        reusedRoots.incrementAndGet();
+        continue;
+      }
       futures.add(
           submit(
               () -> {
+                Map<File, VirtualFile> rootsMap = new LinkedHashMap<>();
                 ImmutableList<File> possibleDirectories =
                     pathResolver.resolveToIncludeDirectories(path);
                 if (possibleDirectories.isEmpty()) {
@@ -177,16 +221,25 @@ final class BlazeConfigurationResolver {
                     logger.info(String.format("Unresolved header root %s", file.getAbsolutePath()));
                   }
                 }
+                ImmutableMap<File, VirtualFile> roots = ImmutableMap.copyOf(rootsMap);
+                if (!roots.isEmpty()) {
+                  rootsByPath.put(path, roots);
+                }
                 return null;
               }));
     }
     try {
       Futures.allAsList(futures).get();
-      ImmutableMap<File, VirtualFile> result = ImmutableMap.copyOf(rootsMap);
+      ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> result =
+          ImmutableMap.copyOf(rootsByPath);
       logger.info(
           String.format(
-              "CollectHeaderRoots: %s roots, (%s, %s) genroots with/without headers",
-              result.size(), genRootsWithHeaders.get(), genRootsWithoutHeaders.get()));
+              "CollectHeaderRoots: %s root paths (%s reused), (%s, %s) genroots with/without"
+                  + " headers",
+              result.size(),
+              reusedRoots.get(),
+              genRootsWithHeaders.get(),
+              genRootsWithoutHeaders.get()));
       return result;
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
@@ -198,6 +251,32 @@ final class BlazeConfigurationResolver {
     return ImmutableMap.of();
   }
 
+  private static ImmutableMap<File, VirtualFile> flattenHeaderRoots(
+      ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath) {
+    Map<File, VirtualFile> headerRoots = new HashMap<>();
+    headerRootsByPath.values().forEach(headerRoots::putAll);
+    return ImmutableMap.copyOf(headerRoots);
+  }
+
+  /** Returns the execution root paths whose header roots differ between the two results. */
+  private static ImmutableSet<ExecutionRootPath> changedHeaderRootPaths(
+      ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> oldHeaderRoots,
+      ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> newHeaderRoots) {
+    ImmutableSet.Builder<ExecutionRootPath> changed = ImmutableSet.builder();
+    for (Map.Entry<ExecutionRootPath, ImmutableMap<File, VirtualFile>> entry :
+        oldHeaderRoots.entrySet()) {
+      if (!entry.getValue().equals(newHeaderRoots.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    for (ExecutionRootPath path : newHeaderRoots.keySet()) {
+      if (!oldHeaderRoots.containsKey(path)) {
+        changed.add(path);
+      }
+    }
+    return changed.build();
+  }
+
   private static boolean genRootMayContainHeaders(VirtualFile directory) {
     int totalDirectoriesChecked = 0;
     Queue<VirtualFile> worklist = new ArrayDeque<>();
@@ -265,6 +344,8 @@ final class BlazeConfigurationResolver {
       ImmutableMap<File, VirtualFile> headerRoots,
       ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings,
       ExecutionRootPathResolver executionRootPathResolver,
+      BlazeConfigurationResolverResult reusableResult,
+      ImmutableSet<ExecutionRootPath> changedHeaderRootPaths,
       BlazeConfigurationResolverResult.Builder builder) {
     // Type specification needed to avoid incorrect type inference during command line build.
     Scope.push(
@@ -279,6 +360,9 @@ final class BlazeConfigurationResolver {
 
               ConcurrentMap<TargetKey, BlazeResolveConfigurationData> targetToData =
                   Maps.newConcurrentMap();
+              Set<TargetKey> reusedTargets = Sets.newConcurrentHashSet();
+              ConcurrentMap<ConfigurationDataInputs, BlazeResolveConfigurationData> sharedData =
+                  Maps.newConcurrentMap();
               List<ListenableFuture<?>> targetToDataFutures =
                   blazeProjectData.getTargetMap().targets().stream()
                       .filter(target -> target.getKind().getLanguageClass() == LanguageClass.C)
@@ -290,12 +374,24 @@ final class BlazeConfigurationResolver {
                               submit(
                                   () -> {
                                     BlazeResolveConfigurationData data =
-                                        createResolveConfiguration(
+                                        findReusableConfiguration(
                                             target,
                                             toolchainLookupMap,
-                                            headerRoots,
                                             compilerSettings,
-                                            executionRootPathResolver);
+                                            reusableResult,
+                                            changedHeaderRootPaths);
+                                    if (data != null) {
+                                      reusedTargets.add(target.getKey());
+                                    } else {
+                                      data =
+                                          createResolveConfiguration(
+                                              target,
+                                              toolchainLookupMap,
+                                              headerRoots,
+                                              compilerSettings,
+                                              executionRootPathResolver,
+                                              sharedData);
+                                    }
                                     if (data != null) {
                                       targetToData.put(target.getKey(), data);
                                     }
@@ -313,15 +409,69 @@ final class BlazeConfigurationResolver {
                 logger.error("Could not build C resolve configurations", e);
                 return;
               }
-              findEquivalenceClasses(context, project, blazeProjectData, targetToData, builder);
+              TargetMap targetMap = blazeProjectData.getTargetMap();
+              builder.setTargetData(
+                  ImmutableMap.copyOf(
+                      Maps.transformEntries(
+                          targetToData, (key, data) -> targetMap.get(key).getcIdeInfo())),
+                  ImmutableMap.copyOf(targetToData));
+              findEquivalenceClasses(
+                  context,
+                  project,
+                  blazeProjectData,
+                  targetToData,
+                  reusableResult,
+                  reusedTargets,
+                  builder);
             });
   }
 
+  /**
+   * Returns the configuration data computed for this target by the previous update, if its {@link
+   * CIdeInfo}, toolchain, compiler settings and header roots are all unchanged.
+   */
+  @Nullable
+  private static BlazeResolveConfigurationData findReusableConfiguration(
+      TargetIdeInfo target,
+      ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
+      ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettingsMap,
+      BlazeConfigurationResolverResult reusableResult,
+      ImmutableSet<ExecutionRootPath> changedHeaderRootPaths) {
+    TargetKey targetKey = target.getKey();
+    BlazeResolveConfigurationData oldData = reusableResult.targetToData.get(targetKey);
+    CIdeInfo cIdeInfo = target.getcIdeInfo();
+    if (oldData == null
+        || cIdeInfo == null
+        || !cIdeInfo.equals(reusableResult.targetToCIdeInfo.get(targetKey))) {
+      return null;
+    }
+    CToolchainIdeInfo toolchainIdeInfo = toolchainLookupMap.get(targetKey);
+    if (toolchainIdeInfo == null
+        || !toolchainIdeInfo.equals(oldData.toolchainIdeInfo)
+        || compilerSettingsMap.get(toolchainIdeInfo) != oldData.compilerSettings) {
+      return null;
+    }
+    if (!changedHeaderRootPaths.isEmpty()
+        && (cIdeInfo.getTransitiveIncludeDirectories().stream()
+                .anyMatch(changedHeaderRootPaths::contains)
+            || cIdeInfo.getTransitiveQuoteIncludeDirectories().stream()
+                .anyMatch(changedHeaderRootPaths::contains)
+            || cIdeInfo.getTransitiveSystemIncludeDirectories().stream()
+                .anyMatch(changedHeaderRootPaths::contains)
+            || toolchainIdeInfo.getBuiltInIncludeDirectories().stream()
+                .anyMatch(changedHeaderRootPaths::contains))) {
+      return null;
+    }
+    return oldData;
+  }
+
   private static void findEquivalenceClasses(
       BlazeContext context,
       Project project,
       BlazeProjectData blazeProjectData,
       Map<TargetKey, BlazeResolveConfigurationData> targetToData,
+      BlazeConfigurationResolverResult reusableResult,
+      Set<TargetKey> reusedTargets,
       BlazeConfigurationResolverResult.Builder builder) {
     Multimap<BlazeResolveConfigurationData, TargetKey> dataEquivalenceClasses =
         ArrayListMultimap.create();
@@ -333,10 +483,27 @@ final class BlazeConfigurationResolver {
 
     ImmutableMap.Builder<BlazeResolveConfigurationData, BlazeResolveConfiguration>
         dataToConfiguration = ImmutableMap.builder();
+    int reusedConfigurations = 0;
     for (Map.Entry<BlazeResolveConfigurationData, Collection<TargetKey>> entry :
         dataEquivalenceClasses.asMap().entrySet()) {
       BlazeResolveConfigurationData data = entry.getKey();
       Collection<TargetKey> targets = entry.getValue();
+      // Only equivalence classes whose members, data or source files changed need to be
+      // recomputed.
+      BlazeResolveConfiguration oldConfiguration = reusableResult.getConfiguration(data);
+      if (oldConfiguration != null
+          && reusedTargets.containsAll(targets)
+          && oldConfiguration.getTargets().size() == targets.size()
+          && ImmutableSet.copyOf(oldConfiguration.getTargets()).containsAll(targets)) {
+        BlazeResolveConfiguration configuration =
+            BlazeResolveConfiguration.reuseOrCreateForTargets(
+                project, blazeProjectData, data, targets, oldConfiguration);
+        dataToConfiguration.put(data, configuration);
+        if (configuration == oldConfiguration) {
+          reusedConfigurations++;
+        }
+        continue;
+      }
       dataToConfiguration.put(
           data,
           BlazeResolveConfiguration.createForTargets(project, blazeProjectData, data, targets));
@@ -344,8 +511,11 @@ final class BlazeConfigurationResolver {
     context.output(
         PrintOutput.log(
             String.format(
-                "%s unique C configurations, %s C targets",
-                dataEquivalenceClasses.keySet().size(), dataEquivalenceClasses.size())));
+                "%s unique C configurations (%s reused), %s C targets (%s reused)",
+                dataEquivalenceClasses.keySet().size(),
+                reusedConfigurations,
+                dataEquivalenceClasses.size(),
+                reusedTargets.size())));
     builder.setUniqueConfigurations(dataToConfiguration.build());
   }
 
@@ -359,7 +529,8 @@ final class BlazeConfigurationResolver {
       ImmutableMap<TargetKey, CToolchainIdeInfo> toolchainLookupMap,
       ImmutableMap<File, VirtualFile> headerRoots,
       ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettingsMap,
-      ExecutionRootPathResolver executionRootPathResolver) {
+      ExecutionRootPathResolver executionRootPathResolver,
+      ConcurrentMap<ConfigurationDataInputs, BlazeResolveConfigurationData> sharedData) {
     TargetKey targetKey = target.getKey();
     CIdeInfo cIdeInfo = target.getcIdeInfo();
     if (cIdeInfo == null) {
@@ -373,12 +544,74 @@ final class BlazeConfigurationResolver {
     if (compilerSettings == null) {
       return null;
     }
-    return BlazeResolveConfigurationData.create(
-        project,
-        executionRootPathResolver,
-        headerRoots,
-        cIdeInfo,
-        toolchainIdeInfo,
-        compilerSettings);
+    // Targets with the same (interned) inputs share a single configuration data instance, rather
+    // than each building its own copy of the header search roots.
+    return sharedData.computeIfAbsent(
+        new ConfigurationDataInputs(cIdeInfo, toolchainIdeInfo, compilerSettings),
+        inputs ->
+            BlazeResolveConfigurationData.create(
+                project,
+                executionRootPathResolver,
+                headerRoots,
+                cIdeInfo,
+                toolchainIdeInfo,
+                compilerSettings));
+  }
+
+  /**
+   * The inputs to {@link BlazeResolveConfigurationData#create}. The transitive lists are interned
+   * by {@link CIdeInfo}, so are compared by identity to keep lookups cheap.
+   */
+  private static final class ConfigurationDataInputs {
+    private final ImmutableList<ExecutionRootPath> transitiveIncludeDirectories;
+    private final ImmutableList<ExecutionRootPath> transitiveQuoteIncludeDirectories;
+    private final ImmutableList<ExecutionRootPath> transitiveSystemIncludeDirectories;
+    private final ImmutableList<String> transitiveDefines;
+    private final ImmutableList<String> localCopts;
+    private final CToolchainIdeInfo toolchainIdeInfo;
+    private final BlazeCompilerSettings compilerSettings;
+
+    ConfigurationDataInputs(
+        CIdeInfo cIdeInfo,
+        CToolchainIdeInfo toolchainIdeInfo,
+        BlazeCompilerSettings compilerSettings) {
+      this.transitiveIncludeDirectories = cIdeInfo.getTransitiveIncludeDirectories();
+      this.transitiveQuoteIncludeDirectories = cIdeInfo.getTransitiveQuoteIncludeDirectories();
+      this.transitiveSystemIncludeDirectories = cIdeInfo.getTransitiveSystemIncludeDirectories();
+      this.transitiveDefines = cIdeInfo.getTransitiveDefines();
+      this.localCopts = cIdeInfo.getLocalCopts();
+      this.toolchainIdeInfo = toolchainIdeInfo;
+      this.compilerSettings = compilerSettings;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ConfigurationDataInputs)) {
+        return false;
+      }
+      ConfigurationDataInputs other = (ConfigurationDataInputs) o;
+      return transitiveIncludeDirectories == other.transitiveIncludeDirectories
+          && transitiveQuoteIncludeDirectories == other.transitiveQuoteIncludeDirectories
+          && transitiveSystemIncludeDirectories == other.transitiveSystemIncludeDirectories
+          && transitiveDefines == other.transitiveDefines
+          && localCopts.equals(other.localCopts)
+          && toolchainIdeInfo == other.toolchainIdeInfo
+          && compilerSettings == other.compilerSettings;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(
+          System.identityHashCode(transitiveIncludeDirectories),
+          System.identityHashCode(transitiveQuoteIncludeDirectories),
+          System.identityHashCode(transitiveSystemIncludeDirectories),
+          System.identityHashCode(transitiveDefines),
+          localCopts,
+          System.identityHashCode(toolchainIdeInfo),
+          System.identityHashCode(compilerSettings));
+    }
   }
 }
@@ -17,8 +17,14 @@ package com.google.idea.blaze.cpp;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.idea.blaze.base.ideinfo.CIdeInfo;
 import com.google.idea.blaze.base.ideinfo.CToolchainIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
+import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
+import com.intellij.openapi.vfs.VirtualFile;
+import java.io.File;
 import java.util.Map;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -31,12 +37,26 @@ final class BlazeConfigurationResolverResult {
       uniqueResolveConfigurations;
   final ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings;
 
+  // Intermediate results, reused by the next incremental update.
+  @Nullable final File executionRoot;
+  final ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath;
+  final ImmutableMap<TargetKey, CIdeInfo> targetToCIdeInfo;
+  final ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData;
+
   private BlazeConfigurationResolverResult(
       ImmutableMap<BlazeResolveConfigurationData, BlazeResolveConfiguration>
           uniqueResolveConfigurations,
-      ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings) {
+      ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings,
+      @Nullable File executionRoot,
+      ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath,
+      ImmutableMap<TargetKey, CIdeInfo> targetToCIdeInfo,
+      ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData) {
     this.uniqueResolveConfigurations = uniqueResolveConfigurations;
     this.compilerSettings = compilerSettings;
+    this.executionRoot = executionRoot;
+    this.headerRootsByPath = headerRootsByPath;
+    this.targetToCIdeInfo = targetToCIdeInfo;
+    this.targetToData = targetToData;
   }
 
   static Builder builder() {
@@ -51,6 +71,11 @@ final class BlazeConfigurationResolverResult {
     return uniqueResolveConfigurations.values().asList();
   }
 
+  @Nullable
+  BlazeResolveConfiguration getConfiguration(BlazeResolveConfigurationData data) {
+    return uniqueResolveConfigurations.get(data);
+  }
+
   boolean isEquivalentConfigurations(BlazeConfigurationResolverResult other) {
     if (!uniqueResolveConfigurations.keySet().equals(other.uniqueResolveConfigurations.keySet())) {
       return false;
@@ -71,11 +96,22 @@ final class BlazeConfigurationResolverResult {
     ImmutableMap<BlazeResolveConfigurationData, BlazeResolveConfiguration> uniqueConfigurations =
         ImmutableMap.of();
     ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings = ImmutableMap.of();
+    @Nullable File executionRoot;
+    ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath =
+        ImmutableMap.of();
+    ImmutableMap<TargetKey, CIdeInfo> targetToCIdeInfo = ImmutableMap.of();
+    ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData = ImmutableMap.of();
 
     public Builder() {}
 
     BlazeConfigurationResolverResult build() {
-      return new BlazeConfigurationResolverResult(uniqueConfigurations, compilerSettings);
+      return new BlazeConfigurationResolverResult(
+          uniqueConfigurations,
+          compilerSettings,
+          executionRoot,
+          headerRootsByPath,
+          targetToCIdeInfo,
+          targetToData);
     }
 
     void setUniqueConfigurations(
@@ -88,5 +124,21 @@ final class BlazeConfigurationResolverResult {
         ImmutableMap<CToolchainIdeInfo, BlazeCompilerSettings> compilerSettings) {
       this.compilerSettings = compilerSettings;
     }
+
+    void setExecutionRoot(File executionRoot) {
+      this.executionRoot = executionRoot;
+    }
+
+    void setHeaderRootsByPath(
+        ImmutableMap<ExecutionRootPath, ImmutableMap<File, VirtualFile>> headerRootsByPath) {
+      this.headerRootsByPath = headerRootsByPath;
+    }
+
+    void setTargetData(
+        ImmutableMap<TargetKey, CIdeInfo> targetToCIdeInfo,
+        ImmutableMap<TargetKey, BlazeResolveConfigurationData> targetToData) {
+      this.targetToCIdeInfo = targetToCIdeInfo;
+      this.targetToData = targetToData;
+    }
   }
 }
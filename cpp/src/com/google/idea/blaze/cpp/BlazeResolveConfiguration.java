@@ -81,6 +81,31 @@ final class BlazeResolveConfiguration {
         computeTargetToSources(blazeProjectData, targets));
   }
 
+  /**
+   * Returns {@code oldConfiguration} if the given targets' sources still resolve to the same valid
+   * files, otherwise a new configuration. Sources are always re-resolved, since they may have been
+   * created or deleted since the old configuration was computed.
+   */
+  static BlazeResolveConfiguration reuseOrCreateForTargets(
+      Project project,
+      BlazeProjectData blazeProjectData,
+      BlazeResolveConfigurationData configurationData,
+      Collection<TargetKey> targets,
+      BlazeResolveConfiguration oldConfiguration) {
+    ImmutableMap<TargetKey, ImmutableList<VirtualFile>> targetSources =
+        computeTargetToSources(blazeProjectData, targets);
+    if (targetSources.equals(oldConfiguration.targetSources)
+        && targetSources.values().stream().flatMap(List::stream).allMatch(VirtualFile::isValid)) {
+      return oldConfiguration;
+    }
+    return new BlazeResolveConfiguration(
+        project,
+        configurationData,
+        computeDisplayName(targets),
+        ImmutableList.copyOf(targets),
+        targetSources);
+  }
+
   Collection<TargetKey> getTargets() {
     return targets;
   }
@@ -40,7 +40,7 @@ final class BlazeResolveConfigurationData {
   final ImmutableList<HeadersSearchRoot> projectIncludeRoots;
   final ImmutableCollection<String> defines;
   final ImmutableList<String> targetCopts;
-  private final CToolchainIdeInfo toolchainIdeInfo;
+  final CToolchainIdeInfo toolchainIdeInfo;
 
   static BlazeResolveConfigurationData create(
       Project project,
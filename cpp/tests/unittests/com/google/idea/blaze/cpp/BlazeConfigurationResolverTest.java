@@ -29,6 +29,7 @@ import com.google.idea.blaze.base.ideinfo.ArtifactLocation;
 import com.google.idea.blaze.base.ideinfo.CIdeInfo;
 import com.google.idea.blaze.base.ideinfo.CToolchainIdeInfo;
 import com.google.idea.blaze.base.ideinfo.TargetIdeInfo;
+import com.google.idea.blaze.base.ideinfo.TargetKey;
 import com.google.idea.blaze.base.ideinfo.TargetMap;
 import com.google.idea.blaze.base.ideinfo.TargetMapBuilder;
 import com.google.idea.blaze.base.io.VirtualFileSystemProvider;
@@ -37,6 +38,7 @@ import com.google.idea.blaze.base.model.MockBlazeProjectDataBuilder;
 import com.google.idea.blaze.base.model.primitives.ExecutionRootPath;
 import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.Kind.Provider;
+import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.TargetExpression;
 import com.google.idea.blaze.base.model.primitives.WorkspacePath;
 import com.google.idea.blaze.base.model.primitives.WorkspaceRoot;
@@ -351,6 +353,26 @@ public class BlazeConfigurationResolverTest extends BlazeTestCase {
             "//foo/baz:library");
   }
 
+  @Test
+  public void identicalCompilerInputs_shareConfigurationData() {
+    ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:*"));
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(createCcToolchain())
+            .addTarget(createCcTargetWithTransitiveDefines("//foo/bar:one", ImmutableList.of()))
+            .addTarget(createCcTargetWithTransitiveDefines("//foo/bar:two", ImmutableList.of()))
+            .addTarget(
+                createCcTargetWithTransitiveDefines(
+                    "//foo/bar:three", ImmutableList.of("-DSOME_DEFINE=1")))
+            .build();
+
+    assertThatResolving(projectView, targetMap)
+        .producesConfigurationsFor("//foo/bar:one and 1 other target(s)", "//foo/bar:three");
+    BlazeResolveConfigurationData one = getConfigurationData("//foo/bar:one");
+    assertThat(getConfigurationData("//foo/bar:two")).isSameAs(one);
+    assertThat(getConfigurationData("//foo/bar:three")).isNotSameAs(one);
+  }
+
   @Test
   public void firstResolve_testNotIncremental() {
     ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:binary"));
@@ -390,6 +412,47 @@ public class BlazeConfigurationResolverTest extends BlazeTestCase {
     assertThat(resolverResult.isEquivalentConfigurations(oldResult)).isTrue();
   }
 
+  @Test
+  public void changedTarget_onlyChangedConfigurationRecomputed() {
+    ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:*"));
+    TargetIdeInfo.Builder binary =
+        createCcTarget(
+            "//foo/bar:binary",
+            CppBlazeRules.RuleTypes.CC_BINARY.getKind(),
+            ImmutableList.of(src("foo/bar/binary.cc")));
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(createCcToolchain())
+            .addTarget(binary)
+            .addTarget(
+                createCcTarget(
+                    "//foo/bar:library",
+                    CppBlazeRules.RuleTypes.CC_LIBRARY.getKind(),
+                    ImmutableList.of(src("foo/bar/library.cc")),
+                    ImmutableList.of("-DOTHER=1")))
+            .build();
+    assertThatResolving(projectView, targetMap)
+        .producesConfigurationsFor("//foo/bar:binary", "//foo/bar:library");
+    BlazeResolveConfiguration binaryConfiguration = getConfiguration("//foo/bar:binary");
+
+    TargetMap targetMap2 =
+        TargetMapBuilder.builder()
+            .addTarget(createCcToolchain())
+            .addTarget(binary)
+            .addTarget(
+                createCcTarget(
+                    "//foo/bar:library",
+                    CppBlazeRules.RuleTypes.CC_LIBRARY.getKind(),
+                    ImmutableList.of(src("foo/bar/library.cc")),
+                    ImmutableList.of("-DOTHER=2")))
+            .build();
+    assertThatResolving(projectView, targetMap2)
+        .producesConfigurationsFor("//foo/bar:binary", "//foo/bar:library");
+    assertThat(getConfiguration("//foo/bar:binary")).isSameAs(binaryConfiguration);
+    assertThat(getConfiguration("//foo/bar:library").getDisplayName(false))
+        .isEqualTo("//foo/bar:library");
+  }
+
   @Test
   public void identicalTargets_addedSources_testNotIncremental() {
     ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:*"));
@@ -422,6 +485,45 @@ public class BlazeConfigurationResolverTest extends BlazeTestCase {
     assertThat(resolverResult.isEquivalentConfigurations(oldResult)).isFalse();
   }
 
+  @Test
+  public void identicalTargets_sourceDeletedAndRecreated_sourcesReresolved() {
+    ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:binary"));
+    TargetMap targetMap =
+        TargetMapBuilder.builder()
+            .addTarget(createCcToolchain())
+            .addTarget(
+                createCcTarget(
+                    "//foo/bar:binary",
+                    CppBlazeRules.RuleTypes.CC_BINARY.getKind(),
+                    ImmutableList.of(src("foo/bar/binary.cc"))))
+            .build();
+    TargetKey binary = TargetKey.forPlainTarget(Label.create("//foo/bar:binary"));
+
+    // the source doesn't exist yet
+    assertThatResolving(projectView, targetMap).producesConfigurationsFor("//foo/bar:binary");
+    assertThat(getConfiguration("//foo/bar:binary").getSources(binary)).isEmpty();
+
+    VirtualFile source = createVirtualFile("/root/foo/bar/binary.cc");
+    assertThatResolving(projectView, targetMap).producesConfigurationsFor("//foo/bar:binary");
+    BlazeResolveConfiguration configuration = getConfiguration("//foo/bar:binary");
+    assertThat(configuration.getSources(binary)).containsExactly(source);
+
+    // unchanged sources: the configuration is reused
+    assertThatResolving(projectView, targetMap).producesConfigurationsFor("//foo/bar:binary");
+    assertThat(getConfiguration("//foo/bar:binary")).isSameAs(configuration);
+
+    // the source is deleted, then recreated
+    when(source.isValid()).thenReturn(false);
+    when(mockFileSystem.findFileByIoFile(new File("/root/foo/bar/binary.cc"))).thenReturn(null);
+    assertThatResolving(projectView, targetMap).producesConfigurationsFor("//foo/bar:binary");
+    assertThat(getConfiguration("//foo/bar:binary").getSources(binary)).isEmpty();
+
+    VirtualFile recreated = createVirtualFile("/root/foo/bar/binary.cc");
+    assertThatResolving(projectView, targetMap).producesConfigurationsFor("//foo/bar:binary");
+    assertThat(getConfiguration("//foo/bar:binary").getSources(binary))
+        .containsExactly(recreated);
+  }
+
   @Test
   public void newTarget_testIncrementalUpdatePartlyReused() {
     ProjectView projectView = projectView(directories("foo/bar"), targets("//foo/bar:*"));
@@ -587,6 +689,22 @@ public class BlazeConfigurationResolverTest extends BlazeTestCase {
     return targetInfo.setCInfo(CIdeInfo.builder().addSources(sources).addLocalCopts(copts));
   }
 
+  /** Creates a C++ library whose transitive defines are identical to other such targets. */
+  private static TargetIdeInfo.Builder createCcTargetWithTransitiveDefines(
+      String label, ImmutableList<String> copts) {
+    ArtifactLocation source = src("foo/bar/" + Label.create(label).targetName() + ".cc");
+    return TargetIdeInfo.builder()
+        .setLabel(label)
+        .setKind(CppBlazeRules.RuleTypes.CC_LIBRARY.getKind())
+        .addDependency("//:toolchain")
+        .addSource(source)
+        .setCInfo(
+            CIdeInfo.builder()
+                .addSource(source)
+                .addLocalCopts(copts)
+                .addTransitiveDefines(ImmutableList.of("NDEBUG", "USE_FEATURE=1")));
+  }
+
   private static TargetIdeInfo.Builder createCcToolchain() {
     return TargetIdeInfo.builder()
         .setLabel("//:toolchain")
@@ -648,6 +766,17 @@ public class BlazeConfigurationResolverTest extends BlazeTestCase {
             resolverResult);
   }
 
+  private BlazeResolveConfigurationData getConfigurationData(String label) {
+    return resolverResult.targetToData.get(TargetKey.forPlainTarget(Label.create(label)));
+  }
+
+  private BlazeResolveConfiguration getConfiguration(String displayName) {
+    return resolverResult.getAllConfigurations().stream()
+        .filter(configuration -> configuration.getDisplayName(false).equals(displayName))
+        .findFirst()
+        .orElseThrow(() -> new AssertionError("No configuration for " + displayName));
+  }
+
   private Subject assertThatResolving(ProjectView projectView, TargetMap targetMap) {
     computeResolverResult(projectView, targetMap);
     errorCollector.assertNoIssues();
@@ -36,7 +36,7 @@ import com.google.idea.blaze.base.model.primitives.Kind;
 import com.google.idea.blaze.base.model.primitives.Label;
 import com.google.idea.blaze.base.model.primitives.RuleType;
 import com.google.idea.blaze.base.sync.workspace.WorkspaceHelper;
-import com.google.idea.blaze.base.targetmaps.ReverseDependencyMap;
+import com.google.idea.blaze.base.targetmaps.DependencyGraph;
 import com.google.idea.blaze.golang.GoBlazeRules.RuleTypes;
 import com.google.idea.sdkcompat.golang.GoPackageCompatAdapter;
 import com.intellij.openapi.module.Module;
@@ -108,7 +108,7 @@ public class BlazeGoPackage extends GoPackageCompatAdapter {
                 .getKind()) {
       return targetKey;
     }
-    return ReverseDependencyMap.get(project).get(targetKey).stream()
+    return DependencyGraph.get(project).getReverseDependencies(targetKey).stream()
         .map(targetMap::get)
         .filter(Objects::nonNull)
         .filter(t -> t.getKind() == RuleTypes.GO_PROTO_LIBRARY.getKind())
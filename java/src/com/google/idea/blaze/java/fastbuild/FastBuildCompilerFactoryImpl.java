@@ -20,6 +20,8 @@ import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.Reflection;
@@ -39,6 +41,7 @@ import com.intellij.ide.plugins.IdeaPluginDescriptor;
 import com.intellij.ide.plugins.PluginManager;
 import com.intellij.openapi.diagnostic.Logger;
 import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
@@ -53,6 +56,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Supplier;
+import javax.annotation.Nullable;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
@@ -74,6 +78,11 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
   private final Supplier<Boolean> useNewCompiler;
   private final Supplier<File> fastBuildJavacJarSupplier;
 
+  // The most recently loaded compiler, kept warm across incremental compiles. Replaced whenever the
+  // toolchain's javac jar (or the fast build javac jar) changes. Guarded by 'this', as are the
+  // compilers' in-flight compile counts.
+  @Nullable private CachedJavac cachedJavac;
+
   private FastBuildCompilerFactoryImpl(
       BlazeProjectDataManager projectDataManager,
       Supplier<Boolean> useNewCompiler,
@@ -105,8 +114,123 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
     BlazeProjectData projectData = projectDataManager.getBlazeProjectData();
     checkState(projectData != null, "not a blaze project");
     File javacJar = projectData.getArtifactLocationDecoder().decode(javaToolchain.javacJar());
-    Javac javac = useNewCompiler.get() ? createNewCompiler(javacJar) : createOldCompiler(javacJar);
-    return new JavacRunner(javac, javaToolchain.sourceVersion(), javaToolchain.targetVersion());
+    // load the compiler up front, so any problems loading it are reported here
+    getJavac(javacJar);
+    return new JavacRunner(
+        this, javacJar, javaToolchain.sourceVersion(), javaToolchain.targetVersion());
+  }
+
+  /**
+   * Returns the compiler for the given javac jar, marking it in use until the matching call to
+   * {@link #releaseJavac}. A replaced compiler's class loader is only closed once no compiles are
+   * using it.
+   */
+  @VisibleForTesting
+  synchronized CachedJavac acquireJavac(File javacJar) throws FastBuildException {
+    CachedJavac javac = getJavac(javacJar);
+    javac.inFlightCompiles++;
+    return javac;
+  }
+
+  @VisibleForTesting
+  synchronized void releaseJavac(CachedJavac javac) {
+    javac.inFlightCompiles--;
+    if (javac.inFlightCompiles == 0 && javac != cachedJavac) {
+      javac.close();
+    }
+  }
+
+  /**
+   * Returns a compiler loaded from the given javac jar, reusing the previous one if the jars are
+   * unchanged. Loading javac in a fresh classloader (and running it cold) dominates the time of
+   * small incremental compiles.
+   */
+  private synchronized CachedJavac getJavac(File javacJar) throws FastBuildException {
+    File fastBuildJavacJar = useNewCompiler.get() ? fastBuildJavacJarSupplier.get() : null;
+    JavacKey key = JavacKey.create(javacJar, fastBuildJavacJar);
+    if (cachedJavac == null || !cachedJavac.key.equals(key)) {
+      if (cachedJavac != null) {
+        logger.info("Java toolchain changed, reloading javac from " + javacJar);
+        // otherwise, the last in-flight compile closes it
+        if (cachedJavac.inFlightCompiles == 0) {
+          cachedJavac.close();
+        }
+        cachedJavac = null;
+      }
+      URLClassLoader classLoader =
+          fastBuildJavacJar != null
+              ? createClassLoader(javacJar, fastBuildJavacJar)
+              : createClassLoader(javacJar);
+      try {
+        Javac javac =
+            fastBuildJavacJar != null
+                ? createNewCompiler(classLoader)
+                : createOldCompiler(classLoader);
+        cachedJavac = new CachedJavac(key, javac, classLoader);
+      } catch (FastBuildException | RuntimeException e) {
+        closeClassLoader(classLoader);
+        throw e;
+      }
+    }
+    return cachedJavac;
+  }
+
+  /** Returns the class loader of the currently loaded compiler, if any. */
+  @VisibleForTesting
+  @Nullable
+  synchronized ClassLoader getJavacClassLoader() {
+    return cachedJavac != null ? cachedJavac.classLoader : null;
+  }
+
+  /** Identifies the jars a compiler was loaded from, and the state of those jars on disk. */
+  @AutoValue
+  abstract static class JavacKey {
+    abstract File javacJar();
+
+    abstract long javacJarLastModified();
+
+    abstract long javacJarLength();
+
+    @Nullable
+    abstract File fastBuildJavacJar();
+
+    abstract long fastBuildJavacJarLastModified();
+
+    static JavacKey create(File javacJar, @Nullable File fastBuildJavacJar) {
+      return new AutoValue_FastBuildCompilerFactoryImpl_JavacKey(
+          javacJar,
+          javacJar.lastModified(),
+          javacJar.length(),
+          fastBuildJavacJar,
+          fastBuildJavacJar != null ? fastBuildJavacJar.lastModified() : 0);
+    }
+  }
+
+  @VisibleForTesting
+  static class CachedJavac {
+    private final JavacKey key;
+    private final Javac javac;
+    private final URLClassLoader classLoader;
+    private int inFlightCompiles = 0;
+
+    private CachedJavac(JavacKey key, Javac javac, URLClassLoader classLoader) {
+      this.key = key;
+      this.javac = javac;
+      this.classLoader = classLoader;
+    }
+
+    /** Releases the jars held open by the compiler's class loader. */
+    private void close() {
+      closeClassLoader(classLoader);
+    }
+  }
+
+  private static void closeClassLoader(URLClassLoader classLoader) {
+    try {
+      classLoader.close();
+    } catch (IOException e) {
+      logger.warn("Failed to close javac class loader", e);
+    }
   }
 
   private JavaToolchainInfo getJavaToolchain(Label label, Map<Label, FastBuildBlazeData> blazeData)
@@ -141,9 +265,9 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         throws FastBuildException;
   }
 
-  private Javac createOldCompiler(File javacJar) throws FastBuildException {
+  private Javac createOldCompiler(ClassLoader classLoader) throws FastBuildException {
     try {
-      Class<?> javacClass = loadJavacClass(JAVAC_CLASS, javacJar);
+      Class<?> javacClass = classLoader.loadClass(JAVAC_CLASS);
       Object javacObject = javacClass.getDeclaredConstructor().newInstance();
       Method compileMethod = javacClass.getMethod("compile", String[].class, PrintWriter.class);
       return (context, javacArgs, files, writer) -> {
@@ -160,15 +284,14 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
           throw new FastBuildException(e);
         }
       };
-    } catch (MalformedURLException | ReflectiveOperationException e) {
+    } catch (ReflectiveOperationException e) {
       throw new FastBuildException(e);
     }
   }
 
-  private Javac createNewCompiler(File javacJar) throws FastBuildException {
+  private Javac createNewCompiler(ClassLoader classLoader) throws FastBuildException {
     try {
-      Class<?> javacClass =
-          loadJavacClass(FAST_BUILD_JAVAC_CLASS, javacJar, fastBuildJavacJarSupplier.get());
+      Class<?> javacClass = classLoader.loadClass(FAST_BUILD_JAVAC_CLASS);
 
       Constructor<?> createMethod = javacClass.getConstructor();
       Object javacInstance = createMethod.newInstance();
@@ -178,7 +301,7 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
               FastBuildJavac.class, new MatchingMethodInvocationHandler(javacClass, javacInstance));
       return (context, javacArgs, files, writer) ->
           javaCompiler.compile(javacArgs, files, new ProblemsViewDiagnosticListener(context));
-    } catch (MalformedURLException | ReflectiveOperationException e) {
+    } catch (ReflectiveOperationException e) {
       throw new FastBuildException(e);
     }
   }
@@ -192,24 +315,32 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
         .toFile();
   }
 
-  private Class<?> loadJavacClass(String javaCompilerClass, File... jars)
-      throws MalformedURLException, ClassNotFoundException {
+  private static URLClassLoader createClassLoader(File... jars) throws FastBuildException {
     URL[] urls = new URL[jars.length];
-    for (int i = 0; i < jars.length; ++i) {
-      urls[i] = jars[i].toURI().toURL();
+    try {
+      for (int i = 0; i < jars.length; ++i) {
+        urls[i] = jars[i].toURI().toURL();
+      }
+    } catch (MalformedURLException e) {
+      throw new FastBuildException(e);
     }
-    URLClassLoader urlClassLoader = new URLClassLoader(urls, /* parent */ null);
-    return urlClassLoader.loadClass(javaCompilerClass);
+    return new URLClassLoader(urls, /* parent */ null);
   }
 
   private static class JavacRunner implements FastBuildCompiler {
 
-    private final Javac javac;
+    private final FastBuildCompilerFactoryImpl compilerFactory;
+    private final File javacJar;
     private final String sourceVersion;
     private final String targetVersion;
 
-    private JavacRunner(Javac javac, String sourceVersion, String targetVersion) {
-      this.javac = javac;
+    private JavacRunner(
+        FastBuildCompilerFactoryImpl compilerFactory,
+        File javacJar,
+        String sourceVersion,
+        String targetVersion) {
+      this.compilerFactory = compilerFactory;
+      this.javacJar = javacJar;
       this.sourceVersion = sourceVersion;
       this.targetVersion = targetVersion;
     }
@@ -249,8 +380,15 @@ final class FastBuildCompilerFactoryImpl implements FastBuildCompilerFactory {
       writeCompilationStartedMessage(context, instructions);
       logger.info("Running javac with options: " + args);
       Stopwatch timer = Stopwatch.createStarted();
-      boolean success =
-          javac.compile(context, args, instructions.filesToCompile(), instructions.outputWriter());
+      CachedJavac javac = compilerFactory.acquireJavac(javacJar);
+      boolean success;
+      try {
+        success =
+            javac.javac.compile(
+                context, args, instructions.filesToCompile(), instructions.outputWriter());
+      } finally {
+        compilerFactory.releaseJavac(javac);
+      }
       timer.stop();
       writeCompilationFinishedMessage(context, instructions, success, timer);
       if (!success) {
@@ -66,6 +66,7 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.projectRoots.Sdk;
 import com.intellij.openapi.roots.LanguageLevelProjectExtension;
 import com.intellij.openapi.roots.ex.ProjectRootManagerEx;
+import com.intellij.openapi.util.Key;
 import com.intellij.pom.java.LanguageLevel;
 import java.util.Collection;
 import java.util.Set;
@@ -73,6 +74,9 @@ import javax.annotation.Nullable;
 
 /** Sync support for Java. */
 public class BlazeJavaSyncPlugin implements BlazeSyncPlugin {
+  private static final Key<Glob.GlobSet> EXCLUDED_LIBRARY_GLOBS =
+      Key.create("blaze.excluded.library.globs");
+
   private final JdepsFileReader jdepsFileReader = new JdepsFileReader();
 
   @Override
@@ -159,14 +163,19 @@ public class BlazeJavaSyncPlugin implements BlazeSyncPlugin {
               return blazeJavaWorkspaceImporter.importWorkspace(childContext);
             });
     Glob.GlobSet excludedLibraries =
-        new Glob.GlobSet(
-            ImmutableList.<Glob>builder()
-                .addAll(projectViewSet.listItems(ExcludeLibrarySection.KEY))
-                .addAll(projectViewSet.listItems(ExcludedLibrarySection.KEY))
-                .build());
+        projectViewSet.getCachedValue(
+            EXCLUDED_LIBRARY_GLOBS, BlazeJavaSyncPlugin::getExcludedLibraryGlobs);
     syncStateBuilder.put(new BlazeJavaSyncData(importResult, excludedLibraries));
   }
 
+  private static Glob.GlobSet getExcludedLibraryGlobs(ProjectViewSet projectViewSet) {
+    return new Glob.GlobSet(
+        ImmutableList.<Glob>builder()
+            .addAll(projectViewSet.listItems(ExcludeLibrarySection.KEY))
+            .addAll(projectViewSet.listItems(ExcludedLibrarySection.KEY))
+            .build());
+  }
+
   @Override
   public void updateProjectSdk(
       Project project,
@@ -17,6 +17,7 @@ package com.google.idea.blaze.java.sync.source;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.idea.blaze.base.io.InputStreamProvider;
 import com.google.idea.blaze.base.scope.BlazeContext;
 import com.google.idea.blaze.base.scope.output.IssueOutput;
@@ -29,8 +30,8 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.Reader;
+import java.util.function.IntPredicate;
 import javax.annotation.Nullable;
 
 /** Parse package string directly from java source */
@@ -42,8 +43,8 @@ public class JavaSourcePackageReader extends JavaPackageReader {
 
   private static final Logger logger = Logger.getInstance(SourceDirectoryCalculator.class);
 
-  // Package declaration of java-like languages.
-  private static final Pattern PACKAGE_PATTERN = Pattern.compile("^\\s*package\\s+([\\w\\.]+)");
+  // Files are only read until the package clause; give up if there's no package by this point.
+  private static final int MAX_PREFIX_CHARS = 1 << 16;
 
   @Override
   @Nullable
@@ -57,14 +58,10 @@ public class JavaSourcePackageReader extends JavaPackageReader {
     InputStreamProvider inputStreamProvider = InputStreamProvider.getInstance();
     File sourceFile = artifactLocationDecoder.decode(sourceArtifact.artifactLocation);
     try (InputStream javaInputStream = inputStreamProvider.getFile(sourceFile)) {
-      BufferedReader javaReader = new BufferedReader(new InputStreamReader(javaInputStream, UTF_8));
-      String javaLine;
-
-      while ((javaLine = javaReader.readLine()) != null) {
-        Matcher packageMatch = PACKAGE_PATTERN.matcher(javaLine);
-        if (packageMatch.find()) {
-          return packageMatch.group(1);
-        }
+      Reader javaReader = new BufferedReader(new InputStreamReader(javaInputStream, UTF_8));
+      String packageString = new PackageLexer(javaReader).readPackage();
+      if (packageString != null) {
+        return packageString;
       }
       IssueOutput.warn("No package name string found in java source file: " + sourceFile)
           .inFile(sourceFile)
@@ -80,4 +77,122 @@ public class JavaSourcePackageReader extends JavaPackageReader {
       return null;
     }
   }
+
+  /**
+   * Reads the package clause of a java-like source file, skipping any preceding whitespace,
+   * comments and annotations. Stops at the first other token, so the rest of the file is never
+   * read.
+   */
+  @VisibleForTesting
+  static class PackageLexer {
+    private final Reader reader;
+    private int next;
+    private int charsRead = 0;
+
+    PackageLexer(Reader reader) throws IOException {
+      this.reader = reader;
+      this.next = read();
+    }
+
+    @Nullable
+    String readPackage() throws IOException {
+      while (true) {
+        skipWhitespaceAndComments();
+        if (next == '@') {
+          advance();
+          skipAnnotation();
+          continue;
+        }
+        String word = readWhile(Character::isJavaIdentifierPart);
+        if (!word.equals("package")) {
+          return null;
+        }
+        skipWhitespaceAndComments();
+        String packageString = readWhile(c -> Character.isJavaIdentifierPart(c) || c == '.');
+        return packageString.isEmpty() ? null : packageString;
+      }
+    }
+
+    /** Skips an annotation name (e.g. 'file:JvmName'), and any parenthesized arguments. */
+    private void skipAnnotation() throws IOException {
+      readWhile(c -> Character.isJavaIdentifierPart(c) || c == '.' || c == ':');
+      skipWhitespaceAndComments();
+      if (next != '(') {
+        return;
+      }
+      int depth = 0;
+      while (next != -1) {
+        if (next == '"' || next == '\'') {
+          skipQuoted(next);
+          continue;
+        }
+        if (next == '(') {
+          depth++;
+        } else if (next == ')' && --depth == 0) {
+          advance();
+          return;
+        }
+        advance();
+      }
+    }
+
+    private void skipQuoted(int quote) throws IOException {
+      advance();
+      while (next != -1 && next != quote) {
+        if (next == '\\') {
+          advance();
+        }
+        advance();
+      }
+      advance();
+    }
+
+    private void skipWhitespaceAndComments() throws IOException {
+      while (true) {
+        if (Character.isWhitespace(next) || next == '\uFEFF') {
+          advance();
+        } else if (next == '/') {
+          advance();
+          if (next == '/') {
+            while (next != -1 && next != '\n') {
+              advance();
+            }
+          } else if (next == '*') {
+            advance();
+            int previous = 0;
+            while (next != -1 && !(previous == '*' && next == '/')) {
+              previous = next;
+              advance();
+            }
+            advance();
+          } else {
+            // a lone '/' can't precede a package clause
+            next = -1;
+            return;
+          }
+        } else {
+          return;
+        }
+      }
+    }
+
+    private String readWhile(IntPredicate predicate) throws IOException {
+      StringBuilder builder = new StringBuilder();
+      while (next != -1 && predicate.test(next)) {
+        builder.append((char) next);
+        advance();
+      }
+      return builder.toString();
+    }
+
+    private void advance() throws IOException {
+      if (next != -1) {
+        next = read();
+      }
+    }
+
+    private int read() throws IOException {
+      return charsRead++ < MAX_PREFIX_CHARS ? reader.read() : -1;
+    }
+  }
 }
@@ -75,7 +75,7 @@ public final class SourceDirectoryCalculator {
 
   private static final JavaPackageReader generatedFileJavaPackageReader =
       new FilePathJavaPackageReader();
-  private final ListeningExecutorService executorService = MoreExecutors.newDirectExecutorService();
+  // shared by the package manifest reader and per-source package reads, bounding the IO in flight
   private final ListeningExecutorService packageReaderExecutorService =
       MoreExecutors.listeningDecorator(new TransientExecutor(16));
 
@@ -149,18 +149,14 @@ public final class SourceDirectoryCalculator {
       BlazeContext context, ImportRoots importRoots, Collection<SourceArtifact> sources) {
 
     Multimap<WorkspacePath, SourceArtifact> result = ArrayListMultimap.create();
+    RootDirectoryIndex rootDirectoryIndex = new RootDirectoryIndex(importRoots);
 
     for (SourceArtifact sourceArtifact : sources) {
       String sourcePath = sourceArtifact.artifactLocation.getRelativePath();
-      if (importRoots.excludeDirectories().stream()
-          .anyMatch(excluded -> isUnderRootDirectory(excluded, sourcePath))) {
+      if (rootDirectoryIndex.isExcluded(sourcePath)) {
         continue;
       }
-      WorkspacePath foundWorkspacePath =
-          importRoots.rootDirectories().stream()
-              .filter(rootDirectory -> isUnderRootDirectory(rootDirectory, sourcePath))
-              .findFirst()
-              .orElse(null);
+      WorkspacePath foundWorkspacePath = rootDirectoryIndex.findRootDirectory(sourcePath);
 
       if (foundWorkspacePath != null) {
         result.put(foundWorkspacePath, sourceArtifact);
@@ -177,14 +173,60 @@ public final class SourceDirectoryCalculator {
     return result;
   }
 
-  private static boolean isUnderRootDirectory(WorkspacePath rootDirectory, String relativePath) {
-    if (rootDirectory.isWorkspaceRoot()) {
-      return true;
+  /**
+   * Finds the root and excluded directories containing a workspace-relative path, by looking up
+   * each of the path's ancestor directories in turn. This is linear in the depth of the path,
+   * rather than in the number of root and excluded directories.
+   */
+  private static class RootDirectoryIndex {
+    // root directory path -> index in the list of root directories, first match wins
+    private final Map<String, Integer> rootDirectories = new HashMap<>();
+    private final List<WorkspacePath> rootDirectoryList;
+    private final Set<String> excludedDirectories = Sets.newHashSet();
+
+    RootDirectoryIndex(ImportRoots importRoots) {
+      rootDirectoryList = ImmutableList.copyOf(importRoots.rootDirectories());
+      for (int i = 0; i < rootDirectoryList.size(); i++) {
+        rootDirectories.putIfAbsent(rootDirectoryList.get(i).relativePath(), i);
+      }
+      for (WorkspacePath excluded : importRoots.excludeDirectories()) {
+        excludedDirectories.add(excluded.relativePath());
+      }
+    }
+
+    boolean isExcluded(String relativePath) {
+      if (excludedDirectories.isEmpty()) {
+        return false;
+      }
+      for (String path = relativePath; path != null; path = parentPath(path)) {
+        if (excludedDirectories.contains(path)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Nullable
+    WorkspacePath findRootDirectory(String relativePath) {
+      int best = -1;
+      for (String path = relativePath; path != null; path = parentPath(path)) {
+        Integer index = rootDirectories.get(path);
+        if (index != null && (best == -1 || index < best)) {
+          best = index;
+        }
+      }
+      return best != -1 ? rootDirectoryList.get(best) : null;
+    }
+
+    /** Returns the parent directory, the empty string for the workspace root, then null. */
+    @Nullable
+    private static String parentPath(String path) {
+      if (path.isEmpty()) {
+        return null;
+      }
+      int index = path.lastIndexOf('/');
+      return index >= 0 ? path.substring(0, index) : "";
     }
-    String rootDirectoryString = rootDirectory.toString();
-    return relativePath.startsWith(rootDirectoryString)
-        && (relativePath.length() == rootDirectoryString.length()
-            || (relativePath.charAt(rootDirectoryString.length()) == '/'));
   }
 
   /** Calculates all source directories for a single content root. */
@@ -247,7 +289,7 @@ public final class SourceDirectoryCalculator {
     List<ListenableFuture<SourceRoot>> sourceRootFutures = Lists.newArrayList();
     for (final SourceArtifact sourceArtifact : javaArtifacts) {
       ListenableFuture<SourceRoot> future =
-          executorService.submit(
+          packageReaderExecutorService.submit(
               () ->
                   sourceRootForJavaSource(
                       context, artifactLocationDecoder, sourceArtifact, javaPackageReaders));
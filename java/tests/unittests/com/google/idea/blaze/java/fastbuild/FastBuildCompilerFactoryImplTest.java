@@ -40,6 +40,7 @@ import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import org.junit.Before;
@@ -79,7 +80,7 @@ public final class FastBuildCompilerFactoryImplTest {
           /* annotationProcessorClassPath */ ImmutableList.of(),
           /* jvmFlags */ ImmutableList.of());
 
-  private FastBuildCompilerFactory compilerFactory;
+  private FastBuildCompilerFactoryImpl compilerFactory;
   private final boolean useNewCompiler;
 
   public FastBuildCompilerFactoryImplTest(boolean useNewCompiler) {
@@ -198,6 +199,83 @@ public final class FastBuildCompilerFactoryImplTest {
     }
   }
 
+  @Test
+  public void testRepeatedCompiles_reuseLoadedCompiler() throws IOException, FastBuildException {
+    String java =
+        ""
+            + "package com.google.idea.blaze.java.fastbuild;\n"
+            + "\n"
+            + "final class Main {}\n";
+    StringWriter javacOutput = new StringWriter();
+    try {
+      compile(java, javacOutput);
+      ClassLoader javacClassLoader = compilerFactory.getJavacClassLoader();
+      assertThat(javacClassLoader).isNotNull();
+
+      compile(java, javacOutput);
+      assertThat(compilerFactory.getJavacClassLoader()).isSameAs(javacClassLoader);
+    } catch (FastBuildIncrementalCompileException e) {
+      throw new AssertionError("Compilation failed:\n" + javacOutput, e);
+    }
+  }
+
+  @Test
+  public void testJavacJarModified_reloadsCompiler() throws IOException, FastBuildException {
+    Path javacJar = Files.createTempFile("javac", ".jar");
+    javacJar.toFile().deleteOnExit();
+    Files.copy(JDK_TOOLS_JAR.toPath(), javacJar, StandardCopyOption.REPLACE_EXISTING);
+    JavaToolchainInfo toolchain =
+        JavaToolchainInfo.create(
+            ArtifactLocation.builder().setRelativePath(javacJar.toString()).build(),
+            /* sourceVersion */ "8",
+            /* targetVersion */ "8");
+
+    getCompiler(toolchain);
+    ClassLoader oldClassLoader = compilerFactory.getJavacClassLoader();
+    String javacClass = "com/sun/tools/javac/Main.class";
+    assertThat(oldClassLoader.getResource(javacClass)).isNotNull();
+
+    assertThat(javacJar.toFile().setLastModified(javacJar.toFile().lastModified() + 10_000))
+        .isTrue();
+    getCompiler(toolchain);
+    ClassLoader newClassLoader = compilerFactory.getJavacClassLoader();
+
+    assertThat(newClassLoader).isNotSameAs(oldClassLoader);
+    assertThat(newClassLoader.getResource(javacClass)).isNotNull();
+    // the replaced class loader is closed, releasing the old jar
+    assertThat(oldClassLoader.getResource(javacClass)).isNull();
+  }
+
+  @Test
+  public void testJavacJarModified_inFlightCompilerClosedWhenFinished()
+      throws IOException, FastBuildException {
+    Path javacJar = Files.createTempFile("javac", ".jar");
+    javacJar.toFile().deleteOnExit();
+    Files.copy(JDK_TOOLS_JAR.toPath(), javacJar, StandardCopyOption.REPLACE_EXISTING);
+    JavaToolchainInfo toolchain =
+        JavaToolchainInfo.create(
+            ArtifactLocation.builder().setRelativePath(javacJar.toString()).build(),
+            /* sourceVersion */ "8",
+            /* targetVersion */ "8");
+
+    getCompiler(toolchain);
+    FastBuildCompilerFactoryImpl.CachedJavac inFlight =
+        compilerFactory.acquireJavac(javacJar.toFile());
+    ClassLoader oldClassLoader = compilerFactory.getJavacClassLoader();
+    String javacClass = "com/sun/tools/javac/Main.class";
+
+    assertThat(javacJar.toFile().setLastModified(javacJar.toFile().lastModified() + 10_000))
+        .isTrue();
+    getCompiler(toolchain);
+
+    assertThat(compilerFactory.getJavacClassLoader()).isNotSameAs(oldClassLoader);
+    // still in use, so not yet closed
+    assertThat(oldClassLoader.getResource(javacClass)).isNotNull();
+
+    compilerFactory.releaseJavac(inFlight);
+    assertThat(oldClassLoader.getResource(javacClass)).isNull();
+  }
+
   @Test
   public void testFindsClassesInClasspathJars() throws IOException, FastBuildException {
     String java =
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 The Bazel Authors. All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.idea.blaze.java.sync.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.StringReader;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link JavaSourcePackageReader.PackageLexer}. */
+@RunWith(JUnit4.class)
+public class JavaSourcePackageReaderTest {
+
+  @Test
+  public void testPackageAfterComments() throws IOException {
+    assertThat(
+            readPackage(
+                "/*\n * Copyright header: package not.this;\n */\n"
+                    + "// package nor.this;\n"
+                    + "package com.google.foo;\n"
+                    + "public class Foo {}"))
+        .isEqualTo("com.google.foo");
+  }
+
+  @Test
+  public void testPackageAfterAnnotations() throws IOException {
+    assertThat(readPackage("@ParametersAreNonnullByDefault\npackage com.google.foo;"))
+        .isEqualTo("com.google.foo");
+    assertThat(readPackage("@file:JvmName(\"Foo (bar)\")\n\npackage com.google.foo\n"))
+        .isEqualTo("com.google.foo");
+  }
+
+  @Test
+  public void testNoPackage_stopsAtFirstOtherToken() throws IOException {
+    assertThat(readPackage("import com.google.Bar;\npublic class Foo {}\npackage x;")).isNull();
+    assertThat(readPackage("public class Foo {}")).isNull();
+    assertThat(readPackage("")).isNull();
+  }
+
+  @Nullable
+  private static String readPackage(String source) throws IOException {
+    return new JavaSourcePackageReader.PackageLexer(new StringReader(source)).readPackage();
+  }
+}
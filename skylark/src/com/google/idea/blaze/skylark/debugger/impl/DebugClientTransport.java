@@ -27,8 +27,12 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.jetbrains.ide.PooledThreadExecutor;
@@ -45,7 +49,6 @@ class DebugClientTransport implements Closeable {
 
   private static final int RETRY_DELAY_MILLIS = 200;
   private static final int RESPONSE_TIMEOUT_MILLIS = 30000;
-  private static final int RESPONSE_RECHECK_TIME_MILLIS = 1000;
 
   private static final String LOCAL_HOST = "localhost";
 
@@ -53,7 +56,9 @@ class DebugClientTransport implements Closeable {
   private final SkylarkDebugProcess debugProcess;
 
   private final AtomicLong sequence = new AtomicLong(1);
-  private final Map<Long, DebugEvent> responseQueue = new HashMap<>();
+  // requests awaiting a response, keyed by sequence number
+  private final ConcurrentMap<Long, CompletableFuture<DebugEvent>> pendingResponses =
+      new ConcurrentHashMap<>();
 
   @Nullable private Socket clientSocket;
   @Nullable private OutputStream requestStream;
@@ -80,6 +85,7 @@ class DebugClientTransport implements Closeable {
     if (readTask != null) {
       readTask.cancel(true);
     }
+    cancelPendingRequests();
     if (clientSocket == null) {
       return;
     }
@@ -132,19 +138,56 @@ class DebugClientTransport implements Closeable {
    */
   @Nullable
   DebugEvent sendRequest(DebugRequest.Builder builder) {
+    return waitForResponse(sendRequestAsync(builder));
+  }
+
+  /**
+   * Sends a {@link DebugRequest} to the server without waiting for a response, so multiple
+   * requests can be in flight at once. The sequence number will be populated prior to sending the
+   * request.
+   *
+   * @return a future for the {@link DebugEvent} response, which completes with null if the request
+   *     couldn't be sent, or the connection is closed before a response is received.
+   */
+  CompletableFuture<DebugEvent> sendRequestAsync(DebugRequest.Builder builder) {
     long seq = sequence.getAndIncrement();
     DebugRequest request = builder.setSequenceNumber(seq).build();
+    CompletableFuture<DebugEvent> response = new CompletableFuture<>();
+    pendingResponses.put(seq, response);
+    // also covers callers giving up on the response
+    response.whenComplete((event, error) -> pendingResponses.remove(seq, response));
+    if (!isConnected() || readTask == null || readTask.isDone()) {
+      cancelPendingRequest(seq);
+      return response;
+    }
     try {
       synchronized (requestStream) {
         request.writeDelimitedTo(requestStream);
         requestStream.flush();
       }
-      return waitForResponse(seq);
-
     } catch (IOException e) {
       if (!ignoreErrors()) {
         logger.error("Error sending request to Skylark debugger", e);
       }
+      cancelPendingRequest(seq);
+    }
+    return response;
+  }
+
+  /**
+   * Blocks waiting for a response from the debug server. Returns null if no response was received
+   * within the timeout, or this thread was interrupted.
+   */
+  @Nullable
+  DebugEvent waitForResponse(CompletableFuture<DebugEvent> response) {
+    try {
+      return response.get(RESPONSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      response.complete(null);
+      return null;
+    } catch (ExecutionException | TimeoutException e) {
+      response.complete(null);
       return null;
     }
   }
@@ -166,49 +209,43 @@ class DebugClientTransport implements Closeable {
   }
 
   private void listenForEvents(InputStream eventStream) throws IOException {
-    while (true) {
-      DebugEvent event = DebugEvent.parseDelimitedFrom(eventStream);
-      if (event.getSequenceNumber() == 0) {
-        // sequence number is 0 iff it's not a response to a DebugRequest: handle it immediately
-        debugProcess.handleEvent(event);
-      } else {
-        placeResponse(event.getSequenceNumber(), event);
+    try {
+      while (true) {
+        DebugEvent event = DebugEvent.parseDelimitedFrom(eventStream);
+        if (event == null) {
+          // end of stream: the server has disconnected
+          return;
+        }
+        if (event.getSequenceNumber() == 0) {
+          // sequence number is 0 iff it's not a response to a DebugRequest: handle it immediately
+          debugProcess.handleEvent(event);
+        } else {
+          placeResponse(event.getSequenceNumber(), event);
+        }
       }
+    } finally {
+      cancelPendingRequests();
     }
   }
 
   private void placeResponse(long sequence, DebugEvent response) {
-    synchronized (responseQueue) {
-      responseQueue.put(sequence, response);
-      responseQueue.notifyAll();
+    CompletableFuture<DebugEvent> future = pendingResponses.remove(sequence);
+    if (future != null) {
+      future.complete(response);
     }
   }
 
-  /**
-   * Wait for a response from the debug server. Returns null if no response was received, or this
-   * thread was interrupted.
-   */
-  @Nullable
-  private DebugEvent waitForResponse(long sequence) {
-    DebugEvent response = null;
-    long startTime = System.currentTimeMillis();
-    synchronized (responseQueue) {
-      while (response == null && shouldWaitForResponse(startTime)) {
-        try {
-          responseQueue.wait(RESPONSE_RECHECK_TIME_MILLIS);
-        } catch (InterruptedException e) {
-          Thread.currentThread().interrupt();
-          return null;
-        }
-        response = responseQueue.remove(sequence);
-      }
+  private void cancelPendingRequest(long sequence) {
+    CompletableFuture<DebugEvent> future = pendingResponses.remove(sequence);
+    if (future != null) {
+      future.complete(null);
     }
-    return response;
   }
 
-  private boolean shouldWaitForResponse(long startTime) {
-    return clientSocket.isConnected()
-        && !readTask.isDone()
-        && System.currentTimeMillis() - startTime < RESPONSE_TIMEOUT_MILLIS;
+  /** Completes all outstanding requests with a null response. */
+  private void cancelPendingRequests() {
+    for (Long sequence : pendingResponses.keySet()) {
+      cancelPendingRequest(sequence);
+    }
   }
 }
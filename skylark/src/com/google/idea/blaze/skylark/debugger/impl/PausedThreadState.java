@@ -15,12 +15,17 @@
  */
 package com.google.idea.blaze.skylark.debugger.impl;
 
+import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos.DebugEvent;
 import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos.PausedThread;
+import java.util.concurrent.CompletableFuture;
+import javax.annotation.Nullable;
 
 final class PausedThreadState {
 
   final PausedThread thread;
   final SingleThreadChildCache childCache;
+  // the thread's stack frames, requested as soon as it's paused
+  @Nullable volatile CompletableFuture<DebugEvent> frames;
 
   PausedThreadState(PausedThread thread) {
     this.thread = thread;
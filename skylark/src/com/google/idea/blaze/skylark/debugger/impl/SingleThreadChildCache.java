@@ -20,7 +20,9 @@ import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos;
 import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos.DebugEvent;
 import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos.DebugRequest;
 import com.google.devtools.build.lib.skylarkdebugging.SkylarkDebuggingProtos.GetChildrenRequest;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import javax.annotation.Nullable;
@@ -32,7 +34,7 @@ import javax.annotation.Nullable;
 class SingleThreadChildCache {
 
   private final long threadId;
-  private final ConcurrentMap<Long, List<SkylarkDebuggingProtos.Value>> identifierToChildrenMap =
+  private final ConcurrentMap<Long, CompletableFuture<DebugEvent>> identifierToChildrenMap =
       new ConcurrentHashMap<>();
 
   SingleThreadChildCache(long threadId) {
@@ -43,19 +45,44 @@ class SingleThreadChildCache {
   List<SkylarkDebuggingProtos.Value> getChildren(
       DebugClientTransport transport, SkylarkDebuggingProtos.Value value) {
     // protocol specifies a non-zero ID for values with children
-    if (!value.getHasChildren() || value.getId() == 0) {
+    if (!hasChildren(value)) {
       return ImmutableList.of();
     }
-    return identifierToChildrenMap.computeIfAbsent(
-        value.getId(), id -> queryChildren(transport, value));
+    CompletableFuture<DebugEvent> request = queryChildren(transport, value);
+    DebugEvent response = transport.waitForResponse(request);
+    if (response == null) {
+      // don't cache failures
+      identifierToChildrenMap.remove(value.getId(), request);
+      return null;
+    }
+    return response.getGetChildren().getChildrenList();
   }
 
-  @Nullable
-  private List<SkylarkDebuggingProtos.Value> queryChildren(
+  /**
+   * Requests the children of the given values without waiting for the responses, so they're
+   * available immediately if the values are later expanded.
+   */
+  void prefetchChildren(
+      DebugClientTransport transport, Collection<SkylarkDebuggingProtos.Value> values) {
+    for (SkylarkDebuggingProtos.Value value : values) {
+      if (hasChildren(value)) {
+        queryChildren(transport, value);
+      }
+    }
+  }
+
+  private static boolean hasChildren(SkylarkDebuggingProtos.Value value) {
+    return value.getHasChildren() && value.getId() != 0;
+  }
+
+  private CompletableFuture<DebugEvent> queryChildren(
       DebugClientTransport transport, SkylarkDebuggingProtos.Value value) {
-    GetChildrenRequest request =
-        GetChildrenRequest.newBuilder().setThreadId(threadId).setValueId(value.getId()).build();
-    DebugEvent response = transport.sendRequest(DebugRequest.newBuilder().setGetChildren(request));
-    return response == null ? null : response.getGetChildren().getChildrenList();
+    return identifierToChildrenMap.computeIfAbsent(
+        value.getId(),
+        id -> {
+          GetChildrenRequest request =
+              GetChildrenRequest.newBuilder().setThreadId(threadId).setValueId(id).build();
+          return transport.sendRequestAsync(DebugRequest.newBuilder().setGetChildren(request));
+        });
   }
 }
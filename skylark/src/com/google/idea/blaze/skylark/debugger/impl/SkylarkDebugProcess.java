@@ -57,12 +57,19 @@ import com.intellij.xdebugger.evaluation.XDebuggerEditorsProvider;
 import com.intellij.xdebugger.evaluation.XDebuggerEvaluator.XEvaluationCallback;
 import com.intellij.xdebugger.frame.XExecutionStack;
 import com.intellij.xdebugger.frame.XSuspendContext;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
@@ -74,6 +81,9 @@ public class SkylarkDebugProcess extends XDebugProcess {
 
   private static final Logger logger = Logger.getInstance(SkylarkDebugProcess.class);
 
+  /** The maximum number of threads per batch of thread-paused events to prefetch frames for. */
+  private static final int MAX_PREFETCHED_THREADS = 20;
+
   private final Project project;
   private final ExecutionResult executionResult;
   private final DebugClientTransport transport;
@@ -88,6 +98,10 @@ public class SkylarkDebugProcess extends XDebugProcess {
   // the currently-stepping thread gets priority in the UI -- we always grab focus when it's paused
   private volatile long currentlySteppingThreadId = 0;
 
+  // thread paused/continued events, processed in batches off the event-reading thread
+  private final Queue<DebugEvent> threadEvents = new ConcurrentLinkedQueue<>();
+  private final AtomicBoolean threadEventsScheduled = new AtomicBoolean(false);
+
   public SkylarkDebugProcess(XDebugSession session, ExecutionResult executionResult, int port) {
     super(session);
     this.project = session.getProject();
@@ -416,11 +430,12 @@ public class SkylarkDebugProcess extends XDebugProcess {
   }
 
   void listFrames(long threadId, XExecutionStack.XStackFrameContainer container) {
-    DebugEvent response =
-        transport.sendRequest(
-            DebugRequest.newBuilder()
-                .setListFrames(
-                    SkylarkDebuggingProtos.ListFramesRequest.newBuilder().setThreadId(threadId)));
+    PausedThreadState threadState = pausedThreads.get(threadId);
+    CompletableFuture<DebugEvent> prefetched = threadState != null ? threadState.frames : null;
+    DebugEvent response = prefetched != null ? transport.waitForResponse(prefetched) : null;
+    if (response == null) {
+      response = transport.waitForResponse(requestFrames(threadId));
+    }
     if (response == null) {
       container.errorOccurred("No frames data received from the Skylark debugger");
       return;
@@ -435,6 +450,35 @@ public class SkylarkDebugProcess extends XDebugProcess {
         frames.stream().map(f -> convert(threadId, f)).collect(Collectors.toList()), true);
   }
 
+  private CompletableFuture<DebugEvent> requestFrames(long threadId) {
+    return transport.sendRequestAsync(
+        DebugRequest.newBuilder()
+            .setListFrames(
+                SkylarkDebuggingProtos.ListFramesRequest.newBuilder().setThreadId(threadId)));
+  }
+
+  /**
+   * Requests the frames of a newly-paused thread, and the children of the values in its top frame,
+   * without waiting for the responses.
+   */
+  private void prefetch(PausedThreadState threadState) {
+    CompletableFuture<DebugEvent> frames = requestFrames(threadState.thread.getId());
+    threadState.frames = frames;
+    // Runs on a pooled thread: the frames future is completed on the transport's event-reading
+    // thread, which mustn't block sending further requests.
+    frames.thenAcceptAsync(
+        response -> {
+          if (response == null || response.getListFrames().getFrameCount() == 0) {
+            return;
+          }
+          for (SkylarkDebuggingProtos.Scope scope :
+              response.getListFrames().getFrame(0).getScopeList()) {
+            threadState.childCache.prefetchChildren(transport, scope.getBindingList());
+          }
+        },
+        AppExecutorUtil.getAppExecutorService());
+  }
+
   private SkylarkStackFrame convert(long threadId, SkylarkDebuggingProtos.Frame frame) {
     return new SkylarkStackFrame(this, threadId, frame);
   }
@@ -445,10 +489,8 @@ public class SkylarkDebugProcess extends XDebugProcess {
         reportError(event.getError());
         return;
       case THREAD_PAUSED:
-        handleThreadPausedEvent(event.getThreadPaused().getThread());
-        return;
       case THREAD_CONTINUED:
-        pausedThreads.remove(event.getThreadContinued().getThreadId());
+        queueThreadEvent(event);
         return;
       case LIST_FRAMES:
       case EVALUATE:
@@ -485,7 +527,39 @@ public class SkylarkDebugProcess extends XDebugProcess {
     }
   }
 
-  private void handleThreadPausedEvent(PausedThread thread) {
+  /**
+   * Thread events arrive in bursts (e.g. 100s of threads stopping at a single breakpoint), so
+   * they're queued and handled in batches on a pooled thread, rather than one by one on the
+   * event-reading thread.
+   */
+  private void queueThreadEvent(DebugEvent event) {
+    threadEvents.add(event);
+    if (threadEventsScheduled.compareAndSet(false, true)) {
+      ApplicationManager.getApplication().executeOnPooledThread(this::processThreadEvents);
+    }
+  }
+
+  private void processThreadEvents() {
+    do {
+      // newly-paused threads, in the order they were paused
+      Map<Long, PausedThread> pausedBatch = new LinkedHashMap<>();
+      DebugEvent event;
+      while ((event = threadEvents.poll()) != null) {
+        if (event.getPayloadCase() == PayloadCase.THREAD_CONTINUED) {
+          long threadId = event.getThreadContinued().getThreadId();
+          pausedBatch.remove(threadId);
+          pausedThreads.remove(threadId);
+        } else {
+          handleThreadPausedEvent(event.getThreadPaused().getThread(), pausedBatch);
+        }
+      }
+      notifyThreadsPaused(pausedBatch.values());
+      threadEventsScheduled.set(false);
+      // events added after the queue was drained, but before the flag was reset, are handled here
+    } while (!threadEvents.isEmpty() && threadEventsScheduled.compareAndSet(false, true));
+  }
+
+  private void handleThreadPausedEvent(PausedThread thread, Map<Long, PausedThread> pausedBatch) {
     // ignore threads paused during initialization
     if (!debuggingStarted && thread.getPauseReason() == PauseReason.ALL_THREADS_PAUSED) {
       // Temporary backwards-compatibility code. TODO(brendandouglas): remove in v2018.10+
@@ -496,23 +570,59 @@ public class SkylarkDebugProcess extends XDebugProcess {
     }
 
     if (thread.getPauseReason() != PauseReason.CONDITIONAL_BREAKPOINT_ERROR) {
-      notifyThreadPaused(thread);
+      pausedBatch.put(thread.getId(), thread);
       return;
     }
     XLineBreakpoint<XBreakpointProperties> breakpoint =
         lineBreakpoints.get(thread.getLocation().toBuilder().setColumnNumber(0).build());
     if (breakpoint == null) {
-      notifyThreadPaused(thread);
+      pausedBatch.put(thread.getId(), thread);
     } else {
+      // handle the threads paused before this one first
+      notifyThreadsPaused(pausedBatch.values());
+      pausedBatch.clear();
       handleConditionalBreakpointError(breakpoint, thread);
     }
   }
 
+  /**
+   * Registers a batch of newly-paused threads, prefetching their frames as a single pipelined
+   * batch of requests, then updates the UI at most once for the whole batch.
+   */
+  private void notifyThreadsPaused(Collection<PausedThread> threads) {
+    if (threads.isEmpty()) {
+      return;
+    }
+    List<PausedThreadState> states = new ArrayList<>(threads.size());
+    PausedThreadState steppingThread = null;
+    for (PausedThread thread : threads) {
+      PausedThreadState state = new PausedThreadState(thread);
+      pausedThreads.put(thread.getId(), state);
+      if (thread.getId() == currentlySteppingThreadId) {
+        steppingThread = state;
+      } else {
+        states.add(state);
+      }
+    }
+    if (steppingThread != null) {
+      states.add(0, steppingThread);
+    }
+    states.stream().limit(MAX_PREFETCHED_THREADS).forEach(this::prefetch);
+    for (PausedThreadState state : states) {
+      if (notifyThreadPaused(state, /* alwaysNotify */ false)) {
+        return;
+      }
+    }
+  }
+
   private void notifyThreadPaused(PausedThread thread) {
-    notifyThreadPaused(new PausedThreadState(thread), /* alwaysNotify */ false);
+    PausedThreadState threadState = new PausedThreadState(thread);
+    prefetch(threadState);
+    notifyThreadPaused(threadState, /* alwaysNotify */ false);
   }
 
-  private void notifyThreadPaused(PausedThreadState threadState, boolean alwaysNotify) {
+  /** Returns true if the UI was notified. */
+  private boolean notifyThreadPaused(PausedThreadState threadState, boolean alwaysNotify) {
     pausedThreads.put(threadState.thread.getId(), threadState);
     XLineBreakpoint<XBreakpointProperties> breakpoint =
         lineBreakpoints.get(
@@ -522,18 +632,22 @@ public class SkylarkDebugProcess extends XDebugProcess {
     if (!alwaysNotify && isSuspended && breakpoint != null) {
       // don't notify for subsequent breakpoint hits when we're already suspended. Otherwise we can
       // get 100s of threads stopping at a single breakpoint, kicking off a listFrames for each
-      return;
+      return false;
     }
 
     SkylarkSuspendContext suspendContext = new SkylarkSuspendContext(this, threadState);
     if (breakpoint != null) {
       getSession().breakpointReached(breakpoint, null, suspendContext);
-    } else if (alwaysNotify
+      return true;
+    }
+    if (alwaysNotify
         || threadState.thread.getId() == currentlySteppingThreadId
         || !isSuspended
         || individualThreadPausedByUser(threadState.thread.getPauseReason())) {
       getSession().positionReached(suspendContext);
+      return true;
     }
+    return false;
   }
 
   private boolean individualThreadPausedByUser(SkylarkDebuggingProtos.PauseReason reason) {